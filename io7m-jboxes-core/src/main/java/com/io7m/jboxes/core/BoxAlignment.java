@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * The positions at which a box can be aligned within a containing box.
+ *
+ * @see BoxLayoutTree#align(int, BoxAlignment, int, int)
+ */
+
+public enum BoxAlignment
+{
+  /**
+   * Align against the top and left edges.
+   */
+
+  TOP_LEFT,
+
+  /**
+   * Align against the top edge, centered horizontally.
+   */
+
+  TOP_CENTER,
+
+  /**
+   * Align against the top and right edges.
+   */
+
+  TOP_RIGHT,
+
+  /**
+   * Align against the left edge, centered vertically.
+   */
+
+  CENTER_LEFT,
+
+  /**
+   * Center both horizontally and vertically.
+   */
+
+  CENTER,
+
+  /**
+   * Align against the right edge, centered vertically.
+   */
+
+  CENTER_RIGHT,
+
+  /**
+   * Align against the bottom and left edges.
+   */
+
+  BOTTOM_LEFT,
+
+  /**
+   * Align against the bottom edge, centered horizontally.
+   */
+
+  BOTTOM_CENTER,
+
+  /**
+   * Align against the bottom and right edges.
+   */
+
+  BOTTOM_RIGHT
+}
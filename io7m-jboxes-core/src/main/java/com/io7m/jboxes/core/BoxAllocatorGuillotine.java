@@ -0,0 +1,632 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import org.valid4j.Assertive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>A guillotine allocator that places boxes inside a container box.</p>
+ *
+ * <p>Free space is kept as a set of disjoint free rectangles, bucketed by the
+ * binary logarithms of their widths and heights. An allocation searches the
+ * buckets in increasing order of size class, takes the first free rectangle
+ * that can hold the requested box, and cuts the box out of the top left
+ * corner of that rectangle with {@link Boxes#splitAlongVertical(BoxType,
+ * int)} and {@link Boxes#splitAlongHorizontal(BoxType, int)}, cutting first
+ * across the axis with the smaller amount of leftover space.</p>
+ *
+ * <p>Whenever a rectangle is returned to the free set, it is merged with any
+ * free rectangle that shares a complete edge with it, repeatedly, using maps
+ * keyed by the edges of the free rectangles.</p>
+ *
+ * <p>Each bucket is a treap ordered by width and augmented with the maximum
+ * height of each subtree, so the first rectangle in a bucket that is both
+ * wide enough and tall enough is found in expected time logarithmic in the
+ * size of the bucket, including in the buckets on the boundary of the
+ * requested size class. Allocation examines at most one bucket per size
+ * class pair, and freeing takes expected constant time per merge plus
+ * expected logarithmic time to update the buckets.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxAllocatorGuillotine<S>
+{
+  private static final int CLASSES = 32;
+
+  private final BoxType<S> container;
+  private final List<Bucket<S>> buckets;
+  private final int[] bucket_masks;
+  private final Map<BoxType<S>, BoxType<S>> by_left_edge;
+  private final Map<BoxType<S>, BoxType<S>> by_right_edge;
+  private final Map<BoxType<S>, BoxType<S>> by_top_edge;
+  private final Map<BoxType<S>, BoxType<S>> by_bottom_edge;
+  private final Set<BoxType<S>> allocated;
+  private int free_count;
+  private long used_area;
+
+  private BoxAllocatorGuillotine(
+    final BoxType<S> in_container)
+  {
+    this.container = NullCheck.notNull(in_container);
+
+    final int bucket_count =
+      BoxAllocatorGuillotine.CLASSES * BoxAllocatorGuillotine.CLASSES;
+    this.buckets = new ArrayList<>(bucket_count);
+    for (int index = 0; index < bucket_count; ++index) {
+      this.buckets.add(new Bucket<>());
+    }
+    this.bucket_masks = new int[BoxAllocatorGuillotine.CLASSES];
+    this.by_left_edge = new HashMap<>(64);
+    this.by_right_edge = new HashMap<>(64);
+    this.by_top_edge = new HashMap<>(64);
+    this.by_bottom_edge = new HashMap<>(64);
+    this.allocated = new HashSet<>(64);
+    this.reset();
+  }
+
+  /**
+   * Create a new allocator.
+   *
+   * @param container The container box
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return A new allocator
+   */
+
+  public static <S> BoxAllocatorGuillotine<S> create(
+    final BoxType<S> container)
+  {
+    return new BoxAllocatorGuillotine<>(container);
+  }
+
+  private static int sizeClass(
+    final int size)
+  {
+    return 31 - Integer.numberOfLeadingZeros(size);
+  }
+
+  private static <S> BoxType<S> leftEdge(
+    final BoxType<S> box)
+  {
+    return Box.of(
+      box.minimumX(), box.minimumX(), box.minimumY(), box.maximumY());
+  }
+
+  private static <S> BoxType<S> rightEdge(
+    final BoxType<S> box)
+  {
+    return Box.of(
+      box.maximumX(), box.maximumX(), box.minimumY(), box.maximumY());
+  }
+
+  private static <S> BoxType<S> topEdge(
+    final BoxType<S> box)
+  {
+    return Box.of(
+      box.minimumX(), box.maximumX(), box.minimumY(), box.minimumY());
+  }
+
+  private static <S> BoxType<S> bottomEdge(
+    final BoxType<S> box)
+  {
+    return Box.of(
+      box.minimumX(), box.maximumX(), box.maximumY(), box.maximumY());
+  }
+
+  /**
+   * @return The container box
+   */
+
+  public BoxType<S> container()
+  {
+    return this.container;
+  }
+
+  /**
+   * @return The current number of free rectangles
+   */
+
+  public int freeRectangles()
+  {
+    return this.free_count;
+  }
+
+  /**
+   * @return The total area of the currently allocated boxes
+   */
+
+  public long usedArea()
+  {
+    return this.used_area;
+  }
+
+  /**
+   * Free all allocated boxes.
+   */
+
+  public void reset()
+  {
+    for (int index = 0; index < this.buckets.size(); ++index) {
+      this.buckets.get(index).clear();
+    }
+    for (int index = 0; index < this.bucket_masks.length; ++index) {
+      this.bucket_masks[index] = 0;
+    }
+    this.by_left_edge.clear();
+    this.by_right_edge.clear();
+    this.by_top_edge.clear();
+    this.by_bottom_edge.clear();
+    this.allocated.clear();
+    this.free_count = 0;
+    this.used_area = 0L;
+
+    if (this.container.width() > 0 && this.container.height() > 0) {
+      this.addFree(this.container);
+    }
+  }
+
+  /**
+   * Allocate a box of the given size.
+   *
+   * @param width  The width of the box
+   * @param height The height of the box
+   *
+   * @return The allocated box, or nothing if no free rectangle could hold the
+   * box
+   */
+
+  public Optional<BoxType<S>> allocate(
+    final int width,
+    final int height)
+  {
+    Assertive.require(width > 0, "Width must be > 0");
+    Assertive.require(height > 0, "Height must be > 0");
+
+    final @Nullable BoxType<S> source = this.find(width, height);
+    if (source == null) {
+      return Optional.empty();
+    }
+    this.removeFree(source);
+
+    final int left_w = source.width() - width;
+    final int left_h = source.height() - height;
+    final BoxType<S> box;
+
+    if (left_w > left_h) {
+      final BoxVerticalSplitType<S> columns =
+        Boxes.splitAlongVertical(source, width);
+      final BoxHorizontalSplitType<S> rows =
+        Boxes.splitAlongHorizontal(columns.left(), height);
+      box = rows.upper();
+      this.addFreeMerged(rows.lower());
+      this.addFreeMerged(columns.right());
+    } else {
+      final BoxHorizontalSplitType<S> rows =
+        Boxes.splitAlongHorizontal(source, height);
+      final BoxVerticalSplitType<S> columns =
+        Boxes.splitAlongVertical(rows.upper(), width);
+      box = columns.left();
+      this.addFreeMerged(columns.right());
+      this.addFreeMerged(rows.lower());
+    }
+
+    this.allocated.add(box);
+    this.used_area += (long) width * (long) height;
+    return Optional.of(box);
+  }
+
+  /**
+   * Free a previously allocated box, merging it with adjacent free space.
+   *
+   * @param box The box
+   */
+
+  public void free(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+    Assertive.require(
+      this.allocated.remove(box), "Box must be currently allocated");
+
+    this.used_area -= (long) box.width() * (long) box.height();
+    this.addFreeMerged(box);
+  }
+
+  private @Nullable BoxType<S> find(
+    final int width,
+    final int height)
+  {
+    final int class_w = BoxAllocatorGuillotine.sizeClass(width);
+    final int class_h = BoxAllocatorGuillotine.sizeClass(height);
+
+    for (int cw = class_w; cw < BoxAllocatorGuillotine.CLASSES; ++cw) {
+      int mask = this.bucket_masks[cw] & (-1 << class_h);
+      while (mask != 0) {
+        final int ch = Integer.numberOfTrailingZeros(mask);
+        mask &= mask - 1;
+
+        final Bucket<S> bucket =
+          this.buckets.get(cw * BoxAllocatorGuillotine.CLASSES + ch);
+
+        /*
+         * Any rectangle in a strictly larger size class on both axes can
+         * hold the box, and a search of a boundary bucket descends only into
+         * subtrees that are known to contain a fitting rectangle.
+         */
+
+        final @Nullable BoxType<S> fit;
+        if (cw > class_w && ch > class_h) {
+          fit = bucket.first();
+        } else {
+          fit = bucket.find(width, height);
+        }
+        if (fit != null) {
+          return fit;
+        }
+      }
+    }
+    return null;
+  }
+
+  private void addFreeMerged(
+    final BoxType<S> box)
+  {
+    if (box.width() == 0 || box.height() == 0) {
+      return;
+    }
+
+    BoxType<S> current = box;
+    @Nullable BoxType<S> merged = this.mergeOnce(current);
+    while (merged != null) {
+      current = merged;
+      merged = this.mergeOnce(current);
+    }
+    this.addFree(current);
+  }
+
+  /**
+   * Merge {@code box} with one free rectangle that shares a complete edge
+   * with it, removing that rectangle from the free set.
+   */
+
+  private @Nullable BoxType<S> mergeOnce(
+    final BoxType<S> box)
+  {
+    final @Nullable BoxType<S> right =
+      this.by_left_edge.get(BoxAllocatorGuillotine.rightEdge(box));
+    if (right != null) {
+      this.removeFree(right);
+      return Box.of(
+        box.minimumX(), right.maximumX(), box.minimumY(), box.maximumY());
+    }
+
+    final @Nullable BoxType<S> left =
+      this.by_right_edge.get(BoxAllocatorGuillotine.leftEdge(box));
+    if (left != null) {
+      this.removeFree(left);
+      return Box.of(
+        left.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+    }
+
+    final @Nullable BoxType<S> below =
+      this.by_top_edge.get(BoxAllocatorGuillotine.bottomEdge(box));
+    if (below != null) {
+      this.removeFree(below);
+      return Box.of(
+        box.minimumX(), box.maximumX(), box.minimumY(), below.maximumY());
+    }
+
+    final @Nullable BoxType<S> above =
+      this.by_bottom_edge.get(BoxAllocatorGuillotine.topEdge(box));
+    if (above != null) {
+      this.removeFree(above);
+      return Box.of(
+        box.minimumX(), box.maximumX(), above.minimumY(), box.maximumY());
+    }
+
+    return null;
+  }
+
+  private void addFree(
+    final BoxType<S> box)
+  {
+    final int cw = BoxAllocatorGuillotine.sizeClass(box.width());
+    final int ch = BoxAllocatorGuillotine.sizeClass(box.height());
+    final int index = cw * BoxAllocatorGuillotine.CLASSES + ch;
+
+    this.buckets.get(index).add(box);
+    this.bucket_masks[cw] |= 1 << ch;
+
+    this.by_left_edge.put(BoxAllocatorGuillotine.leftEdge(box), box);
+    this.by_right_edge.put(BoxAllocatorGuillotine.rightEdge(box), box);
+    this.by_top_edge.put(BoxAllocatorGuillotine.topEdge(box), box);
+    this.by_bottom_edge.put(BoxAllocatorGuillotine.bottomEdge(box), box);
+    ++this.free_count;
+  }
+
+  private void removeFree(
+    final BoxType<S> box)
+  {
+    final int cw = BoxAllocatorGuillotine.sizeClass(box.width());
+    final int ch = BoxAllocatorGuillotine.sizeClass(box.height());
+    final int index = cw * BoxAllocatorGuillotine.CLASSES + ch;
+
+    final Bucket<S> bucket = this.buckets.get(index);
+    bucket.remove(box);
+    if (bucket.isEmpty()) {
+      this.bucket_masks[cw] &= ~(1 << ch);
+    }
+
+    this.by_left_edge.remove(BoxAllocatorGuillotine.leftEdge(box));
+    this.by_right_edge.remove(BoxAllocatorGuillotine.rightEdge(box));
+    this.by_top_edge.remove(BoxAllocatorGuillotine.topEdge(box));
+    this.by_bottom_edge.remove(BoxAllocatorGuillotine.bottomEdge(box));
+    --this.free_count;
+  }
+
+  /**
+   * A treap of free rectangles ordered by width, then height, then position,
+   * where each node records the maximum height in its subtree. Node
+   * priorities are derived from the positions of the rectangles, which are
+   * distinct within a bucket, so the shape of the tree is deterministic.
+   */
+
+  private static final class Bucket<S>
+  {
+    private @Nullable Node<S> root;
+
+    Bucket()
+    {
+
+    }
+
+    private static <S> int compare(
+      final BoxType<S> a,
+      final BoxType<S> b)
+    {
+      final int by_width = Integer.compare(a.width(), b.width());
+      if (by_width != 0) {
+        return by_width;
+      }
+      final int by_height = Integer.compare(a.height(), b.height());
+      if (by_height != 0) {
+        return by_height;
+      }
+      final int by_x = Integer.compare(a.minimumX(), b.minimumX());
+      if (by_x != 0) {
+        return by_x;
+      }
+      return Integer.compare(a.minimumY(), b.minimumY());
+    }
+
+    private static int priority(
+      final BoxType<?> box)
+    {
+      int h = box.minimumX() * 0x9e3779b1 + box.minimumY();
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h;
+    }
+
+    private static <S> int maximumHeight(
+      final @Nullable Node<S> node)
+    {
+      return node == null ? 0 : node.maximum_height;
+    }
+
+    private static <S> Node<S> rotateRight(
+      final Node<S> node)
+    {
+      final Node<S> pivot = NullCheck.notNull(node.left);
+      node.left = pivot.right;
+      pivot.right = node;
+      node.update();
+      pivot.update();
+      return pivot;
+    }
+
+    private static <S> Node<S> rotateLeft(
+      final Node<S> node)
+    {
+      final Node<S> pivot = NullCheck.notNull(node.right);
+      node.right = pivot.left;
+      pivot.left = node;
+      node.update();
+      pivot.update();
+      return pivot;
+    }
+
+    private static <S> Node<S> insert(
+      final @Nullable Node<S> node,
+      final Node<S> fresh)
+    {
+      if (node == null) {
+        return fresh;
+      }
+
+      Node<S> result = node;
+      if (Bucket.compare(fresh.box, node.box) < 0) {
+        node.left = Bucket.insert(node.left, fresh);
+        if (fresh.priority > node.priority) {
+          result = Bucket.rotateRight(node);
+        }
+      } else {
+        node.right = Bucket.insert(node.right, fresh);
+        if (fresh.priority > node.priority) {
+          result = Bucket.rotateLeft(node);
+        }
+      }
+      result.update();
+      return result;
+    }
+
+    private static <S> @Nullable Node<S> delete(
+      final @Nullable Node<S> node,
+      final BoxType<S> box)
+    {
+      if (node == null) {
+        return null;
+      }
+
+      final int order = Bucket.compare(box, node.box);
+      if (order == 0) {
+        return Bucket.join(node.left, node.right);
+      }
+      if (order < 0) {
+        node.left = Bucket.delete(node.left, box);
+      } else {
+        node.right = Bucket.delete(node.right, box);
+      }
+      node.update();
+      return node;
+    }
+
+    private static <S> @Nullable Node<S> join(
+      final @Nullable Node<S> lower,
+      final @Nullable Node<S> upper)
+    {
+      if (lower == null) {
+        return upper;
+      }
+      if (upper == null) {
+        return lower;
+      }
+      if (lower.priority > upper.priority) {
+        lower.right = Bucket.join(lower.right, upper);
+        lower.update();
+        return lower;
+      }
+      upper.left = Bucket.join(lower, upper.left);
+      upper.update();
+      return upper;
+    }
+
+    /**
+     * Find the first rectangle in width order that is at least {@code width}
+     * wide and at least {@code height} tall. Subtrees that cannot contain a
+     * tall enough rectangle are skipped using the recorded maximum heights,
+     * and subtrees that lie entirely below the requested width are skipped
+     * using the ordering, so the search visits only a constant number of
+     * paths from the root.
+     */
+
+    private static <S> @Nullable BoxType<S> search(
+      final @Nullable Node<S> node,
+      final int width,
+      final int height)
+    {
+      if (node == null || node.maximum_height < height) {
+        return null;
+      }
+      if (node.box.width() < width) {
+        return Bucket.search(node.right, width, height);
+      }
+
+      final @Nullable BoxType<S> left = Bucket.search(node.left, width, height);
+      if (left != null) {
+        return left;
+      }
+      if (node.box.height() >= height) {
+        return node.box;
+      }
+      return Bucket.search(node.right, width, height);
+    }
+
+    void clear()
+    {
+      this.root = null;
+    }
+
+    boolean isEmpty()
+    {
+      return this.root == null;
+    }
+
+    void add(
+      final BoxType<S> box)
+    {
+      this.root = Bucket.insert(
+        this.root, new Node<>(box, Bucket.priority(box)));
+    }
+
+    void remove(
+      final BoxType<S> box)
+    {
+      this.root = Bucket.delete(this.root, box);
+    }
+
+    @Nullable BoxType<S> first()
+    {
+      @Nullable Node<S> node = this.root;
+      if (node == null) {
+        return null;
+      }
+      while (node.left != null) {
+        node = node.left;
+      }
+      return node.box;
+    }
+
+    @Nullable BoxType<S> find(
+      final int width,
+      final int height)
+    {
+      return Bucket.search(this.root, width, height);
+    }
+  }
+
+  private static final class Node<S>
+  {
+    private final BoxType<S> box;
+    private final int priority;
+    private @Nullable Node<S> left;
+    private @Nullable Node<S> right;
+    private int maximum_height;
+
+    Node(
+      final BoxType<S> in_box,
+      final int in_priority)
+    {
+      this.box = in_box;
+      this.priority = in_priority;
+      this.maximum_height = in_box.height();
+    }
+
+    void update()
+    {
+      this.maximum_height = Math.max(
+        this.box.height(),
+        Math.max(
+          Bucket.maximumHeight(this.left),
+          Bucket.maximumHeight(this.right)));
+    }
+  }
+}
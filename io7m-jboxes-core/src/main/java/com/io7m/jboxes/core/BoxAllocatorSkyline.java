@@ -0,0 +1,374 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>An online skyline allocator that places boxes inside a container box one
+ * at a time.</p>
+ *
+ * <p>The allocator tracks the skyline: the lowest free {@code Y} value for
+ * each horizontal segment of the container. A new box is placed at the lowest
+ * available position (and then the leftmost), resting on the highest segment
+ * that it spans. Finding that position takes a single pass over the segments
+ * using a sliding window maximum, so each allocation is {@code O(n)} in the
+ * number of segments.</p>
+ *
+ * <p>Space underneath a placed box that lies above the skyline cannot be
+ * allocated again until the allocator is reset, and is reported as wasted.
+ * Freeing a box that lies directly on the skyline lowers the skyline again;
+ * freeing any other box only marks its area as wasted.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxAllocatorSkyline<S>
+{
+  private final BoxType<S> container;
+  private final Set<BoxType<S>> allocated;
+  private int[] segment_x;
+  private int[] segment_y;
+  private int[] scratch_x;
+  private int[] scratch_y;
+  private int[] window;
+  private int segments;
+  private long used_area;
+  private long wasted_area;
+
+  private BoxAllocatorSkyline(
+    final BoxType<S> in_container)
+  {
+    this.container = NullCheck.notNull(in_container);
+    this.allocated = new HashSet<>(64);
+    this.segment_x = new int[16];
+    this.segment_y = new int[16];
+    this.scratch_x = new int[16];
+    this.scratch_y = new int[16];
+    this.window = new int[16];
+    this.reset();
+  }
+
+  /**
+   * Create a new allocator.
+   *
+   * @param container The container box
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return A new allocator
+   */
+
+  public static <S> BoxAllocatorSkyline<S> create(
+    final BoxType<S> container)
+  {
+    return new BoxAllocatorSkyline<>(container);
+  }
+
+  /**
+   * @return The container box
+   */
+
+  public BoxType<S> container()
+  {
+    return this.container;
+  }
+
+  /**
+   * @return The current number of skyline segments
+   */
+
+  public int segments()
+  {
+    return this.segments;
+  }
+
+  /**
+   * @return The total area of the currently allocated boxes
+   */
+
+  public long usedArea()
+  {
+    return this.used_area;
+  }
+
+  /**
+   * @return The total area that is not allocated but cannot be allocated
+   * until the allocator is reset
+   */
+
+  public long wastedArea()
+  {
+    return this.wasted_area;
+  }
+
+  /**
+   * @return The total area that is still available for allocation
+   */
+
+  public long freeArea()
+  {
+    final long area =
+      (long) this.container.width() * (long) this.container.height();
+    return area - this.used_area - this.wasted_area;
+  }
+
+  /**
+   * @return The fraction of the unallocated area of the container that is
+   * wasted, or {@code 0.0} if the container is completely allocated
+   */
+
+  public double fragmentation()
+  {
+    final long unallocated = this.wasted_area + this.freeArea();
+    if (unallocated == 0L) {
+      return 0.0;
+    }
+    return (double) this.wasted_area / (double) unallocated;
+  }
+
+  /**
+   * Free all allocated boxes.
+   */
+
+  public void reset()
+  {
+    this.allocated.clear();
+    this.segment_x[0] = this.container.minimumX();
+    this.segment_y[0] = this.container.minimumY();
+    this.segments = 1;
+    this.used_area = 0L;
+    this.wasted_area = 0L;
+  }
+
+  /**
+   * Allocate a box of the given size.
+   *
+   * @param width  The width of the box
+   * @param height The height of the box
+   *
+   * @return The allocated box, or nothing if no free space could hold the box
+   */
+
+  public Optional<BoxType<S>> allocate(
+    final int width,
+    final int height)
+  {
+    Assertive.require(width > 0, "Width must be > 0");
+    Assertive.require(height > 0, "Height must be > 0");
+
+    final int x_limit = this.container.maximumX();
+    final int y_limit = this.container.maximumY();
+    final int[] w = this.window;
+
+    long best_y = Long.MAX_VALUE;
+    int best_x = 0;
+    int head = 0;
+    int tail = 0;
+    int end = 0;
+
+    for (int start = 0; start < this.segments; ++start) {
+      final long x_min = (long) this.segment_x[start];
+      final long x_max = x_min + (long) width;
+      if (x_max > (long) x_limit) {
+        break;
+      }
+
+      /*
+       * Extend the window to cover every segment that starts before the
+       * right edge of the box, keeping the indices in the window in
+       * decreasing order of Y so that the head is the window maximum.
+       */
+
+      while (end < this.segments && (long) this.segment_x[end] < x_max) {
+        while (tail > head && this.segment_y[w[tail - 1]] <= this.segment_y[end]) {
+          --tail;
+        }
+        w[tail] = end;
+        ++tail;
+        ++end;
+      }
+      while (w[head] < start) {
+        ++head;
+      }
+
+      final long y = (long) this.segment_y[w[head]];
+      if (y < best_y && y + (long) height <= (long) y_limit) {
+        best_y = y;
+        best_x = (int) x_min;
+      }
+    }
+
+    if (best_y == Long.MAX_VALUE) {
+      return Optional.empty();
+    }
+
+    final int y_min = (int) best_y;
+    final int x_max = best_x + width;
+    final int y_max = y_min + height;
+    this.wasted_area += this.areaBelow(best_x, x_max, y_min);
+    this.setLevel(best_x, x_max, y_max);
+    this.used_area += (long) width * (long) height;
+
+    final BoxType<S> box = Box.of(best_x, x_max, y_min, y_max);
+    this.allocated.add(box);
+    return Optional.of(box);
+  }
+
+  /**
+   * Free a previously allocated box. If the box lies directly on the skyline,
+   * the skyline is lowered and the space becomes available again. Otherwise,
+   * the area of the box is counted as wasted.
+   *
+   * @param box The box
+   */
+
+  public void free(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+    Assertive.require(
+      this.allocated.remove(box), "Box must be currently allocated");
+
+    final long area = (long) box.width() * (long) box.height();
+    this.used_area -= area;
+
+    if (this.isOnSkyline(box.minimumX(), box.maximumX(), box.maximumY())) {
+      this.setLevel(box.minimumX(), box.maximumX(), box.minimumY());
+    } else {
+      this.wasted_area += area;
+    }
+  }
+
+  private int segmentEnd(
+    final int index)
+  {
+    if (index + 1 < this.segments) {
+      return this.segment_x[index + 1];
+    }
+    return this.container.maximumX();
+  }
+
+  private boolean isOnSkyline(
+    final int x_min,
+    final int x_max,
+    final int y)
+  {
+    for (int index = 0; index < this.segments; ++index) {
+      final int s_min = this.segment_x[index];
+      final int s_max = this.segmentEnd(index);
+      if (s_max > x_min && s_min < x_max && this.segment_y[index] != y) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long areaBelow(
+    final int x_min,
+    final int x_max,
+    final int y)
+  {
+    long area = 0L;
+    for (int index = 0; index < this.segments; ++index) {
+      final int s_min = Math.max(this.segment_x[index], x_min);
+      final int s_max = Math.min(this.segmentEnd(index), x_max);
+      if (s_max > s_min) {
+        area += (long) (s_max - s_min) * (long) (y - this.segment_y[index]);
+      }
+    }
+    return area;
+  }
+
+  /**
+   * Set the skyline to {@code y} over {@code [x_min, x_max)}, merging
+   * adjacent segments that end up at the same level.
+   */
+
+  private void setLevel(
+    final int x_min,
+    final int x_max,
+    final int y)
+  {
+    this.ensureCapacity(this.segments + 2);
+
+    final int[] out_x = this.scratch_x;
+    final int[] out_y = this.scratch_y;
+    int count = 0;
+    boolean inserted = false;
+
+    for (int index = 0; index < this.segments; ++index) {
+      final int s_min = this.segment_x[index];
+      final int s_max = this.segmentEnd(index);
+      final int s_y = this.segment_y[index];
+
+      if (s_min < x_min) {
+        count = BoxAllocatorSkyline.append(out_x, out_y, count, s_min, s_y);
+      }
+      if (!inserted && s_max > x_min) {
+        count = BoxAllocatorSkyline.append(out_x, out_y, count, x_min, y);
+        inserted = true;
+      }
+      if (s_max > x_max) {
+        count = BoxAllocatorSkyline.append(
+          out_x, out_y, count, Math.max(s_min, x_max), s_y);
+      }
+    }
+
+    this.scratch_x = this.segment_x;
+    this.scratch_y = this.segment_y;
+    this.segment_x = out_x;
+    this.segment_y = out_y;
+    this.segments = count;
+  }
+
+  private static int append(
+    final int[] out_x,
+    final int[] out_y,
+    final int count,
+    final int x,
+    final int y)
+  {
+    if (count > 0 && out_y[count - 1] == y) {
+      return count;
+    }
+    out_x[count] = x;
+    out_y[count] = y;
+    return count + 1;
+  }
+
+  private void ensureCapacity(
+    final int required)
+  {
+    if (required > this.segment_x.length) {
+      final int size = Math.max(required, this.segment_x.length * 2);
+      final int[] new_x = new int[size];
+      final int[] new_y = new int[size];
+      System.arraycopy(this.segment_x, 0, new_x, 0, this.segments);
+      System.arraycopy(this.segment_y, 0, new_y, 0, this.segments);
+      this.segment_x = new_x;
+      this.segment_y = new_y;
+      this.scratch_x = new int[size];
+      this.scratch_y = new int[size];
+      this.window = new int[size];
+    }
+  }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>Functions to compute the area covered by sets of boxes.</p>
+ *
+ * <p>The functions sweep a vertical line across the boxes in order of X,
+ * maintaining a segment tree over the distinct Y coordinates of the boxes that
+ * records how much of the sweep line is covered. Each box enters and leaves
+ * the tree exactly once, so the functions run in {@code O(n log n)} time and
+ * {@code O(n)} space for {@code n} boxes (Klee's measure problem in two
+ * dimensions). Areas are computed exactly, and {@link ArithmeticException} is
+ * raised if an area does not fit into a {@code long}.</p>
+ */
+
+public final class BoxAreas
+{
+  private BoxAreas()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  private static <S> int[] packAll(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    NullCheck.notNull(boxes);
+
+    final int[] packed =
+      new int[Math.multiplyExact(boxes.size(), BoxArrays.STRIDE)];
+    int index = 0;
+    for (final BoxType<S> box : boxes) {
+      final int base = index * BoxArrays.STRIDE;
+      packed[base + BoxArrays.MINIMUM_X] = box.minimumX();
+      packed[base + BoxArrays.MAXIMUM_X] = box.maximumX();
+      packed[base + BoxArrays.MINIMUM_Y] = box.minimumY();
+      packed[base + BoxArrays.MAXIMUM_Y] = box.maximumY();
+      ++index;
+    }
+    return packed;
+  }
+
+  /**
+   * Compute the area of the union of the given boxes. Areas covered by more
+   * than one box are counted once.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return The area covered by at least one box
+   */
+
+  public static <S> long unionArea(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    final int[] packed = BoxAreas.packAll(boxes);
+    return BoxAreas.unionArea(packed, 0, boxes.size());
+  }
+
+  /**
+   * Compute the area of the union of {@code count} packed boxes starting at
+   * box {@code first}.
+   *
+   * @param boxes The packed boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   *
+   * @return The area covered by at least one box
+   *
+   * @see BoxArrays
+   */
+
+  public static long unionArea(
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.checkRange(boxes, first, count);
+
+    final Sweep sweep = new Sweep(boxes, first, count);
+    final int slabs = Math.max(1, sweep.ys.length - 1);
+    final int[] cover = new int[BoxAreas.treeSize(slabs)];
+    final long[] covered = new long[cover.length];
+
+    long area = 0L;
+    for (int index = 0; index < sweep.events.length; ++index) {
+      if (index > 0) {
+        final long dx = (long) sweep.x(index) - (long) sweep.x(index - 1);
+        area = Math.addExact(area, Math.multiplyExact(covered[1], dx));
+      }
+      BoxAreas.updateUnion(
+        sweep.ys,
+        cover,
+        covered,
+        1,
+        0,
+        slabs,
+        sweep.low(index),
+        sweep.high(index),
+        sweep.delta(index));
+    }
+    return area;
+  }
+
+  /**
+   * <p>Compute the area covered by each overlap depth.</p>
+   *
+   * <p>Element {@code d} of the returned array, for {@code 1 <= d <
+   * max_depth}, is the area covered by exactly {@code d} boxes. Element
+   * {@code max_depth} is the area covered by at least {@code max_depth}
+   * boxes. Element {@code 0} is the area of the bounding box of all of the
+   * boxes that is not covered by any box.</p>
+   *
+   * @param boxes     The boxes
+   * @param max_depth The maximum depth that will be distinguished
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return An array of {@code max_depth + 1} areas
+   */
+
+  public static <S> long[] areaByDepth(
+    final Collection<? extends BoxType<S>> boxes,
+    final int max_depth)
+  {
+    final int[] packed = BoxAreas.packAll(boxes);
+    return BoxAreas.areaByDepth(packed, 0, boxes.size(), max_depth);
+  }
+
+  /**
+   * Compute the area covered by each overlap depth for {@code count} packed
+   * boxes starting at box {@code first}. The segment tree holds
+   * {@code max_depth + 1} lengths per node, so this function requires
+   * {@code O(n * max_depth)} space.
+   *
+   * @param boxes     The packed boxes
+   * @param first     The index of the first box
+   * @param count     The number of boxes
+   * @param max_depth The maximum depth that will be distinguished
+   *
+   * @return An array of {@code max_depth + 1} areas
+   *
+   * @see #areaByDepth(Collection, int)
+   */
+
+  public static long[] areaByDepth(
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int max_depth)
+  {
+    BoxArrays.checkRange(boxes, first, count);
+    Assertive.require(max_depth >= 1, "Maximum depth must be >= 1");
+
+    final Sweep sweep = new Sweep(boxes, first, count);
+    final int slabs = Math.max(1, sweep.ys.length - 1);
+    final int width = max_depth + 1;
+    final int[] cover = new int[BoxAreas.treeSize(slabs)];
+    final long[] lengths =
+      new long[Math.multiplyExact(cover.length, width)];
+    BoxAreas.initDepth(sweep.ys, lengths, width, 1, 0, slabs);
+
+    final long[] areas = new long[width];
+    for (int index = 0; index < sweep.events.length; ++index) {
+      if (index > 0) {
+        final long dx = (long) sweep.x(index) - (long) sweep.x(index - 1);
+        for (int depth = 0; depth < width; ++depth) {
+          areas[depth] = Math.addExact(
+            areas[depth], Math.multiplyExact(lengths[width + depth], dx));
+        }
+      }
+      BoxAreas.updateDepth(
+        sweep.ys,
+        cover,
+        lengths,
+        width,
+        1,
+        0,
+        slabs,
+        sweep.low(index),
+        sweep.high(index),
+        sweep.delta(index));
+    }
+    return areas;
+  }
+
+  private static int treeSize(
+    final int slabs)
+  {
+    return Math.multiplyExact(Integer.highestOneBit(slabs), 4);
+  }
+
+  private static long span(
+    final int[] ys,
+    final int lo,
+    final int hi)
+  {
+    if (ys.length < 2) {
+      return 0L;
+    }
+    return (long) ys[hi] - (long) ys[lo];
+  }
+
+  /**
+   * Apply {@code delta} to the cover count of the Y slabs {@code [low,
+   * high)} within the subtree at {@code node}, which covers the slabs
+   * {@code [lo, hi)}.
+   */
+
+  private static void updateUnion(
+    final int[] ys,
+    final int[] cover,
+    final long[] covered,
+    final int node,
+    final int lo,
+    final int hi,
+    final int low,
+    final int high,
+    final int delta)
+  {
+    if (high <= lo || hi <= low) {
+      return;
+    }
+
+    if (low <= lo && hi <= high) {
+      cover[node] += delta;
+    } else {
+      final int mid = (lo + hi) >>> 1;
+      BoxAreas.updateUnion(
+        ys, cover, covered, node * 2, lo, mid, low, high, delta);
+      BoxAreas.updateUnion(
+        ys, cover, covered, node * 2 + 1, mid, hi, low, high, delta);
+    }
+
+    if (cover[node] > 0) {
+      covered[node] = BoxAreas.span(ys, lo, hi);
+    } else if (hi - lo == 1) {
+      covered[node] = 0L;
+    } else {
+      covered[node] = covered[node * 2] + covered[node * 2 + 1];
+    }
+  }
+
+  private static void initDepth(
+    final int[] ys,
+    final long[] lengths,
+    final int width,
+    final int node,
+    final int lo,
+    final int hi)
+  {
+    lengths[node * width] = BoxAreas.span(ys, lo, hi);
+    if (hi - lo > 1) {
+      final int mid = (lo + hi) >>> 1;
+      BoxAreas.initDepth(ys, lengths, width, node * 2, lo, mid);
+      BoxAreas.initDepth(ys, lengths, width, node * 2 + 1, mid, hi);
+    }
+  }
+
+  private static void updateDepth(
+    final int[] ys,
+    final int[] cover,
+    final long[] lengths,
+    final int width,
+    final int node,
+    final int lo,
+    final int hi,
+    final int low,
+    final int high,
+    final int delta)
+  {
+    if (high <= lo || hi <= low) {
+      return;
+    }
+
+    final int mid = (lo + hi) >>> 1;
+    if (low <= lo && hi <= high) {
+      cover[node] += delta;
+    } else {
+      BoxAreas.updateDepth(
+        ys, cover, lengths, width, node * 2, lo, mid, low, high, delta);
+      BoxAreas.updateDepth(
+        ys, cover, lengths, width, node * 2 + 1, mid, hi, low, high, delta);
+    }
+
+    /*
+     * The lengths of a node are the lengths of its children, shifted up by
+     * the number of boxes that cover the whole node.
+     */
+
+    final int base = node * width;
+    final int max_depth = width - 1;
+    final int count = cover[node];
+    Arrays.fill(lengths, base, base + width, 0L);
+
+    if (count >= max_depth || hi - lo == 1) {
+      lengths[base + Math.min(count, max_depth)] = BoxAreas.span(ys, lo, hi);
+      return;
+    }
+
+    final int left = node * 2 * width;
+    final int right = (node * 2 + 1) * width;
+    for (int depth = 0; depth < width; ++depth) {
+      final int target = Math.min(depth + count, max_depth);
+      lengths[base + target] += lengths[left + depth] + lengths[right + depth];
+    }
+  }
+
+  /**
+   * The sorted sweep events for a set of boxes.
+   */
+
+  private static final class Sweep
+  {
+    private final int[] ys;
+    private final long[] events;
+    private final int[] boxes;
+    private final int first;
+
+    Sweep(
+      final int[] in_boxes,
+      final int in_first,
+      final int in_count)
+    {
+      this.boxes = NullCheck.notNull(in_boxes);
+      this.first = in_first;
+
+      int non_empty = 0;
+      final int[] y_values = new int[Math.multiplyExact(in_count, 2)];
+      for (int index = 0; index < in_count; ++index) {
+        final int base = (in_first + index) * BoxArrays.STRIDE;
+        final int y0 = in_boxes[base + BoxArrays.MINIMUM_Y];
+        final int y1 = in_boxes[base + BoxArrays.MAXIMUM_Y];
+        final int x0 = in_boxes[base + BoxArrays.MINIMUM_X];
+        final int x1 = in_boxes[base + BoxArrays.MAXIMUM_X];
+        if (x1 > x0 && y1 > y0) {
+          y_values[non_empty * 2] = y0;
+          y_values[non_empty * 2 + 1] = y1;
+          ++non_empty;
+        }
+      }
+
+      this.ys = Sweep.distinct(y_values, non_empty * 2);
+
+      /*
+       * Each event key holds the X coordinate in the upper 32 bits and, in
+       * the lower 32 bits, the box index shifted left by one with the low
+       * bit set for the event at which the box leaves the sweep line.
+       */
+
+      this.events = new long[non_empty * 2];
+      int event = 0;
+      for (int index = 0; index < in_count; ++index) {
+        final int base = (in_first + index) * BoxArrays.STRIDE;
+        final int x0 = in_boxes[base + BoxArrays.MINIMUM_X];
+        final int x1 = in_boxes[base + BoxArrays.MAXIMUM_X];
+        final int y0 = in_boxes[base + BoxArrays.MINIMUM_Y];
+        final int y1 = in_boxes[base + BoxArrays.MAXIMUM_Y];
+        if (x1 > x0 && y1 > y0) {
+          final long id = (long) index << 1;
+          this.events[event] = (long) x0 << 32 | id;
+          this.events[event + 1] = (long) x1 << 32 | id | 1L;
+          event += 2;
+        }
+      }
+      Arrays.sort(this.events);
+    }
+
+    private static int[] distinct(
+      final int[] values,
+      final int count)
+    {
+      Arrays.sort(values, 0, count);
+      int unique = 0;
+      for (int index = 0; index < count; ++index) {
+        if (unique == 0 || values[unique - 1] != values[index]) {
+          values[unique] = values[index];
+          ++unique;
+        }
+      }
+      return Arrays.copyOf(values, unique);
+    }
+
+    int x(
+      final int event)
+    {
+      return (int) (this.events[event] >> 32);
+    }
+
+    private int box(
+      final int event)
+    {
+      final int index = (int) ((this.events[event] & 0xffff_ffffL) >>> 1);
+      return (this.first + index) * BoxArrays.STRIDE;
+    }
+
+    int low(
+      final int event)
+    {
+      final int y = this.boxes[this.box(event) + BoxArrays.MINIMUM_Y];
+      return Arrays.binarySearch(this.ys, y);
+    }
+
+    int high(
+      final int event)
+    {
+      final int y = this.boxes[this.box(event) + BoxArrays.MAXIMUM_Y];
+      return Arrays.binarySearch(this.ys, y);
+    }
+
+    int delta(
+      final int event)
+    {
+      return (this.events[event] & 1L) == 0L ? 1 : -1;
+    }
+  }
+}
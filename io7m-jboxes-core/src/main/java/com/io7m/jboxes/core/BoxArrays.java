@@ -0,0 +1,768 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Functions to operate on packed arrays of boxes.</p>
+ *
+ * <p>A packed array stores each box as {@link #STRIDE} consecutive integers,
+ * in the same order as the parameters of {@link Box#of(int, int, int, int)}:
+ * {@code minimumX}, {@code maximumX}, {@code minimumY}, {@code maximumY}.</p>
+ */
+
+public final class BoxArrays
+{
+  /**
+   * The number of integers used to store a single box.
+   */
+
+  public static final int STRIDE = 4;
+
+  /**
+   * The offset of the minimum X value within a packed box.
+   */
+
+  public static final int MINIMUM_X = 0;
+
+  /**
+   * The offset of the maximum X value within a packed box.
+   */
+
+  public static final int MAXIMUM_X = 1;
+
+  /**
+   * The offset of the minimum Y value within a packed box.
+   */
+
+  public static final int MINIMUM_Y = 2;
+
+  /**
+   * The offset of the maximum Y value within a packed box.
+   */
+
+  public static final int MAXIMUM_Y = 3;
+
+  private BoxArrays()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  static void checkRange(
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    NullCheck.notNull(boxes);
+    Assertive.require(first >= 0, "First >= 0");
+    Assertive.require(count >= 0, "Count >= 0");
+    Assertive.require(
+      ((long) first + (long) count) * (long) BoxArrays.STRIDE
+        <= (long) boxes.length,
+      "Range must be within the array");
+  }
+
+  /**
+   * Store the given bounds at offset {@code base}, failing with {@link
+   * ArithmeticException} if any bound does not fit in an {@code int}.
+   */
+
+  static void setExact(
+    final int[] boxes,
+    final int base,
+    final long x_min,
+    final long x_max,
+    final long y_min,
+    final long y_max)
+  {
+    boxes[base + BoxArrays.MINIMUM_X] = Math.toIntExact(x_min);
+    boxes[base + BoxArrays.MAXIMUM_X] = Math.toIntExact(x_max);
+    boxes[base + BoxArrays.MINIMUM_Y] = Math.toIntExact(y_min);
+    boxes[base + BoxArrays.MAXIMUM_Y] = Math.toIntExact(y_max);
+  }
+
+  /**
+   * Pack the given boxes into a new array.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return A packed array of boxes
+   */
+
+  public static <S> int[] pack(
+    final List<BoxType<S>> boxes)
+  {
+    NullCheck.notNull(boxes);
+
+    final int[] packed =
+      new int[Math.multiplyExact(boxes.size(), BoxArrays.STRIDE)];
+    for (int index = 0; index < boxes.size(); ++index) {
+      BoxArrays.set(packed, index, boxes.get(index));
+    }
+    return packed;
+  }
+
+  /**
+   * Unpack the first {@code count} boxes of the given array.
+   *
+   * @param boxes The packed boxes
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return A list of boxes
+   */
+
+  public static <S> List<BoxType<S>> unpack(
+    final int[] boxes,
+    final int count)
+  {
+    BoxArrays.checkRange(boxes, 0, count);
+
+    final List<BoxType<S>> result = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      result.add(BoxArrays.get(boxes, index));
+    }
+    return result;
+  }
+
+  /**
+   * Store {@code box} at box index {@code index} in {@code boxes}.
+   *
+   * @param boxes The packed boxes
+   * @param index The box index
+   * @param box   The box
+   * @param <S>   The coordinate space of the box
+   */
+
+  public static <S> void set(
+    final int[] boxes,
+    final int index,
+    final BoxType<S> box)
+  {
+    BoxArrays.checkRange(boxes, index, 1);
+    NullCheck.notNull(box);
+
+    final int base = index * BoxArrays.STRIDE;
+    boxes[base + BoxArrays.MINIMUM_X] = box.minimumX();
+    boxes[base + BoxArrays.MAXIMUM_X] = box.maximumX();
+    boxes[base + BoxArrays.MINIMUM_Y] = box.minimumY();
+    boxes[base + BoxArrays.MAXIMUM_Y] = box.maximumY();
+  }
+
+  /**
+   * Retrieve the box at box index {@code index} in {@code boxes}.
+   *
+   * @param boxes The packed boxes
+   * @param index The box index
+   * @param <S>   The coordinate space of the box
+   *
+   * @return The box at {@code index}
+   */
+
+  public static <S> BoxType<S> get(
+    final int[] boxes,
+    final int index)
+  {
+    BoxArrays.checkRange(boxes, index, 1);
+
+    final int base = index * BoxArrays.STRIDE;
+    return Box.of(
+      boxes[base + BoxArrays.MINIMUM_X],
+      boxes[base + BoxArrays.MAXIMUM_X],
+      boxes[base + BoxArrays.MINIMUM_Y],
+      boxes[base + BoxArrays.MAXIMUM_Y]);
+  }
+
+  /**
+   * Align the packed boxes horizontally in the center of {@code outer}. Each box
+   * is aligned in place as if by {@link Boxes#alignHorizontallyCenter(BoxType,
+   * BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignHorizontallyCenter(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int xm0 = Math.addExact(outer.minimumX(), outer.width() / 2);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      final int x_min = Math.subtractExact(xm0, width / 2);
+      boxes[base + BoxArrays.MINIMUM_X] = x_min;
+      boxes[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, width);
+    }
+  }
+
+  /**
+   * Align the packed boxes horizontally against the inside left edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignHorizontallyLeft(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignHorizontallyLeft(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignHorizontallyLeftOffset(outer, boxes, first, count, 0);
+  }
+
+  /**
+   * Align the packed boxes horizontally against the inside left edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignHorizontallyLeftOffset(BoxType, BoxType, int)}.
+   *
+   * @param outer  The outer box
+   * @param boxes  The packed inner boxes
+   * @param first  The index of the first box
+   * @param count  The number of boxes
+   * @param offset The offset from the edge
+   * @param <S>    The coordinate space of the boxes
+   */
+
+  public static <S> void alignHorizontallyLeftOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_min = Math.addExact(outer.minimumX(), offset);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = x_min;
+      boxes[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, width);
+    }
+  }
+
+  /**
+   * Align the packed boxes horizontally against the inside right edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignHorizontallyRight(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignHorizontallyRight(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignHorizontallyRightOffset(outer, boxes, first, count, 0);
+  }
+
+  /**
+   * Align the packed boxes horizontally against the inside right edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignHorizontallyRightOffset(BoxType, BoxType, int)}.
+   *
+   * @param outer  The outer box
+   * @param boxes  The packed inner boxes
+   * @param first  The index of the first box
+   * @param count  The number of boxes
+   * @param offset The offset from the edge
+   * @param <S>    The coordinate space of the boxes
+   */
+
+  public static <S> void alignHorizontallyRightOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_max = Math.subtractExact(outer.maximumX(), offset);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = Math.subtractExact(x_max, width);
+      boxes[base + BoxArrays.MAXIMUM_X] = x_max;
+    }
+  }
+
+  /**
+   * Align the packed boxes vertically against the inside top edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignVerticallyTop(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignVerticallyTop(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignVerticallyTopOffset(outer, boxes, first, count, 0);
+  }
+
+  /**
+   * Align the packed boxes vertically against the inside top edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignVerticallyTopOffset(BoxType, BoxType, int)}.
+   *
+   * @param outer  The outer box
+   * @param boxes  The packed inner boxes
+   * @param first  The index of the first box
+   * @param count  The number of boxes
+   * @param offset The offset from the edge
+   * @param <S>    The coordinate space of the boxes
+   */
+
+  public static <S> void alignVerticallyTopOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int y_min = Math.addExact(outer.minimumY(), offset);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = y_min;
+      boxes[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, height);
+    }
+  }
+
+  /**
+   * Align the packed boxes vertically against the inside bottom edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignVerticallyBottom(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignVerticallyBottom(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignVerticallyBottomOffset(outer, boxes, first, count, 0);
+  }
+
+  /**
+   * Align the packed boxes vertically against the inside bottom edge of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignVerticallyBottomOffset(BoxType, BoxType, int)}.
+   *
+   * @param outer  The outer box
+   * @param boxes  The packed inner boxes
+   * @param first  The index of the first box
+   * @param count  The number of boxes
+   * @param offset The offset from the edge
+   * @param <S>    The coordinate space of the boxes
+   */
+
+  public static <S> void alignVerticallyBottomOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int y_max = Math.subtractExact(outer.maximumY(), offset);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = Math.subtractExact(y_max, height);
+      boxes[base + BoxArrays.MAXIMUM_Y] = y_max;
+    }
+  }
+
+  /**
+   * Align the packed boxes vertically in the center of {@code outer}. Each box is
+   * aligned in place as if by {@link Boxes#alignVerticallyCenter(BoxType,
+   * BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignVerticallyCenter(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int ym0 = Math.addExact(outer.minimumY(), outer.height() / 2);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      final int y_min = Math.subtractExact(ym0, height / 2);
+      boxes[base + BoxArrays.MINIMUM_Y] = y_min;
+      boxes[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, height);
+    }
+  }
+
+  /**
+   * Align the packed boxes against the inside top left corner of {@code outer}.
+   * Each box is aligned in place as if by {@link Boxes#alignTopLeft(BoxType,
+   * BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignTopLeft(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignTopLeftOffset(outer, boxes, first, count, 0, 0);
+  }
+
+  /**
+   * Align the packed boxes against the inside top left corner of {@code outer}.
+   * Each box is aligned in place as if by {@link
+   * Boxes#alignTopLeftOffset(BoxType, BoxType, int, int)}.
+   *
+   * @param outer       The outer box
+   * @param boxes       The packed inner boxes
+   * @param first       The index of the first box
+   * @param count       The number of boxes
+   * @param offset_left The offset from the left edge
+   * @param offset_top  The offset from the top edge
+   * @param <S>         The coordinate space of the boxes
+   */
+
+  public static <S> void alignTopLeftOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset_left,
+    final int offset_top)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_min = Math.addExact(outer.minimumX(), offset_left);
+    final int y_min = Math.addExact(outer.minimumY(), offset_top);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = x_min;
+      boxes[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, width);
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = y_min;
+      boxes[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, height);
+    }
+  }
+
+  /**
+   * Align the packed boxes against the inside top right corner of {@code outer}.
+   * Each box is aligned in place as if by {@link Boxes#alignTopRight(BoxType,
+   * BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignTopRight(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignTopRightOffset(outer, boxes, first, count, 0, 0);
+  }
+
+  /**
+   * Align the packed boxes against the inside top right corner of {@code outer}.
+   * Each box is aligned in place as if by {@link
+   * Boxes#alignTopRightOffset(BoxType, BoxType, int, int)}.
+   *
+   * @param outer        The outer box
+   * @param boxes        The packed inner boxes
+   * @param first        The index of the first box
+   * @param count        The number of boxes
+   * @param offset_right The offset from the right edge
+   * @param offset_top   The offset from the top edge
+   * @param <S>          The coordinate space of the boxes
+   */
+
+  public static <S> void alignTopRightOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset_right,
+    final int offset_top)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_max = Math.subtractExact(outer.maximumX(), offset_right);
+    final int y_min = Math.addExact(outer.minimumY(), offset_top);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = Math.subtractExact(x_max, width);
+      boxes[base + BoxArrays.MAXIMUM_X] = x_max;
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = y_min;
+      boxes[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, height);
+    }
+  }
+
+  /**
+   * Align the packed boxes against the inside bottom left corner of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignBottomLeft(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignBottomLeft(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignBottomLeftOffset(outer, boxes, first, count, 0, 0);
+  }
+
+  /**
+   * Align the packed boxes against the inside bottom left corner of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignBottomLeftOffset(BoxType, BoxType, int, int)}.
+   *
+   * @param outer         The outer box
+   * @param boxes         The packed inner boxes
+   * @param first         The index of the first box
+   * @param count         The number of boxes
+   * @param offset_left   The offset from the left edge
+   * @param offset_bottom The offset from the bottom edge
+   * @param <S>           The coordinate space of the boxes
+   */
+
+  public static <S> void alignBottomLeftOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset_left,
+    final int offset_bottom)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_min = Math.addExact(outer.minimumX(), offset_left);
+    final int y_max = Math.subtractExact(outer.maximumY(), offset_bottom);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = x_min;
+      boxes[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, width);
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = Math.subtractExact(y_max, height);
+      boxes[base + BoxArrays.MAXIMUM_Y] = y_max;
+    }
+  }
+
+  /**
+   * Align the packed boxes against the inside bottom right corner of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignBottomRight(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignBottomRight(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.alignBottomRightOffset(outer, boxes, first, count, 0, 0);
+  }
+
+  /**
+   * Align the packed boxes against the inside bottom right corner of {@code
+   * outer}. Each box is aligned in place as if by {@link
+   * Boxes#alignBottomRightOffset(BoxType, BoxType, int, int)}.
+   *
+   * @param outer         The outer box
+   * @param boxes         The packed inner boxes
+   * @param first         The index of the first box
+   * @param count         The number of boxes
+   * @param offset_right  The offset from the right edge
+   * @param offset_bottom The offset from the bottom edge
+   * @param <S>           The coordinate space of the boxes
+   */
+
+  public static <S> void alignBottomRightOffset(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count,
+    final int offset_right,
+    final int offset_bottom)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int x_max = Math.subtractExact(outer.maximumX(), offset_right);
+    final int y_max = Math.subtractExact(outer.maximumY(), offset_bottom);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      boxes[base + BoxArrays.MINIMUM_X] = Math.subtractExact(x_max, width);
+      boxes[base + BoxArrays.MAXIMUM_X] = x_max;
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      boxes[base + BoxArrays.MINIMUM_Y] = Math.subtractExact(y_max, height);
+      boxes[base + BoxArrays.MAXIMUM_Y] = y_max;
+    }
+  }
+
+  /**
+   * Align the packed boxes in the center of {@code outer}. Each box is aligned in
+   * place as if by {@link Boxes#alignCenter(BoxType, BoxType)}.
+   *
+   * @param outer The outer box
+   * @param boxes The packed inner boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   * @param <S>   The coordinate space of the boxes
+   */
+
+  public static <S> void alignCenter(
+    final BoxType<S> outer,
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    NullCheck.notNull(outer);
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int xm0 = Math.addExact(outer.minimumX(), outer.width() / 2);
+    final int ym0 = Math.addExact(outer.minimumY(), outer.height() / 2);
+
+    final int end = (first + count) * BoxArrays.STRIDE;
+    for (int base = first * BoxArrays.STRIDE; base < end; base += BoxArrays.STRIDE) {
+      final int width = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_X], boxes[base + BoxArrays.MINIMUM_X]);
+      final int x_min = Math.subtractExact(xm0, width / 2);
+      boxes[base + BoxArrays.MINIMUM_X] = x_min;
+      boxes[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, width);
+      final int height = Math.subtractExact(
+        boxes[base + BoxArrays.MAXIMUM_Y], boxes[base + BoxArrays.MINIMUM_Y]);
+      final int y_min = Math.subtractExact(ym0, height / 2);
+      boxes[base + BoxArrays.MINIMUM_Y] = y_min;
+      boxes[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, height);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * The relations between a linear expression and zero.
+ *
+ * @see BoxConstraintSolver
+ */
+
+public enum BoxConstraintRelation
+{
+  /**
+   * The expression must be equal to zero.
+   */
+
+  EQUAL,
+
+  /**
+   * The expression must be less than or equal to zero.
+   */
+
+  LESS_THAN_OR_EQUAL,
+
+  /**
+   * The expression must be greater than or equal to zero.
+   */
+
+  GREATER_THAN_OR_EQUAL
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import java.util.Arrays;
+
+/**
+ * A row of a simplex tableau: a constant plus a sparse linear combination of
+ * symbols.
+ */
+
+final class BoxConstraintRow
+{
+  private static final double EPSILON = 1.0e-8;
+
+  private int[] symbols;
+  private double[] coefficients;
+  private int size;
+  private double constant;
+
+  BoxConstraintRow(
+    final double in_constant)
+  {
+    this.symbols = new int[4];
+    this.coefficients = new double[4];
+    this.constant = in_constant;
+  }
+
+  BoxConstraintRow(
+    final BoxConstraintRow other)
+  {
+    this.symbols = Arrays.copyOf(other.symbols, other.symbols.length);
+    this.coefficients =
+      Arrays.copyOf(other.coefficients, other.coefficients.length);
+    this.size = other.size;
+    this.constant = other.constant;
+  }
+
+  static boolean nearZero(
+    final double value)
+  {
+    return Math.abs(value) < BoxConstraintRow.EPSILON;
+  }
+
+  double constant()
+  {
+    return this.constant;
+  }
+
+  int size()
+  {
+    return this.size;
+  }
+
+  int symbolAt(
+    final int index)
+  {
+    return this.symbols[index];
+  }
+
+  double coefficientAt(
+    final int index)
+  {
+    return this.coefficients[index];
+  }
+
+  double add(
+    final double value)
+  {
+    this.constant += value;
+    return this.constant;
+  }
+
+  private int find(
+    final int symbol)
+  {
+    for (int index = 0; index < this.size; ++index) {
+      if (this.symbols[index] == symbol) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private void removeAt(
+    final int index)
+  {
+    --this.size;
+    this.symbols[index] = this.symbols[this.size];
+    this.coefficients[index] = this.coefficients[this.size];
+  }
+
+  double coefficientFor(
+    final int symbol)
+  {
+    final int index = this.find(symbol);
+    return index < 0 ? 0.0 : this.coefficients[index];
+  }
+
+  void insert(
+    final int symbol,
+    final double coefficient)
+  {
+    final int index = this.find(symbol);
+    if (index >= 0) {
+      final double sum = this.coefficients[index] + coefficient;
+      if (BoxConstraintRow.nearZero(sum)) {
+        this.removeAt(index);
+      } else {
+        this.coefficients[index] = sum;
+      }
+      return;
+    }
+
+    if (BoxConstraintRow.nearZero(coefficient)) {
+      return;
+    }
+    if (this.size == this.symbols.length) {
+      final int capacity = Math.multiplyExact(this.size, 2);
+      this.symbols = Arrays.copyOf(this.symbols, capacity);
+      this.coefficients = Arrays.copyOf(this.coefficients, capacity);
+    }
+    this.symbols[this.size] = symbol;
+    this.coefficients[this.size] = coefficient;
+    ++this.size;
+  }
+
+  void insertRow(
+    final BoxConstraintRow other,
+    final double coefficient)
+  {
+    this.constant += other.constant * coefficient;
+    for (int index = 0; index < other.size; ++index) {
+      this.insert(other.symbols[index], other.coefficients[index] * coefficient);
+    }
+  }
+
+  void remove(
+    final int symbol)
+  {
+    final int index = this.find(symbol);
+    if (index >= 0) {
+      this.removeAt(index);
+    }
+  }
+
+  void reverseSign()
+  {
+    this.constant = -this.constant;
+    for (int index = 0; index < this.size; ++index) {
+      this.coefficients[index] = -this.coefficients[index];
+    }
+  }
+
+  /**
+   * Rearrange the row {@code 0 = c + a·symbol + ...} into {@code symbol = c'
+   * + ...}, removing {@code symbol} from the row.
+   */
+
+  void solveFor(
+    final int symbol)
+  {
+    final int position = this.find(symbol);
+    final double scale = -1.0 / this.coefficients[position];
+    this.removeAt(position);
+    this.constant *= scale;
+    for (int index = 0; index < this.size; ++index) {
+      this.coefficients[index] *= scale;
+    }
+  }
+
+  /**
+   * Rearrange the row {@code lhs = c + a·rhs + ...} into {@code rhs = c' +
+   * b·lhs + ...}.
+   */
+
+  void solveFor(
+    final int lhs,
+    final int rhs)
+  {
+    this.insert(lhs, -1.0);
+    this.solveFor(rhs);
+  }
+
+  void substitute(
+    final int symbol,
+    final BoxConstraintRow row)
+  {
+    final int index = this.find(symbol);
+    if (index >= 0) {
+      final double coefficient = this.coefficients[index];
+      this.removeAt(index);
+      this.insertRow(row, coefficient);
+    }
+  }
+}
@@ -0,0 +1,1184 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>An incremental linear constraint solver over the edges of boxes.</p>
+ *
+ * <p>The solver implements the Cassowary algorithm. Every box added to the
+ * solver contributes four variables, one per edge: {@link BoxDirection#LEFT}
+ * denotes {@link BoxType#minimumX()}, {@link BoxDirection#RIGHT} denotes
+ * {@link BoxType#maximumX()}, {@link BoxDirection#UP} denotes {@link
+ * BoxType#minimumY()}, and {@link BoxDirection#DOWN} denotes {@link
+ * BoxType#maximumY()}. Constraints are linear relations over edges, each with
+ * a {@link BoxConstraintStrength}: required constraints always hold, and the
+ * remaining constraints are satisfied as far as possible in order of
+ * strength.</p>
+ *
+ * <p>The solution is maintained incrementally: adding or removing a
+ * constraint performs a small number of simplex pivots rather than solving
+ * the system from scratch. Edit variables allow values to be suggested
+ * repeatedly for an edge (for example, while the user drags the edge of a
+ * box), and each suggestion is resolved with a dual simplex step that
+ * typically touches only the rows affected by the edit.</p>
+ *
+ * <p>The internal variables introduced for a constraint are reused once the
+ * constraint is removed, so a long-running sequence of additions and removals
+ * does not grow the solver.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxConstraintSolver<S>
+{
+  private static final int INVALID = -1;
+  private static final int SYMBOL_EXTERNAL = 0;
+  private static final int SYMBOL_SLACK = 1;
+  private static final int SYMBOL_ERROR = 2;
+  private static final int SYMBOL_DUMMY = 3;
+  private static final int SYMBOL_FREE = 4;
+
+  private final Set<Constraint> constraints;
+  private final Map<Integer, Edit> edits;
+  private int[] symbol_types;
+  private int symbol_count;
+  private int[] free_symbols;
+  private int free_count;
+  private BoxConstraintRow[] rows;
+  private int[] basic;
+  private int[] basic_position;
+  private int basic_count;
+  private int[] infeasible;
+  private int infeasible_count;
+  private int[] box_symbols;
+  private int box_count;
+  private BoxConstraintRow objective;
+  private @Nullable BoxConstraintRow artificial;
+
+  private BoxConstraintSolver()
+  {
+    this.constraints = new LinkedHashSet<>(16);
+    this.edits = new HashMap<>(16);
+    this.symbol_types = new int[16];
+    this.free_symbols = new int[16];
+    this.rows = new BoxConstraintRow[16];
+    this.basic = new int[16];
+    this.basic_position = new int[16];
+    this.infeasible = new int[16];
+    this.box_symbols = new int[16];
+    this.objective = new BoxConstraintRow(0.0);
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new solver containing no boxes
+   */
+
+  public static <S> BoxConstraintSolver<S> create()
+  {
+    return new BoxConstraintSolver<>();
+  }
+
+  private static int edgeOffset(
+    final BoxDirection edge)
+  {
+    switch (NullCheck.notNull(edge)) {
+      case LEFT:
+        return BoxArrays.MINIMUM_X;
+      case RIGHT:
+        return BoxArrays.MAXIMUM_X;
+      case UP:
+        return BoxArrays.MINIMUM_Y;
+      case DOWN:
+        return BoxArrays.MAXIMUM_Y;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * Add a new box to the solver. Required constraints are added that prevent
+   * the box from having a negative width or height.
+   *
+   * @return The index of the new box
+   */
+
+  public int addBox()
+  {
+    final int box = this.box_count;
+    final int base = Math.multiplyExact(box, BoxArrays.STRIDE);
+    if (base + BoxArrays.STRIDE > this.box_symbols.length) {
+      this.box_symbols = Arrays.copyOf(
+        this.box_symbols, Math.multiplyExact(this.box_symbols.length, 2));
+    }
+    for (int edge = 0; edge < BoxArrays.STRIDE; ++edge) {
+      this.box_symbols[base + edge] =
+        this.newSymbol(BoxConstraintSolver.SYMBOL_EXTERNAL);
+    }
+    this.box_count = box + 1;
+
+    this.constraint(
+      BoxConstraintRelation.GREATER_THAN_OR_EQUAL,
+      BoxConstraintStrength.REQUIRED).width(box, 1.0).add();
+    this.constraint(
+      BoxConstraintRelation.GREATER_THAN_OR_EQUAL,
+      BoxConstraintStrength.REQUIRED).height(box, 1.0).add();
+    return box;
+  }
+
+  /**
+   * @return The number of boxes in the solver
+   */
+
+  public int boxCount()
+  {
+    return this.box_count;
+  }
+
+  /**
+   * @return The number of constraints in the solver, including the implicit
+   * constraints added for each box and the constraints of edit variables
+   */
+
+  public int constraintCount()
+  {
+    return this.constraints.size();
+  }
+
+  /**
+   * @return The number of internal variables currently in use by the solver,
+   * including the four variables of each box; the variables of removed
+   * constraints are reused by later constraints
+   */
+
+  public int symbolCount()
+  {
+    return this.symbol_count - this.free_count;
+  }
+
+  /**
+   * Begin building a constraint of the form {@code e R 0}, where {@code e} is
+   * the linear expression specified with the returned builder and {@code R}
+   * is {@code relation}.
+   *
+   * @param relation The relation
+   * @param strength The strength of the constraint
+   *
+   * @return A constraint builder
+   */
+
+  public ConstraintBuilder<S> constraint(
+    final BoxConstraintRelation relation,
+    final BoxConstraintStrength strength)
+  {
+    return new ConstraintBuilder<>(
+      this, NullCheck.notNull(relation), NullCheck.notNull(strength));
+  }
+
+  /**
+   * Remove a constraint previously added to this solver.
+   *
+   * @param constraint The constraint
+   */
+
+  public void removeConstraint(
+    final Constraint constraint)
+  {
+    NullCheck.notNull(constraint);
+    Assertive.require(
+      constraint.owner == this, "Constraint must belong to this solver");
+    Assertive.require(constraint.active, "Constraint must be active");
+    Assertive.require(
+      !constraint.edit, "Edit constraints must be removed as edit variables");
+    this.removeActive(constraint);
+  }
+
+  /**
+   * @param constraint The constraint
+   *
+   * @return {@code true} iff {@code constraint} is currently active in this
+   * solver
+   */
+
+  public boolean hasConstraint(
+    final Constraint constraint)
+  {
+    NullCheck.notNull(constraint);
+    return constraint.owner == this && constraint.active;
+  }
+
+  /**
+   * Make the given edge of a box an edit variable. Values can subsequently be
+   * suggested for the edge with {@link #suggestValue(int, BoxDirection,
+   * double)}, and the solver will satisfy the suggestions with the given
+   * strength.
+   *
+   * @param box      The box
+   * @param edge     The edge
+   * @param strength The strength of suggestions (must not be {@link
+   *                 BoxConstraintStrength#REQUIRED})
+   */
+
+  public void addEditVariable(
+    final int box,
+    final BoxDirection edge,
+    final BoxConstraintStrength strength)
+  {
+    NullCheck.notNull(strength);
+    Assertive.require(
+      strength != BoxConstraintStrength.REQUIRED,
+      "Edit variables cannot be required");
+
+    final int symbol = this.symbolOf(box, edge);
+    final Integer key = Integer.valueOf(symbol);
+    Assertive.require(
+      !this.edits.containsKey(key), "Edge must not already be an edit variable");
+
+    final Constraint constraint = new Constraint(
+      this,
+      new int[]{symbol},
+      new double[]{1.0},
+      0.0,
+      BoxConstraintRelation.EQUAL,
+      strength,
+      true);
+
+    this.addRow(constraint);
+    this.constraints.add(constraint);
+    constraint.active = true;
+    this.edits.put(key, new Edit(constraint));
+  }
+
+  /**
+   * Stop treating the given edge of a box as an edit variable.
+   *
+   * @param box  The box
+   * @param edge The edge
+   */
+
+  public void removeEditVariable(
+    final int box,
+    final BoxDirection edge)
+  {
+    final Edit edit =
+      this.edits.remove(Integer.valueOf(this.symbolOf(box, edge)));
+    Assertive.require(edit != null, "Edge must be an edit variable");
+    this.removeActive(edit.constraint);
+  }
+
+  /**
+   * @param box  The box
+   * @param edge The edge
+   *
+   * @return {@code true} iff the given edge is an edit variable
+   */
+
+  public boolean hasEditVariable(
+    final int box,
+    final BoxDirection edge)
+  {
+    return this.edits.containsKey(Integer.valueOf(this.symbolOf(box, edge)));
+  }
+
+  /**
+   * Suggest a value for an edit variable and update the solution.
+   *
+   * @param box   The box
+   * @param edge  The edge
+   * @param value The suggested value
+   */
+
+  public void suggestValue(
+    final int box,
+    final BoxDirection edge,
+    final double value)
+  {
+    final Edit edit =
+      this.edits.get(Integer.valueOf(this.symbolOf(box, edge)));
+    Assertive.require(edit != null, "Edge must be an edit variable");
+    this.suggest(edit, value);
+  }
+
+  /**
+   * @param box  The box
+   * @param edge The edge
+   *
+   * @return The current value of the given edge
+   */
+
+  public double value(
+    final int box,
+    final BoxDirection edge)
+  {
+    final BoxConstraintRow row = this.rows[this.symbolOf(box, edge)];
+    return row != null ? row.constant() : 0.0;
+  }
+
+  /**
+   * @param box The box
+   *
+   * @return The current value of the given box, with edges rounded to the
+   * nearest integer
+   */
+
+  public BoxType<S> box(
+    final int box)
+  {
+    final int x_min = BoxConstraintSolver.round(this.value(box, BoxDirection.LEFT));
+    final int x_max = BoxConstraintSolver.round(this.value(box, BoxDirection.RIGHT));
+    final int y_min = BoxConstraintSolver.round(this.value(box, BoxDirection.UP));
+    final int y_max = BoxConstraintSolver.round(this.value(box, BoxDirection.DOWN));
+    return Box.of(x_min, Math.max(x_min, x_max), y_min, Math.max(y_min, y_max));
+  }
+
+  private static int round(
+    final double value)
+  {
+    return Math.toIntExact(Math.round(value));
+  }
+
+  private int symbolOf(
+    final int box,
+    final BoxDirection edge)
+  {
+    Assertive.require(box >= 0, "Box must be non-negative");
+    Assertive.require(box < this.box_count, "Box must exist");
+    return this.box_symbols[
+      box * BoxArrays.STRIDE + BoxConstraintSolver.edgeOffset(edge)];
+  }
+
+  private int newSymbol(
+    final int type)
+  {
+    final int symbol;
+    if (this.free_count > 0) {
+      --this.free_count;
+      symbol = this.free_symbols[this.free_count];
+    } else {
+      symbol = this.symbol_count;
+      if (symbol == this.symbol_types.length) {
+        final int capacity = Math.multiplyExact(symbol, 2);
+        this.symbol_types = Arrays.copyOf(this.symbol_types, capacity);
+        this.rows = Arrays.copyOf(this.rows, capacity);
+        this.basic = Arrays.copyOf(this.basic, capacity);
+        this.basic_position = Arrays.copyOf(this.basic_position, capacity);
+      }
+      this.symbol_count = symbol + 1;
+    }
+    this.symbol_types[symbol] = type;
+    this.basic_position[symbol] = BoxConstraintSolver.INVALID;
+    return symbol;
+  }
+
+  /**
+   * Return a symbol to the free list so that it can be reused by a later
+   * constraint. Any remaining occurrences of the symbol are removed from the
+   * tableau first, so a reused symbol always starts out absent from every
+   * row, the objective, and the list of infeasible rows.
+   */
+
+  private void freeSymbol(
+    final int symbol)
+  {
+    if (symbol == BoxConstraintSolver.INVALID) {
+      return;
+    }
+
+    if (this.rows[symbol] != null) {
+      this.takeRow(symbol);
+    }
+    for (int index = 0; index < this.basic_count; ++index) {
+      this.rows[this.basic[index]].remove(symbol);
+    }
+    this.objective.remove(symbol);
+
+    int kept = 0;
+    for (int index = 0; index < this.infeasible_count; ++index) {
+      final int infeasible_symbol = this.infeasible[index];
+      if (infeasible_symbol != symbol) {
+        this.infeasible[kept] = infeasible_symbol;
+        ++kept;
+      }
+    }
+    this.infeasible_count = kept;
+
+    this.pushFree(symbol);
+  }
+
+  private void pushFree(
+    final int symbol)
+  {
+    if (this.free_count == this.free_symbols.length) {
+      this.free_symbols = Arrays.copyOf(
+        this.free_symbols, Math.multiplyExact(this.free_count, 2));
+    }
+    this.symbol_types[symbol] = BoxConstraintSolver.SYMBOL_FREE;
+    this.free_symbols[this.free_count] = symbol;
+    ++this.free_count;
+  }
+
+  private int typeOf(
+    final int symbol)
+  {
+    return this.symbol_types[symbol];
+  }
+
+  private boolean isPivotable(
+    final int symbol)
+  {
+    if (symbol == BoxConstraintSolver.INVALID) {
+      return false;
+    }
+    final int type = this.typeOf(symbol);
+    return type == BoxConstraintSolver.SYMBOL_SLACK
+      || type == BoxConstraintSolver.SYMBOL_ERROR;
+  }
+
+  private void setRow(
+    final int symbol,
+    final BoxConstraintRow row)
+  {
+    this.rows[symbol] = row;
+    this.basic_position[symbol] = this.basic_count;
+    this.basic[this.basic_count] = symbol;
+    ++this.basic_count;
+  }
+
+  private BoxConstraintRow takeRow(
+    final int symbol)
+  {
+    final BoxConstraintRow row = NullCheck.notNull(this.rows[symbol]);
+    final int position = this.basic_position[symbol];
+    --this.basic_count;
+    final int last = this.basic[this.basic_count];
+    this.basic[position] = last;
+    this.basic_position[last] = position;
+    this.basic_position[symbol] = BoxConstraintSolver.INVALID;
+    this.rows[symbol] = null;
+    return row;
+  }
+
+  private void pushInfeasible(
+    final int symbol)
+  {
+    if (this.infeasible_count == this.infeasible.length) {
+      this.infeasible = Arrays.copyOf(
+        this.infeasible, Math.multiplyExact(this.infeasible_count, 2));
+    }
+    this.infeasible[this.infeasible_count] = symbol;
+    ++this.infeasible_count;
+  }
+
+  private Optional<Constraint> addConstraint(
+    final Constraint constraint)
+  {
+    if (this.addRow(constraint)) {
+      this.constraints.add(constraint);
+      constraint.active = true;
+      return Optional.of(constraint);
+    }
+
+    /*
+     * A failed attempt to add a required constraint may leave the tableau
+     * partially modified. Rebuild it from the constraints that remain.
+     */
+
+    this.rebuild();
+    return Optional.empty();
+  }
+
+  private void removeActive(
+    final Constraint constraint)
+  {
+    this.constraints.remove(constraint);
+    constraint.active = false;
+    this.removeRow(constraint);
+
+    /*
+     * Once the marker has been pivoted out, neither of the symbols of the
+     * constraint occurs in the tableau, so both can be reused.
+     */
+
+    this.freeSymbol(constraint.marker);
+    this.freeSymbol(constraint.other);
+    constraint.marker = BoxConstraintSolver.INVALID;
+    constraint.other = BoxConstraintSolver.INVALID;
+  }
+
+  private void rebuild()
+  {
+    for (int index = 0; index < this.basic_count; ++index) {
+      final int symbol = this.basic[index];
+      this.rows[symbol] = null;
+      this.basic_position[symbol] = BoxConstraintSolver.INVALID;
+    }
+    this.basic_count = 0;
+    this.infeasible_count = 0;
+    this.objective = new BoxConstraintRow(0.0);
+    this.artificial = null;
+
+    /*
+     * Every symbol other than the edges of boxes is recreated when the
+     * constraints are added again.
+     */
+
+    for (int symbol = 0; symbol < this.symbol_count; ++symbol) {
+      final int type = this.symbol_types[symbol];
+      final boolean reusable = type != BoxConstraintSolver.SYMBOL_EXTERNAL
+        && type != BoxConstraintSolver.SYMBOL_FREE;
+      if (reusable) {
+        this.pushFree(symbol);
+      }
+    }
+
+    for (final Constraint constraint : this.constraints) {
+      final boolean added = this.addRow(constraint);
+      Assertive.ensure(added, "Previously satisfiable constraints remain so");
+    }
+    for (final Edit edit : this.edits.values()) {
+      final double value = edit.constant;
+      edit.constant = 0.0;
+      this.suggest(edit, value);
+    }
+  }
+
+  private boolean addRow(
+    final Constraint constraint)
+  {
+    final BoxConstraintRow row = this.createRow(constraint);
+    int subject = this.chooseSubject(row, constraint);
+
+    if (subject == BoxConstraintSolver.INVALID && this.allDummies(row)) {
+      if (!BoxConstraintRow.nearZero(row.constant())) {
+        return false;
+      }
+      subject = constraint.marker;
+    }
+
+    if (subject == BoxConstraintSolver.INVALID) {
+      if (!this.addWithArtificialVariable(row)) {
+        return false;
+      }
+    } else {
+      row.solveFor(subject);
+      this.substitute(subject, row);
+      this.setRow(subject, row);
+    }
+
+    this.optimize(this.objective);
+    return true;
+  }
+
+  private BoxConstraintRow createRow(
+    final Constraint constraint)
+  {
+    final BoxConstraintRow row = new BoxConstraintRow(constraint.constant);
+    for (int index = 0; index < constraint.symbols.length; ++index) {
+      final int symbol = constraint.symbols[index];
+      final double coefficient = constraint.coefficients[index];
+      final BoxConstraintRow basic_row = this.rows[symbol];
+      if (basic_row != null) {
+        row.insertRow(basic_row, coefficient);
+      } else {
+        row.insert(symbol, coefficient);
+      }
+    }
+
+    constraint.marker = BoxConstraintSolver.INVALID;
+    constraint.other = BoxConstraintSolver.INVALID;
+
+    final boolean required =
+      constraint.strength == BoxConstraintStrength.REQUIRED;
+    final double weight = constraint.strength.weight();
+
+    switch (constraint.relation) {
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN_OR_EQUAL: {
+        final double sign =
+          constraint.relation == BoxConstraintRelation.LESS_THAN_OR_EQUAL
+            ? 1.0 : -1.0;
+        constraint.marker = this.newSymbol(BoxConstraintSolver.SYMBOL_SLACK);
+        row.insert(constraint.marker, sign);
+        if (!required) {
+          constraint.other = this.newSymbol(BoxConstraintSolver.SYMBOL_ERROR);
+          row.insert(constraint.other, -sign);
+          this.objective.insert(constraint.other, weight);
+        }
+        break;
+      }
+      case EQUAL: {
+        if (required) {
+          constraint.marker = this.newSymbol(BoxConstraintSolver.SYMBOL_DUMMY);
+          row.insert(constraint.marker, 1.0);
+        } else {
+          constraint.marker = this.newSymbol(BoxConstraintSolver.SYMBOL_ERROR);
+          constraint.other = this.newSymbol(BoxConstraintSolver.SYMBOL_ERROR);
+          row.insert(constraint.marker, -1.0);
+          row.insert(constraint.other, 1.0);
+          this.objective.insert(constraint.marker, weight);
+          this.objective.insert(constraint.other, weight);
+        }
+        break;
+      }
+      default:
+        throw new UnreachableCodeException();
+    }
+
+    if (row.constant() < 0.0) {
+      row.reverseSign();
+    }
+    return row;
+  }
+
+  /**
+   * Choose a symbol for which the new row can be solved: any external
+   * symbol, or otherwise a slack or error marker with a negative coefficient
+   * (which keeps the row constant non-negative and hence the tableau
+   * feasible).
+   */
+
+  private int chooseSubject(
+    final BoxConstraintRow row,
+    final Constraint constraint)
+  {
+    for (int index = 0; index < row.size(); ++index) {
+      final int symbol = row.symbolAt(index);
+      if (this.typeOf(symbol) == BoxConstraintSolver.SYMBOL_EXTERNAL) {
+        return symbol;
+      }
+    }
+    if (this.isPivotable(constraint.marker)
+      && row.coefficientFor(constraint.marker) < 0.0) {
+      return constraint.marker;
+    }
+    if (this.isPivotable(constraint.other)
+      && row.coefficientFor(constraint.other) < 0.0) {
+      return constraint.other;
+    }
+    return BoxConstraintSolver.INVALID;
+  }
+
+  private boolean allDummies(
+    final BoxConstraintRow row)
+  {
+    for (int index = 0; index < row.size(); ++index) {
+      if (this.typeOf(row.symbolAt(index)) != BoxConstraintSolver.SYMBOL_DUMMY) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean addWithArtificialVariable(
+    final BoxConstraintRow row)
+  {
+    /*
+     * Add the row with an artificial basic variable and minimize that
+     * variable. The constraint is satisfiable iff it reaches zero.
+     */
+
+    final int art = this.newSymbol(BoxConstraintSolver.SYMBOL_SLACK);
+    this.setRow(art, new BoxConstraintRow(row));
+    final BoxConstraintRow art_objective = new BoxConstraintRow(row);
+    this.artificial = art_objective;
+    this.optimize(art_objective);
+    final boolean success = BoxConstraintRow.nearZero(art_objective.constant());
+    this.artificial = null;
+
+    final boolean result = this.pivotOutArtificial(art, success);
+    this.freeSymbol(art);
+    return result;
+  }
+
+  private boolean pivotOutArtificial(
+    final int art,
+    final boolean success)
+  {
+    if (this.rows[art] == null) {
+      return success;
+    }
+
+    final BoxConstraintRow art_row = this.takeRow(art);
+    if (art_row.size() == 0) {
+      return success;
+    }
+    final int entering = this.anyPivotableSymbol(art_row);
+    if (entering == BoxConstraintSolver.INVALID) {
+      return false;
+    }
+    art_row.solveFor(art, entering);
+    this.substitute(entering, art_row);
+    this.setRow(entering, art_row);
+    return success;
+  }
+
+  private int anyPivotableSymbol(
+    final BoxConstraintRow row)
+  {
+    for (int index = 0; index < row.size(); ++index) {
+      final int symbol = row.symbolAt(index);
+      if (this.isPivotable(symbol)) {
+        return symbol;
+      }
+    }
+    return BoxConstraintSolver.INVALID;
+  }
+
+  private void substitute(
+    final int symbol,
+    final BoxConstraintRow row)
+  {
+    for (int index = 0; index < this.basic_count; ++index) {
+      final int basic_symbol = this.basic[index];
+      final BoxConstraintRow basic_row = this.rows[basic_symbol];
+      basic_row.substitute(symbol, row);
+      if (this.typeOf(basic_symbol) != BoxConstraintSolver.SYMBOL_EXTERNAL
+        && basic_row.constant() < 0.0) {
+        this.pushInfeasible(basic_symbol);
+      }
+    }
+    this.objective.substitute(symbol, row);
+    if (this.artificial != null) {
+      this.artificial.substitute(symbol, row);
+    }
+  }
+
+  private void optimize(
+    final BoxConstraintRow target)
+  {
+    while (true) {
+      final int entering = this.enteringSymbol(target);
+      if (entering == BoxConstraintSolver.INVALID) {
+        return;
+      }
+      final int leaving = this.leavingSymbol(entering);
+      if (leaving == BoxConstraintSolver.INVALID) {
+        throw new UnreachableCodeException();
+      }
+      final BoxConstraintRow row = this.takeRow(leaving);
+      row.solveFor(leaving, entering);
+      this.substitute(entering, row);
+      this.setRow(entering, row);
+    }
+  }
+
+  private int enteringSymbol(
+    final BoxConstraintRow target)
+  {
+    for (int index = 0; index < target.size(); ++index) {
+      final int symbol = target.symbolAt(index);
+      if (this.typeOf(symbol) != BoxConstraintSolver.SYMBOL_DUMMY
+        && target.coefficientAt(index) < 0.0) {
+        return symbol;
+      }
+    }
+    return BoxConstraintSolver.INVALID;
+  }
+
+  private int leavingSymbol(
+    final int entering)
+  {
+    double best = Double.MAX_VALUE;
+    int found = BoxConstraintSolver.INVALID;
+    for (int index = 0; index < this.basic_count; ++index) {
+      final int symbol = this.basic[index];
+      if (this.typeOf(symbol) == BoxConstraintSolver.SYMBOL_EXTERNAL) {
+        continue;
+      }
+      final BoxConstraintRow row = this.rows[symbol];
+      final double coefficient = row.coefficientFor(entering);
+      if (coefficient < 0.0) {
+        final double ratio = -row.constant() / coefficient;
+        if (ratio < best) {
+          best = ratio;
+          found = symbol;
+        }
+      }
+    }
+    return found;
+  }
+
+  private void removeRow(
+    final Constraint constraint)
+  {
+    final double weight = constraint.strength.weight();
+    this.removeMarkerEffects(constraint.marker, weight);
+    this.removeMarkerEffects(constraint.other, weight);
+
+    final int marker = constraint.marker;
+    if (this.rows[marker] != null) {
+      this.takeRow(marker);
+    } else {
+      final int leaving = this.markerLeavingSymbol(marker);
+      if (leaving == BoxConstraintSolver.INVALID) {
+        throw new UnreachableCodeException();
+      }
+      final BoxConstraintRow row = this.takeRow(leaving);
+      row.solveFor(leaving, marker);
+      this.substitute(marker, row);
+    }
+    this.optimize(this.objective);
+  }
+
+  private void removeMarkerEffects(
+    final int marker,
+    final double weight)
+  {
+    if (marker == BoxConstraintSolver.INVALID
+      || this.typeOf(marker) != BoxConstraintSolver.SYMBOL_ERROR) {
+      return;
+    }
+    final BoxConstraintRow row = this.rows[marker];
+    if (row != null) {
+      this.objective.insertRow(row, -weight);
+    } else {
+      this.objective.insert(marker, -weight);
+    }
+  }
+
+  /**
+   * Choose the row that the marker of a removed constraint should be pivoted
+   * into: a restricted row with a negative coefficient if possible, then a
+   * restricted row with a positive coefficient, then an unrestricted row.
+   */
+
+  private int markerLeavingSymbol(
+    final int marker)
+  {
+    double best_negative = Double.MAX_VALUE;
+    double best_positive = Double.MAX_VALUE;
+    int negative = BoxConstraintSolver.INVALID;
+    int positive = BoxConstraintSolver.INVALID;
+    int unrestricted = BoxConstraintSolver.INVALID;
+
+    for (int index = 0; index < this.basic_count; ++index) {
+      final int symbol = this.basic[index];
+      final BoxConstraintRow row = this.rows[symbol];
+      final double coefficient = row.coefficientFor(marker);
+      if (coefficient == 0.0) {
+        continue;
+      }
+      if (this.typeOf(symbol) == BoxConstraintSolver.SYMBOL_EXTERNAL) {
+        unrestricted = symbol;
+      } else if (coefficient < 0.0) {
+        final double ratio = -row.constant() / coefficient;
+        if (ratio < best_negative) {
+          best_negative = ratio;
+          negative = symbol;
+        }
+      } else {
+        final double ratio = row.constant() / coefficient;
+        if (ratio < best_positive) {
+          best_positive = ratio;
+          positive = symbol;
+        }
+      }
+    }
+
+    if (negative != BoxConstraintSolver.INVALID) {
+      return negative;
+    }
+    if (positive != BoxConstraintSolver.INVALID) {
+      return positive;
+    }
+    return unrestricted;
+  }
+
+  private void suggest(
+    final Edit edit,
+    final double value)
+  {
+    final double delta = value - edit.constant;
+    edit.constant = value;
+
+    final int marker = edit.constraint.marker;
+    final int other = edit.constraint.other;
+    final BoxConstraintRow marker_row = this.rows[marker];
+    final BoxConstraintRow other_row = this.rows[other];
+
+    if (marker_row != null) {
+      if (marker_row.add(-delta) < 0.0) {
+        this.pushInfeasible(marker);
+      }
+    } else if (other_row != null) {
+      if (other_row.add(delta) < 0.0) {
+        this.pushInfeasible(other);
+      }
+    } else {
+      for (int index = 0; index < this.basic_count; ++index) {
+        final int symbol = this.basic[index];
+        final BoxConstraintRow row = this.rows[symbol];
+        final double coefficient = row.coefficientFor(marker);
+        if (coefficient != 0.0
+          && row.add(delta * coefficient) < 0.0
+          && this.typeOf(symbol) != BoxConstraintSolver.SYMBOL_EXTERNAL) {
+          this.pushInfeasible(symbol);
+        }
+      }
+    }
+
+    this.dualOptimize();
+  }
+
+  private void dualOptimize()
+  {
+    while (this.infeasible_count > 0) {
+      --this.infeasible_count;
+      final int leaving = this.infeasible[this.infeasible_count];
+      final BoxConstraintRow row = this.rows[leaving];
+      if (row == null || row.constant() >= 0.0) {
+        continue;
+      }
+      final int entering = this.dualEnteringSymbol(row);
+      if (entering == BoxConstraintSolver.INVALID) {
+        throw new UnreachableCodeException();
+      }
+      this.takeRow(leaving);
+      row.solveFor(leaving, entering);
+      this.substitute(entering, row);
+      this.setRow(entering, row);
+    }
+  }
+
+  private int dualEnteringSymbol(
+    final BoxConstraintRow row)
+  {
+    double best = Double.MAX_VALUE;
+    int entering = BoxConstraintSolver.INVALID;
+    for (int index = 0; index < row.size(); ++index) {
+      final int symbol = row.symbolAt(index);
+      final double coefficient = row.coefficientAt(index);
+      if (coefficient > 0.0
+        && this.typeOf(symbol) != BoxConstraintSolver.SYMBOL_DUMMY) {
+        final double ratio = this.objective.coefficientFor(symbol) / coefficient;
+        if (ratio < best) {
+          best = ratio;
+          entering = symbol;
+        }
+      }
+    }
+    return entering;
+  }
+
+  /**
+   * A constraint added to a solver.
+   */
+
+  public static final class Constraint
+  {
+    private final Object owner;
+    private final int[] symbols;
+    private final double[] coefficients;
+    private final double constant;
+    private final BoxConstraintRelation relation;
+    private final BoxConstraintStrength strength;
+    private final boolean edit;
+    private int marker;
+    private int other;
+    private boolean active;
+
+    private Constraint(
+      final Object in_owner,
+      final int[] in_symbols,
+      final double[] in_coefficients,
+      final double in_constant,
+      final BoxConstraintRelation in_relation,
+      final BoxConstraintStrength in_strength,
+      final boolean in_edit)
+    {
+      this.owner = NullCheck.notNull(in_owner);
+      this.symbols = NullCheck.notNull(in_symbols);
+      this.coefficients = NullCheck.notNull(in_coefficients);
+      this.constant = in_constant;
+      this.relation = NullCheck.notNull(in_relation);
+      this.strength = NullCheck.notNull(in_strength);
+      this.edit = in_edit;
+      this.marker = BoxConstraintSolver.INVALID;
+      this.other = BoxConstraintSolver.INVALID;
+    }
+
+    /**
+     * @return The relation of the constraint
+     */
+
+    public BoxConstraintRelation relation()
+    {
+      return this.relation;
+    }
+
+    /**
+     * @return The strength of the constraint
+     */
+
+    public BoxConstraintStrength strength()
+    {
+      return this.strength;
+    }
+  }
+
+  private static final class Edit
+  {
+    private final Constraint constraint;
+    private double constant;
+
+    Edit(
+      final Constraint in_constraint)
+    {
+      this.constraint = NullCheck.notNull(in_constraint);
+    }
+  }
+
+  /**
+   * A builder for a constraint of the form {@code e R 0}, where {@code e} is a
+   * linear expression over box edges.
+   *
+   * @param <S> The coordinate space of the boxes
+   */
+
+  public static final class ConstraintBuilder<S>
+  {
+    private final BoxConstraintSolver<S> solver;
+    private final BoxConstraintRelation relation;
+    private final BoxConstraintStrength strength;
+    private int[] symbols;
+    private double[] coefficients;
+    private int size;
+    private double constant;
+
+    private ConstraintBuilder(
+      final BoxConstraintSolver<S> in_solver,
+      final BoxConstraintRelation in_relation,
+      final BoxConstraintStrength in_strength)
+    {
+      this.solver = NullCheck.notNull(in_solver);
+      this.relation = NullCheck.notNull(in_relation);
+      this.strength = NullCheck.notNull(in_strength);
+      this.symbols = new int[4];
+      this.coefficients = new double[4];
+    }
+
+    /**
+     * Add the term {@code coefficient · edge(box)} to the expression.
+     *
+     * @param box         The box
+     * @param edge        The edge of the box
+     * @param coefficient The coefficient
+     *
+     * @return This builder
+     */
+
+    public ConstraintBuilder<S> term(
+      final int box,
+      final BoxDirection edge,
+      final double coefficient)
+    {
+      final int symbol = this.solver.symbolOf(box, edge);
+      if (this.size == this.symbols.length) {
+        final int capacity = Math.multiplyExact(this.size, 2);
+        this.symbols = Arrays.copyOf(this.symbols, capacity);
+        this.coefficients = Arrays.copyOf(this.coefficients, capacity);
+      }
+      this.symbols[this.size] = symbol;
+      this.coefficients[this.size] = coefficient;
+      ++this.size;
+      return this;
+    }
+
+    /**
+     * Add the term {@code coefficient · width(box)} to the expression.
+     *
+     * @param box         The box
+     * @param coefficient The coefficient
+     *
+     * @return This builder
+     */
+
+    public ConstraintBuilder<S> width(
+      final int box,
+      final double coefficient)
+    {
+      this.term(box, BoxDirection.RIGHT, coefficient);
+      return this.term(box, BoxDirection.LEFT, -coefficient);
+    }
+
+    /**
+     * Add the term {@code coefficient · height(box)} to the expression.
+     *
+     * @param box         The box
+     * @param coefficient The coefficient
+     *
+     * @return This builder
+     */
+
+    public ConstraintBuilder<S> height(
+      final int box,
+      final double coefficient)
+    {
+      this.term(box, BoxDirection.DOWN, coefficient);
+      return this.term(box, BoxDirection.UP, -coefficient);
+    }
+
+    /**
+     * Add a constant to the expression.
+     *
+     * @param value The constant
+     *
+     * @return This builder
+     */
+
+    public ConstraintBuilder<S> constant(
+      final double value)
+    {
+      this.constant += value;
+      return this;
+    }
+
+    /**
+     * Add the constraint to the solver and update the solution. If the
+     * constraint is required and cannot be satisfied together with the
+     * required constraints already present, the solver is left unchanged.
+     *
+     * @return The added constraint, or nothing if the constraint could not be
+     * satisfied
+     */
+
+    public Optional<Constraint> add()
+    {
+      return this.solver.addConstraint(new Constraint(
+        this.solver,
+        Arrays.copyOf(this.symbols, this.size),
+        Arrays.copyOf(this.coefficients, this.size),
+        this.constant,
+        this.relation,
+        this.strength,
+        false));
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * The strengths of constraints.
+ *
+ * <p>Required constraints must always hold. The remaining strengths are
+ * weighted such that any violation of a stronger constraint outweighs any
+ * plausible violation of a weaker one.</p>
+ *
+ * @see BoxConstraintSolver
+ */
+
+public enum BoxConstraintStrength
+{
+  /**
+   * The constraint must hold.
+   */
+
+  REQUIRED(1.001e9),
+
+  /**
+   * The constraint should hold if possible.
+   */
+
+  STRONG(1.0e6),
+
+  /**
+   * The constraint should hold if it does not conflict with strong
+   * constraints.
+   */
+
+  MEDIUM(1.0e3),
+
+  /**
+   * The constraint should hold if it does not conflict with any stronger
+   * constraint.
+   */
+
+  WEAK(1.0);
+
+  private final double weight;
+
+  BoxConstraintStrength(
+    final double in_weight)
+  {
+    this.weight = in_weight;
+  }
+
+  double weight()
+  {
+    return this.weight;
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <p>A static index answering containment queries over a set of boxes.</p>
+ *
+ * <p>Each box is treated as a point {@code (minimumX, maximumX, minimumY,
+ * maximumY)} in four dimensions, and the points are held in a kd-tree in
+ * which every node records the range of each of the four coordinates in its
+ * subtree. Finding the boxes that contain, or are contained by, a given box
+ * is then a range query over all four coordinates at once: subtrees that
+ * fall outside the range on any edge are skipped, and subtrees that fall
+ * entirely inside it are reported without examining individual boxes.</p>
+ *
+ * <p>Containment has the same meaning as in {@link Boxes#contains(BoxType,
+ * BoxType)}, and is therefore reflexive.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxContainmentIndex<S>
+{
+  private static final int LEAF_SIZE = 8;
+  private static final int DIMENSIONS = 4;
+  private static final int NODE_STRIDE = BoxContainmentIndex.DIMENSIONS * 2;
+  private static final int STACK_SIZE = 128;
+
+  private final BoxType<S>[] items;
+  private final int[] points;
+  private final int[] node_bounds;
+  private final int[] node_first;
+  private final int[] node_count;
+  private final int[] node_right;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private BoxContainmentIndex(
+    final Collection<? extends BoxType<S>> in_boxes)
+  {
+    final int size = in_boxes.size();
+    this.items = in_boxes.toArray(new BoxType[size]);
+    this.points = new int[Math.multiplyExact(size, BoxArrays.STRIDE)];
+    for (int index = 0; index < size; ++index) {
+      BoxArrays.set(this.points, index, NullCheck.notNull(this.items[index]));
+    }
+
+    final int nodes = size == 0 ? 0 : BoxContainmentIndex.countNodes(size);
+    this.node_bounds =
+      new int[Math.multiplyExact(nodes, BoxContainmentIndex.NODE_STRIDE)];
+    this.node_first = new int[nodes];
+    this.node_count = new int[nodes];
+    this.node_right = new int[nodes];
+    if (size > 0) {
+      this.build(0, 0, size);
+    }
+  }
+
+  /**
+   * Build an index over {@code boxes}.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return A new index
+   */
+
+  public static <S> BoxContainmentIndex<S> create(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    NullCheck.notNull(boxes);
+    return new BoxContainmentIndex<>(boxes);
+  }
+
+  private static int countNodes(
+    final int count)
+  {
+    if (count <= BoxContainmentIndex.LEAF_SIZE) {
+      return 1;
+    }
+    final int half = count / 2;
+    return 1
+      + BoxContainmentIndex.countNodes(half)
+      + BoxContainmentIndex.countNodes(count - half);
+  }
+
+  /**
+   * Build the subtree for the points {@code [first, first + count)} in
+   * preorder, starting at {@code node}.
+   *
+   * @return The index of the next unused node
+   */
+
+  private int build(
+    final int node,
+    final int first,
+    final int count)
+  {
+    this.node_first[node] = first;
+    this.node_count[node] = count;
+
+    final int base = node * BoxContainmentIndex.NODE_STRIDE;
+    for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+      this.node_bounds[base + dim] = Integer.MAX_VALUE;
+      this.node_bounds[base + BoxContainmentIndex.DIMENSIONS + dim] =
+        Integer.MIN_VALUE;
+    }
+    for (int index = first; index < first + count; ++index) {
+      for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+        final int value = this.points[index * BoxArrays.STRIDE + dim];
+        final int lo = base + dim;
+        final int hi = base + BoxContainmentIndex.DIMENSIONS + dim;
+        this.node_bounds[lo] = Math.min(this.node_bounds[lo], value);
+        this.node_bounds[hi] = Math.max(this.node_bounds[hi], value);
+      }
+    }
+
+    if (count <= BoxContainmentIndex.LEAF_SIZE) {
+      this.node_right[node] = -1;
+      return node + 1;
+    }
+
+    /*
+     * Split at the median of the coordinate with the widest spread.
+     */
+
+    int split_dim = 0;
+    long split_spread = -1L;
+    for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+      final long spread =
+        (long) this.node_bounds[base + BoxContainmentIndex.DIMENSIONS + dim]
+          - (long) this.node_bounds[base + dim];
+      if (spread > split_spread) {
+        split_spread = spread;
+        split_dim = dim;
+      }
+    }
+
+    final int half = count / 2;
+    this.select(first, first + count - 1, first + half, split_dim);
+
+    final int right = this.build(node + 1, first, half);
+    this.node_right[node] = right;
+    return this.build(right, first + half, count - half);
+  }
+
+  private int coordinate(
+    final int index,
+    final int dim)
+  {
+    return this.points[index * BoxArrays.STRIDE + dim];
+  }
+
+  private void swap(
+    final int a,
+    final int b)
+  {
+    final BoxType<S> t = this.items[a];
+    this.items[a] = this.items[b];
+    this.items[b] = t;
+
+    final int base_a = a * BoxArrays.STRIDE;
+    final int base_b = b * BoxArrays.STRIDE;
+    for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+      final int v = this.points[base_a + dim];
+      this.points[base_a + dim] = this.points[base_b + dim];
+      this.points[base_b + dim] = v;
+    }
+  }
+
+  /**
+   * Rearrange the points in {@code [in_lo, in_hi]} such that no point before
+   * {@code k} has a greater coordinate {@code dim} than any point from
+   * {@code k} onwards.
+   */
+
+  private void select(
+    final int in_lo,
+    final int in_hi,
+    final int k,
+    final int dim)
+  {
+    int lo = in_lo;
+    int hi = in_hi;
+
+    while (hi > lo) {
+      final int pivot = this.coordinate(lo + (hi - lo) / 2, dim);
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (this.coordinate(i, dim) < pivot) {
+          ++i;
+        }
+        while (this.coordinate(j, dim) > pivot) {
+          --j;
+        }
+        if (i <= j) {
+          this.swap(i, j);
+          ++i;
+          --j;
+        }
+      }
+
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return The number of boxes in the index
+   */
+
+  public int size()
+  {
+    return this.items.length;
+  }
+
+  /**
+   * Pass every box in the index that contains {@code box} to {@code
+   * receiver}.
+   *
+   * @param box      The box
+   * @param receiver The receiver
+   *
+   * @return The number of boxes passed to {@code receiver}
+   */
+
+  public int containing(
+    final BoxType<S> box,
+    final Consumer<BoxType<S>> receiver)
+  {
+    NullCheck.notNull(box);
+    NullCheck.notNull(receiver);
+
+    final int[] range = new int[BoxContainmentIndex.NODE_STRIDE];
+    final int hi = BoxContainmentIndex.DIMENSIONS;
+    range[BoxArrays.MINIMUM_X] = Integer.MIN_VALUE;
+    range[hi + BoxArrays.MINIMUM_X] = box.minimumX();
+    range[BoxArrays.MAXIMUM_X] = box.maximumX();
+    range[hi + BoxArrays.MAXIMUM_X] = Integer.MAX_VALUE;
+    range[BoxArrays.MINIMUM_Y] = Integer.MIN_VALUE;
+    range[hi + BoxArrays.MINIMUM_Y] = box.minimumY();
+    range[BoxArrays.MAXIMUM_Y] = box.maximumY();
+    range[hi + BoxArrays.MAXIMUM_Y] = Integer.MAX_VALUE;
+    return this.query(range, receiver);
+  }
+
+  /**
+   * @param box The box
+   *
+   * @return Every box in the index that contains {@code box}
+   */
+
+  public List<BoxType<S>> containing(
+    final BoxType<S> box)
+  {
+    final List<BoxType<S>> results = new ArrayList<>();
+    this.containing(box, results::add);
+    return results;
+  }
+
+  /**
+   * Pass every box in the index that is contained by {@code box} to {@code
+   * receiver}.
+   *
+   * @param box      The box
+   * @param receiver The receiver
+   *
+   * @return The number of boxes passed to {@code receiver}
+   */
+
+  public int containedBy(
+    final BoxType<S> box,
+    final Consumer<BoxType<S>> receiver)
+  {
+    NullCheck.notNull(box);
+    NullCheck.notNull(receiver);
+
+    final int[] range = new int[BoxContainmentIndex.NODE_STRIDE];
+    final int hi = BoxContainmentIndex.DIMENSIONS;
+    range[BoxArrays.MINIMUM_X] = box.minimumX();
+    range[hi + BoxArrays.MINIMUM_X] = box.maximumX();
+    range[BoxArrays.MAXIMUM_X] = box.minimumX();
+    range[hi + BoxArrays.MAXIMUM_X] = box.maximumX();
+    range[BoxArrays.MINIMUM_Y] = box.minimumY();
+    range[hi + BoxArrays.MINIMUM_Y] = box.maximumY();
+    range[BoxArrays.MAXIMUM_Y] = box.minimumY();
+    range[hi + BoxArrays.MAXIMUM_Y] = box.maximumY();
+    return this.query(range, receiver);
+  }
+
+  /**
+   * @param box The box
+   *
+   * @return Every box in the index that is contained by {@code box}
+   */
+
+  public List<BoxType<S>> containedBy(
+    final BoxType<S> box)
+  {
+    final List<BoxType<S>> results = new ArrayList<>();
+    this.containedBy(box, results::add);
+    return results;
+  }
+
+  /**
+   * Compare a node against a range. The result is negative if the node lies
+   * outside the range, positive if it lies entirely inside, and zero
+   * otherwise.
+   */
+
+  private int classify(
+    final int node,
+    final int[] range)
+  {
+    final int base = node * BoxContainmentIndex.NODE_STRIDE;
+    final int hi = BoxContainmentIndex.DIMENSIONS;
+    boolean inside = true;
+    for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+      final int node_lo = this.node_bounds[base + dim];
+      final int node_hi = this.node_bounds[base + hi + dim];
+      if (node_lo > range[hi + dim] || node_hi < range[dim]) {
+        return -1;
+      }
+      inside = inside && node_lo >= range[dim] && node_hi <= range[hi + dim];
+    }
+    return inside ? 1 : 0;
+  }
+
+  private boolean pointInRange(
+    final int index,
+    final int[] range)
+  {
+    final int base = index * BoxArrays.STRIDE;
+    final int hi = BoxContainmentIndex.DIMENSIONS;
+    for (int dim = 0; dim < BoxContainmentIndex.DIMENSIONS; ++dim) {
+      final int value = this.points[base + dim];
+      if (value < range[dim] || value > range[hi + dim]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int query(
+    final int[] range,
+    final Consumer<BoxType<S>> receiver)
+  {
+    if (this.items.length == 0) {
+      return 0;
+    }
+
+    final int[] stack = new int[BoxContainmentIndex.STACK_SIZE];
+    int stack_size = 1;
+    int reported = 0;
+
+    while (stack_size > 0) {
+      --stack_size;
+      final int node = stack[stack_size];
+      final int kind = this.classify(node, range);
+      if (kind < 0) {
+        continue;
+      }
+
+      final int first = this.node_first[node];
+      final int last = first + this.node_count[node];
+      if (kind > 0) {
+        for (int index = first; index < last; ++index) {
+          receiver.accept(this.items[index]);
+        }
+        reported += last - first;
+        continue;
+      }
+
+      final int right = this.node_right[node];
+      if (right < 0) {
+        for (int index = first; index < last; ++index) {
+          if (this.pointInRange(index, range)) {
+            receiver.accept(this.items[index]);
+            ++reported;
+          }
+        }
+        continue;
+      }
+
+      stack[stack_size] = right;
+      stack[stack_size + 1] = node + 1;
+      stack_size += 2;
+    }
+    return reported;
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>An accumulator of damaged (dirty) areas that decides which boxes to merge
+ * based on the cost of redrawing them.</p>
+ *
+ * <p>The cost of redrawing a set of rectangles is modelled as the sum of their
+ * areas plus a fixed per-rectangle overhead. When a box is added, it is merged
+ * with the accumulated rectangle for which merging saves the most, as long as
+ * the area of the merged bounding box (see {@link Boxes#containing(BoxType,
+ * BoxType)}) is no greater than the sum of the areas of the two rectangles
+ * plus the overhead. Merging repeats until no merge is profitable. If the
+ * number of rectangles then exceeds the configured maximum, the pair of
+ * rectangles that is cheapest to merge is merged.</p>
+ *
+ * <p>Each insertion takes time proportional to the maximum number of
+ * rectangles (or to its square, when the maximum is exceeded), and performs
+ * no allocation, so small maximums are suitable for use from input
+ * handlers.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxDamageAccumulator<S>
+{
+  private final int max_rectangles;
+  private final long per_rectangle_cost;
+  private final int[] rects;
+  private int count;
+
+  private BoxDamageAccumulator(
+    final int in_max_rectangles,
+    final long in_per_rectangle_cost)
+  {
+    this.max_rectangles = in_max_rectangles;
+    this.per_rectangle_cost = in_per_rectangle_cost;
+    this.rects = new int[(in_max_rectangles + 1) * BoxArrays.STRIDE];
+  }
+
+  /**
+   * Create a new accumulator.
+   *
+   * @param max_rectangles     The maximum number of rectangles that will be
+   *                           produced
+   * @param per_rectangle_cost The cost of drawing a single rectangle, in
+   *                           units of area
+   * @param <S>                The coordinate space of the boxes
+   *
+   * @return A new accumulator
+   */
+
+  public static <S> BoxDamageAccumulator<S> create(
+    final int max_rectangles,
+    final long per_rectangle_cost)
+  {
+    Assertive.require(max_rectangles >= 1, "Maximum rectangles must be >= 1");
+    Assertive.require(per_rectangle_cost >= 0L, "Cost must be >= 0");
+    return new BoxDamageAccumulator<>(max_rectangles, per_rectangle_cost);
+  }
+
+  private static long area(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    return ((long) x_max - (long) x_min) * ((long) y_max - (long) y_min);
+  }
+
+  /**
+   * @return The current number of rectangles
+   */
+
+  public int size()
+  {
+    return this.count;
+  }
+
+  /**
+   * @return The estimated cost of redrawing the current rectangles: the sum
+   * of their areas plus the per-rectangle cost for each rectangle
+   */
+
+  public long cost()
+  {
+    long total = 0L;
+    for (int index = 0; index < this.count; ++index) {
+      total += this.areaOf(index) + this.per_rectangle_cost;
+    }
+    return total;
+  }
+
+  /**
+   * @return The accumulated rectangles
+   */
+
+  public List<BoxType<S>> rectangles()
+  {
+    return Collections.unmodifiableList(
+      BoxArrays.unpack(this.rects, this.count));
+  }
+
+  /**
+   * Discard all accumulated rectangles.
+   */
+
+  public void clear()
+  {
+    this.count = 0;
+  }
+
+  /**
+   * Add a damaged box. Boxes with no area are ignored.
+   *
+   * @param box The box
+   */
+
+  public void add(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+
+    if (box.width() == 0 || box.height() == 0) {
+      return;
+    }
+
+    this.absorb(box.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+    while (this.count > this.max_rectangles) {
+      this.mergeCheapestPair();
+    }
+  }
+
+  private long areaOf(
+    final int index)
+  {
+    final int base = index * BoxArrays.STRIDE;
+    return BoxDamageAccumulator.area(
+      this.rects[base + BoxArrays.MINIMUM_X],
+      this.rects[base + BoxArrays.MAXIMUM_X],
+      this.rects[base + BoxArrays.MINIMUM_Y],
+      this.rects[base + BoxArrays.MAXIMUM_Y]);
+  }
+
+  /**
+   * @return The change in cost caused by replacing rectangle {@code index}
+   * and the given box by their bounding box
+   */
+
+  private long mergeDelta(
+    final int index,
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    final int base = index * BoxArrays.STRIDE;
+    final long merged = BoxDamageAccumulator.area(
+      Math.min(this.rects[base + BoxArrays.MINIMUM_X], x_min),
+      Math.max(this.rects[base + BoxArrays.MAXIMUM_X], x_max),
+      Math.min(this.rects[base + BoxArrays.MINIMUM_Y], y_min),
+      Math.max(this.rects[base + BoxArrays.MAXIMUM_Y], y_max));
+    final long separate = this.areaOf(index)
+      + BoxDamageAccumulator.area(x_min, x_max, y_min, y_max);
+    return merged - separate - this.per_rectangle_cost;
+  }
+
+  /**
+   * Add the given box, first merging it with existing rectangles for as long
+   * as doing so does not increase the total cost.
+   */
+
+  private void absorb(
+    final int in_x_min,
+    final int in_x_max,
+    final int in_y_min,
+    final int in_y_max)
+  {
+    int x_min = in_x_min;
+    int x_max = in_x_max;
+    int y_min = in_y_min;
+    int y_max = in_y_max;
+
+    int best = this.profitableMerge(x_min, x_max, y_min, y_max);
+    while (best >= 0) {
+      final int base = best * BoxArrays.STRIDE;
+      x_min = Math.min(x_min, this.rects[base + BoxArrays.MINIMUM_X]);
+      x_max = Math.max(x_max, this.rects[base + BoxArrays.MAXIMUM_X]);
+      y_min = Math.min(y_min, this.rects[base + BoxArrays.MINIMUM_Y]);
+      y_max = Math.max(y_max, this.rects[base + BoxArrays.MAXIMUM_Y]);
+      this.remove(best);
+      best = this.profitableMerge(x_min, x_max, y_min, y_max);
+    }
+
+    final int base = this.count * BoxArrays.STRIDE;
+    this.rects[base + BoxArrays.MINIMUM_X] = x_min;
+    this.rects[base + BoxArrays.MAXIMUM_X] = x_max;
+    this.rects[base + BoxArrays.MINIMUM_Y] = y_min;
+    this.rects[base + BoxArrays.MAXIMUM_Y] = y_max;
+    ++this.count;
+  }
+
+  /**
+   * @return The rectangle whose merge with the given box reduces the total
+   * cost the most, or {@code -1} if no merge would avoid increasing the cost
+   */
+
+  private int profitableMerge(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    int best = -1;
+    long best_delta = 1L;
+    for (int index = 0; index < this.count; ++index) {
+      final long delta = this.mergeDelta(index, x_min, x_max, y_min, y_max);
+      if (delta < best_delta) {
+        best = index;
+        best_delta = delta;
+      }
+    }
+    return best;
+  }
+
+  private void mergeCheapestPair()
+  {
+    int best_a = 0;
+    int best_b = 1;
+    long best_delta = Long.MAX_VALUE;
+
+    for (int a = 0; a < this.count; ++a) {
+      final int base = a * BoxArrays.STRIDE;
+      for (int b = a + 1; b < this.count; ++b) {
+        final long delta = this.mergeDelta(
+          b,
+          this.rects[base + BoxArrays.MINIMUM_X],
+          this.rects[base + BoxArrays.MAXIMUM_X],
+          this.rects[base + BoxArrays.MINIMUM_Y],
+          this.rects[base + BoxArrays.MAXIMUM_Y]);
+        if (delta < best_delta) {
+          best_a = a;
+          best_b = b;
+          best_delta = delta;
+        }
+      }
+    }
+
+    final int base_a = best_a * BoxArrays.STRIDE;
+    final int base_b = best_b * BoxArrays.STRIDE;
+    final int x_min = Math.min(
+      this.rects[base_a + BoxArrays.MINIMUM_X],
+      this.rects[base_b + BoxArrays.MINIMUM_X]);
+    final int x_max = Math.max(
+      this.rects[base_a + BoxArrays.MAXIMUM_X],
+      this.rects[base_b + BoxArrays.MAXIMUM_X]);
+    final int y_min = Math.min(
+      this.rects[base_a + BoxArrays.MINIMUM_Y],
+      this.rects[base_b + BoxArrays.MINIMUM_Y]);
+    final int y_max = Math.max(
+      this.rects[base_a + BoxArrays.MAXIMUM_Y],
+      this.rects[base_b + BoxArrays.MAXIMUM_Y]);
+
+    /*
+     * Remove the higher index first so that the lower index is unaffected.
+     */
+
+    this.remove(best_b);
+    this.remove(best_a);
+    this.absorb(x_min, x_max, y_min, y_max);
+  }
+
+  private void remove(
+    final int index)
+  {
+    --this.count;
+    System.arraycopy(
+      this.rects,
+      this.count * BoxArrays.STRIDE,
+      this.rects,
+      index * BoxArrays.STRIDE,
+      BoxArrays.STRIDE);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * The directions used by directional distance metrics. The Y axis increases
+ * downwards, so {@link #UP} is the direction of decreasing Y.
+ *
+ * @see BoxDistanceMetrics#directional(BoxType, BoxDirection)
+ */
+
+public enum BoxDirection
+{
+  /**
+   * The direction of decreasing X.
+   */
+
+  LEFT,
+
+  /**
+   * The direction of increasing X.
+   */
+
+  RIGHT,
+
+  /**
+   * The direction of decreasing Y.
+   */
+
+  UP,
+
+  /**
+   * The direction of increasing Y.
+   */
+
+  DOWN
+}
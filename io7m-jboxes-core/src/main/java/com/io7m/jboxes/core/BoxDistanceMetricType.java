@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * <p>The type of distance metrics used for nearest neighbour searches.</p>
+ *
+ * <p>A metric assigns a non-negative distance to each box, or
+ * {@link Double#POSITIVE_INFINITY} to boxes that must not be reported at all.
+ * To allow a search to skip entire subtrees of a spatial index, a metric must
+ * also provide a lower bound on the distance of any box that lies within a
+ * given bounding box.</p>
+ *
+ * @see BoxDistanceMetrics
+ */
+
+public interface BoxDistanceMetricType
+{
+  /**
+   * @param x_min The minimum X value of the bounds
+   * @param x_max The maximum X value of the bounds
+   * @param y_min The minimum Y value of the bounds
+   * @param y_max The maximum Y value of the bounds
+   *
+   * @return A value no greater than the distance of any box contained within
+   * the given bounds, or {@link Double#POSITIVE_INFINITY} if no such box can
+   * be reported
+   */
+
+  double lowerBound(
+    int x_min,
+    int x_max,
+    int y_min,
+    int y_max);
+
+  /**
+   * @param x_min The minimum X value of the box
+   * @param x_max The maximum X value of the box
+   * @param y_min The minimum Y value of the box
+   * @param y_max The maximum Y value of the box
+   *
+   * @return The distance of the given box, or {@link Double#POSITIVE_INFINITY}
+   * if the box must not be reported
+   */
+
+  double distance(
+    int x_min,
+    int x_max,
+    int y_min,
+    int y_max);
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * <p>Standard distance metrics for nearest neighbour searches.</p>
+ *
+ * <p>All of the metrics measure squared Euclidean distances, which order
+ * boxes identically to Euclidean distances without requiring square roots.
+ * Boxes are treated as closed areas, so a box that touches the query has a
+ * distance of {@code 0}.</p>
+ */
+
+public final class BoxDistanceMetrics
+{
+  private BoxDistanceMetrics()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  private static double gap(
+    final int a_min,
+    final int a_max,
+    final int b_min,
+    final int b_max)
+  {
+    if (b_min > a_max) {
+      return (double) ((long) b_min - (long) a_max);
+    }
+    if (a_min > b_max) {
+      return (double) ((long) a_min - (long) b_max);
+    }
+    return 0.0;
+  }
+
+  private static double gapSquared(
+    final BoxType<?> origin,
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    final double dx = BoxDistanceMetrics.gap(
+      origin.minimumX(), origin.maximumX(), x_min, x_max);
+    final double dy = BoxDistanceMetrics.gap(
+      origin.minimumY(), origin.maximumY(), y_min, y_max);
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * A metric that measures the squared distance from the point {@code (x,
+   * y)} to the nearest point of each box.
+   *
+   * @param x The X coordinate of the point
+   * @param y The Y coordinate of the point
+   *
+   * @return A distance metric
+   */
+
+  public static BoxDistanceMetricType toPoint(
+    final int x,
+    final int y)
+  {
+    return new EdgeGap(Box.of(x, x, y, y));
+  }
+
+  /**
+   * A metric that measures the squared length of the shortest line between
+   * {@code origin} and each box. Note that {@code origin} itself (and any box
+   * that touches or overlaps it) has a distance of {@code 0}.
+   *
+   * @param origin The box from which distances are measured
+   *
+   * @return A distance metric
+   */
+
+  public static BoxDistanceMetricType edgeGap(
+    final BoxType<?> origin)
+  {
+    return new EdgeGap(NullCheck.notNull(origin));
+  }
+
+  /**
+   * A metric that only reports boxes lying entirely beyond the edge of
+   * {@code origin} that faces {@code direction} (for example, boxes whose
+   * left edge is no less than the right edge of {@code origin} for
+   * {@link BoxDirection#RIGHT}), and measures the squared length of the
+   * shortest line between {@code origin} and each such box. This is
+   * suitable for moving focus between boxes with arrow keys.
+   *
+   * @param origin    The box from which distances are measured
+   * @param direction The direction in which to search
+   *
+   * @return A distance metric
+   */
+
+  public static BoxDistanceMetricType directional(
+    final BoxType<?> origin,
+    final BoxDirection direction)
+  {
+    return new Directional(NullCheck.notNull(origin), NullCheck.notNull(direction));
+  }
+
+  private static final class EdgeGap implements BoxDistanceMetricType
+  {
+    private final BoxType<?> origin;
+
+    EdgeGap(
+      final BoxType<?> in_origin)
+    {
+      this.origin = NullCheck.notNull(in_origin);
+    }
+
+    @Override
+    public double lowerBound(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      return BoxDistanceMetrics.gapSquared(
+        this.origin, x_min, x_max, y_min, y_max);
+    }
+
+    @Override
+    public double distance(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      return BoxDistanceMetrics.gapSquared(
+        this.origin, x_min, x_max, y_min, y_max);
+    }
+  }
+
+  private static final class Directional implements BoxDistanceMetricType
+  {
+    private final BoxType<?> origin;
+    private final BoxDirection direction;
+
+    Directional(
+      final BoxType<?> in_origin,
+      final BoxDirection in_direction)
+    {
+      this.origin = NullCheck.notNull(in_origin);
+      this.direction = NullCheck.notNull(in_direction);
+    }
+
+    @Override
+    public double lowerBound(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      /*
+       * Any reportable box within the bounds lies within the part of the
+       * bounds beyond the edge of the origin, so measure the distance to
+       * that part.
+       */
+
+      switch (this.direction) {
+        case LEFT: {
+          final int edge = this.origin.minimumX();
+          if (x_min > edge) {
+            return Double.POSITIVE_INFINITY;
+          }
+          return BoxDistanceMetrics.gapSquared(
+            this.origin, x_min, Math.min(x_max, edge), y_min, y_max);
+        }
+        case RIGHT: {
+          final int edge = this.origin.maximumX();
+          if (x_max < edge) {
+            return Double.POSITIVE_INFINITY;
+          }
+          return BoxDistanceMetrics.gapSquared(
+            this.origin, Math.max(x_min, edge), x_max, y_min, y_max);
+        }
+        case UP: {
+          final int edge = this.origin.minimumY();
+          if (y_min > edge) {
+            return Double.POSITIVE_INFINITY;
+          }
+          return BoxDistanceMetrics.gapSquared(
+            this.origin, x_min, x_max, y_min, Math.min(y_max, edge));
+        }
+        case DOWN: {
+          final int edge = this.origin.maximumY();
+          if (y_max < edge) {
+            return Double.POSITIVE_INFINITY;
+          }
+          return BoxDistanceMetrics.gapSquared(
+            this.origin, x_min, x_max, Math.max(y_min, edge), y_max);
+        }
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    private boolean accepts(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      switch (this.direction) {
+        case LEFT:
+          return x_max <= this.origin.minimumX();
+        case RIGHT:
+          return x_min >= this.origin.maximumX();
+        case UP:
+          return y_max <= this.origin.minimumY();
+        case DOWN:
+          return y_min >= this.origin.maximumY();
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    @Override
+    public double distance(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      if (this.accepts(x_min, x_max, y_min, y_max)) {
+        return BoxDistanceMetrics.gapSquared(
+          this.origin, x_min, x_max, y_min, y_max);
+      }
+      return Double.POSITIVE_INFINITY;
+    }
+  }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>A finder of the largest empty box inside a container box that avoids a
+ * set of obstacle boxes.</p>
+ *
+ * <p>Boxes are treated as half-open areas, so an empty box may touch, but not
+ * overlap, the obstacles. The edges of a maximal empty box always lie on the
+ * edges of the container or of obstacles, so the finder compresses the
+ * container into a grid of cells bounded by those edges, marks blocked cells
+ * with a two-dimensional difference array, and then scans the grid row by
+ * row, maintaining for each column the height of the free run ending at the
+ * current row. The largest empty box ending at each row is found with a
+ * stack-based scan of that weighted histogram, so a search over {@code n}
+ * obstacles takes {@code O(n^2)} time.</p>
+ *
+ * <p>Finder instances update their results incrementally. The grid, the
+ * number of obstacles covering each cell, the free run heights, and the
+ * largest box ending at each row are retained between queries. Adding an
+ * obstacle whose edges already lie on grid lines, or removing any obstacle,
+ * only adjusts the counts of the cells that the obstacle covers, and the next
+ * query rescans only the rows at and below the topmost row that changed.
+ * Adding an obstacle with new edges rebuilds the grid on the next query, as
+ * does the accumulation of grid lines left behind by removed obstacles. In
+ * addition, adding an obstacle that does not overlap the last result keeps
+ * that result, as no larger box can have appeared.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxEmptyRectangleFinder<S>
+{
+  private final BoxType<S> container;
+  private final List<BoxType<S>> obstacles;
+  private int blocking_count;
+  private boolean grid_valid;
+  private int[] xs;
+  private int[] ys;
+  private int[] cells;
+  private long[] run_heights;
+  private long[] row_areas;
+  private int[] row_boxes;
+  private int dirty_row;
+  private boolean cached;
+  private int cached_min_width;
+  private int cached_min_height;
+  private Optional<BoxType<S>> cached_result;
+
+  private BoxEmptyRectangleFinder(
+    final BoxType<S> in_container)
+  {
+    this.container = NullCheck.notNull(in_container);
+    this.obstacles = new ArrayList<>(16);
+    this.xs = new int[0];
+    this.ys = new int[0];
+    this.cells = new int[0];
+    this.run_heights = new long[0];
+    this.row_areas = new long[0];
+    this.row_boxes = new int[0];
+    this.cached_result = Optional.empty();
+  }
+
+  /**
+   * Create a new finder with no obstacles.
+   *
+   * @param container The container box
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return A new finder
+   */
+
+  public static <S> BoxEmptyRectangleFinder<S> create(
+    final BoxType<S> container)
+  {
+    return new BoxEmptyRectangleFinder<>(container);
+  }
+
+  /**
+   * Find the largest box inside {@code container} that does not overlap any
+   * of {@code obstacles}, and that has at least the given width and height.
+   *
+   * @param container  The container box
+   * @param obstacles  The obstacles
+   * @param min_width  The minimum width of the result
+   * @param min_height The minimum height of the result
+   * @param <S>        The coordinate space of the boxes
+   *
+   * @return The largest empty box, or nothing if no box of the minimum size
+   * fits
+   */
+
+  public static <S> Optional<BoxType<S>> largestEmpty(
+    final BoxType<S> container,
+    final Collection<? extends BoxType<S>> obstacles,
+    final int min_width,
+    final int min_height)
+  {
+    NullCheck.notNull(obstacles);
+    final BoxEmptyRectangleFinder<S> finder =
+      new BoxEmptyRectangleFinder<>(container);
+    for (final BoxType<S> box : obstacles) {
+      finder.addObstacle(box);
+    }
+    return finder.largestEmpty(min_width, min_height);
+  }
+
+  private static boolean overlapsInterior(
+    final BoxType<?> a,
+    final BoxType<?> b)
+  {
+    return a.minimumX() < b.maximumX()
+      && b.minimumX() < a.maximumX()
+      && a.minimumY() < b.maximumY()
+      && b.minimumY() < a.maximumY();
+  }
+
+  /**
+   * @return The container box
+   */
+
+  public BoxType<S> container()
+  {
+    return this.container;
+  }
+
+  /**
+   * @return The current number of obstacles
+   */
+
+  public int obstacleCount()
+  {
+    return this.obstacles.size();
+  }
+
+  /**
+   * Add an obstacle.
+   *
+   * @param box The obstacle
+   */
+
+  public void addObstacle(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+    this.obstacles.add(box);
+
+    if (!BoxEmptyRectangleFinder.overlapsInterior(this.container, box)) {
+      return;
+    }
+
+    ++this.blocking_count;
+    if (this.grid_valid && this.onGrid(box)) {
+      this.mark(box, 1);
+    } else {
+      this.grid_valid = false;
+    }
+
+    if (this.cached && this.cached_result.isPresent()) {
+      final BoxType<S> result = this.cached_result.get();
+      if (BoxEmptyRectangleFinder.overlapsInterior(result, box)) {
+        this.cached = false;
+      }
+    }
+  }
+
+  /**
+   * Remove an obstacle that was previously added.
+   *
+   * @param box The obstacle
+   */
+
+  public void removeObstacle(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+    Assertive.require(this.obstacles.remove(box), "Obstacle must be present");
+
+    if (!BoxEmptyRectangleFinder.overlapsInterior(this.container, box)) {
+      return;
+    }
+
+    --this.blocking_count;
+    if (this.grid_valid) {
+      this.mark(box, -1);
+    }
+    this.cached = false;
+  }
+
+  /**
+   * Remove all obstacles.
+   */
+
+  public void clearObstacles()
+  {
+    this.obstacles.clear();
+    this.blocking_count = 0;
+    this.grid_valid = false;
+    this.cached = false;
+  }
+
+  /**
+   * Find the largest box inside the container that does not overlap any
+   * obstacle and that has at least the given width and height.
+   *
+   * @param min_width  The minimum width of the result
+   * @param min_height The minimum height of the result
+   *
+   * @return The largest empty box, or nothing if no box of the minimum size
+   * fits
+   */
+
+  public Optional<BoxType<S>> largestEmpty(
+    final int min_width,
+    final int min_height)
+  {
+    Assertive.require(min_width >= 0, "Minimum width must be >= 0");
+    Assertive.require(min_height >= 0, "Minimum height must be >= 0");
+
+    final boolean same_query = this.cached_min_width == min_width
+      && this.cached_min_height == min_height;
+    if (this.cached && same_query) {
+      return this.cached_result;
+    }
+
+    if (this.container.width() == 0 || this.container.height() == 0) {
+      this.cached_result = Optional.empty();
+    } else {
+      final int lines = this.xs.length + this.ys.length;
+      final int live_lines = 4 * this.blocking_count + 4;
+      if (!this.grid_valid || lines > 2 * live_lines) {
+        this.rebuild();
+      }
+      if (!same_query) {
+        this.dirty_row = 0;
+      }
+      this.cached_result = this.rescan(min_width, min_height);
+    }
+
+    this.cached_min_width = min_width;
+    this.cached_min_height = min_height;
+    this.cached = true;
+    return this.cached_result;
+  }
+
+  private static int[] edges(
+    final int low,
+    final int high,
+    final int[] values,
+    final int count)
+  {
+    final int[] result = Arrays.copyOf(values, count + 2);
+    result[count] = low;
+    result[count + 1] = high;
+    Arrays.sort(result);
+
+    int unique = 0;
+    for (int index = 0; index < result.length; ++index) {
+      final int value = Math.min(Math.max(result[index], low), high);
+      if (unique == 0 || result[unique - 1] != value) {
+        result[unique] = value;
+        ++unique;
+      }
+    }
+    return Arrays.copyOf(result, unique);
+  }
+
+  private boolean onGrid(
+    final BoxType<S> box)
+  {
+    return BoxEmptyRectangleFinder.index(this.xs, box.minimumX()) >= 0
+      && BoxEmptyRectangleFinder.index(this.xs, box.maximumX()) >= 0
+      && BoxEmptyRectangleFinder.index(this.ys, box.minimumY()) >= 0
+      && BoxEmptyRectangleFinder.index(this.ys, box.maximumY()) >= 0;
+  }
+
+  /**
+   * Rebuild the grid from the edges of the current obstacles.
+   */
+
+  private void rebuild()
+  {
+    final List<BoxType<S>> blocking = new ArrayList<>(this.blocking_count);
+    for (final BoxType<S> box : this.obstacles) {
+      if (BoxEmptyRectangleFinder.overlapsInterior(this.container, box)) {
+        blocking.add(box);
+      }
+    }
+
+    final int[] x_values = new int[blocking.size() * 2];
+    final int[] y_values = new int[blocking.size() * 2];
+    for (int index = 0; index < blocking.size(); ++index) {
+      final BoxType<S> box = blocking.get(index);
+      x_values[index * 2] = box.minimumX();
+      x_values[index * 2 + 1] = box.maximumX();
+      y_values[index * 2] = box.minimumY();
+      y_values[index * 2 + 1] = box.maximumY();
+    }
+
+    this.xs = BoxEmptyRectangleFinder.edges(
+      this.container.minimumX(),
+      this.container.maximumX(),
+      x_values,
+      x_values.length);
+    this.ys = BoxEmptyRectangleFinder.edges(
+      this.container.minimumY(),
+      this.container.maximumY(),
+      y_values,
+      y_values.length);
+
+    final int columns = this.xs.length - 1;
+    final int rows = this.ys.length - 1;
+    this.cells =
+      BoxEmptyRectangleFinder.blockedCells(blocking, this.xs, this.ys);
+    this.run_heights = new long[Math.multiplyExact(rows, columns)];
+    this.row_areas = new long[rows];
+    this.row_boxes = new int[Math.multiplyExact(rows, 4)];
+    this.dirty_row = 0;
+    this.grid_valid = true;
+  }
+
+  /**
+   * Adjust the obstacle counts of the cells covered by {@code box}, and mark
+   * the rows from the top of the box onwards as needing a rescan.
+   */
+
+  private void mark(
+    final BoxType<S> box,
+    final int delta)
+  {
+    final int columns = this.xs.length - 1;
+    final int c0 = BoxEmptyRectangleFinder.index(this.xs, box.minimumX());
+    final int c1 = BoxEmptyRectangleFinder.index(this.xs, box.maximumX());
+    final int r0 = BoxEmptyRectangleFinder.index(this.ys, box.minimumY());
+    final int r1 = BoxEmptyRectangleFinder.index(this.ys, box.maximumY());
+
+    for (int row = r0; row < r1; ++row) {
+      for (int column = c0; column < c1; ++column) {
+        this.cells[row * columns + column] += delta;
+      }
+    }
+    this.dirty_row = Math.min(this.dirty_row, r0);
+  }
+
+  /**
+   * Rescan the rows from the first dirty row onwards, and then pick the
+   * largest of the boxes ending at each row.
+   */
+
+  private Optional<BoxType<S>> rescan(
+    final int min_width,
+    final int min_height)
+  {
+    final int columns = this.xs.length - 1;
+    final int rows = this.ys.length - 1;
+    final Histogram histogram =
+      new Histogram(this.xs, this.run_heights, min_width, min_height);
+
+    for (int row = this.dirty_row; row < rows; ++row) {
+      final long row_height = (long) this.ys[row + 1] - (long) this.ys[row];
+      final int base = row * columns;
+      for (int column = 0; column < columns; ++column) {
+        if (this.cells[base + column] > 0) {
+          this.run_heights[base + column] = 0L;
+        } else if (row == 0) {
+          this.run_heights[base + column] = row_height;
+        } else {
+          this.run_heights[base + column] =
+            this.run_heights[base - columns + column] + row_height;
+        }
+      }
+
+      histogram.scan(base, columns, this.ys[row + 1]);
+      this.row_areas[row] = histogram.best_area;
+      this.row_boxes[row * 4] = histogram.best_x_min;
+      this.row_boxes[row * 4 + 1] = histogram.best_x_max;
+      this.row_boxes[row * 4 + 2] = histogram.best_y_min;
+      this.row_boxes[row * 4 + 3] = histogram.best_y_max;
+    }
+    this.dirty_row = rows;
+
+    int best_row = -1;
+    for (int row = 0; row < rows; ++row) {
+      final boolean larger = best_row < 0
+        || this.row_areas[row] > this.row_areas[best_row];
+      if (this.row_areas[row] >= 0L && larger) {
+        best_row = row;
+      }
+    }
+
+    if (best_row < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(Box.of(
+      this.row_boxes[best_row * 4],
+      this.row_boxes[best_row * 4 + 1],
+      this.row_boxes[best_row * 4 + 2],
+      this.row_boxes[best_row * 4 + 3]));
+  }
+
+  /**
+   * Count the obstacles covering each cell using a two-dimensional difference
+   * array followed by prefix sums. A cell is blocked iff its count is
+   * positive.
+   */
+
+  private static <S> int[] blockedCells(
+    final List<BoxType<S>> blocking,
+    final int[] xs,
+    final int[] ys)
+  {
+    final int columns = xs.length - 1;
+    final int rows = ys.length - 1;
+    final int stride = columns + 1;
+    final int[] diff = new int[Math.multiplyExact(rows + 1, stride)];
+
+    for (final BoxType<S> box : blocking) {
+      final int c0 = BoxEmptyRectangleFinder.index(xs, box.minimumX());
+      final int c1 = BoxEmptyRectangleFinder.index(xs, box.maximumX());
+      final int r0 = BoxEmptyRectangleFinder.index(ys, box.minimumY());
+      final int r1 = BoxEmptyRectangleFinder.index(ys, box.maximumY());
+      ++diff[r0 * stride + c0];
+      --diff[r0 * stride + c1];
+      --diff[r1 * stride + c0];
+      ++diff[r1 * stride + c1];
+    }
+
+    final int[] cells = new int[Math.multiplyExact(rows, columns)];
+    final int[] above = new int[columns];
+    for (int row = 0; row < rows; ++row) {
+      int sum = 0;
+      for (int column = 0; column < columns; ++column) {
+        sum += diff[row * stride + column];
+        above[column] += sum;
+        cells[row * columns + column] = above[column];
+      }
+    }
+    return cells;
+  }
+
+  private static int index(
+    final int[] edges,
+    final int value)
+  {
+    final int clamped =
+      Math.min(Math.max(value, edges[0]), edges[edges.length - 1]);
+    return Arrays.binarySearch(edges, clamped);
+  }
+
+  /**
+   * A histogram of free run heights over columns of varying widths.
+   */
+
+  private static final class Histogram
+  {
+    private final int[] xs;
+    private final long[] heights;
+    private final int[] stack;
+    private final long min_width;
+    private final long min_height;
+    private long best_area;
+    private int best_x_min;
+    private int best_x_max;
+    private int best_y_min;
+    private int best_y_max;
+
+    Histogram(
+      final int[] in_xs,
+      final long[] in_heights,
+      final int in_min_width,
+      final int in_min_height)
+    {
+      this.xs = NullCheck.notNull(in_xs);
+      this.heights = NullCheck.notNull(in_heights);
+      this.stack = new int[in_xs.length - 1];
+      this.min_width = (long) in_min_width;
+      this.min_height = (long) in_min_height;
+      this.best_area = -1L;
+    }
+
+    /**
+     * Find the largest box in the histogram of the {@code columns} heights
+     * starting at {@code base}. For each column, the widest box with the
+     * height of that column is found when the column is popped from the
+     * stack, and every maximal empty box is such a box.
+     */
+
+    void scan(
+      final int base,
+      final int columns,
+      final int y_max)
+    {
+      int top = 0;
+      this.best_area = -1L;
+
+      for (int column = 0; column <= columns; ++column) {
+        final long height =
+          column < columns ? this.heights[base + column] : -1L;
+        while (top > 0 && this.heights[base + this.stack[top - 1]] > height) {
+          --top;
+          final long bar = this.heights[base + this.stack[top]];
+          final int left = top > 0 ? this.stack[top - 1] + 1 : 0;
+          this.consider(this.xs[left], this.xs[column], bar, y_max);
+        }
+        if (column < columns) {
+          this.stack[top] = column;
+          ++top;
+        }
+      }
+    }
+
+    private void consider(
+      final int x_min,
+      final int x_max,
+      final long height,
+      final int y_max)
+    {
+      final long width = (long) x_max - (long) x_min;
+      if (height == 0L || width < this.min_width || height < this.min_height) {
+        return;
+      }
+
+      final long area = width * height;
+      if (area > this.best_area) {
+        this.best_area = area;
+        this.best_x_min = x_min;
+        this.best_x_max = x_max;
+        this.best_y_min = (int) ((long) y_max - height);
+        this.best_y_max = y_max;
+      }
+    }
+  }
+}
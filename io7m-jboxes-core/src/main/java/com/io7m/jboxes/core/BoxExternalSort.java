@@ -0,0 +1,432 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <p>An external merge sort that orders boxes by the Hilbert key of their
+ * centers.</p>
+ *
+ * <p>Input boxes are accumulated into runs of a bounded size, each run is
+ * sorted in memory and spilled to a temporary file, and the runs are then
+ * merged with a k-way heap. The result is a box file (see {@link
+ * BoxRecordWriter}) in ascending order of {@link
+ * BoxHilbertCurve#keyOfCenter(BoxType)}. Boxes with equal keys retain their
+ * input order.</p>
+ */
+
+public final class BoxExternalSort
+{
+  /**
+   * The default maximum number of runs merged at once.
+   */
+
+  public static final int DEFAULT_FAN_IN = 128;
+
+  private BoxExternalSort()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Equivalent to calling {@link #sortByHilbert(Iterator, Path, Path, int,
+   * int)} with a fan-in of {@link #DEFAULT_FAN_IN}.
+   *
+   * @param input          The input boxes
+   * @param output         The output file
+   * @param temp_directory The directory in which to create temporary files
+   * @param run_size       The maximum number of boxes held in memory
+   * @param <S>            The coordinate space of the boxes
+   *
+   * @return The number of boxes written to {@code output}
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static <S> long sortByHilbert(
+    final Iterator<? extends BoxType<S>> input,
+    final Path output,
+    final Path temp_directory,
+    final int run_size)
+    throws IOException
+  {
+    return BoxExternalSort.sortByHilbert(
+      input, output, temp_directory, run_size, BoxExternalSort.DEFAULT_FAN_IN);
+  }
+
+  /**
+   * Sort the boxes of {@code input} by the Hilbert key of their centers,
+   * writing the result to the box file {@code output}. At most {@code
+   * run_size} boxes are held in memory at any one time, and at most {@code
+   * fan_in} runs are merged in a single pass.
+   *
+   * @param input          The input boxes
+   * @param output         The output file
+   * @param temp_directory The directory in which to create temporary files
+   * @param run_size       The maximum number of boxes held in memory
+   * @param fan_in         The maximum number of runs merged at once
+   * @param <S>            The coordinate space of the boxes
+   *
+   * @return The number of boxes written to {@code output}
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static <S> long sortByHilbert(
+    final Iterator<? extends BoxType<S>> input,
+    final Path output,
+    final Path temp_directory,
+    final int run_size,
+    final int fan_in)
+    throws IOException
+  {
+    NullCheck.notNull(input);
+    NullCheck.notNull(output);
+    NullCheck.notNull(temp_directory);
+    Assertive.require(run_size >= 1, "Run size must be >= 1");
+    Assertive.require(fan_in >= 2, "Fan-in must be >= 2");
+
+    /*
+     * Every temporary file is recorded in "created" as soon as it exists, so
+     * that it is deleted however the sort terminates.
+     */
+
+    final List<Path> created = new ArrayList<>(16);
+    final List<Path> runs = new ArrayList<>(16);
+    @Nullable Throwable failure = null;
+    try {
+      final long count = BoxExternalSort.spillRuns(
+        input, temp_directory, run_size, created, runs);
+
+      while (runs.size() > fan_in) {
+        final List<Path> merged = new ArrayList<>(runs.size() / fan_in + 1);
+        for (int index = 0; index < runs.size(); index += fan_in) {
+          final List<Path> group =
+            runs.subList(index, Math.min(runs.size(), index + fan_in));
+          final Path target =
+            BoxExternalSort.createTemporary(temp_directory, created);
+          merged.add(target);
+          BoxExternalSort.merge(group, target);
+          BoxExternalSort.deleteAll(group, null);
+        }
+        runs.clear();
+        runs.addAll(merged);
+      }
+
+      if (runs.size() == 1) {
+        Files.move(
+          runs.get(0), output, StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        BoxExternalSort.merge(runs, output);
+      }
+      return count;
+    } catch (final Throwable e) {
+      failure = e;
+      throw e;
+    } finally {
+      BoxExternalSort.deleteAll(created, failure);
+    }
+  }
+
+  private static Path createTemporary(
+    final Path temp_directory,
+    final List<Path> created)
+    throws IOException
+  {
+    final Path path =
+      Files.createTempFile(temp_directory, "jboxes-run", ".bin");
+    created.add(path);
+    return path;
+  }
+
+  /**
+   * Delete all of the given files. If {@code failure} is not {@code null},
+   * any exceptions raised are added to it as suppressed exceptions;
+   * otherwise, the first exception raised is thrown once every file has been
+   * attempted.
+   */
+
+  private static void deleteAll(
+    final List<Path> paths,
+    final @Nullable Throwable failure)
+    throws IOException
+  {
+    @Nullable IOException error = null;
+    for (int index = 0; index < paths.size(); ++index) {
+      try {
+        Files.deleteIfExists(paths.get(index));
+      } catch (final IOException e) {
+        error = BoxExternalSort.accumulate(failure, error, e);
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Close all of the given readers, reporting exceptions in the same manner
+   * as {@link #deleteAll(List, Throwable)}.
+   */
+
+  private static void closeAll(
+    final List<BoxRecordReader> readers,
+    final @Nullable Throwable failure)
+    throws IOException
+  {
+    @Nullable IOException error = null;
+    for (int index = 0; index < readers.size(); ++index) {
+      try {
+        readers.get(index).close();
+      } catch (final IOException e) {
+        error = BoxExternalSort.accumulate(failure, error, e);
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private static @Nullable IOException accumulate(
+    final @Nullable Throwable failure,
+    final @Nullable IOException error,
+    final IOException e)
+  {
+    if (failure != null) {
+      failure.addSuppressed(e);
+      return error;
+    }
+    if (error != null) {
+      error.addSuppressed(e);
+      return error;
+    }
+    return e;
+  }
+
+  private static <S> long spillRuns(
+    final Iterator<? extends BoxType<S>> input,
+    final Path temp_directory,
+    final int run_size,
+    final List<Path> created,
+    final List<Path> runs)
+    throws IOException
+  {
+    final int[] boxes = new int[Math.multiplyExact(run_size, BoxArrays.STRIDE)];
+    final long[] keys = new long[run_size];
+    final long[] keys_temp = new long[run_size];
+    final int[] order = new int[run_size];
+    final int[] order_temp = new int[run_size];
+
+    long count = 0L;
+    int size = 0;
+    while (input.hasNext()) {
+      final BoxType<S> box = NullCheck.notNull(input.next());
+      BoxArrays.set(boxes, size, box);
+      keys[size] = BoxHilbertCurve.keyOfCenter(box);
+      ++size;
+      ++count;
+
+      if (size == run_size) {
+        BoxExternalSort.sortRun(keys, keys_temp, order, order_temp, size);
+        runs.add(BoxExternalSort.writeRun(
+          temp_directory, created, boxes, order, size));
+        size = 0;
+      }
+    }
+
+    if (size > 0 || runs.isEmpty()) {
+      BoxExternalSort.sortRun(keys, keys_temp, order, order_temp, size);
+      runs.add(BoxExternalSort.writeRun(
+        temp_directory, created, boxes, order, size));
+    }
+    return count;
+  }
+
+  /**
+   * Sort the first {@code size} keys with a stable LSD radix sort, leaving
+   * the resulting permutation of box indices in {@code order}.
+   */
+
+  static void sortRun(
+    final long[] keys,
+    final long[] keys_temp,
+    final int[] order,
+    final int[] order_temp,
+    final int size)
+  {
+    for (int index = 0; index < size; ++index) {
+      order[index] = index;
+    }
+
+    final int[] counts = new int[256];
+    long[] k_src = keys;
+    long[] k_dst = keys_temp;
+    int[] o_src = order;
+    int[] o_dst = order_temp;
+
+    for (int shift = 0; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int index = 0; index < size; ++index) {
+        ++counts[(int) (k_src[index] >>> shift) & 0xff];
+      }
+
+      int total = 0;
+      for (int bucket = 0; bucket < 256; ++bucket) {
+        final int c = counts[bucket];
+        counts[bucket] = total;
+        total += c;
+      }
+
+      for (int index = 0; index < size; ++index) {
+        final int bucket = (int) (k_src[index] >>> shift) & 0xff;
+        final int target = counts[bucket];
+        counts[bucket] = target + 1;
+        k_dst[target] = k_src[index];
+        o_dst[target] = o_src[index];
+      }
+
+      final long[] k_swap = k_src;
+      k_src = k_dst;
+      k_dst = k_swap;
+      final int[] o_swap = o_src;
+      o_src = o_dst;
+      o_dst = o_swap;
+    }
+
+    /*
+     * An even number of passes leaves the result in the original arrays.
+     */
+
+    Assertive.ensure(o_src == order, "Result is in the order array");
+  }
+
+  private static Path writeRun(
+    final Path temp_directory,
+    final List<Path> created,
+    final int[] boxes,
+    final int[] order,
+    final int size)
+    throws IOException
+  {
+    final Path path =
+      BoxExternalSort.createTemporary(temp_directory, created);
+    try (final BoxRecordWriter writer = BoxRecordWriter.open(path)) {
+      for (int index = 0; index < size; ++index) {
+        final int base = order[index] * BoxArrays.STRIDE;
+        writer.write(
+          boxes[base + BoxArrays.MINIMUM_X],
+          boxes[base + BoxArrays.MAXIMUM_X],
+          boxes[base + BoxArrays.MINIMUM_Y],
+          boxes[base + BoxArrays.MAXIMUM_Y]);
+      }
+    }
+    return path;
+  }
+
+  private static void merge(
+    final List<Path> runs,
+    final Path output)
+    throws IOException
+  {
+    /*
+     * Every reader is recorded in "readers" as soon as it is opened, and is
+     * closed only once the merge has finished or failed.
+     */
+
+    final List<BoxRecordReader> readers = new ArrayList<>(runs.size());
+    final PriorityQueue<Run> heap = new PriorityQueue<>(runs.size());
+    @Nullable Throwable failure = null;
+    try {
+      for (int index = 0; index < runs.size(); ++index) {
+        final BoxRecordReader reader = BoxRecordReader.open(runs.get(index));
+        readers.add(reader);
+        final Run run = new Run(reader, index);
+        if (run.advance()) {
+          heap.add(run);
+        }
+      }
+
+      try (final BoxRecordWriter writer = BoxRecordWriter.open(output)) {
+        while (!heap.isEmpty()) {
+          final Run run = heap.poll();
+          final BoxRecordReader r = run.reader;
+          writer.write(r.minimumX(), r.maximumX(), r.minimumY(), r.maximumY());
+          if (run.advance()) {
+            heap.add(run);
+          }
+        }
+      }
+    } catch (final Throwable e) {
+      failure = e;
+      throw e;
+    } finally {
+      BoxExternalSort.closeAll(readers, failure);
+    }
+  }
+
+  private static final class Run implements Comparable<Run>
+  {
+    private final BoxRecordReader reader;
+    private final int index;
+    private long key;
+
+    Run(
+      final BoxRecordReader in_reader,
+      final int in_index)
+    {
+      this.reader = NullCheck.notNull(in_reader);
+      this.index = in_index;
+    }
+
+    boolean advance()
+      throws IOException
+    {
+      final BoxRecordReader r = this.reader;
+      if (r.advance()) {
+        this.key = BoxHilbertCurve.keyOfCenter(
+          r.minimumX(), r.maximumX(), r.minimumY(), r.maximumY());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public int compareTo(
+      final Run other)
+    {
+      final int c = Long.compareUnsigned(this.key, other.key);
+      if (c != 0) {
+        return c;
+      }
+      return Integer.compare(this.index, other.index);
+    }
+  }
+}
@@ -0,0 +1,637 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+/**
+ * <p>An immutable, reusable one-dimensional flexible layout.</p>
+ *
+ * <p>A layout places a sequence of items inside a container box along a
+ * main axis ({@link BoxFlexDirection}). Items are described by packed
+ * {@code int} arrays of {@link #ITEM_STRIDE} values per item: a basis size
+ * along the main axis, a size along the cross axis, a grow weight and a
+ * shrink weight. The resulting boxes are written to a packed box array in
+ * the format of {@link BoxArrays}. Laying out items allocates nothing per
+ * item, and visits each item a constant number of times except on lines that
+ * must shrink, where each item is revisited once per distinct shrink weight
+ * that has to be frozen (see below).</p>
+ *
+ * <p>If wrapping is enabled, items are broken greedily into lines such that
+ * the bases of the items on each line, plus the gaps between them, fit
+ * within the container. Lines are stacked along the cross axis, each as
+ * thick as its thickest item. Without wrapping, all items occupy a single
+ * line as thick as the container.</p>
+ *
+ * <p>Within a line, any space left over is divided between the items in
+ * proportion to their grow weights. If the items overflow the line, the
+ * overflow is taken from the items in proportion to their shrink weights
+ * multiplied by their bases. As in CSS flexbox, an item that would shrink
+ * below zero is frozen at zero, and the overflow that it could not give up
+ * is shared among the remaining items in the same way. Integer remainders
+ * are distributed such that the sizes always sum exactly, unless the items
+ * cannot shrink enough. Any
+ * space still left over is then distributed according to the {@link
+ * BoxFlexJustify} mode, and items are placed within the line according to
+ * the {@link BoxFlexAlign} mode; centering rounds in the same manner as
+ * {@link Boxes#alignCenter(BoxType, BoxType)}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxFlexLayout<S>
+{
+  /**
+   * The number of {@code int} values used to describe each item.
+   */
+
+  public static final int ITEM_STRIDE = 4;
+
+  /**
+   * The offset of the basis size of an item along the main axis.
+   */
+
+  public static final int ITEM_BASIS = 0;
+
+  /**
+   * The offset of the size of an item along the cross axis.
+   */
+
+  public static final int ITEM_CROSS = 1;
+
+  /**
+   * The offset of the grow weight of an item.
+   */
+
+  public static final int ITEM_GROW = 2;
+
+  /**
+   * The offset of the shrink weight of an item.
+   */
+
+  public static final int ITEM_SHRINK = 3;
+
+  private final BoxFlexDirection direction;
+  private final BoxFlexJustify justify;
+  private final BoxFlexAlign align;
+  private final boolean wrap;
+  private final int gap_main;
+  private final int gap_cross;
+
+  private BoxFlexLayout(
+    final Builder<S> in_builder)
+  {
+    this.direction = in_builder.direction;
+    this.justify = in_builder.justify;
+    this.align = in_builder.align;
+    this.wrap = in_builder.wrap;
+    this.gap_main = in_builder.gap_main;
+    this.gap_cross = in_builder.gap_cross;
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new builder for layouts
+   */
+
+  public static <S> Builder<S> builder()
+  {
+    return new Builder<>();
+  }
+
+  /**
+   * Set the values describing the item at {@code index} in the packed item
+   * array {@code items}.
+   *
+   * @param items  The packed items
+   * @param index  The index of the item
+   * @param basis  The basis size along the main axis (must be non-negative)
+   * @param cross  The size along the cross axis (must be non-negative)
+   * @param grow   The grow weight (must be non-negative)
+   * @param shrink The shrink weight (must be non-negative)
+   */
+
+  public static void setItem(
+    final int[] items,
+    final int index,
+    final int basis,
+    final int cross,
+    final int grow,
+    final int shrink)
+  {
+    NullCheck.notNull(items);
+    Assertive.require(basis >= 0, "Basis must be >= 0");
+    Assertive.require(cross >= 0, "Cross size must be >= 0");
+    Assertive.require(grow >= 0, "Grow weight must be >= 0");
+    Assertive.require(shrink >= 0, "Shrink weight must be >= 0");
+
+    final int base = Math.multiplyExact(index, BoxFlexLayout.ITEM_STRIDE);
+    items[base + BoxFlexLayout.ITEM_BASIS] = basis;
+    items[base + BoxFlexLayout.ITEM_CROSS] = cross;
+    items[base + BoxFlexLayout.ITEM_GROW] = grow;
+    items[base + BoxFlexLayout.ITEM_SHRINK] = shrink;
+  }
+
+  /**
+   * Compute the offset of the first item on a line. This is shared with
+   * {@link BoxFlowLayout}.
+   *
+   * @param justify   The justification
+   * @param remaining The free space on the line
+   *
+   * @return The offset of the first item from the start of the line
+   */
+
+  static long justifyOffset(
+    final BoxFlexJustify justify,
+    final long remaining)
+  {
+    switch (justify) {
+      case START:
+      case SPACE_BETWEEN:
+        return 0L;
+      case CENTER:
+        return remaining / 2L;
+      case END:
+        return remaining;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * @return The main axis of the layout
+   */
+
+  public BoxFlexDirection direction()
+  {
+    return this.direction;
+  }
+
+  /**
+   * @return {@code true} iff items may wrap onto multiple lines
+   */
+
+  public boolean wrap()
+  {
+    return this.wrap;
+  }
+
+  /**
+   * Lay out {@code count} items from the packed item array {@code items}
+   * inside {@code container}, writing the box of item {@code i} to box index
+   * {@code i} of the packed box array {@code out}.
+   *
+   * @param container The container
+   * @param items     The packed items
+   * @param count     The number of items
+   * @param out       The packed output boxes
+   *
+   * @return The number of lines used
+   */
+
+  public int layout(
+    final BoxType<S> container,
+    final int[] items,
+    final int count,
+    final int[] out)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(items);
+    Assertive.require(count >= 0, "Count must be >= 0");
+    Assertive.require(
+      (long) items.length >= (long) count * (long) BoxFlexLayout.ITEM_STRIDE,
+      "Item array must be large enough");
+    BoxArrays.checkRange(out, 0, count);
+
+    final boolean row = this.direction == BoxFlexDirection.ROW;
+    final Line line = new Line();
+    line.main_min = row ? container.minimumX() : container.minimumY();
+    line.main_size = row ? container.width() : container.height();
+    line.cross_start = row ? container.minimumY() : container.minimumX();
+    final long cross_size = row ? container.height() : container.width();
+
+    int lines = 0;
+    int first = 0;
+    while (first < count) {
+      this.measure(line, items, first, count);
+      if (!this.wrap) {
+        line.cross_size = cross_size;
+      }
+      this.place(line, items, out);
+      line.cross_start += line.cross_size + (long) this.gap_cross;
+      first = line.last;
+      ++lines;
+    }
+    return lines;
+  }
+
+  /**
+   * Determine the extent of the line starting at {@code first}.
+   */
+
+  private void measure(
+    final Line line,
+    final int[] items,
+    final int first,
+    final int count)
+  {
+    line.first = first;
+    line.used = 0L;
+    line.cross_size = 0L;
+    line.grow = 0L;
+    line.shrink = 0L;
+
+    int last = first;
+    while (last < count) {
+      final int base = last * BoxFlexLayout.ITEM_STRIDE;
+      final long basis = (long) items[base + BoxFlexLayout.ITEM_BASIS];
+      final long cross = (long) items[base + BoxFlexLayout.ITEM_CROSS];
+      final long grow = (long) items[base + BoxFlexLayout.ITEM_GROW];
+      final long shrink = (long) items[base + BoxFlexLayout.ITEM_SHRINK];
+      Assertive.require(
+        basis >= 0L && cross >= 0L && grow >= 0L && shrink >= 0L,
+        "Item values must be >= 0");
+
+      final long gap = last > first ? (long) this.gap_main : 0L;
+      final long used = line.used + gap + basis;
+      if (this.wrap && last > first && used > line.main_size) {
+        break;
+      }
+
+      line.used = used;
+      line.cross_size = Math.max(line.cross_size, cross);
+      line.grow = Math.addExact(line.grow, grow);
+      line.shrink = Math.addExact(line.shrink, Math.multiplyExact(shrink, basis));
+      ++last;
+    }
+    line.last = last;
+  }
+
+  /**
+   * Size the items on a line along the main axis, storing each size
+   * temporarily in the output array, and return the total size.
+   */
+
+  private static long size(
+    final Line line,
+    final int[] items,
+    final int[] out)
+  {
+    final long free = line.main_size - line.used;
+    if (free > 0L && line.grow > 0L) {
+      return BoxFlexLayout.sizeGrow(line, items, out, free);
+    }
+    if (free < 0L && line.shrink > 0L) {
+      return BoxFlexLayout.sizeShrink(line, items, out, -free);
+    }
+
+    long total = 0L;
+    for (int index = line.first; index < line.last; ++index) {
+      final int base = index * BoxFlexLayout.ITEM_STRIDE;
+      final int basis = items[base + BoxFlexLayout.ITEM_BASIS];
+      out[index * BoxArrays.STRIDE] = basis;
+      total += (long) basis;
+    }
+    return total;
+  }
+
+  private static long sizeGrow(
+    final Line line,
+    final int[] items,
+    final int[] out,
+    final long free)
+  {
+    long total = 0L;
+    long weight = 0L;
+    long given = 0L;
+    for (int index = line.first; index < line.last; ++index) {
+      final int base = index * BoxFlexLayout.ITEM_STRIDE;
+      weight += (long) items[base + BoxFlexLayout.ITEM_GROW];
+      final long share = Math.multiplyExact(free, weight) / line.grow;
+      final long size =
+        (long) items[base + BoxFlexLayout.ITEM_BASIS] + share - given;
+      given = share;
+
+      out[index * BoxArrays.STRIDE] = Math.toIntExact(size);
+      total += size;
+    }
+    return total;
+  }
+
+  /**
+   * Shrink the items on a line by {@code overflow} in total. Items whose
+   * shrink weight is at least the limit found by {@link #shrinkLimit(Line,
+   * int[], long)} are frozen at zero, and the rest of the overflow is shared
+   * among the other items in proportion to their shrink weights multiplied
+   * by their bases.
+   */
+
+  private static long sizeShrink(
+    final Line line,
+    final int[] items,
+    final int[] out,
+    final long overflow)
+  {
+    final long limit = BoxFlexLayout.shrinkLimit(line, items, overflow);
+
+    long remaining = overflow;
+    long weights = 0L;
+    for (int index = line.first; index < line.last; ++index) {
+      final int base = index * BoxFlexLayout.ITEM_STRIDE;
+      final long basis = (long) items[base + BoxFlexLayout.ITEM_BASIS];
+      final long shrink = (long) items[base + BoxFlexLayout.ITEM_SHRINK];
+      if (shrink >= limit) {
+        remaining -= basis;
+      } else {
+        weights += shrink * basis;
+      }
+    }
+
+    long total = 0L;
+    long weight = 0L;
+    long given = 0L;
+    for (int index = line.first; index < line.last; ++index) {
+      final int base = index * BoxFlexLayout.ITEM_STRIDE;
+      final long basis = (long) items[base + BoxFlexLayout.ITEM_BASIS];
+      final long shrink = (long) items[base + BoxFlexLayout.ITEM_SHRINK];
+
+      long size = 0L;
+      if (shrink < limit) {
+        size = basis;
+        if (weights > 0L && remaining > 0L) {
+          weight += shrink * basis;
+          final long share = Math.multiplyExact(remaining, weight) / weights;
+          size -= share - given;
+          given = share;
+        }
+      }
+
+      out[index * BoxArrays.STRIDE] = Math.toIntExact(size);
+      total += size;
+    }
+    return total;
+  }
+
+  /**
+   * Find the smallest shrink weight at which items must be frozen at zero.
+   * An item of basis {@code b} and shrink weight {@code s} would be asked to
+   * give up {@code r * s * b / w} of the remaining overflow {@code r}, where
+   * {@code w} is the sum of the shrink weights multiplied by the bases of the
+   * items that are not frozen. That exceeds {@code b} iff {@code r * s > w},
+   * so the items that must be frozen are always those with the largest shrink
+   * weights. Freezing items reduces both {@code r} and {@code w}, so the
+   * search repeats until no further item must be frozen.
+   *
+   * @return The limit, or {@link Long#MAX_VALUE} if no item is frozen
+   */
+
+  private static long shrinkLimit(
+    final Line line,
+    final int[] items,
+    final long overflow)
+  {
+    long limit = Long.MAX_VALUE;
+    while (true) {
+      long remaining = overflow;
+      long weights = 0L;
+      for (int index = line.first; index < line.last; ++index) {
+        final int base = index * BoxFlexLayout.ITEM_STRIDE;
+        final long basis = (long) items[base + BoxFlexLayout.ITEM_BASIS];
+        final long shrink = (long) items[base + BoxFlexLayout.ITEM_SHRINK];
+        if (shrink >= limit) {
+          remaining -= basis;
+        } else {
+          weights += shrink * basis;
+        }
+      }
+      if (remaining <= 0L || weights == 0L) {
+        return limit;
+      }
+
+      long frozen = Long.MAX_VALUE;
+      for (int index = line.first; index < line.last; ++index) {
+        final int base = index * BoxFlexLayout.ITEM_STRIDE;
+        final long basis = (long) items[base + BoxFlexLayout.ITEM_BASIS];
+        final long shrink = (long) items[base + BoxFlexLayout.ITEM_SHRINK];
+        final boolean violates = shrink < limit
+          && basis > 0L
+          && Math.multiplyExact(remaining, shrink) > weights;
+        if (violates) {
+          frozen = Math.min(frozen, shrink);
+        }
+      }
+      if (frozen == Long.MAX_VALUE) {
+        return limit;
+      }
+      limit = frozen;
+    }
+  }
+
+  private void place(
+    final Line line,
+    final int[] items,
+    final int[] out)
+  {
+    final int n = line.last - line.first;
+    final long total = BoxFlexLayout.size(line, items, out);
+    final long gaps = (long) (n - 1) * (long) this.gap_main;
+    final long remaining = line.main_size - total - gaps;
+    final boolean between =
+      this.justify == BoxFlexJustify.SPACE_BETWEEN && n > 1 && remaining > 0L;
+
+    long position =
+      line.main_min + BoxFlexLayout.justifyOffset(this.justify, remaining);
+    long spread = 0L;
+
+    for (int index = line.first; index < line.last; ++index) {
+      final int base = index * BoxFlexLayout.ITEM_STRIDE;
+      final int out_base = index * BoxArrays.STRIDE;
+      final long size = (long) out[out_base];
+
+      if (between) {
+        final long k = (long) (index - line.first);
+        final long share = remaining * k / (long) (n - 1);
+        position += share - spread;
+        spread = share;
+      }
+
+      final long item_cross = (long) items[base + BoxFlexLayout.ITEM_CROSS];
+      final long cross_min;
+      final long cross_max;
+      switch (this.align) {
+        case START:
+          cross_min = line.cross_start;
+          cross_max = cross_min + item_cross;
+          break;
+        case CENTER:
+          cross_min = line.cross_start + line.cross_size / 2L - item_cross / 2L;
+          cross_max = cross_min + item_cross;
+          break;
+        case END:
+          cross_max = line.cross_start + line.cross_size;
+          cross_min = cross_max - item_cross;
+          break;
+        case STRETCH:
+          cross_min = line.cross_start;
+          cross_max = cross_min + line.cross_size;
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+
+      if (this.direction == BoxFlexDirection.ROW) {
+        BoxArrays.setExact(
+          out, out_base, position, position + size, cross_min, cross_max);
+      } else {
+        BoxArrays.setExact(
+          out, out_base, cross_min, cross_max, position, position + size);
+      }
+      position += size + (long) this.gap_main;
+    }
+  }
+
+  /**
+   * The state of the line currently being laid out.
+   */
+
+  private static final class Line
+  {
+    private long main_min;
+    private long main_size;
+    private long cross_start;
+    private long cross_size;
+    private long used;
+    private long grow;
+    private long shrink;
+    private int first;
+    private int last;
+
+    Line()
+    {
+
+    }
+  }
+
+  /**
+   * A mutable builder for layouts. By default, a layout is a non-wrapping
+   * row with no gaps, with items justified to the start and stretched along
+   * the cross axis.
+   *
+   * @param <S> The coordinate space of the boxes
+   */
+
+  public static final class Builder<S>
+  {
+    private BoxFlexDirection direction;
+    private BoxFlexJustify justify;
+    private BoxFlexAlign align;
+    private boolean wrap;
+    private int gap_main;
+    private int gap_cross;
+
+    private Builder()
+    {
+      this.direction = BoxFlexDirection.ROW;
+      this.justify = BoxFlexJustify.START;
+      this.align = BoxFlexAlign.STRETCH;
+    }
+
+    /**
+     * @param in_direction The main axis
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setDirection(
+      final BoxFlexDirection in_direction)
+    {
+      this.direction = NullCheck.notNull(in_direction);
+      return this;
+    }
+
+    /**
+     * @param in_justify The placement of items along the main axis
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setJustify(
+      final BoxFlexJustify in_justify)
+    {
+      this.justify = NullCheck.notNull(in_justify);
+      return this;
+    }
+
+    /**
+     * @param in_align The placement of items along the cross axis
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setAlign(
+      final BoxFlexAlign in_align)
+    {
+      this.align = NullCheck.notNull(in_align);
+      return this;
+    }
+
+    /**
+     * @param in_wrap {@code true} iff items may wrap onto multiple lines
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setWrap(
+      final boolean in_wrap)
+    {
+      this.wrap = in_wrap;
+      return this;
+    }
+
+    /**
+     * @param main  The gap between adjacent items on a line (must be
+     *              non-negative)
+     * @param cross The gap between adjacent lines (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setGap(
+      final int main,
+      final int cross)
+    {
+      Assertive.require(main >= 0, "Main gap must be >= 0");
+      Assertive.require(cross >= 0, "Cross gap must be >= 0");
+      this.gap_main = main;
+      this.gap_cross = cross;
+      return this;
+    }
+
+    /**
+     * @return An immutable layout with the settings specified so far
+     */
+
+    public BoxFlexLayout<S> build()
+    {
+      return new BoxFlexLayout<>(this);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+/**
+ * The vertical placement of items within the line that contains them in a
+ * flow layout.
+ *
+ * @see BoxFlowLayout
+ */
+
+public enum BoxFlowAlign
+{
+  /**
+   * Items are aligned against the top of the line.
+   */
+
+  TOP,
+
+  /**
+   * Items are centered vertically within the line.
+   */
+
+  CENTER,
+
+  /**
+   * Items are aligned against the bottom of the line.
+   */
+
+  BOTTOM,
+
+  /**
+   * The baselines of all items on the line are aligned. The line is tall
+   * enough to hold the greatest ascent and the greatest descent of its
+   * items.
+   */
+
+  BASELINE
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+
+/**
+ * <p>The mutable result of a {@link BoxFlowLayout}, stored as primitive
+ * columns.</p>
+ *
+ * <p>Each edge of the item boxes is held in a separate {@code int} array,
+ * and each line records the index of its first item, its vertical extent and
+ * the position of its baseline. The arrays grow as required and are reused
+ * across layouts, so repeatedly laying out the same number of items
+ * allocates nothing. The columns also remember the layout that produced them
+ * and the edges of the container it was given (a copy, so a container that is
+ * mutated afterwards is not mistaken for the original), which allows {@link BoxFlowLayout#reflow(BoxType, int[],
+ * int, int, BoxFlowColumns)} to keep the lines that are unaffected by a
+ * change.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxFlowColumns<S>
+{
+  private int[] x_min;
+  private int[] x_max;
+  private int[] y_min;
+  private int[] y_max;
+  private int[] line_first;
+  private int[] line_y_min;
+  private int[] line_y_max;
+  private int[] line_baseline;
+  private int count;
+  private int lines;
+  private @Nullable Object layout;
+  private int container_x_min;
+  private int container_x_max;
+  private int container_y_min;
+  private int container_y_max;
+
+  private BoxFlowColumns()
+  {
+    this.x_min = new int[16];
+    this.x_max = new int[16];
+    this.y_min = new int[16];
+    this.y_max = new int[16];
+    this.line_first = new int[4];
+    this.line_y_min = new int[4];
+    this.line_y_max = new int[4];
+    this.line_baseline = new int[4];
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new empty set of columns
+   */
+
+  public static <S> BoxFlowColumns<S> create()
+  {
+    return new BoxFlowColumns<>();
+  }
+
+  private void checkItem(
+    final int index)
+  {
+    Assertive.require(index >= 0 && index < this.count, "Item must exist");
+  }
+
+  private void checkLine(
+    final int line)
+  {
+    Assertive.require(line >= 0 && line < this.lines, "Line must exist");
+  }
+
+  /**
+   * @return The number of items laid out
+   */
+
+  public int count()
+  {
+    return this.count;
+  }
+
+  /**
+   * @return The number of lines
+   */
+
+  public int lineCount()
+  {
+    return this.lines;
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The minimum X value of the box of the item
+   */
+
+  public int minimumX(
+    final int index)
+  {
+    this.checkItem(index);
+    return this.x_min[index];
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The maximum X value of the box of the item
+   */
+
+  public int maximumX(
+    final int index)
+  {
+    this.checkItem(index);
+    return this.x_max[index];
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The minimum Y value of the box of the item
+   */
+
+  public int minimumY(
+    final int index)
+  {
+    this.checkItem(index);
+    return this.y_min[index];
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The maximum Y value of the box of the item
+   */
+
+  public int maximumY(
+    final int index)
+  {
+    this.checkItem(index);
+    return this.y_max[index];
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The box of the item
+   */
+
+  public BoxType<S> box(
+    final int index)
+  {
+    this.checkItem(index);
+    return Box.of(
+      this.x_min[index], this.x_max[index], this.y_min[index], this.y_max[index]);
+  }
+
+  /**
+   * @param line The line
+   *
+   * @return The index of the first item on the line
+   */
+
+  public int lineFirst(
+    final int line)
+  {
+    this.checkLine(line);
+    return this.line_first[line];
+  }
+
+  /**
+   * @param line The line
+   *
+   * @return The index one past the last item on the line
+   */
+
+  public int lineEnd(
+    final int line)
+  {
+    this.checkLine(line);
+    return line + 1 < this.lines ? this.line_first[line + 1] : this.count;
+  }
+
+  /**
+   * @param line The line
+   *
+   * @return The minimum Y value of the line
+   */
+
+  public int lineMinimumY(
+    final int line)
+  {
+    this.checkLine(line);
+    return this.line_y_min[line];
+  }
+
+  /**
+   * @param line The line
+   *
+   * @return The maximum Y value of the line
+   */
+
+  public int lineMaximumY(
+    final int line)
+  {
+    this.checkLine(line);
+    return this.line_y_max[line];
+  }
+
+  /**
+   * @param line The line
+   *
+   * @return The Y value of the baseline of the line
+   */
+
+  public int lineBaseline(
+    final int line)
+  {
+    this.checkLine(line);
+    return this.line_baseline[line];
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The line containing the item
+   */
+
+  public int lineOf(
+    final int index)
+  {
+    this.checkItem(index);
+
+    int low = 0;
+    int high = this.lines - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (this.line_first[middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Write the boxes of all items to {@code out} in the packed form described
+   * by {@link BoxArrays}.
+   *
+   * @param out The output array
+   */
+
+  public void pack(
+    final int[] out)
+  {
+    BoxArrays.checkRange(out, 0, this.count);
+    for (int index = 0; index < this.count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      out[base + BoxArrays.MINIMUM_X] = this.x_min[index];
+      out[base + BoxArrays.MAXIMUM_X] = this.x_max[index];
+      out[base + BoxArrays.MINIMUM_Y] = this.y_min[index];
+      out[base + BoxArrays.MAXIMUM_Y] = this.y_max[index];
+    }
+  }
+
+  boolean producedBy(
+    final Object in_layout,
+    final BoxType<S> in_container)
+  {
+    if (this.layout != in_layout) {
+      return false;
+    }
+    return in_container.minimumX() == this.container_x_min
+           && in_container.maximumX() == this.container_x_max
+           && in_container.minimumY() == this.container_y_min
+           && in_container.maximumY() == this.container_y_max;
+  }
+
+  void begin(
+    final Object in_layout,
+    final BoxType<S> in_container,
+    final int in_count,
+    final int in_line)
+  {
+    this.layout = NullCheck.notNull(in_layout);
+    NullCheck.notNull(in_container);
+    this.container_x_min = in_container.minimumX();
+    this.container_x_max = in_container.maximumX();
+    this.container_y_min = in_container.minimumY();
+    this.container_y_max = in_container.maximumY();
+    this.count = in_count;
+    this.lines = in_line;
+
+    if (in_count > this.x_min.length) {
+      final int capacity = Math.max(in_count, this.x_min.length * 2);
+      this.x_min = Arrays.copyOf(this.x_min, capacity);
+      this.x_max = Arrays.copyOf(this.x_max, capacity);
+      this.y_min = Arrays.copyOf(this.y_min, capacity);
+      this.y_max = Arrays.copyOf(this.y_max, capacity);
+    }
+  }
+
+  void setItem(
+    final int index,
+    final long in_x_min,
+    final long in_x_max,
+    final long in_y_min,
+    final long in_y_max)
+  {
+    this.x_min[index] = Math.toIntExact(in_x_min);
+    this.x_max[index] = Math.toIntExact(in_x_max);
+    this.y_min[index] = Math.toIntExact(in_y_min);
+    this.y_max[index] = Math.toIntExact(in_y_max);
+  }
+
+  void addLine(
+    final int first,
+    final long in_y_min,
+    final long in_y_max,
+    final long baseline)
+  {
+    if (this.lines == this.line_first.length) {
+      final int capacity = Math.multiplyExact(this.lines, 2);
+      this.line_first = Arrays.copyOf(this.line_first, capacity);
+      this.line_y_min = Arrays.copyOf(this.line_y_min, capacity);
+      this.line_y_max = Arrays.copyOf(this.line_y_max, capacity);
+      this.line_baseline = Arrays.copyOf(this.line_baseline, capacity);
+    }
+    this.line_first[this.lines] = first;
+    this.line_y_min[this.lines] = Math.toIntExact(in_y_min);
+    this.line_y_max[this.lines] = Math.toIntExact(in_y_max);
+    this.line_baseline[this.lines] = Math.toIntExact(baseline);
+    ++this.lines;
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+/**
+ * <p>An immutable, reusable flow layout that wraps items into lines.</p>
+ *
+ * <p>Items are described by packed {@code int} arrays of {@link
+ * #ITEM_STRIDE} values per item: a width, a height and a baseline (the
+ * distance from the top of the item to its baseline). Items are placed left
+ * to right and broken greedily into lines such that the widths of the items
+ * on each line, plus the gaps between them, fit within the width of the
+ * container; an item wider than the container occupies a line of its own.
+ * Lines are stacked downwards from the top of the container. Within a line,
+ * items are placed horizontally according to the {@link BoxFlexJustify} mode
+ * and vertically according to the {@link BoxFlowAlign} mode.</p>
+ *
+ * <p>Results are written to a {@link BoxFlowColumns} value. Because each
+ * line depends only on the items it contains and the item following it, a
+ * change to the items requires only the lines from the one preceding the
+ * first changed item onwards to be recomputed; see {@link #reflow(BoxType,
+ * int[], int, int, BoxFlowColumns)}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxFlowLayout<S>
+{
+  /**
+   * The number of {@code int} values used to describe each item.
+   */
+
+  public static final int ITEM_STRIDE = 3;
+
+  /**
+   * The offset of the width of an item.
+   */
+
+  public static final int ITEM_WIDTH = 0;
+
+  /**
+   * The offset of the height of an item.
+   */
+
+  public static final int ITEM_HEIGHT = 1;
+
+  /**
+   * The offset of the baseline of an item, relative to the top of the item.
+   */
+
+  public static final int ITEM_BASELINE = 2;
+
+  private final BoxFlexJustify justify;
+  private final BoxFlowAlign align;
+  private final int gap_item;
+  private final int gap_line;
+
+  private BoxFlowLayout(
+    final Builder<S> in_builder)
+  {
+    this.justify = in_builder.justify;
+    this.align = in_builder.align;
+    this.gap_item = in_builder.gap_item;
+    this.gap_line = in_builder.gap_line;
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new builder for layouts
+   */
+
+  public static <S> Builder<S> builder()
+  {
+    return new Builder<>();
+  }
+
+  /**
+   * Set the values describing the item at {@code index} in the packed item
+   * array {@code items}.
+   *
+   * @param items    The packed items
+   * @param index    The index of the item
+   * @param width    The width (must be non-negative)
+   * @param height   The height (must be non-negative)
+   * @param baseline The baseline (must be in {@code [0, height]})
+   */
+
+  public static void setItem(
+    final int[] items,
+    final int index,
+    final int width,
+    final int height,
+    final int baseline)
+  {
+    NullCheck.notNull(items);
+    Assertive.require(width >= 0, "Width must be >= 0");
+    Assertive.require(height >= 0, "Height must be >= 0");
+    Assertive.require(
+      baseline >= 0 && baseline <= height, "Baseline must be in [0, height]");
+
+    final int base = Math.multiplyExact(index, BoxFlowLayout.ITEM_STRIDE);
+    items[base + BoxFlowLayout.ITEM_WIDTH] = width;
+    items[base + BoxFlowLayout.ITEM_HEIGHT] = height;
+    items[base + BoxFlowLayout.ITEM_BASELINE] = baseline;
+  }
+
+  private static void checkItems(
+    final int[] items,
+    final int count)
+  {
+    NullCheck.notNull(items);
+    Assertive.require(count >= 0, "Count must be >= 0");
+    Assertive.require(
+      (long) items.length >= (long) count * (long) BoxFlowLayout.ITEM_STRIDE,
+      "Item array must be large enough");
+  }
+
+  /**
+   * Lay out {@code count} items from the packed item array {@code items}
+   * inside {@code container}, replacing the contents of {@code out}.
+   *
+   * @param container The container
+   * @param items     The packed items
+   * @param count     The number of items
+   * @param out       The output columns
+   *
+   * @return The number of lines used
+   */
+
+  public int layout(
+    final BoxType<S> container,
+    final int[] items,
+    final int count,
+    final BoxFlowColumns<S> out)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(out);
+    BoxFlowLayout.checkItems(items, count);
+
+    out.begin(this, container, count, 0);
+    this.flow(container, items, 0, (long) container.minimumY(), out);
+    return out.lineCount();
+  }
+
+  /**
+   * Update {@code out}, which must hold the result of an earlier layout, for
+   * a new sequence of items in which no item before {@code first_changed}
+   * differs from the items used for the earlier layout. Lines that cannot be
+   * affected by the change are kept, and layout resumes at the line
+   * containing the item preceding {@code first_changed}. If {@code out} was
+   * not produced by this layout in the same container, all items are laid
+   * out.
+   *
+   * @param container     The container
+   * @param items         The packed items
+   * @param count         The number of items
+   * @param first_changed The index of the first item that changed, was
+   *                      inserted or was removed
+   * @param out           The output columns
+   *
+   * @return The index of the first item that was laid out again
+   */
+
+  public int reflow(
+    final BoxType<S> container,
+    final int[] items,
+    final int count,
+    final int first_changed,
+    final BoxFlowColumns<S> out)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(out);
+    BoxFlowLayout.checkItems(items, count);
+    Assertive.require(first_changed >= 0, "First changed must be >= 0");
+
+    final int kept = Math.min(first_changed, Math.min(count, out.count()));
+    if (kept == 0 || !out.producedBy(this, container)) {
+      this.layout(container, items, count, out);
+      return 0;
+    }
+
+    /*
+     * The line containing the item before the first change may now be able
+     * to take the changed item, so it must be laid out again.
+     */
+
+    final int line = out.lineOf(kept - 1);
+    final int first = out.lineFirst(line);
+    final long y = (long) out.lineMinimumY(line);
+    out.begin(this, container, count, line);
+    this.flow(container, items, first, y, out);
+    return first;
+  }
+
+  private void flow(
+    final BoxType<S> container,
+    final int[] items,
+    final int start,
+    final long start_y,
+    final BoxFlowColumns<S> out)
+  {
+    final int count = out.count();
+    final long width = (long) container.width();
+    long y = start_y;
+    int first = start;
+
+    while (first < count) {
+
+      /*
+       * Measure the line.
+       */
+
+      long used = 0L;
+      long ascent = 0L;
+      long descent = 0L;
+      long tallest = 0L;
+      int last = first;
+      while (last < count) {
+        final int base = last * BoxFlowLayout.ITEM_STRIDE;
+        final long item_width = (long) items[base + BoxFlowLayout.ITEM_WIDTH];
+        final long item_height = (long) items[base + BoxFlowLayout.ITEM_HEIGHT];
+        final long baseline = (long) items[base + BoxFlowLayout.ITEM_BASELINE];
+        Assertive.require(
+          item_width >= 0L && baseline >= 0L && baseline <= item_height,
+          "Item values must be valid");
+
+        final long gap = last > first ? (long) this.gap_item : 0L;
+        final long next = used + gap + item_width;
+        if (last > first && next > width) {
+          break;
+        }
+
+        used = next;
+        ascent = Math.max(ascent, baseline);
+        descent = Math.max(descent, item_height - baseline);
+        tallest = Math.max(tallest, item_height);
+        ++last;
+      }
+
+      final long height =
+        this.align == BoxFlowAlign.BASELINE ? ascent + descent : tallest;
+      this.place(container, items, first, last, width - used, y, height, ascent, out);
+      out.addLine(first, y, y + height, y + ascent);
+
+      y += height + (long) this.gap_line;
+      first = last;
+    }
+  }
+
+  private void place(
+    final BoxType<S> container,
+    final int[] items,
+    final int first,
+    final int last,
+    final long remaining,
+    final long line_y,
+    final long line_height,
+    final long line_ascent,
+    final BoxFlowColumns<S> out)
+  {
+    final int n = last - first;
+    final boolean between =
+      this.justify == BoxFlexJustify.SPACE_BETWEEN && n > 1 && remaining > 0L;
+
+    long x = (long) container.minimumX()
+      + BoxFlexLayout.justifyOffset(this.justify, Math.max(0L, remaining));
+    long spread = 0L;
+
+    for (int index = first; index < last; ++index) {
+      final int base = index * BoxFlowLayout.ITEM_STRIDE;
+      final long item_width = (long) items[base + BoxFlowLayout.ITEM_WIDTH];
+      final long item_height = (long) items[base + BoxFlowLayout.ITEM_HEIGHT];
+      final long baseline = (long) items[base + BoxFlowLayout.ITEM_BASELINE];
+
+      if (between) {
+        final long k = (long) (index - first);
+        final long share = remaining * k / (long) (n - 1);
+        x += share - spread;
+        spread = share;
+      }
+
+      final long y;
+      switch (this.align) {
+        case TOP:
+          y = line_y;
+          break;
+        case CENTER:
+          y = line_y + line_height / 2L - item_height / 2L;
+          break;
+        case BOTTOM:
+          y = line_y + line_height - item_height;
+          break;
+        case BASELINE:
+          y = line_y + line_ascent - baseline;
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+
+      out.setItem(index, x, x + item_width, y, y + item_height);
+      x += item_width + (long) this.gap_item;
+    }
+  }
+
+  /**
+   * A mutable builder for layouts. By default, a layout has no gaps, and
+   * items are justified to the start of each line and aligned against its
+   * top.
+   *
+   * @param <S> The coordinate space of the boxes
+   */
+
+  public static final class Builder<S>
+  {
+    private BoxFlexJustify justify;
+    private BoxFlowAlign align;
+    private int gap_item;
+    private int gap_line;
+
+    private Builder()
+    {
+      this.justify = BoxFlexJustify.START;
+      this.align = BoxFlowAlign.TOP;
+    }
+
+    /**
+     * @param in_justify The horizontal placement of items within each line
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setJustify(
+      final BoxFlexJustify in_justify)
+    {
+      this.justify = NullCheck.notNull(in_justify);
+      return this;
+    }
+
+    /**
+     * @param in_align The vertical placement of items within each line
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setAlign(
+      final BoxFlowAlign in_align)
+    {
+      this.align = NullCheck.notNull(in_align);
+      return this;
+    }
+
+    /**
+     * @param item The gap between adjacent items on a line (must be
+     *             non-negative)
+     * @param line The gap between adjacent lines (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setGap(
+      final int item,
+      final int line)
+    {
+      Assertive.require(item >= 0, "Item gap must be >= 0");
+      Assertive.require(line >= 0, "Line gap must be >= 0");
+      this.gap_item = item;
+      this.gap_line = line;
+      return this;
+    }
+
+    /**
+     * @return An immutable layout with the settings specified so far
+     */
+
+    public BoxFlowLayout<S> build()
+    {
+      return new BoxFlowLayout<>(this);
+    }
+  }
+}
@@ -0,0 +1,806 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+
+/**
+ * <p>An immutable, reusable two-dimensional grid layout.</p>
+ *
+ * <p>A grid consists of columns and rows (collectively, <i>tracks</i>), each
+ * of which is sized in one of three ways:</p>
+ *
+ * <ul>
+ * <li>A <i>fixed</i> track has a given size.</li>
+ * <li>A <i>content</i> track is as large as the largest item placed in it.
+ * Items spanning several tracks enlarge the content tracks that they span,
+ * evenly, only if those tracks are not already large enough.</li>
+ * <li>A <i>fraction</i> track receives a share of the space left over by the
+ * other tracks and the gaps, in proportion to its weight.</li>
+ * </ul>
+ *
+ * <p>Items are described by packed {@code int} arrays of {@link #ITEM_STRIDE}
+ * values per item, giving the row and column of the top-left cell of the
+ * item, the number of rows and columns spanned, the size of the item, and
+ * its alignment. Once the tracks are sized, the area of an item is computed
+ * in constant time from the track offsets. The area is then hollowed out by
+ * the cell padding with the semantics of {@link Boxes#hollowOut(BoxType, int,
+ * int, int, int)}, and the item either fills the result or is aligned within
+ * it with the semantics of the {@code align*} functions in {@link Boxes}.
+ * Results are written to a packed box array in the format of {@link
+ * BoxArrays}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxGridLayout<S>
+{
+  /**
+   * The number of {@code int} values used to describe each item.
+   */
+
+  public static final int ITEM_STRIDE = 7;
+
+  /**
+   * The offset of the index of the first row of an item.
+   */
+
+  public static final int ITEM_ROW = 0;
+
+  /**
+   * The offset of the index of the first column of an item.
+   */
+
+  public static final int ITEM_COLUMN = 1;
+
+  /**
+   * The offset of the number of rows spanned by an item.
+   */
+
+  public static final int ITEM_ROW_SPAN = 2;
+
+  /**
+   * The offset of the number of columns spanned by an item.
+   */
+
+  public static final int ITEM_COLUMN_SPAN = 3;
+
+  /**
+   * The offset of the width of an item.
+   */
+
+  public static final int ITEM_WIDTH = 4;
+
+  /**
+   * The offset of the height of an item.
+   */
+
+  public static final int ITEM_HEIGHT = 5;
+
+  /**
+   * The offset of the alignment of an item: either {@link #ALIGN_FILL} or the
+   * ordinal of a {@link BoxAlignment}.
+   */
+
+  public static final int ITEM_ALIGN = 6;
+
+  /**
+   * The alignment value indicating that an item fills its area.
+   */
+
+  public static final int ALIGN_FILL = -1;
+
+  private static final int TRACK_FIXED = 0;
+  private static final int TRACK_FRACTION = 1;
+  private static final int TRACK_CONTENT = 2;
+
+  private static final BoxAlignment[] ALIGNMENTS = BoxAlignment.values();
+
+  private final int[] column_kinds;
+  private final int[] column_values;
+  private final int[] row_kinds;
+  private final int[] row_values;
+  private final int gap_column;
+  private final int gap_row;
+  private final int pad_left;
+  private final int pad_right;
+  private final int pad_top;
+  private final int pad_bottom;
+
+  private BoxGridLayout(
+    final Builder<S> in_builder)
+  {
+    this.column_kinds =
+      Arrays.copyOf(in_builder.column_kinds, in_builder.columns);
+    this.column_values =
+      Arrays.copyOf(in_builder.column_values, in_builder.columns);
+    this.row_kinds = Arrays.copyOf(in_builder.row_kinds, in_builder.rows);
+    this.row_values = Arrays.copyOf(in_builder.row_values, in_builder.rows);
+    this.gap_column = in_builder.gap_column;
+    this.gap_row = in_builder.gap_row;
+    this.pad_left = in_builder.pad_left;
+    this.pad_right = in_builder.pad_right;
+    this.pad_top = in_builder.pad_top;
+    this.pad_bottom = in_builder.pad_bottom;
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new builder for layouts
+   */
+
+  public static <S> Builder<S> builder()
+  {
+    return new Builder<>();
+  }
+
+  /**
+   * Set the values describing the item at {@code index} in the packed item
+   * array {@code items}. The item fills its area.
+   *
+   * @param items       The packed items
+   * @param index       The index of the item
+   * @param row         The first row of the item
+   * @param column      The first column of the item
+   * @param row_span    The number of rows spanned (must be positive)
+   * @param column_span The number of columns spanned (must be positive)
+   * @param width       The width of the item (must be non-negative)
+   * @param height      The height of the item (must be non-negative)
+   */
+
+  public static void setItem(
+    final int[] items,
+    final int index,
+    final int row,
+    final int column,
+    final int row_span,
+    final int column_span,
+    final int width,
+    final int height)
+  {
+    NullCheck.notNull(items);
+    Assertive.require(row >= 0, "Row must be >= 0");
+    Assertive.require(column >= 0, "Column must be >= 0");
+    Assertive.require(row_span >= 1, "Row span must be >= 1");
+    Assertive.require(column_span >= 1, "Column span must be >= 1");
+    Assertive.require(width >= 0, "Width must be >= 0");
+    Assertive.require(height >= 0, "Height must be >= 0");
+
+    final int base = Math.multiplyExact(index, BoxGridLayout.ITEM_STRIDE);
+    items[base + BoxGridLayout.ITEM_ROW] = row;
+    items[base + BoxGridLayout.ITEM_COLUMN] = column;
+    items[base + BoxGridLayout.ITEM_ROW_SPAN] = row_span;
+    items[base + BoxGridLayout.ITEM_COLUMN_SPAN] = column_span;
+    items[base + BoxGridLayout.ITEM_WIDTH] = width;
+    items[base + BoxGridLayout.ITEM_HEIGHT] = height;
+    items[base + BoxGridLayout.ITEM_ALIGN] = BoxGridLayout.ALIGN_FILL;
+  }
+
+  /**
+   * Set the alignment of the item at {@code index} in the packed item array
+   * {@code items}. The item will be aligned within its area instead of
+   * filling it.
+   *
+   * @param items     The packed items
+   * @param index     The index of the item
+   * @param alignment The alignment
+   */
+
+  public static void setItemAlignment(
+    final int[] items,
+    final int index,
+    final BoxAlignment alignment)
+  {
+    NullCheck.notNull(items);
+    NullCheck.notNull(alignment);
+
+    final int base = Math.multiplyExact(index, BoxGridLayout.ITEM_STRIDE);
+    items[base + BoxGridLayout.ITEM_ALIGN] = alignment.ordinal();
+  }
+
+  /**
+   * @return The number of columns
+   */
+
+  public int columns()
+  {
+    return this.column_kinds.length;
+  }
+
+  /**
+   * @return The number of rows
+   */
+
+  public int rows()
+  {
+    return this.row_kinds.length;
+  }
+
+  private static void checkItem(
+    final int[] items,
+    final int base,
+    final int rows,
+    final int columns)
+  {
+    final int row = items[base + BoxGridLayout.ITEM_ROW];
+    final int column = items[base + BoxGridLayout.ITEM_COLUMN];
+    final int row_span = items[base + BoxGridLayout.ITEM_ROW_SPAN];
+    final int column_span = items[base + BoxGridLayout.ITEM_COLUMN_SPAN];
+    final int align = items[base + BoxGridLayout.ITEM_ALIGN];
+
+    Assertive.require(
+      row >= 0 && row_span >= 1 && (long) row + (long) row_span <= (long) rows,
+      "Item rows must lie within the grid");
+    Assertive.require(
+      column >= 0
+        && column_span >= 1
+        && (long) column + (long) column_span <= (long) columns,
+      "Item columns must lie within the grid");
+    Assertive.require(
+      items[base + BoxGridLayout.ITEM_WIDTH] >= 0
+        && items[base + BoxGridLayout.ITEM_HEIGHT] >= 0,
+      "Item sizes must be >= 0");
+    Assertive.require(
+      align >= BoxGridLayout.ALIGN_FILL
+        && align < BoxGridLayout.ALIGNMENTS.length,
+      "Item alignment must be valid");
+  }
+
+  /**
+   * Size the tracks along one axis, writing the size of each track to
+   * {@code sizes} and its offset from the start of the container to {@code
+   * offsets}.
+   */
+
+  private static void sizeTracks(
+    final int[] kinds,
+    final int[] values,
+    final Axis axis,
+    final long available,
+    final long[] sizes,
+    final long[] offsets)
+  {
+    final int tracks = kinds.length;
+    long weights = 0L;
+    for (int track = 0; track < tracks; ++track) {
+      switch (kinds[track]) {
+        case TRACK_FIXED:
+          sizes[track] = (long) values[track];
+          break;
+        case TRACK_FRACTION:
+          sizes[track] = 0L;
+          weights += (long) values[track];
+          break;
+        case TRACK_CONTENT:
+          sizes[track] = 0L;
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+    }
+
+    axis.sizeContentSingle(kinds, sizes);
+    axis.sizeContentSpanning(kinds, sizes);
+
+    long used = (long) Math.max(0, tracks - 1) * axis.gap;
+    for (int track = 0; track < tracks; ++track) {
+      used += sizes[track];
+    }
+
+    final long free = Math.max(0L, available - used);
+    if (weights > 0L) {
+      long weight = 0L;
+      long given = 0L;
+      for (int track = 0; track < tracks; ++track) {
+        if (kinds[track] == BoxGridLayout.TRACK_FRACTION) {
+          weight += (long) values[track];
+          final long share = free * weight / weights;
+          sizes[track] = share - given;
+          given = share;
+        }
+      }
+    }
+
+    long offset = 0L;
+    for (int track = 0; track < tracks; ++track) {
+      offsets[track] = offset;
+      offset += sizes[track] + axis.gap;
+    }
+  }
+
+  /**
+   * Lay out {@code count} items from the packed item array {@code items}
+   * inside {@code container}, writing the box of item {@code i} to box index
+   * {@code i} of the packed box array {@code out}.
+   *
+   * @param container The container
+   * @param items     The packed items
+   * @param count     The number of items
+   * @param out       The packed output boxes
+   */
+
+  public void layout(
+    final BoxType<S> container,
+    final int[] items,
+    final int count,
+    final int[] out)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(items);
+    Assertive.require(count >= 0, "Count must be >= 0");
+    Assertive.require(
+      (long) items.length >= (long) count * (long) BoxGridLayout.ITEM_STRIDE,
+      "Item array must be large enough");
+    BoxArrays.checkRange(out, 0, count);
+
+    final int columns = this.columns();
+    final int rows = this.rows();
+    for (int index = 0; index < count; ++index) {
+      BoxGridLayout.checkItem(
+        items, index * BoxGridLayout.ITEM_STRIDE, rows, columns);
+    }
+
+    final long[] column_sizes = new long[columns];
+    final long[] column_offsets = new long[columns];
+    final long[] row_sizes = new long[rows];
+    final long[] row_offsets = new long[rows];
+
+    final Axis x_axis = new Axis(
+      items,
+      count,
+      BoxGridLayout.ITEM_COLUMN,
+      BoxGridLayout.ITEM_COLUMN_SPAN,
+      BoxGridLayout.ITEM_WIDTH,
+      (long) this.gap_column,
+      (long) this.pad_left + (long) this.pad_right);
+    final Axis y_axis = new Axis(
+      items,
+      count,
+      BoxGridLayout.ITEM_ROW,
+      BoxGridLayout.ITEM_ROW_SPAN,
+      BoxGridLayout.ITEM_HEIGHT,
+      (long) this.gap_row,
+      (long) this.pad_top + (long) this.pad_bottom);
+
+    BoxGridLayout.sizeTracks(
+      this.column_kinds,
+      this.column_values,
+      x_axis,
+      (long) container.width(),
+      column_sizes,
+      column_offsets);
+    BoxGridLayout.sizeTracks(
+      this.row_kinds,
+      this.row_values,
+      y_axis,
+      (long) container.height(),
+      row_sizes,
+      row_offsets);
+
+    final long x0 = (long) container.minimumX();
+    final long y0 = (long) container.minimumY();
+    for (int index = 0; index < count; ++index) {
+      final int base = index * BoxGridLayout.ITEM_STRIDE;
+      final int column = items[base + BoxGridLayout.ITEM_COLUMN];
+      final int column_last =
+        column + items[base + BoxGridLayout.ITEM_COLUMN_SPAN] - 1;
+      final int row = items[base + BoxGridLayout.ITEM_ROW];
+      final int row_last = row + items[base + BoxGridLayout.ITEM_ROW_SPAN] - 1;
+
+      final long area_x_min = x0 + column_offsets[column];
+      final long area_x_max =
+        x0 + column_offsets[column_last] + column_sizes[column_last];
+      final long area_y_min = y0 + row_offsets[row];
+      final long area_y_max =
+        y0 + row_offsets[row_last] + row_sizes[row_last];
+
+      /*
+       * Hollow out the area by the padding, clamping to the area as
+       * Boxes.hollowOut does.
+       */
+
+      final long x_min = BoxGridLayout.clamp(
+        area_x_min + (long) this.pad_left, area_x_min, area_x_max);
+      final long x_max = Math.max(x_min, BoxGridLayout.clamp(
+        area_x_max - (long) this.pad_right, area_x_min, area_x_max));
+      final long y_min = BoxGridLayout.clamp(
+        area_y_min + (long) this.pad_top, area_y_min, area_y_max);
+      final long y_max = Math.max(y_min, BoxGridLayout.clamp(
+        area_y_max - (long) this.pad_bottom, area_y_min, area_y_max));
+
+      final int out_base = index * BoxArrays.STRIDE;
+      final int align = items[base + BoxGridLayout.ITEM_ALIGN];
+      if (align == BoxGridLayout.ALIGN_FILL) {
+        BoxArrays.setExact(out, out_base, x_min, x_max, y_min, y_max);
+      } else {
+        final BoxAlignment alignment = BoxGridLayout.ALIGNMENTS[align];
+        final long width = (long) items[base + BoxGridLayout.ITEM_WIDTH];
+        final long height = (long) items[base + BoxGridLayout.ITEM_HEIGHT];
+        final long ax = BoxGridLayout.alignX(alignment, x_min, x_max, width);
+        final long ay = BoxGridLayout.alignY(alignment, y_min, y_max, height);
+        BoxArrays.setExact(out, out_base, ax, ax + width, ay, ay + height);
+      }
+    }
+  }
+
+  private static long clamp(
+    final long x,
+    final long min,
+    final long max)
+  {
+    return Math.max(Math.min(x, max), min);
+  }
+
+  private static long alignStart(
+    final int mode,
+    final long min,
+    final long max,
+    final long size)
+  {
+    switch (mode) {
+      case 0:
+        return min;
+      case 1:
+        return min + (max - min) / 2L - size / 2L;
+      default:
+        return max - size;
+    }
+  }
+
+  private static long alignX(
+    final BoxAlignment alignment,
+    final long min,
+    final long max,
+    final long size)
+  {
+    switch (alignment) {
+      case TOP_LEFT:
+      case CENTER_LEFT:
+      case BOTTOM_LEFT:
+        return BoxGridLayout.alignStart(0, min, max, size);
+      case TOP_CENTER:
+      case CENTER:
+      case BOTTOM_CENTER:
+        return BoxGridLayout.alignStart(1, min, max, size);
+      case TOP_RIGHT:
+      case CENTER_RIGHT:
+      case BOTTOM_RIGHT:
+        return BoxGridLayout.alignStart(2, min, max, size);
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private static long alignY(
+    final BoxAlignment alignment,
+    final long min,
+    final long max,
+    final long size)
+  {
+    switch (alignment) {
+      case TOP_LEFT:
+      case TOP_CENTER:
+      case TOP_RIGHT:
+        return BoxGridLayout.alignStart(0, min, max, size);
+      case CENTER_LEFT:
+      case CENTER:
+      case CENTER_RIGHT:
+        return BoxGridLayout.alignStart(1, min, max, size);
+      case BOTTOM_LEFT:
+      case BOTTOM_CENTER:
+      case BOTTOM_RIGHT:
+        return BoxGridLayout.alignStart(2, min, max, size);
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * The item fields and spacing relevant to one axis of the grid.
+   */
+
+  private static final class Axis
+  {
+    private final int[] items;
+    private final int count;
+    private final int start;
+    private final int span;
+    private final int size;
+    private final long gap;
+    private final long padding;
+
+    Axis(
+      final int[] in_items,
+      final int in_count,
+      final int in_start,
+      final int in_span,
+      final int in_size,
+      final long in_gap,
+      final long in_padding)
+    {
+      this.items = in_items;
+      this.count = in_count;
+      this.start = in_start;
+      this.span = in_span;
+      this.size = in_size;
+      this.gap = in_gap;
+      this.padding = in_padding;
+    }
+
+    private long needed(
+      final int base)
+    {
+      return (long) this.items[base + this.size] + this.padding;
+    }
+
+    void sizeContentSingle(
+      final int[] kinds,
+      final long[] sizes)
+    {
+      for (int index = 0; index < this.count; ++index) {
+        final int base = index * BoxGridLayout.ITEM_STRIDE;
+        final int track = this.items[base + this.start];
+        if (this.items[base + this.span] == 1
+          && kinds[track] == BoxGridLayout.TRACK_CONTENT) {
+          sizes[track] = Math.max(sizes[track], this.needed(base));
+        }
+      }
+    }
+
+    void sizeContentSpanning(
+      final int[] kinds,
+      final long[] sizes)
+    {
+      for (int index = 0; index < this.count; ++index) {
+        final int base = index * BoxGridLayout.ITEM_STRIDE;
+        final int span_count = this.items[base + this.span];
+        if (span_count == 1) {
+          continue;
+        }
+
+        final int first = this.items[base + this.start];
+        final int last = first + span_count;
+        long current = (long) (span_count - 1) * this.gap;
+        int content = 0;
+        for (int track = first; track < last; ++track) {
+          current += sizes[track];
+          if (kinds[track] == BoxGridLayout.TRACK_CONTENT) {
+            ++content;
+          }
+        }
+
+        final long deficit = this.needed(base) - current;
+        if (deficit > 0L && content > 0) {
+          long given = 0L;
+          int seen = 0;
+          for (int track = first; track < last; ++track) {
+            if (kinds[track] == BoxGridLayout.TRACK_CONTENT) {
+              ++seen;
+              final long share = deficit * (long) seen / (long) content;
+              sizes[track] += share - given;
+              given = share;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A mutable builder for grid layouts.
+   *
+   * @param <S> The coordinate space of the boxes
+   */
+
+  public static final class Builder<S>
+  {
+    private int[] column_kinds;
+    private int[] column_values;
+    private int[] row_kinds;
+    private int[] row_values;
+    private int columns;
+    private int rows;
+    private int gap_column;
+    private int gap_row;
+    private int pad_left;
+    private int pad_right;
+    private int pad_top;
+    private int pad_bottom;
+
+    private Builder()
+    {
+      this.column_kinds = new int[8];
+      this.column_values = new int[8];
+      this.row_kinds = new int[8];
+      this.row_values = new int[8];
+    }
+
+    private Builder<S> addColumn(
+      final int kind,
+      final int value)
+    {
+      if (this.columns == this.column_kinds.length) {
+        final int size = Math.multiplyExact(this.columns, 2);
+        this.column_kinds = Arrays.copyOf(this.column_kinds, size);
+        this.column_values = Arrays.copyOf(this.column_values, size);
+      }
+      this.column_kinds[this.columns] = kind;
+      this.column_values[this.columns] = value;
+      ++this.columns;
+      return this;
+    }
+
+    private Builder<S> addRow(
+      final int kind,
+      final int value)
+    {
+      if (this.rows == this.row_kinds.length) {
+        final int size = Math.multiplyExact(this.rows, 2);
+        this.row_kinds = Arrays.copyOf(this.row_kinds, size);
+        this.row_values = Arrays.copyOf(this.row_values, size);
+      }
+      this.row_kinds[this.rows] = kind;
+      this.row_values[this.rows] = value;
+      ++this.rows;
+      return this;
+    }
+
+    /**
+     * Add a column of a fixed width.
+     *
+     * @param width The width (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addColumnFixed(
+      final int width)
+    {
+      Assertive.require(width >= 0, "Width must be >= 0");
+      return this.addColumn(BoxGridLayout.TRACK_FIXED, width);
+    }
+
+    /**
+     * Add a column that receives a share of the remaining width.
+     *
+     * @param weight The weight of the share (must be positive)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addColumnFraction(
+      final int weight)
+    {
+      Assertive.require(weight >= 1, "Weight must be >= 1");
+      return this.addColumn(BoxGridLayout.TRACK_FRACTION, weight);
+    }
+
+    /**
+     * Add a column that is as wide as its widest item.
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addColumnContent()
+    {
+      return this.addColumn(BoxGridLayout.TRACK_CONTENT, 0);
+    }
+
+    /**
+     * Add a row of a fixed height.
+     *
+     * @param height The height (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addRowFixed(
+      final int height)
+    {
+      Assertive.require(height >= 0, "Height must be >= 0");
+      return this.addRow(BoxGridLayout.TRACK_FIXED, height);
+    }
+
+    /**
+     * Add a row that receives a share of the remaining height.
+     *
+     * @param weight The weight of the share (must be positive)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addRowFraction(
+      final int weight)
+    {
+      Assertive.require(weight >= 1, "Weight must be >= 1");
+      return this.addRow(BoxGridLayout.TRACK_FRACTION, weight);
+    }
+
+    /**
+     * Add a row that is as tall as its tallest item.
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> addRowContent()
+    {
+      return this.addRow(BoxGridLayout.TRACK_CONTENT, 0);
+    }
+
+    /**
+     * @param column The gap between adjacent columns (must be non-negative)
+     * @param row    The gap between adjacent rows (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setGap(
+      final int column,
+      final int row)
+    {
+      Assertive.require(column >= 0, "Column gap must be >= 0");
+      Assertive.require(row >= 0, "Row gap must be >= 0");
+      this.gap_column = column;
+      this.gap_row = row;
+      return this;
+    }
+
+    /**
+     * Set the padding by which the area of each item is hollowed out.
+     *
+     * @param left   The offset from the left edge (must be non-negative)
+     * @param right  The offset from the right edge (must be non-negative)
+     * @param top    The offset from the top edge (must be non-negative)
+     * @param bottom The offset from the bottom edge (must be non-negative)
+     *
+     * @return {@code this}
+     */
+
+    public Builder<S> setCellPadding(
+      final int left,
+      final int right,
+      final int top,
+      final int bottom)
+    {
+      Assertive.require(left >= 0, "Left offset >= 0");
+      Assertive.require(right >= 0, "Right offset >= 0");
+      Assertive.require(top >= 0, "Top offset >= 0");
+      Assertive.require(bottom >= 0, "Bottom offset >= 0");
+      this.pad_left = left;
+      this.pad_right = right;
+      this.pad_top = top;
+      this.pad_bottom = bottom;
+      return this;
+    }
+
+    /**
+     * @return An immutable layout with the tracks added so far
+     */
+
+    public BoxGridLayout<S> build()
+    {
+      Assertive.require(this.columns >= 1, "At least one column is required");
+      Assertive.require(this.rows >= 1, "At least one row is required");
+      return new BoxGridLayout<>(this);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+
+/**
+ * <p>Functions to compute positions on a Hilbert curve covering the entire
+ * 32-bit integer plane.</p>
+ *
+ * <p>Keys are 64-bit unsigned values and must be compared with {@link
+ * Long#compareUnsigned(long, long)}. Points that are close on the curve are
+ * close in the plane, so sorting boxes by the key of their centers groups
+ * spatially nearby boxes together.</p>
+ */
+
+public final class BoxHilbertCurve
+{
+  private static final long MASK = 0xffff_ffffL;
+
+  private BoxHilbertCurve()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * @param x The X coordinate of the point
+   * @param y The Y coordinate of the point
+   *
+   * @return The unsigned Hilbert key of the point {@code (x, y)}
+   */
+
+  public static long key(
+    final int x,
+    final int y)
+  {
+    /*
+     * Flip the sign bits so that the signed coordinates map
+     * monotonically onto [0, 2^32).
+     */
+
+    long px = (long) (x ^ Integer.MIN_VALUE) & BoxHilbertCurve.MASK;
+    long py = (long) (y ^ Integer.MIN_VALUE) & BoxHilbertCurve.MASK;
+    long d = 0L;
+
+    for (long s = 1L << 31; s > 0L; s >>>= 1) {
+      final int rx = (px & s) != 0L ? 1 : 0;
+      final int ry = (py & s) != 0L ? 1 : 0;
+      d += s * s * (long) ((3 * rx) ^ ry);
+
+      if (ry == 0) {
+        if (rx == 1) {
+          px = BoxHilbertCurve.MASK - px;
+          py = BoxHilbertCurve.MASK - py;
+        }
+        final long t = px;
+        px = py;
+        py = t;
+      }
+    }
+    return d;
+  }
+
+  /**
+   * @param x_min The minimum X value of the box
+   * @param x_max The maximum X value of the box
+   * @param y_min The minimum Y value of the box
+   * @param y_max The maximum Y value of the box
+   *
+   * @return The unsigned Hilbert key of the center of the given box
+   */
+
+  public static long keyOfCenter(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    final long cx = ((long) x_min + (long) x_max) >> 1;
+    final long cy = ((long) y_min + (long) y_max) >> 1;
+    return BoxHilbertCurve.key((int) cx, (int) cy);
+  }
+
+  /**
+   * @param box The box
+   * @param <S> The coordinate space of the box
+   *
+   * @return The unsigned Hilbert key of the center of {@code box}
+   */
+
+  public static <S> long keyOfCenter(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+    return BoxHilbertCurve.keyOfCenter(
+      box.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+  }
+}
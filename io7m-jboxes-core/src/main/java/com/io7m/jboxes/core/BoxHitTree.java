@@ -0,0 +1,399 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+
+/**
+ * <p>A static structure for hit testing a hierarchy of nested boxes.</p>
+ *
+ * <p>The hierarchy is given as a packed array of boxes (in the format of
+ * {@link BoxArrays}) and an array giving the index of the parent of each
+ * box, or {@code -1} for boxes at the top level. A point hits a box if the
+ * box contains the point in the sense of {@link Boxes#containsPoint(BoxType,
+ * int, int)} and the point also hits the parent of the box; a box that
+ * extends outside of its parent can therefore only be hit where it overlaps
+ * its parent. Where siblings overlap, the sibling with the greatest index is
+ * considered to be on top, as if siblings were drawn in index order.</p>
+ *
+ * <p>The children of each box are sorted by their minimum edge along
+ * whichever axis they overlap the least, and each sorted position stores the
+ * greatest maximum edge of the children up to that position. A query
+ * descends from the top level, and at each level binary searches for the
+ * last child that starts before the point and then scans backwards only
+ * while an earlier child could still extend over the point. For siblings
+ * arranged in rows or columns this costs {@code O(log siblings)} per level,
+ * so a query costs {@code O(depth · log siblings)}. Queries allocate
+ * nothing.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxHitTree<S>
+{
+  private final int[] boxes;
+  private final int[] parents;
+  private final int[] child_start;
+  private final int[] child_order;
+  private final int[] child_min;
+  private final int[] child_prefix_max;
+  private final boolean[] axis_y;
+  private final int count;
+  private final int height;
+
+  private BoxHitTree(
+    final int[] in_boxes,
+    final int[] in_parents,
+    final int in_count)
+  {
+    this.boxes = in_boxes;
+    this.parents = in_parents;
+    this.count = in_count;
+    this.height = BoxHitTree.computeHeight(in_parents, in_count);
+
+    /*
+     * Group children by parent. The virtual parent of the top-level boxes
+     * has index count.
+     */
+
+    this.child_start = new int[in_count + 2];
+    for (int node = 0; node < in_count; ++node) {
+      ++this.child_start[this.parentSlot(node) + 1];
+    }
+    for (int slot = 0; slot <= in_count; ++slot) {
+      this.child_start[slot + 1] += this.child_start[slot];
+    }
+
+    this.child_order = new int[in_count];
+    final int[] fill = Arrays.copyOf(this.child_start, in_count + 1);
+    for (int node = 0; node < in_count; ++node) {
+      final int slot = this.parentSlot(node);
+      this.child_order[fill[slot]] = node;
+      ++fill[slot];
+    }
+
+    this.child_min = new int[in_count];
+    this.child_prefix_max = new int[in_count];
+    this.axis_y = new boolean[in_count + 1];
+    final long[] keys = new long[in_count];
+    for (int slot = 0; slot <= in_count; ++slot) {
+      this.sortChildren(slot, keys);
+    }
+  }
+
+  /**
+   * Build a hit-test tree.
+   *
+   * @param boxes   The packed boxes
+   * @param parents The index of the parent of each box, or {@code -1}
+   * @param count   The number of boxes
+   * @param <S>     The coordinate space of the boxes
+   *
+   * @return A new tree
+   */
+
+  public static <S> BoxHitTree<S> create(
+    final int[] boxes,
+    final int[] parents,
+    final int count)
+  {
+    BoxArrays.checkRange(boxes, 0, count);
+    NullCheck.notNull(parents);
+    Assertive.require(parents.length >= count, "Parent array must be large enough");
+
+    for (int node = 0; node < count; ++node) {
+      final int parent = parents[node];
+      Assertive.require(
+        parent >= -1 && parent < count && parent != node,
+        "Parent must be -1 or the index of another box");
+    }
+
+    return new BoxHitTree<>(
+      Arrays.copyOf(boxes, count * BoxArrays.STRIDE),
+      Arrays.copyOf(parents, count),
+      count);
+  }
+
+  /**
+   * Determine the length of the longest path from the top level, rejecting
+   * cycles.
+   */
+
+  private static int computeHeight(
+    final int[] parents,
+    final int count)
+  {
+    final int[] depth = new int[count];
+    final int[] stack = new int[count];
+    int height = 0;
+
+    for (int node = 0; node < count; ++node) {
+      int size = 0;
+      int current = node;
+      while (current >= 0 && depth[current] == 0) {
+        Assertive.require(size < count, "Parents must not form a cycle");
+        stack[size] = current;
+        ++size;
+        current = parents[current];
+      }
+
+      int d = current >= 0 ? depth[current] : 0;
+      while (size > 0) {
+        --size;
+        ++d;
+        depth[stack[size]] = d;
+      }
+      height = Math.max(height, depth[node]);
+    }
+    return height;
+  }
+
+  private int parentSlot(
+    final int node)
+  {
+    final int parent = this.parents[node];
+    return parent < 0 ? this.count : parent;
+  }
+
+  private int edge(
+    final int node,
+    final int offset)
+  {
+    return this.boxes[node * BoxArrays.STRIDE + offset];
+  }
+
+  private void sortChildren(
+    final int slot,
+    final long[] keys)
+  {
+    final int start = this.child_start[slot];
+    final int end = this.child_start[slot + 1];
+    if (start == end) {
+      return;
+    }
+
+    /*
+     * Pick the axis along which the children overlap least: the one with
+     * the smallest ratio of total child length to the extent spanned.
+     */
+
+    long length_x = 0L;
+    long length_y = 0L;
+    long x_min = Long.MAX_VALUE;
+    long x_max = Long.MIN_VALUE;
+    long y_min = Long.MAX_VALUE;
+    long y_max = Long.MIN_VALUE;
+    for (int index = start; index < end; ++index) {
+      final int node = this.child_order[index];
+      final long x0 = (long) this.edge(node, BoxArrays.MINIMUM_X);
+      final long x1 = (long) this.edge(node, BoxArrays.MAXIMUM_X);
+      final long y0 = (long) this.edge(node, BoxArrays.MINIMUM_Y);
+      final long y1 = (long) this.edge(node, BoxArrays.MAXIMUM_Y);
+      length_x += x1 - x0;
+      length_y += y1 - y0;
+      x_min = Math.min(x_min, x0);
+      x_max = Math.max(x_max, x1);
+      y_min = Math.min(y_min, y0);
+      y_max = Math.max(y_max, y1);
+    }
+
+    final double density_x =
+      (double) length_x / (double) Math.max(1L, x_max - x_min);
+    final double density_y =
+      (double) length_y / (double) Math.max(1L, y_max - y_min);
+    final boolean use_y = density_y < density_x;
+    this.axis_y[slot] = use_y;
+
+    final int min_offset = use_y ? BoxArrays.MINIMUM_Y : BoxArrays.MINIMUM_X;
+    final int max_offset = use_y ? BoxArrays.MAXIMUM_Y : BoxArrays.MAXIMUM_X;
+    for (int index = start; index < end; ++index) {
+      final int node = this.child_order[index];
+      keys[index] = ((long) this.edge(node, min_offset) << 32) | (long) node;
+    }
+    Arrays.sort(keys, start, end);
+
+    int prefix_max = Integer.MIN_VALUE;
+    for (int index = start; index < end; ++index) {
+      final int node = (int) keys[index];
+      this.child_order[index] = node;
+      this.child_min[index] = this.edge(node, min_offset);
+      prefix_max = Math.max(prefix_max, this.edge(node, max_offset));
+      this.child_prefix_max[index] = prefix_max;
+    }
+  }
+
+  /**
+   * @return The number of boxes
+   */
+
+  public int size()
+  {
+    return this.count;
+  }
+
+  /**
+   * @return The number of boxes on the longest path from the top level to a
+   * leaf, and therefore the largest number of boxes that can be hit at once
+   */
+
+  public int height()
+  {
+    return this.height;
+  }
+
+  /**
+   * @param node The index of a box
+   *
+   * @return The box at {@code node}
+   */
+
+  public BoxType<S> box(
+    final int node)
+  {
+    Assertive.require(node >= 0 && node < this.count, "Box must exist");
+    return BoxArrays.get(this.boxes, node);
+  }
+
+  /**
+   * @param node The index of a box
+   *
+   * @return The index of the parent of {@code node}, or {@code -1}
+   */
+
+  public int parent(
+    final int node)
+  {
+    Assertive.require(node >= 0 && node < this.count, "Box must exist");
+    return this.parents[node];
+  }
+
+  private boolean containsPoint(
+    final int node,
+    final int x,
+    final int y)
+  {
+    final int base = node * BoxArrays.STRIDE;
+    return x >= this.boxes[base + BoxArrays.MINIMUM_X]
+      && x < this.boxes[base + BoxArrays.MAXIMUM_X]
+      && y >= this.boxes[base + BoxArrays.MINIMUM_Y]
+      && y < this.boxes[base + BoxArrays.MAXIMUM_Y];
+  }
+
+  /**
+   * Find the topmost child of {@code slot} hit by the point.
+   */
+
+  private int hitChild(
+    final int slot,
+    final int x,
+    final int y)
+  {
+    final int start = this.child_start[slot];
+    final int end = this.child_start[slot + 1];
+    final int c = this.axis_y[slot] ? y : x;
+
+    /*
+     * Find the first child that starts after the point.
+     */
+
+    int lo = start;
+    int hi = end;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.child_min[mid] <= c) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    int best = -1;
+    for (int index = lo - 1; index >= start; --index) {
+      if (this.child_prefix_max[index] <= c) {
+        break;
+      }
+      final int node = this.child_order[index];
+      if (node > best && this.containsPoint(node, x, y)) {
+        best = node;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Find the deepest box hit by the point {@code (x, y)}.
+   *
+   * @param x The X coordinate of the point
+   * @param y The Y coordinate of the point
+   *
+   * @return The index of the deepest box hit, or {@code -1} if no box is hit
+   */
+
+  public int deepest(
+    final int x,
+    final int y)
+  {
+    int deepest = -1;
+    int slot = this.count;
+    while (true) {
+      final int hit = this.hitChild(slot, x, y);
+      if (hit < 0) {
+        return deepest;
+      }
+      deepest = hit;
+      slot = hit;
+    }
+  }
+
+  /**
+   * Find the path of boxes hit by the point {@code (x, y)}, writing the
+   * index of the top-level box to {@code path[0]} and the index of the
+   * deepest box to {@code path[n - 1]}, where {@code n} is the returned
+   * length. The array must have room for {@link #height()} elements.
+   *
+   * @param x    The X coordinate of the point
+   * @param y    The Y coordinate of the point
+   * @param path The output path
+   *
+   * @return The length of the path, which is {@code 0} if no box is hit
+   */
+
+  public int path(
+    final int x,
+    final int y,
+    final int[] path)
+  {
+    NullCheck.notNull(path);
+    Assertive.require(
+      path.length >= this.height, "Path array must have room for height()");
+
+    int depth = 0;
+    int slot = this.count;
+    while (true) {
+      final int hit = this.hitChild(slot, x, y);
+      if (hit < 0) {
+        return depth;
+      }
+      path[depth] = hit;
+      ++depth;
+      slot = hit;
+    }
+  }
+}
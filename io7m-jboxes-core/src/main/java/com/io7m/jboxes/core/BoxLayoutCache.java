@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import org.valid4j.Assertive;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <p>A bounded cache of layout results.</p>
+ *
+ * <p>A result is keyed by the subtree that produced it, the edges of the
+ * outer box that the subtree was laid out in, and a version stamp that the caller must
+ * change whenever any other input to the subtree changes. Looking up a key
+ * that is present returns the stored result without running the layout; a
+ * missing key runs the layout and stores its result. When the cache is full,
+ * the least recently used result is evicted. Results for stale versions are
+ * never returned, and eventually age out.</p>
+ *
+ * <p>The cache is not thread-safe.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ * @param <K> The type of subtree identifiers
+ * @param <R> The type of layout results
+ */
+
+public final class BoxLayoutCache<S, K, R>
+{
+  private final int capacity;
+  private final LinkedHashMap<Key<K>, R> entries;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  private BoxLayoutCache(
+    final int in_capacity)
+  {
+    this.capacity = in_capacity;
+    this.entries = new LinkedHashMap<Key<K>, R>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(
+        final Map.Entry<Key<K>, R> eldest)
+      {
+        final boolean evict = this.size() > BoxLayoutCache.this.capacity;
+        if (evict) {
+          ++BoxLayoutCache.this.evictions;
+        }
+        return evict;
+      }
+    };
+  }
+
+  /**
+   * Create a new cache.
+   *
+   * @param capacity The maximum number of results held (must be positive)
+   * @param <S>      The coordinate space of the boxes
+   * @param <K>      The type of subtree identifiers
+   * @param <R>      The type of layout results
+   *
+   * @return A new cache
+   */
+
+  public static <S, K, R> BoxLayoutCache<S, K, R> create(
+    final int capacity)
+  {
+    Assertive.require(capacity >= 1, "Capacity must be >= 1");
+    return new BoxLayoutCache<>(capacity);
+  }
+
+  /**
+   * Retrieve the result of laying out {@code subtree} within {@code outer} at
+   * version {@code version}, evaluating {@code layout} on {@code outer} if no
+   * such result is cached.
+   *
+   * @param subtree The subtree
+   * @param outer   The outer box
+   * @param version The version of the other inputs to the subtree
+   * @param layout  A function that lays out the subtree
+   *
+   * @return The layout result
+   */
+
+  public R get(
+    final K subtree,
+    final BoxType<S> outer,
+    final long version,
+    final Function<BoxType<S>, R> layout)
+  {
+    NullCheck.notNull(layout);
+
+    final Key<K> key = new Key<>(subtree, outer, version);
+    final @Nullable R cached = this.entries.get(key);
+    if (cached != null) {
+      ++this.hits;
+      return cached;
+    }
+
+    ++this.misses;
+    final R result = NullCheck.notNull(layout.apply(outer));
+    this.entries.put(key, result);
+    return result;
+  }
+
+  /**
+   * Remove all results. Statistics are not reset.
+   */
+
+  public void clear()
+  {
+    this.entries.clear();
+  }
+
+  /**
+   * Reset the hit, miss and eviction counts to zero.
+   */
+
+  public void resetStatistics()
+  {
+    this.hits = 0L;
+    this.misses = 0L;
+    this.evictions = 0L;
+  }
+
+  /**
+   * @return The maximum number of results held
+   */
+
+  public int capacity()
+  {
+    return this.capacity;
+  }
+
+  /**
+   * @return The number of results currently held
+   */
+
+  public int size()
+  {
+    return this.entries.size();
+  }
+
+  /**
+   * @return The number of lookups that found a cached result
+   */
+
+  public long hits()
+  {
+    return this.hits;
+  }
+
+  /**
+   * @return The number of lookups that had to run the layout
+   */
+
+  public long misses()
+  {
+    return this.misses;
+  }
+
+  /**
+   * @return The number of results evicted to stay within the capacity
+   */
+
+  public long evictions()
+  {
+    return this.evictions;
+  }
+
+  /**
+   * @return The fraction of lookups that found a cached result, or {@code 0}
+   * if there have been no lookups
+   */
+
+  public double hitRate()
+  {
+    final long total = this.hits + this.misses;
+    if (total == 0L) {
+      return 0.0;
+    }
+    return (double) this.hits / (double) total;
+  }
+
+  private static final class Key<K>
+  {
+    private final K subtree;
+    private final int x_min;
+    private final int x_max;
+    private final int y_min;
+    private final int y_max;
+    private final long version;
+
+    Key(
+      final K in_subtree,
+      final BoxType<?> in_outer,
+      final long in_version)
+    {
+      this.subtree = NullCheck.notNull(in_subtree);
+      NullCheck.notNull(in_outer);
+      this.x_min = in_outer.minimumX();
+      this.x_max = in_outer.maximumX();
+      this.y_min = in_outer.minimumY();
+      this.y_max = in_outer.maximumY();
+      this.version = in_version;
+    }
+
+    @Override
+    public boolean equals(
+      final @Nullable Object other)
+    {
+      if (this == other) {
+        return true;
+      }
+      if (other == null || this.getClass() != other.getClass()) {
+        return false;
+      }
+      final Key<?> key = (Key<?>) other;
+      if (this.version != key.version || !this.subtree.equals(key.subtree)) {
+        return false;
+      }
+      return this.x_min == key.x_min
+        && this.x_max == key.x_max
+        && this.y_min == key.y_min
+        && this.y_max == key.y_max;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      int result = this.subtree.hashCode();
+      result = 31 * result + this.x_min;
+      result = 31 * result + this.x_max;
+      result = 31 * result + this.y_min;
+      result = 31 * result + this.y_max;
+      result = 31 * result + Long.hashCode(this.version);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,668 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+
+/**
+ * <p>A mutable tree of layout operations that caches the box computed for
+ * each node.</p>
+ *
+ * <p>Each node receives a box from its parent (the root receives the bounds
+ * of the tree). A node is one of:</p>
+ *
+ * <ul>
+ * <li>A <i>fill</i> leaf, which occupies the whole of its box. New nodes are
+ * fill leaves.</li>
+ * <li>An <i>aligned</i> leaf, which occupies a box of a fixed size aligned
+ * within its box.</li>
+ * <li>A <i>vertical split</i>, which passes the two halves produced by {@link
+ * Boxes#splitAlongVertical(BoxType, int)} to its two children.</li>
+ * <li>A <i>horizontal split</i>, which passes the two halves produced by
+ * {@link Boxes#splitAlongHorizontal(BoxType, int)} to its two children.</li>
+ * <li>A <i>hollow</i> node, which passes the box produced by {@link
+ * Boxes#hollowOut(BoxType, int, int, int, int)} to its single child.</li>
+ * </ul>
+ *
+ * <p>Changing the parameters of a node marks it dirty and marks each of its
+ * ancestors as having a dirty descendant. {@link #update()} then visits only
+ * the dirty paths, recomputing dirty nodes and descending into a child only
+ * if the child is dirty or the box passed to it actually changed. Resizing a
+ * single aligned leaf therefore costs {@code O(depth)} rather than {@code
+ * O(n)}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxLayoutTree<S>
+{
+  private static final int KIND_FILL = 0;
+  private static final int KIND_ALIGN = 1;
+  private static final int KIND_SPLIT_VERTICAL = 2;
+  private static final int KIND_SPLIT_HORIZONTAL = 3;
+  private static final int KIND_HOLLOW = 4;
+
+  private static final int FLAG_DIRTY = 0b01;
+  private static final int FLAG_DESCENDANT_DIRTY = 0b10;
+
+  private static final int PARAMETERS = 4;
+
+  private int[] kinds;
+  private int[] parents;
+  private int[] first_child;
+  private int[] flags;
+  private int[] parameters;
+  private BoxAlignment[] alignments;
+  private BoxType<S>[] inputs;
+  private BoxType<S>[] outputs;
+  private int nodes;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private BoxLayoutTree(
+    final BoxType<S> in_bounds)
+  {
+    final int capacity = 16;
+    this.kinds = new int[capacity];
+    this.parents = new int[capacity];
+    this.first_child = new int[capacity];
+    this.flags = new int[capacity];
+    this.parameters = new int[capacity * BoxLayoutTree.PARAMETERS];
+    this.alignments = new BoxAlignment[capacity];
+    this.inputs = new BoxType[capacity];
+    this.outputs = new BoxType[capacity];
+
+    this.allocate(-1);
+    this.inputs[0] = Box.copyOf(in_bounds);
+    this.outputs[0] = this.inputs[0];
+  }
+
+  /**
+   * Create a tree consisting of a single fill leaf occupying {@code bounds}.
+   *
+   * @param bounds The bounds of the tree
+   * @param <S>    The coordinate space of the boxes
+   *
+   * @return A new tree
+   */
+
+  public static <S> BoxLayoutTree<S> create(
+    final BoxType<S> bounds)
+  {
+    NullCheck.notNull(bounds);
+    return new BoxLayoutTree<>(bounds);
+  }
+
+  private static <S> BoxType<S> alignBox(
+    final BoxType<S> outer,
+    final BoxAlignment alignment,
+    final int width,
+    final int height)
+  {
+    final BoxType<S> inner = Box.of(0, width, 0, height);
+    switch (alignment) {
+      case TOP_LEFT:
+        return Boxes.alignTopLeft(outer, inner);
+      case TOP_CENTER:
+        return Boxes.alignVerticallyTop(
+          outer, Boxes.alignHorizontallyCenter(outer, inner));
+      case TOP_RIGHT:
+        return Boxes.alignTopRight(outer, inner);
+      case CENTER_LEFT:
+        return Boxes.alignVerticallyCenter(
+          outer, Boxes.alignHorizontallyLeft(outer, inner));
+      case CENTER:
+        return Boxes.alignCenter(outer, inner);
+      case CENTER_RIGHT:
+        return Boxes.alignVerticallyCenter(
+          outer, Boxes.alignHorizontallyRight(outer, inner));
+      case BOTTOM_LEFT:
+        return Boxes.alignBottomLeft(outer, inner);
+      case BOTTOM_CENTER:
+        return Boxes.alignVerticallyBottom(
+          outer, Boxes.alignHorizontallyCenter(outer, inner));
+      case BOTTOM_RIGHT:
+        return Boxes.alignBottomRight(outer, inner);
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private int allocate(
+    final int parent)
+  {
+    if (this.nodes == this.kinds.length) {
+      final int capacity = Math.multiplyExact(this.kinds.length, 2);
+      this.kinds = Arrays.copyOf(this.kinds, capacity);
+      this.parents = Arrays.copyOf(this.parents, capacity);
+      this.first_child = Arrays.copyOf(this.first_child, capacity);
+      this.flags = Arrays.copyOf(this.flags, capacity);
+      this.parameters = Arrays.copyOf(
+        this.parameters, Math.multiplyExact(capacity, BoxLayoutTree.PARAMETERS));
+      this.alignments = Arrays.copyOf(this.alignments, capacity);
+      this.inputs = Arrays.copyOf(this.inputs, capacity);
+      this.outputs = Arrays.copyOf(this.outputs, capacity);
+    }
+
+    final int node = this.nodes;
+    this.kinds[node] = BoxLayoutTree.KIND_FILL;
+    this.parents[node] = parent;
+    this.first_child[node] = -1;
+    this.flags[node] = BoxLayoutTree.FLAG_DIRTY;
+    ++this.nodes;
+    return node;
+  }
+
+  private void checkNode(
+    final int node)
+  {
+    Assertive.require(node >= 0 && node < this.nodes, "Node must exist");
+  }
+
+  private void checkLeaf(
+    final int node)
+  {
+    Assertive.require(this.isLeaf(node), "Node must be a leaf");
+  }
+
+  private void checkKind(
+    final int node,
+    final int kind)
+  {
+    this.checkNode(node);
+    Assertive.require(this.kinds[node] == kind, "Node is of the wrong kind");
+  }
+
+  private void markDirty(
+    final int node)
+  {
+    this.flags[node] |= BoxLayoutTree.FLAG_DIRTY;
+    int current = this.parents[node];
+    while (current >= 0
+      && (this.flags[current] & BoxLayoutTree.FLAG_DESCENDANT_DIRTY) == 0) {
+      this.flags[current] |= BoxLayoutTree.FLAG_DESCENDANT_DIRTY;
+      current = this.parents[current];
+    }
+  }
+
+  private void convert(
+    final int node,
+    final int kind,
+    final int children)
+  {
+    this.kinds[node] = kind;
+    if (children > 0) {
+      final int first = this.allocate(node);
+      for (int index = 1; index < children; ++index) {
+        this.allocate(node);
+      }
+      this.first_child[node] = first;
+      this.flags[node] |= BoxLayoutTree.FLAG_DESCENDANT_DIRTY;
+    }
+    this.markDirty(node);
+  }
+
+  private void setParameters(
+    final int node,
+    final int p0,
+    final int p1,
+    final int p2,
+    final int p3)
+  {
+    final int base = node * BoxLayoutTree.PARAMETERS;
+    this.parameters[base] = p0;
+    this.parameters[base + 1] = p1;
+    this.parameters[base + 2] = p2;
+    this.parameters[base + 3] = p3;
+  }
+
+  /**
+   * @return The root node
+   */
+
+  public int root()
+  {
+    return 0;
+  }
+
+  /**
+   * @return The number of nodes in the tree
+   */
+
+  public int size()
+  {
+    return this.nodes;
+  }
+
+  /**
+   * @param node The node
+   *
+   * @return {@code true} iff {@code node} has no children
+   */
+
+  public boolean isLeaf(
+    final int node)
+  {
+    this.checkNode(node);
+    return this.first_child[node] < 0;
+  }
+
+  /**
+   * @param node The node
+   *
+   * @return The number of children of {@code node}
+   */
+
+  public int childCount(
+    final int node)
+  {
+    this.checkNode(node);
+    switch (this.kinds[node]) {
+      case KIND_SPLIT_VERTICAL:
+      case KIND_SPLIT_HORIZONTAL:
+        return 2;
+      case KIND_HOLLOW:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * @param node  The node
+   * @param index The index of the child
+   *
+   * @return The child of {@code node} at {@code index}; for splits, the left
+   * or upper half is at index {@code 0}
+   */
+
+  public int child(
+    final int node,
+    final int index)
+  {
+    Assertive.require(
+      index >= 0 && index < this.childCount(node), "Child must exist");
+    return this.first_child[node] + index;
+  }
+
+  /**
+   * @param node The node
+   *
+   * @return The parent of {@code node}, or {@code -1} for the root
+   */
+
+  public int parent(
+    final int node)
+  {
+    this.checkNode(node);
+    return this.parents[node];
+  }
+
+  /**
+   * Set the bounds of the tree. The tree keeps a copy of {@code bounds}, so
+   * mutating a {@link BoxMutable} afterwards has no effect until it is passed
+   * to this method again.
+   *
+   * @param bounds The new bounds
+   */
+
+  public void setBounds(
+    final BoxType<S> bounds)
+  {
+    final Box<S> copy = Box.copyOf(NullCheck.notNull(bounds));
+    if (!copy.equals(this.inputs[0])) {
+      this.inputs[0] = copy;
+      this.markDirty(0);
+    }
+  }
+
+  /**
+   * Turn the leaf {@code node} into a vertical split, with the splitting edge
+   * {@code width} units from the left edge of its box. The node gains two
+   * fill leaves as children.
+   *
+   * @param node  The leaf
+   * @param width The relative X coordinate of the splitting edge
+   */
+
+  public void splitVertical(
+    final int node,
+    final int width)
+  {
+    this.checkLeaf(node);
+    this.setParameters(node, width, 0, 0, 0);
+    this.convert(node, BoxLayoutTree.KIND_SPLIT_VERTICAL, 2);
+  }
+
+  /**
+   * Turn the leaf {@code node} into a horizontal split, with the splitting
+   * edge {@code height} units from the top edge of its box. The node gains
+   * two fill leaves as children.
+   *
+   * @param node   The leaf
+   * @param height The relative Y coordinate of the splitting edge
+   */
+
+  public void splitHorizontal(
+    final int node,
+    final int height)
+  {
+    this.checkLeaf(node);
+    this.setParameters(node, height, 0, 0, 0);
+    this.convert(node, BoxLayoutTree.KIND_SPLIT_HORIZONTAL, 2);
+  }
+
+  /**
+   * Set the position of the splitting edge of a split node.
+   *
+   * @param node The split node
+   * @param size The relative coordinate of the splitting edge
+   */
+
+  public void setSplit(
+    final int node,
+    final int size)
+  {
+    this.checkNode(node);
+    final int kind = this.kinds[node];
+    Assertive.require(
+      kind == BoxLayoutTree.KIND_SPLIT_VERTICAL
+        || kind == BoxLayoutTree.KIND_SPLIT_HORIZONTAL,
+      "Node must be a split");
+
+    final int base = node * BoxLayoutTree.PARAMETERS;
+    if (this.parameters[base] != size) {
+      this.parameters[base] = size;
+      this.markDirty(node);
+    }
+  }
+
+  /**
+   * Turn the leaf {@code node} into a hollow node. The node gains a single
+   * fill leaf as a child.
+   *
+   * @param node   The leaf
+   * @param left   The offset from the left edge (must be non-negative)
+   * @param right  The offset from the right edge (must be non-negative)
+   * @param top    The offset from the top edge (must be non-negative)
+   * @param bottom The offset from the bottom edge (must be non-negative)
+   */
+
+  public void hollowOut(
+    final int node,
+    final int left,
+    final int right,
+    final int top,
+    final int bottom)
+  {
+    this.checkLeaf(node);
+    this.setHollowParameters(node, left, right, top, bottom);
+    this.convert(node, BoxLayoutTree.KIND_HOLLOW, 1);
+  }
+
+  /**
+   * Set the offsets of a hollow node.
+   *
+   * @param node   The hollow node
+   * @param left   The offset from the left edge (must be non-negative)
+   * @param right  The offset from the right edge (must be non-negative)
+   * @param top    The offset from the top edge (must be non-negative)
+   * @param bottom The offset from the bottom edge (must be non-negative)
+   */
+
+  public void setHollowOut(
+    final int node,
+    final int left,
+    final int right,
+    final int top,
+    final int bottom)
+  {
+    this.checkKind(node, BoxLayoutTree.KIND_HOLLOW);
+    this.setHollowParameters(node, left, right, top, bottom);
+    this.markDirty(node);
+  }
+
+  private void setHollowParameters(
+    final int node,
+    final int left,
+    final int right,
+    final int top,
+    final int bottom)
+  {
+    Assertive.require(left >= 0, "Left offset >= 0");
+    Assertive.require(right >= 0, "Right offset >= 0");
+    Assertive.require(top >= 0, "Top offset >= 0");
+    Assertive.require(bottom >= 0, "Bottom offset >= 0");
+    this.setParameters(node, left, right, top, bottom);
+  }
+
+  /**
+   * Turn the leaf {@code node} into an aligned leaf, or change the alignment
+   * and size of an existing aligned leaf.
+   *
+   * @param node      The leaf
+   * @param alignment The alignment of the box within the box of the node
+   * @param width     The width of the box (must be non-negative)
+   * @param height    The height of the box (must be non-negative)
+   */
+
+  public void align(
+    final int node,
+    final BoxAlignment alignment,
+    final int width,
+    final int height)
+  {
+    this.checkLeaf(node);
+    NullCheck.notNull(alignment);
+    Assertive.require(width >= 0, "Width must be >= 0");
+    Assertive.require(height >= 0, "Height must be >= 0");
+
+    this.alignments[node] = alignment;
+    this.setParameters(node, width, height, 0, 0);
+    this.convert(node, BoxLayoutTree.KIND_ALIGN, 0);
+  }
+
+  /**
+   * @return {@code true} iff the tree has changes that have not yet been
+   * applied by {@link #update()}
+   */
+
+  public boolean isDirty()
+  {
+    return this.flags[0] != 0;
+  }
+
+  /**
+   * Recompute the boxes of all nodes affected by changes made since the last
+   * update.
+   *
+   * @return The number of nodes that were recomputed
+   */
+
+  public int update()
+  {
+    if (this.flags[0] != 0) {
+      return this.visit(0);
+    }
+    return 0;
+  }
+
+  /**
+   * Update {@code node} and every pending node beneath it. The walk uses an
+   * explicit stack, so arbitrarily deep trees can be updated.
+   *
+   * @return The number of nodes that were recomputed
+   */
+
+  int visit(
+    final int node)
+  {
+    int[] stack = new int[16];
+    int stack_size = 1;
+    int count = 0;
+    stack[0] = node;
+
+    while (stack_size > 0) {
+      --stack_size;
+      final int current = stack[stack_size];
+      count += this.visitNode(current);
+
+      /*
+       * Push the pending children in reverse order so that they are visited
+       * in order. Each node is pushed at most once.
+       */
+
+      final int first = this.first_child[current];
+      if (first < 0) {
+        continue;
+      }
+      for (int child = first + this.childCount(current) - 1;
+           child >= first;
+           --child) {
+        if (this.flags[child] != 0) {
+          if (stack_size == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+          }
+          stack[stack_size] = child;
+          ++stack_size;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Update {@code node} alone, clearing its flags and recomputing it if it
+   * is dirty. On return, the inputs of the children of {@code node} are
+   * final for this update, so the subtrees of the children may be visited
+   * independently of one another.
+   *
+   * @return {@code 1} if the node was recomputed, {@code 0} otherwise
+   */
+
+  int visitNode(
+    final int node)
+  {
+    final int node_flags = this.flags[node];
+    this.flags[node] = 0;
+
+    if ((node_flags & BoxLayoutTree.FLAG_DIRTY) != 0) {
+      this.compute(node);
+      return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * @return {@code true} iff {@code node} must be visited by the current
+   * update
+   */
+
+  boolean isPending(
+    final int node)
+  {
+    return this.flags[node] != 0;
+  }
+
+  /**
+   * @return The first child of {@code node}, or {@code -1} for leaves
+   */
+
+  int firstChild(
+    final int node)
+  {
+    return this.first_child[node];
+  }
+
+  private void assign(
+    final int child,
+    final BoxType<S> box)
+  {
+    if (!box.equals(this.inputs[child])) {
+      this.inputs[child] = box;
+      this.flags[child] |= BoxLayoutTree.FLAG_DIRTY;
+    }
+  }
+
+  private void compute(
+    final int node)
+  {
+    final BoxType<S> input = this.inputs[node];
+    final int base = node * BoxLayoutTree.PARAMETERS;
+    final int first = this.first_child[node];
+    final int[] p = this.parameters;
+
+    switch (this.kinds[node]) {
+      case KIND_FILL: {
+        this.outputs[node] = input;
+        break;
+      }
+      case KIND_ALIGN: {
+        this.outputs[node] = BoxLayoutTree.alignBox(
+          input, this.alignments[node], p[base], p[base + 1]);
+        break;
+      }
+      case KIND_SPLIT_VERTICAL: {
+        final BoxVerticalSplitType<S> split =
+          Boxes.splitAlongVertical(input, p[base]);
+        this.outputs[node] = input;
+        this.assign(first, split.left());
+        this.assign(first + 1, split.right());
+        break;
+      }
+      case KIND_SPLIT_HORIZONTAL: {
+        final BoxHorizontalSplitType<S> split =
+          Boxes.splitAlongHorizontal(input, p[base]);
+        this.outputs[node] = input;
+        this.assign(first, split.upper());
+        this.assign(first + 1, split.lower());
+        break;
+      }
+      case KIND_HOLLOW: {
+        this.outputs[node] = input;
+        this.assign(first, Boxes.hollowOut(
+          input, p[base], p[base + 1], p[base + 2], p[base + 3]));
+        break;
+      }
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /**
+   * Retrieve the box of {@code node}, updating the tree first if necessary.
+   * For aligned leaves, this is the aligned box; for all other nodes, it is
+   * the box that the node received from its parent.
+   *
+   * @param node The node
+   *
+   * @return The box of {@code node}
+   */
+
+  public BoxType<S> box(
+    final int node)
+  {
+    this.checkNode(node);
+    if (this.isDirty()) {
+      this.update();
+    }
+    return this.outputs[node];
+  }
+}
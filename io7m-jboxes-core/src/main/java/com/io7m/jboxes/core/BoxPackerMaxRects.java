@@ -0,0 +1,534 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>A MaxRects bin packer that places boxes inside a container box.</p>
+ *
+ * <p>The packer maintains the set of maximal free rectangles of the container.
+ * Each new box is placed at the top left corner of the free rectangle chosen
+ * by the configured {@link BoxPackerMaxRectsHeuristic}; a box of width
+ * {@code w} and height {@code h} is only considered for a free rectangle
+ * {@code f} if a {@code w * h} box {@link Boxes#couldFitInside(BoxType,
+ * BoxType) could fit inside} {@code f}. Every free rectangle that intersects
+ * the new box is then split, and only the newly created rectangles are checked
+ * for containment when pruning, as the remaining free rectangles are already
+ * known to be maximal with respect to each other. Newly created rectangles
+ * are only compared against rectangles on the same side of the new box.</p>
+ *
+ * <p>The free rectangles are not indexed: choosing the free rectangle for a
+ * box and splitting the free rectangles it intersects both examine every
+ * free rectangle, so each placement takes time linear in {@link
+ * #freeRectangles()}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxPackerMaxRects<S>
+{
+  private static final int SIDE_LEFT = 0;
+  private static final int SIDE_RIGHT = 1;
+  private static final int SIDE_TOP = 2;
+  private static final int SIDE_BOTTOM = 3;
+
+  private final BoxType<S> container;
+  private final BoxPackerMaxRectsHeuristic heuristic;
+  private int[] free;
+  private int free_count;
+  private final int[][] fresh;
+  private final int[] fresh_counts;
+  private int[] touching;
+  private int touching_count;
+  private long used_area;
+
+  private BoxPackerMaxRects(
+    final BoxType<S> in_container,
+    final BoxPackerMaxRectsHeuristic in_heuristic)
+  {
+    this.container = NullCheck.notNull(in_container);
+    this.heuristic = NullCheck.notNull(in_heuristic);
+    this.free = new int[64 * BoxArrays.STRIDE];
+    this.fresh = new int[4][];
+    this.fresh_counts = new int[4];
+    this.touching = new int[64];
+    for (int side = 0; side < 4; ++side) {
+      this.fresh[side] = new int[16 * BoxArrays.STRIDE];
+    }
+    this.reset();
+  }
+
+  /**
+   * Create a new packer.
+   *
+   * @param container The container box
+   * @param heuristic The placement heuristic
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return A new packer
+   */
+
+  public static <S> BoxPackerMaxRects<S> create(
+    final BoxType<S> container,
+    final BoxPackerMaxRectsHeuristic heuristic)
+  {
+    return new BoxPackerMaxRects<>(container, heuristic);
+  }
+
+  /**
+   * @return The container box
+   */
+
+  public BoxType<S> container()
+  {
+    return this.container;
+  }
+
+  /**
+   * @return The current number of maximal free rectangles
+   */
+
+  public int freeRectangles()
+  {
+    return this.free_count;
+  }
+
+  /**
+   * @return The fraction of the container area occupied by placed boxes
+   */
+
+  public double occupancy()
+  {
+    final long area =
+      (long) this.container.width() * (long) this.container.height();
+    if (area == 0L) {
+      return 0.0;
+    }
+    return (double) this.used_area / (double) area;
+  }
+
+  /**
+   * Remove all placed boxes.
+   */
+
+  public void reset()
+  {
+    this.free_count = 0;
+    this.used_area = 0L;
+    if (this.container.width() > 0 && this.container.height() > 0) {
+      BoxPackerMaxRects.push(
+        this.free,
+        0,
+        this.container.minimumX(),
+        this.container.maximumX(),
+        this.container.minimumY(),
+        this.container.maximumY());
+      this.free_count = 1;
+    }
+  }
+
+  /**
+   * Place a box of the given size.
+   *
+   * @param width  The width of the box
+   * @param height The height of the box
+   *
+   * @return The placed box, or nothing if no free space could hold the box
+   */
+
+  public Optional<BoxType<S>> insert(
+    final int width,
+    final int height)
+  {
+    Assertive.require(width > 0, "Width must be > 0");
+    Assertive.require(height > 0, "Height must be > 0");
+
+    final int best = this.findBest(width, height);
+    if (best < 0) {
+      return Optional.empty();
+    }
+
+    final int base = best * BoxArrays.STRIDE;
+    final int x_min = this.free[base + BoxArrays.MINIMUM_X];
+    final int y_min = this.free[base + BoxArrays.MINIMUM_Y];
+    final int x_max = Math.addExact(x_min, width);
+    final int y_max = Math.addExact(y_min, height);
+    this.place(x_min, x_max, y_min, y_max);
+    this.used_area += (long) width * (long) height;
+    return Optional.of(Box.of(x_min, x_max, y_min, y_max));
+  }
+
+  /**
+   * Place a batch of boxes. The boxes are placed in descending order of their
+   * longer side (and then of their shorter side), which typically produces
+   * much tighter packings than placing boxes in arbitrary order.
+   *
+   * @param widths  The widths of the boxes
+   * @param heights The heights of the boxes
+   * @param count   The number of boxes (must be at most {@code 2^23 - 1},
+   *                as the position of each box in the batch is packed into
+   *                23 bits of its sort key)
+   *
+   * @return The placed boxes, in the same order as the input
+   */
+
+  public List<Optional<BoxType<S>>> insertAll(
+    final int[] widths,
+    final int[] heights,
+    final int count)
+  {
+    NullCheck.notNull(widths);
+    NullCheck.notNull(heights);
+    Assertive.require(count >= 0, "Count must be >= 0");
+    Assertive.require(count <= widths.length, "Count must be <= widths");
+    Assertive.require(count <= heights.length, "Count must be <= heights");
+    Assertive.require(count <= 0x7fffff, "Count must be <= 2^23 - 1");
+
+    final long[] order = new long[count];
+    for (int index = 0; index < count; ++index) {
+      final int w = widths[index];
+      final int h = heights[index];
+      Assertive.require(w > 0, "Width must be > 0");
+      Assertive.require(h > 0, "Height must be > 0");
+
+      /*
+       * Pack the inverted long side, inverted short side and the index
+       * into a single key so that an ascending primitive sort produces
+       * the desired order. Sizes are clamped to 20 bits for the key only.
+       */
+
+      final long long_side = (long) Math.min(Math.max(w, h), 0xfffff);
+      final long short_side = (long) Math.min(Math.min(w, h), 0xfffff);
+      order[index] = (0xfffffL - long_side) << 43
+        | (0xfffffL - short_side) << 23
+        | (long) index;
+    }
+    Arrays.sort(order);
+
+    final List<Optional<BoxType<S>>> result =
+      new ArrayList<>(Collections.nCopies(count, Optional.empty()));
+    for (int index = 0; index < count; ++index) {
+      final int item = (int) (order[index] & 0x7fffffL);
+      result.set(item, this.insert(widths[item], heights[item]));
+    }
+    return result;
+  }
+
+  private int findBest(
+    final int width,
+    final int height)
+  {
+    int best = -1;
+    long best_primary = Long.MAX_VALUE;
+    long best_secondary = Long.MAX_VALUE;
+
+    final int[] f = this.free;
+    for (int index = 0; index < this.free_count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final int fw = f[base + BoxArrays.MAXIMUM_X] - f[base + BoxArrays.MINIMUM_X];
+      final int fh = f[base + BoxArrays.MAXIMUM_Y] - f[base + BoxArrays.MINIMUM_Y];
+      if (width > fw || height > fh) {
+        continue;
+      }
+
+      final long left_w = (long) (fw - width);
+      final long left_h = (long) (fh - height);
+      final long short_side = Math.min(left_w, left_h);
+      final long primary;
+      final long secondary;
+      switch (this.heuristic) {
+        case BEST_SHORT_SIDE_FIT:
+          primary = short_side;
+          secondary = Math.max(left_w, left_h);
+          break;
+        case BEST_AREA_FIT:
+          primary = (long) fw * (long) fh - (long) width * (long) height;
+          secondary = short_side;
+          break;
+        default:
+          throw new UnreachableCodeException();
+      }
+
+      if (primary < best_primary
+        || primary == best_primary && secondary < best_secondary) {
+        best = index;
+        best_primary = primary;
+        best_secondary = secondary;
+      }
+    }
+    return best;
+  }
+
+  private void place(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    /*
+     * Split every free rectangle that intersects the placed box, compacting
+     * the surviving free rectangles in the same pass.
+     *
+     * Each fresh rectangle lies on one side of the placed box: it has an
+     * edge on one of the edge lines of the placed box and overlaps the
+     * placed box along that line. A rectangle that does not intersect the
+     * placed box can only contain such a fresh rectangle if it has an edge
+     * on the same line and also overlaps the placed box along that line, so
+     * the surviving free rectangles that touch the placed box are recorded
+     * as the only candidates for containing fresh rectangles.
+     */
+
+    final int[] f = this.free;
+    this.touching_count = 0;
+
+    int kept = 0;
+    for (int index = 0; index < this.free_count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final int fx0 = f[base + BoxArrays.MINIMUM_X];
+      final int fx1 = f[base + BoxArrays.MAXIMUM_X];
+      final int fy0 = f[base + BoxArrays.MINIMUM_Y];
+      final int fy1 = f[base + BoxArrays.MAXIMUM_Y];
+      final boolean spans_x = fx0 < x_max && fx1 > x_min;
+      final boolean spans_y = fy0 < y_max && fy1 > y_min;
+
+      if (spans_x && spans_y) {
+        this.split(x_min, x_max, y_min, y_max, fx0, fx1, fy0, fy1);
+        continue;
+      }
+
+      if (spans_y) {
+        if (fx1 == x_min) {
+          this.pushTouching(kept, BoxPackerMaxRects.SIDE_LEFT);
+        } else if (fx0 == x_max) {
+          this.pushTouching(kept, BoxPackerMaxRects.SIDE_RIGHT);
+        }
+      } else if (spans_x) {
+        if (fy1 == y_min) {
+          this.pushTouching(kept, BoxPackerMaxRects.SIDE_TOP);
+        } else if (fy0 == y_max) {
+          this.pushTouching(kept, BoxPackerMaxRects.SIDE_BOTTOM);
+        }
+      }
+
+      if (kept != index) {
+        BoxPackerMaxRects.copy(f, index, f, kept);
+      }
+      ++kept;
+    }
+    this.free_count = kept;
+
+    this.prune();
+  }
+
+  private void split(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max,
+    final int fx0,
+    final int fx1,
+    final int fy0,
+    final int fy1)
+  {
+    if (x_min > fx0) {
+      this.pushFresh(BoxPackerMaxRects.SIDE_LEFT, fx0, x_min, fy0, fy1);
+    }
+    if (x_max < fx1) {
+      this.pushFresh(BoxPackerMaxRects.SIDE_RIGHT, x_max, fx1, fy0, fy1);
+    }
+    if (y_min > fy0) {
+      this.pushFresh(BoxPackerMaxRects.SIDE_TOP, fx0, fx1, fy0, y_min);
+    }
+    if (y_max < fy1) {
+      this.pushFresh(BoxPackerMaxRects.SIDE_BOTTOM, fx0, fx1, y_max, fy1);
+    }
+  }
+
+  private void prune()
+  {
+    /*
+     * Containment only needs to be checked between fresh rectangles on the
+     * same side of the placed box, and between fresh rectangles and the
+     * surviving free rectangles touching that side.
+     *
+     * Conversely, no surviving free rectangle can be contained within a
+     * fresh rectangle: each fresh rectangle lies within a split free
+     * rectangle, and the free rectangles were mutually maximal.
+     */
+
+    for (int side = 0; side < 4; ++side) {
+      this.pruneFreshSide(side);
+    }
+
+    for (int index = 0; index < this.touching_count; ++index) {
+      final int entry = this.touching[index];
+      this.removeFreshContainedIn(entry & 3, entry >>> 2);
+    }
+
+    for (int side = 0; side < 4; ++side) {
+      final int[] pieces = this.fresh[side];
+      for (int index = 0; index < this.fresh_counts[side]; ++index) {
+        this.ensureFreeCapacity();
+        BoxPackerMaxRects.copy(pieces, index, this.free, this.free_count);
+        ++this.free_count;
+      }
+      this.fresh_counts[side] = 0;
+    }
+  }
+
+  private void pushTouching(
+    final int index,
+    final int side)
+  {
+    if (this.touching_count == this.touching.length) {
+      this.touching = Arrays.copyOf(
+        this.touching, Math.multiplyExact(this.touching.length, 2));
+    }
+    this.touching[this.touching_count] = index << 2 | side;
+    ++this.touching_count;
+  }
+
+  private void pruneFreshSide(
+    final int side)
+  {
+    final int[] pieces = this.fresh[side];
+    int index = 0;
+    while (index < this.fresh_counts[side]) {
+      if (this.freshContainedInFresh(side, index)) {
+        --this.fresh_counts[side];
+        BoxPackerMaxRects.copy(pieces, this.fresh_counts[side], pieces, index);
+      } else {
+        ++index;
+      }
+    }
+  }
+
+  private void removeFreshContainedIn(
+    final int side,
+    final int free_index)
+  {
+    final int[] pieces = this.fresh[side];
+    int index = 0;
+    while (index < this.fresh_counts[side]) {
+      if (BoxPackerMaxRects.contains(this.free, free_index, pieces, index)) {
+        --this.fresh_counts[side];
+        BoxPackerMaxRects.copy(pieces, this.fresh_counts[side], pieces, index);
+      } else {
+        ++index;
+      }
+    }
+  }
+
+  private boolean freshContainedInFresh(
+    final int side,
+    final int index)
+  {
+    final int[] pieces = this.fresh[side];
+    final int count = this.fresh_counts[side];
+    for (int other = 0; other < count; ++other) {
+      if (other != index
+        && BoxPackerMaxRects.contains(pieces, other, pieces, index)) {
+
+        /*
+         * Of two identical rectangles, keep the one with the lower index.
+         */
+
+        if (!BoxPackerMaxRects.contains(pieces, index, pieces, other)
+          || other < index) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(
+    final int[] a,
+    final int a_index,
+    final int[] b,
+    final int b_index)
+  {
+    final int ab = a_index * BoxArrays.STRIDE;
+    final int bb = b_index * BoxArrays.STRIDE;
+    return b[bb + BoxArrays.MINIMUM_X] >= a[ab + BoxArrays.MINIMUM_X]
+      && b[bb + BoxArrays.MAXIMUM_X] <= a[ab + BoxArrays.MAXIMUM_X]
+      && b[bb + BoxArrays.MINIMUM_Y] >= a[ab + BoxArrays.MINIMUM_Y]
+      && b[bb + BoxArrays.MAXIMUM_Y] <= a[ab + BoxArrays.MAXIMUM_Y];
+  }
+
+  private static void copy(
+    final int[] source,
+    final int source_index,
+    final int[] target,
+    final int target_index)
+  {
+    System.arraycopy(
+      source,
+      source_index * BoxArrays.STRIDE,
+      target,
+      target_index * BoxArrays.STRIDE,
+      BoxArrays.STRIDE);
+  }
+
+  private static void push(
+    final int[] target,
+    final int index,
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    final int base = index * BoxArrays.STRIDE;
+    target[base + BoxArrays.MINIMUM_X] = x_min;
+    target[base + BoxArrays.MAXIMUM_X] = x_max;
+    target[base + BoxArrays.MINIMUM_Y] = y_min;
+    target[base + BoxArrays.MAXIMUM_Y] = y_max;
+  }
+
+  private void pushFresh(
+    final int side,
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+  {
+    final int count = this.fresh_counts[side];
+    if ((count + 1) * BoxArrays.STRIDE > this.fresh[side].length) {
+      this.fresh[side] = Arrays.copyOf(
+        this.fresh[side], Math.multiplyExact(this.fresh[side].length, 2));
+    }
+    BoxPackerMaxRects.push(this.fresh[side], count, x_min, x_max, y_min, y_max);
+    this.fresh_counts[side] = count + 1;
+  }
+
+  private void ensureFreeCapacity()
+  {
+    if ((this.free_count + 1) * BoxArrays.STRIDE > this.free.length) {
+      this.free = Arrays.copyOf(
+        this.free, Math.multiplyExact(this.free.length, 2));
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>A driver that updates a {@link BoxLayoutTree} on a fork-join pool.</p>
+ *
+ * <p>Once a node has been recomputed, the boxes that it passes to its
+ * children are fixed, and the subtrees of the children can be laid out
+ * independently. The driver walks the dirty paths of the tree exactly as
+ * {@link BoxLayoutTree#update()} does, but at each node with more than one
+ * pending child it forks the subtrees of the children as separate tasks.
+ * Every node is still computed from the same inputs by the same code, so the
+ * resulting boxes are identical to those produced by the sequential
+ * update.</p>
+ *
+ * <p>Forking stops whenever the current worker already has a surplus of
+ * queued tasks, so small or narrow updates proceed at roughly sequential
+ * cost.</p>
+ */
+
+public final class BoxParallelLayout
+{
+  private static final int SURPLUS_LIMIT = 3;
+
+  private BoxParallelLayout()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Recompute the boxes of all nodes of {@code tree} affected by changes made
+   * since the last update, using the threads of {@code pool}. The tree must
+   * not be accessed by other threads until this method returns.
+   *
+   * @param tree The tree
+   * @param pool The pool
+   * @param <S>  The coordinate space of the boxes
+   *
+   * @return The number of nodes that were recomputed
+   */
+
+  public static <S> int update(
+    final BoxLayoutTree<S> tree,
+    final ForkJoinPool pool)
+  {
+    NullCheck.notNull(tree);
+    NullCheck.notNull(pool);
+
+    if (!tree.isDirty()) {
+      return 0;
+    }
+    return pool.invoke(new Task<>(tree, tree.root())).intValue();
+  }
+
+  private static final class Task<S> extends RecursiveTask<Integer>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final BoxLayoutTree<S> tree;
+    private final int node;
+
+    Task(
+      final BoxLayoutTree<S> in_tree,
+      final int in_node)
+    {
+      this.tree = NullCheck.notNull(in_tree);
+      this.node = in_node;
+    }
+
+    @Override
+    protected Integer compute()
+    {
+      final BoxLayoutTree<S> t = this.tree;
+      final List<Task<S>> forked = new ArrayList<>(8);
+      int current = this.node;
+      int count = 0;
+
+      while (true) {
+        count += t.visitNode(current);
+
+        final int first = t.firstChild(current);
+        if (first < 0) {
+          break;
+        }
+
+        final int last = first + t.childCount(current);
+        int pending = 0;
+        int pending_last = -1;
+        for (int child = first; child < last; ++child) {
+          if (t.isPending(child)) {
+            ++pending;
+            pending_last = child;
+          }
+        }
+
+        if (pending == 0) {
+          break;
+        }
+
+        final boolean surplus = RecursiveTask.getSurplusQueuedTaskCount()
+          > BoxParallelLayout.SURPLUS_LIMIT;
+        if (pending > 1 && surplus) {
+          count += t.visit(current);
+          break;
+        }
+
+        /*
+         * Fork every pending child but the last, and descend into the last
+         * without creating a task, so that deep trees do not nest calls.
+         */
+
+        for (int child = first; child < pending_last; ++child) {
+          if (t.isPending(child)) {
+            final Task<S> task = new Task<>(t, child);
+            task.fork();
+            forked.add(task);
+          }
+        }
+        current = pending_last;
+      }
+
+      for (int index = forked.size() - 1; index >= 0; --index) {
+        count += forked.get(index).join().intValue();
+      }
+      return Integer.valueOf(count);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of {@code (long, int)} pairs, ordered by the {@code long}
+ * key, that does not box its elements.
+ */
+
+final class BoxPriorityQueue
+{
+  private long[] keys;
+  private int[] values;
+  private int size;
+
+  BoxPriorityQueue(
+    final int in_capacity)
+  {
+    final int capacity = Math.max(1, in_capacity);
+    this.keys = new long[capacity];
+    this.values = new int[capacity];
+  }
+
+  /**
+   * Encode a non-negative {@code double} as a key. For non-negative values,
+   * the ordering of the raw bits of a {@code double} matches the ordering of
+   * the values themselves.
+   */
+
+  static long keyOf(
+    final double value)
+  {
+    return Double.doubleToLongBits(value + 0.0);
+  }
+
+  boolean isEmpty()
+  {
+    return this.size == 0;
+  }
+
+  int size()
+  {
+    return this.size;
+  }
+
+  void clear()
+  {
+    this.size = 0;
+  }
+
+  long peekKey()
+  {
+    return this.keys[0];
+  }
+
+  int peekValue()
+  {
+    return this.values[0];
+  }
+
+  void add(
+    final long key,
+    final int value)
+  {
+    if (this.size == this.keys.length) {
+      final int capacity = Math.multiplyExact(this.keys.length, 2);
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.values = Arrays.copyOf(this.values, capacity);
+    }
+
+    int index = this.size;
+    ++this.size;
+    while (index > 0) {
+      final int parent = (index - 1) >>> 1;
+      if (this.keys[parent] <= key) {
+        break;
+      }
+      this.keys[index] = this.keys[parent];
+      this.values[index] = this.values[parent];
+      index = parent;
+    }
+    this.keys[index] = key;
+    this.values[index] = value;
+  }
+
+  void remove()
+  {
+    --this.size;
+    final long key = this.keys[this.size];
+    final int value = this.values[this.size];
+
+    int index = 0;
+    final int half = this.size >>> 1;
+    while (index < half) {
+      int child = index * 2 + 1;
+      if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+        ++child;
+      }
+      if (key <= this.keys[child]) {
+        break;
+      }
+      this.keys[index] = this.keys[child];
+      this.values[index] = this.values[child];
+      index = child;
+    }
+    this.keys[index] = key;
+    this.values[index] = value;
+  }
+}
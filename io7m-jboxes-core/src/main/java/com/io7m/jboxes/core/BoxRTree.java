@@ -0,0 +1,383 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>An immutable, bulk-loaded R-tree over a set of boxes.</p>
+ *
+ * <p>The boxes are sorted by the {@link BoxHilbertCurve Hilbert key} of their
+ * centers and then grouped into leaves of a fixed capacity, and the leaves
+ * are grouped into parent nodes in the same manner until a single root
+ * remains (a packed Hilbert R-tree). The bounds of all nodes and boxes are
+ * held in packed primitive arrays.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxRTree<S>
+{
+  /**
+   * The default number of children per node.
+   */
+
+  public static final int DEFAULT_NODE_CAPACITY = 16;
+
+  private final BoxType<S>[] items;
+  private final int[] item_bounds;
+  private final int[] node_bounds;
+  private final int[] node_first;
+  private final int[] node_count;
+  private final int leaves;
+  private final int nodes;
+
+  private BoxRTree(
+    final BoxType<S>[] in_items,
+    final int[] in_item_bounds,
+    final int[] in_node_bounds,
+    final int[] in_node_first,
+    final int[] in_node_count,
+    final int in_leaves,
+    final int in_nodes)
+  {
+    this.items = NullCheck.notNull(in_items);
+    this.item_bounds = NullCheck.notNull(in_item_bounds);
+    this.node_bounds = NullCheck.notNull(in_node_bounds);
+    this.node_first = NullCheck.notNull(in_node_first);
+    this.node_count = NullCheck.notNull(in_node_count);
+    this.leaves = in_leaves;
+    this.nodes = in_nodes;
+  }
+
+  /**
+   * Equivalent to calling {@link #create(Collection, int)} with a node
+   * capacity of {@link #DEFAULT_NODE_CAPACITY}.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return A new tree
+   */
+
+  public static <S> BoxRTree<S> create(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    return BoxRTree.create(boxes, BoxRTree.DEFAULT_NODE_CAPACITY);
+  }
+
+  /**
+   * Build a tree containing {@code boxes}.
+   *
+   * @param boxes         The boxes
+   * @param node_capacity The maximum number of children per node
+   * @param <S>           The coordinate space of the boxes
+   *
+   * @return A new tree
+   */
+
+  public static <S> BoxRTree<S> create(
+    final Collection<? extends BoxType<S>> boxes,
+    final int node_capacity)
+  {
+    NullCheck.notNull(boxes);
+    Assertive.require(node_capacity >= 2, "Node capacity must be >= 2");
+
+    final int size = boxes.size();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final BoxType<S>[] input = boxes.toArray(new BoxType[size]);
+    final long[] keys = new long[size];
+    for (int index = 0; index < size; ++index) {
+      keys[index] = BoxHilbertCurve.keyOfCenter(NullCheck.notNull(input[index]));
+    }
+
+    final int[] order = new int[size];
+    BoxExternalSort.sortRun(
+      keys, new long[size], order, new int[size], size);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final BoxType<S>[] items = new BoxType[size];
+    final int[] item_bounds = new int[Math.multiplyExact(size, BoxArrays.STRIDE)];
+    for (int index = 0; index < size; ++index) {
+      items[index] = input[order[index]];
+      BoxArrays.set(item_bounds, index, items[index]);
+    }
+
+    /*
+     * Count the nodes on each level, then fill in the levels from the leaves
+     * upwards. The root is the last node.
+     */
+
+    int total = 0;
+    int level_size = size;
+    do {
+      level_size = (level_size + node_capacity - 1) / node_capacity;
+      total = Math.addExact(total, level_size);
+    } while (level_size > 1);
+
+    final int leaves = (size + node_capacity - 1) / node_capacity;
+    final int nodes = size == 0 ? 0 : total;
+    final int[] node_bounds = new int[Math.multiplyExact(nodes, BoxArrays.STRIDE)];
+    final int[] node_first = new int[nodes];
+    final int[] node_count = new int[nodes];
+
+    BoxRTree.buildLevel(
+      item_bounds, 0, size, node_capacity, node_bounds, node_first, node_count, 0);
+
+    int level_start = 0;
+    int level_count = leaves;
+    while (level_count > 1) {
+      final int next_start = level_start + level_count;
+      BoxRTree.buildLevel(
+        node_bounds,
+        level_start,
+        level_count,
+        node_capacity,
+        node_bounds,
+        node_first,
+        node_count,
+        next_start);
+      level_start = next_start;
+      level_count = (level_count + node_capacity - 1) / node_capacity;
+    }
+
+    return new BoxRTree<>(
+      items, item_bounds, node_bounds, node_first, node_count, leaves, nodes);
+  }
+
+  private static void buildLevel(
+    final int[] child_bounds,
+    final int child_start,
+    final int child_count,
+    final int node_capacity,
+    final int[] node_bounds,
+    final int[] node_first,
+    final int[] node_count,
+    final int node_start)
+  {
+    int node = node_start;
+    for (int first = 0; first < child_count; first += node_capacity) {
+      final int count = Math.min(node_capacity, child_count - first);
+      node_first[node] = child_start + first;
+      node_count[node] = count;
+
+      int x_min = Integer.MAX_VALUE;
+      int x_max = Integer.MIN_VALUE;
+      int y_min = Integer.MAX_VALUE;
+      int y_max = Integer.MIN_VALUE;
+      for (int child = 0; child < count; ++child) {
+        final int base = (child_start + first + child) * BoxArrays.STRIDE;
+        x_min = Math.min(x_min, child_bounds[base + BoxArrays.MINIMUM_X]);
+        x_max = Math.max(x_max, child_bounds[base + BoxArrays.MAXIMUM_X]);
+        y_min = Math.min(y_min, child_bounds[base + BoxArrays.MINIMUM_Y]);
+        y_max = Math.max(y_max, child_bounds[base + BoxArrays.MAXIMUM_Y]);
+      }
+
+      final int base = node * BoxArrays.STRIDE;
+      node_bounds[base + BoxArrays.MINIMUM_X] = x_min;
+      node_bounds[base + BoxArrays.MAXIMUM_X] = x_max;
+      node_bounds[base + BoxArrays.MINIMUM_Y] = y_min;
+      node_bounds[base + BoxArrays.MAXIMUM_Y] = y_max;
+      ++node;
+    }
+  }
+
+  /**
+   * @return The number of boxes in the tree
+   */
+
+  public int size()
+  {
+    return this.items.length;
+  }
+
+  /**
+   * @param index The index of a box, in {@code [0, size())}
+   *
+   * @return The box at {@code index}
+   */
+
+  public BoxType<S> box(
+    final int index)
+  {
+    return this.items[index];
+  }
+
+  /**
+   * @return The smallest box containing every box in the tree, if the tree is
+   * not empty
+   */
+
+  public Optional<BoxType<S>> bounds()
+  {
+    if (this.nodes == 0) {
+      return Optional.empty();
+    }
+    return Optional.of(BoxArrays.get(this.node_bounds, this.root()));
+  }
+
+  int root()
+  {
+    return this.nodes - 1;
+  }
+
+  boolean isLeaf(
+    final int node)
+  {
+    return node < this.leaves;
+  }
+
+  int first(
+    final int node)
+  {
+    return this.node_first[node];
+  }
+
+  int count(
+    final int node)
+  {
+    return this.node_count[node];
+  }
+
+  int[] nodeBounds()
+  {
+    return this.node_bounds;
+  }
+
+  int[] itemBounds()
+  {
+    return this.item_bounds;
+  }
+
+  /**
+   * Find the {@code k} boxes nearest to a query according to {@code metric},
+   * in ascending order of distance. Boxes to which the metric assigns an
+   * infinite distance are never reported, so fewer than {@code k} boxes may
+   * be returned.
+   *
+   * @param metric The distance metric
+   * @param k      The maximum number of boxes to return
+   *
+   * @return The nearest boxes
+   */
+
+  public List<BoxType<S>> nearest(
+    final BoxDistanceMetricType metric,
+    final int k)
+  {
+    Assertive.require(k >= 0, "K must be >= 0");
+
+    final int[] indices = new int[Math.min(k, this.items.length)];
+    final int found = this.nearest(metric, indices.length, indices);
+    final List<BoxType<S>> result = new ArrayList<>(found);
+    for (int index = 0; index < found; ++index) {
+      result.add(this.items[indices[index]]);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Find the {@code k} boxes nearest to a query according to {@code metric}
+   * by best-first traversal of the tree, writing the indices of the boxes
+   * (see {@link #box(int)}) to {@code out} in ascending order of distance.
+   *
+   * @param metric The distance metric
+   * @param k      The maximum number of boxes to find
+   * @param out    The output array
+   *
+   * @return The number of boxes found
+   */
+
+  public int nearest(
+    final BoxDistanceMetricType metric,
+    final int k,
+    final int[] out)
+  {
+    NullCheck.notNull(metric);
+    NullCheck.notNull(out);
+    Assertive.require(k >= 0, "K must be >= 0");
+    Assertive.require(out.length >= k, "Output array must have room for k");
+
+    if (this.nodes == 0 || k == 0) {
+      return 0;
+    }
+
+    /*
+     * Nodes are queued with their own indices, and boxes with the
+     * complement of their indices. A box is only removed from the queue once
+     * every node and box that could be nearer has been removed.
+     */
+
+    final BoxPriorityQueue queue = new BoxPriorityQueue(64);
+    final int root = this.root();
+    this.enqueue(queue, metric, root, this.node_bounds, true);
+
+    int found = 0;
+    while (found < k && !queue.isEmpty()) {
+      final int value = queue.peekValue();
+      queue.remove();
+
+      if (value < 0) {
+        out[found] = ~value;
+        ++found;
+        continue;
+      }
+
+      final int first = this.node_first[value];
+      final int last = first + this.node_count[value];
+      final boolean leaf = this.isLeaf(value);
+      for (int child = first; child < last; ++child) {
+        if (leaf) {
+          this.enqueue(queue, metric, child, this.item_bounds, false);
+        } else {
+          this.enqueue(queue, metric, child, this.node_bounds, true);
+        }
+      }
+    }
+    return found;
+  }
+
+  private void enqueue(
+    final BoxPriorityQueue queue,
+    final BoxDistanceMetricType metric,
+    final int index,
+    final int[] bounds,
+    final boolean node)
+  {
+    final int base = index * BoxArrays.STRIDE;
+    final int x_min = bounds[base + BoxArrays.MINIMUM_X];
+    final int x_max = bounds[base + BoxArrays.MAXIMUM_X];
+    final int y_min = bounds[base + BoxArrays.MINIMUM_Y];
+    final int y_max = bounds[base + BoxArrays.MAXIMUM_Y];
+
+    final double distance = node
+      ? metric.lowerBound(x_min, x_max, y_min, y_max)
+      : metric.distance(x_min, x_max, y_min, y_max);
+
+    if (distance < Double.POSITIVE_INFINITY) {
+      Assertive.require(distance >= 0.0, "Distances must be non-negative");
+      queue.add(BoxPriorityQueue.keyOf(distance), node ? index : ~index);
+    }
+  }
+}
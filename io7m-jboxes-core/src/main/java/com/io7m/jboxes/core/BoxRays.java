@@ -0,0 +1,479 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * <p>Functions to intersect rays and line segments with boxes.</p>
+ *
+ * <p>A ray starts at an origin {@code (x, y)} and extends without limit in
+ * the direction {@code (dx, dy)}; a segment runs between two points,
+ * inclusive. For the purposes of these functions, boxes are treated as closed
+ * areas, so a ray that merely touches the edge of a box hits it. All tests
+ * are exact: the parametric positions at which a ray enters and leaves each
+ * box are kept as fractions of integers and are compared by
+ * cross-multiplication, falling back to arbitrary-precision arithmetic only
+ * when a product would overflow.</p>
+ *
+ * <p>The queries over a {@link BoxRTree} visit the nodes of the tree in
+ * ascending order of the position at which the ray enters them, and
+ * therefore stop as soon as the remaining boxes cannot be hit earlier.</p>
+ */
+
+public final class BoxRays
+{
+  private BoxRays()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  private static int compareFractions(
+    final long a_num,
+    final long a_den,
+    final long b_num,
+    final long b_den)
+  {
+    try {
+      return Long.compare(
+        Math.multiplyExact(a_num, b_den), Math.multiplyExact(b_num, a_den));
+    } catch (final ArithmeticException e) {
+      final BigInteger a =
+        BigInteger.valueOf(a_num).multiply(BigInteger.valueOf(b_den));
+      final BigInteger b =
+        BigInteger.valueOf(b_num).multiply(BigInteger.valueOf(a_den));
+      return a.compareTo(b);
+    }
+  }
+
+  /**
+   * Determine whether a ray hits a box.
+   *
+   * @param box The box
+   * @param x   The X coordinate of the origin of the ray
+   * @param y   The Y coordinate of the origin of the ray
+   * @param dx  The X component of the direction of the ray
+   * @param dy  The Y component of the direction of the ray
+   * @param <S> The coordinate space of the box
+   *
+   * @return {@code true} iff the ray hits {@code box}
+   */
+
+  public static <S> boolean rayIntersects(
+    final BoxType<S> box,
+    final int x,
+    final int y,
+    final int dx,
+    final int dy)
+  {
+    NullCheck.notNull(box);
+    return BoxRays.ray(x, y, dx, dy).test(box);
+  }
+
+  /**
+   * Determine whether a segment hits a box.
+   *
+   * @param box The box
+   * @param x0  The X coordinate of the start of the segment
+   * @param y0  The Y coordinate of the start of the segment
+   * @param x1  The X coordinate of the end of the segment
+   * @param y1  The Y coordinate of the end of the segment
+   * @param <S> The coordinate space of the box
+   *
+   * @return {@code true} iff the segment hits {@code box}
+   */
+
+  public static <S> boolean segmentIntersects(
+    final BoxType<S> box,
+    final int x0,
+    final int y0,
+    final int x1,
+    final int y1)
+  {
+    NullCheck.notNull(box);
+    return BoxRays.segment(x0, y0, x1, y1).test(box);
+  }
+
+  /**
+   * Find the box in {@code tree} that a ray hits first. If several boxes are
+   * entered at exactly the same point, any one of them is returned.
+   *
+   * @param tree The tree
+   * @param x    The X coordinate of the origin of the ray
+   * @param y    The Y coordinate of the origin of the ray
+   * @param dx   The X component of the direction of the ray
+   * @param dy   The Y component of the direction of the ray
+   * @param <S>  The coordinate space of the boxes
+   *
+   * @return The first box hit, if any
+   */
+
+  public static <S> Optional<BoxType<S>> rayFirstHit(
+    final BoxRTree<S> tree,
+    final int x,
+    final int y,
+    final int dx,
+    final int dy)
+  {
+    return BoxRays.firstHit(tree, BoxRays.ray(x, y, dx, dy));
+  }
+
+  /**
+   * Find the box in {@code tree} that a segment hits first, starting from
+   * {@code (x0, y0)}.
+   *
+   * @param tree The tree
+   * @param x0   The X coordinate of the start of the segment
+   * @param y0   The Y coordinate of the start of the segment
+   * @param x1   The X coordinate of the end of the segment
+   * @param y1   The Y coordinate of the end of the segment
+   * @param <S>  The coordinate space of the boxes
+   *
+   * @return The first box hit, if any
+   */
+
+  public static <S> Optional<BoxType<S>> segmentFirstHit(
+    final BoxRTree<S> tree,
+    final int x0,
+    final int y0,
+    final int x1,
+    final int y1)
+  {
+    return BoxRays.firstHit(tree, BoxRays.segment(x0, y0, x1, y1));
+  }
+
+  /**
+   * Pass every box in {@code tree} that a ray hits to {@code receiver}, in
+   * ascending order of the point at which the ray enters each box, until
+   * {@code receiver} returns {@code false}.
+   *
+   * @param tree     The tree
+   * @param x        The X coordinate of the origin of the ray
+   * @param y        The Y coordinate of the origin of the ray
+   * @param dx       The X component of the direction of the ray
+   * @param dy       The Y component of the direction of the ray
+   * @param receiver A receiver that returns {@code true} to receive more hits
+   * @param <S>      The coordinate space of the boxes
+   *
+   * @return The number of boxes passed to {@code receiver}
+   */
+
+  public static <S> int rayAllHits(
+    final BoxRTree<S> tree,
+    final int x,
+    final int y,
+    final int dx,
+    final int dy,
+    final Predicate<BoxType<S>> receiver)
+  {
+    return BoxRays.allHits(tree, BoxRays.ray(x, y, dx, dy), receiver);
+  }
+
+  /**
+   * Pass every box in {@code tree} that a segment hits to {@code receiver},
+   * in ascending order of the point at which the segment enters each box,
+   * until {@code receiver} returns {@code false}.
+   *
+   * @param tree     The tree
+   * @param x0       The X coordinate of the start of the segment
+   * @param y0       The Y coordinate of the start of the segment
+   * @param x1       The X coordinate of the end of the segment
+   * @param y1       The Y coordinate of the end of the segment
+   * @param receiver A receiver that returns {@code true} to receive more hits
+   * @param <S>      The coordinate space of the boxes
+   *
+   * @return The number of boxes passed to {@code receiver}
+   */
+
+  public static <S> int segmentAllHits(
+    final BoxRTree<S> tree,
+    final int x0,
+    final int y0,
+    final int x1,
+    final int y1,
+    final Predicate<BoxType<S>> receiver)
+  {
+    return BoxRays.allHits(tree, BoxRays.segment(x0, y0, x1, y1), receiver);
+  }
+
+  private static Ray ray(
+    final int x,
+    final int y,
+    final int dx,
+    final int dy)
+  {
+    Assertive.require(dx != 0 || dy != 0, "Direction must be non-zero");
+    return new Ray((long) x, (long) y, (long) dx, (long) dy, false);
+  }
+
+  private static Ray segment(
+    final int x0,
+    final int y0,
+    final int x1,
+    final int y1)
+  {
+    return new Ray(
+      (long) x0,
+      (long) y0,
+      (long) x1 - (long) x0,
+      (long) y1 - (long) y0,
+      true);
+  }
+
+  private static void push(
+    final BoxPriorityQueue queue,
+    final Ray ray,
+    final int[] bounds,
+    final int index,
+    final int value)
+  {
+    if (ray.test(bounds, index)) {
+      queue.add(BoxPriorityQueue.keyOf(ray.entry()), value);
+    }
+  }
+
+  private static <S> void expand(
+    final BoxRTree<S> tree,
+    final BoxPriorityQueue queue,
+    final Ray ray,
+    final int node)
+  {
+    final int first = tree.first(node);
+    final int last = first + tree.count(node);
+    final boolean leaf = tree.isLeaf(node);
+    for (int child = first; child < last; ++child) {
+      if (leaf) {
+        BoxRays.push(queue, ray, tree.itemBounds(), child, ~child);
+      } else {
+        BoxRays.push(queue, ray, tree.nodeBounds(), child, child);
+      }
+    }
+  }
+
+  private static <S> Optional<BoxType<S>> firstHit(
+    final BoxRTree<S> tree,
+    final Ray ray)
+  {
+    NullCheck.notNull(tree);
+
+    if (tree.size() == 0) {
+      return Optional.empty();
+    }
+
+    final BoxPriorityQueue queue = new BoxPriorityQueue(64);
+    BoxRays.push(queue, ray, tree.nodeBounds(), tree.root(), tree.root());
+
+    /*
+     * Queue keys are rounded, but rounding is monotonic, so once a box has
+     * been found, only queued entries with keys no greater than its key can
+     * be entered earlier. Those are examined using exact comparisons.
+     */
+
+    int best = -1;
+    long best_key = Long.MAX_VALUE;
+    long best_num = 0L;
+    long best_den = 1L;
+
+    while (!queue.isEmpty() && queue.peekKey() <= best_key) {
+      final long key = queue.peekKey();
+      final int value = queue.peekValue();
+      queue.remove();
+
+      if (value >= 0) {
+        BoxRays.expand(tree, queue, ray, value);
+        continue;
+      }
+
+      final int item = ~value;
+      ray.test(tree.itemBounds(), item);
+
+      final boolean better = best < 0 || BoxRays.compareFractions(
+        ray.entry_num, ray.entry_den, best_num, best_den) < 0;
+      if (better) {
+        best = item;
+        best_key = Math.min(best_key, key);
+        best_num = ray.entry_num;
+        best_den = ray.entry_den;
+      }
+    }
+
+    if (best < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(tree.box(best));
+  }
+
+  private static <S> int allHits(
+    final BoxRTree<S> tree,
+    final Ray ray,
+    final Predicate<BoxType<S>> receiver)
+  {
+    NullCheck.notNull(tree);
+    NullCheck.notNull(receiver);
+
+    if (tree.size() == 0) {
+      return 0;
+    }
+
+    final BoxPriorityQueue queue = new BoxPriorityQueue(64);
+    BoxRays.push(queue, ray, tree.nodeBounds(), tree.root(), tree.root());
+
+    int count = 0;
+    while (!queue.isEmpty()) {
+      final int value = queue.peekValue();
+      queue.remove();
+
+      if (value >= 0) {
+        BoxRays.expand(tree, queue, ray, value);
+        continue;
+      }
+
+      ++count;
+      if (!receiver.test(tree.box(~value))) {
+        break;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * A ray or segment, and the exact entry position of the most recently
+   * tested box.
+   */
+
+  private static final class Ray
+  {
+    private final long x;
+    private final long y;
+    private final long dx;
+    private final long dy;
+    private final boolean segment;
+    private long entry_num;
+    private long entry_den;
+    private long exit_num;
+    private long exit_den;
+    private boolean exit_bounded;
+
+    Ray(
+      final long in_x,
+      final long in_y,
+      final long in_dx,
+      final long in_dy,
+      final boolean in_segment)
+    {
+      this.x = in_x;
+      this.y = in_y;
+      this.dx = in_dx;
+      this.dy = in_dy;
+      this.segment = in_segment;
+    }
+
+    double entry()
+    {
+      return (double) this.entry_num / (double) this.entry_den;
+    }
+
+    boolean test(
+      final int[] bounds,
+      final int index)
+    {
+      final int base = index * BoxArrays.STRIDE;
+      return this.test(
+        bounds[base + BoxArrays.MINIMUM_X],
+        bounds[base + BoxArrays.MAXIMUM_X],
+        bounds[base + BoxArrays.MINIMUM_Y],
+        bounds[base + BoxArrays.MAXIMUM_Y]);
+    }
+
+    boolean test(
+      final BoxType<?> box)
+    {
+      return this.test(
+        box.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+    }
+
+    /**
+     * Clip the parametric range of the ray against the slab {@code [min,
+     * max]} on one axis.
+     */
+
+    private boolean clip(
+      final long origin,
+      final long direction,
+      final int min,
+      final int max)
+    {
+      if (direction == 0L) {
+        return origin >= (long) min && origin <= (long) max;
+      }
+
+      final long enter;
+      final long leave;
+      final long den;
+      if (direction > 0L) {
+        enter = (long) min - origin;
+        leave = (long) max - origin;
+        den = direction;
+      } else {
+        enter = origin - (long) max;
+        leave = origin - (long) min;
+        den = -direction;
+      }
+
+      if (BoxRays.compareFractions(
+        enter, den, this.entry_num, this.entry_den) > 0) {
+        this.entry_num = enter;
+        this.entry_den = den;
+      }
+      if (!this.exit_bounded || BoxRays.compareFractions(
+        leave, den, this.exit_num, this.exit_den) < 0) {
+        this.exit_num = leave;
+        this.exit_den = den;
+        this.exit_bounded = true;
+      }
+      return true;
+    }
+
+    boolean test(
+      final int x_min,
+      final int x_max,
+      final int y_min,
+      final int y_max)
+    {
+      this.entry_num = 0L;
+      this.entry_den = 1L;
+      this.exit_num = 1L;
+      this.exit_den = 1L;
+      this.exit_bounded = this.segment;
+
+      if (!this.clip(this.x, this.dx, x_min, x_max)) {
+        return false;
+      }
+      if (!this.clip(this.y, this.dy, y_min, y_max)) {
+        return false;
+      }
+      return !this.exit_bounded || BoxRays.compareFractions(
+        this.entry_num, this.entry_den, this.exit_num, this.exit_den) <= 0;
+    }
+  }
+}
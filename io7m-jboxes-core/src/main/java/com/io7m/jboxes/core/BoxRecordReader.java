@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>A reader of binary box files.</p>
+ *
+ * <p>The reader exposes one record at a time: {@link #advance()} reads the
+ * next record, and the accessor methods return the values of the most
+ * recently read record.</p>
+ *
+ * @see BoxRecordWriter
+ */
+
+public final class BoxRecordReader implements Closeable
+{
+  private static final int BUFFER_RECORDS = 4096;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final long records;
+  private long read;
+  private int x_min;
+  private int x_max;
+  private int y_min;
+  private int y_max;
+
+  private BoxRecordReader(
+    final FileChannel in_channel,
+    final long in_records)
+  {
+    this.channel = NullCheck.notNull(in_channel);
+    this.records = in_records;
+    this.buffer = ByteBuffer.allocateDirect(
+      BoxRecordWriter.RECORD_SIZE * BoxRecordReader.BUFFER_RECORDS);
+    this.buffer.flip();
+  }
+
+  /**
+   * Open the box file at {@code path} for reading.
+   *
+   * @param path The file
+   *
+   * @return A new reader
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static BoxRecordReader open(
+    final Path path)
+    throws IOException
+  {
+    NullCheck.notNull(path);
+
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      final long size = channel.size();
+      if (size % (long) BoxRecordWriter.RECORD_SIZE != 0L) {
+        throw new IOException(
+          String.format(
+            "File size %d is not a multiple of the record size %d",
+            Long.valueOf(size),
+            Integer.valueOf(BoxRecordWriter.RECORD_SIZE)));
+      }
+      return new BoxRecordReader(
+        channel, size / (long) BoxRecordWriter.RECORD_SIZE);
+    } catch (final IOException | RuntimeException e) {
+      try {
+        channel.close();
+      } catch (final IOException x) {
+        e.addSuppressed(x);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return The total number of records in the file
+   */
+
+  public long records()
+  {
+    return this.records;
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return {@code true} iff a record was read, {@code false} at the end of
+   * the file
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public boolean advance()
+    throws IOException
+  {
+    if (this.read == this.records) {
+      return false;
+    }
+
+    if (this.buffer.remaining() < BoxRecordWriter.RECORD_SIZE) {
+      this.buffer.compact();
+      while (this.buffer.position() < BoxRecordWriter.RECORD_SIZE) {
+        if (this.channel.read(this.buffer) < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+      }
+      this.buffer.flip();
+    }
+
+    this.x_min = this.buffer.getInt();
+    this.x_max = this.buffer.getInt();
+    this.y_min = this.buffer.getInt();
+    this.y_max = this.buffer.getInt();
+    ++this.read;
+    return true;
+  }
+
+  /**
+   * @return The minimum X value of the current record
+   */
+
+  public int minimumX()
+  {
+    return this.x_min;
+  }
+
+  /**
+   * @return The maximum X value of the current record
+   */
+
+  public int maximumX()
+  {
+    return this.x_max;
+  }
+
+  /**
+   * @return The minimum Y value of the current record
+   */
+
+  public int minimumY()
+  {
+    return this.y_min;
+  }
+
+  /**
+   * @return The maximum Y value of the current record
+   */
+
+  public int maximumY()
+  {
+    return this.y_max;
+  }
+
+  /**
+   * @param <S> The coordinate space of the box
+   *
+   * @return The current record as a box
+   */
+
+  public <S> BoxType<S> box()
+  {
+    Assertive.require(this.read > 0L, "A record must have been read");
+    return Box.of(this.x_min, this.x_max, this.y_min, this.y_max);
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>A writer of binary box files.</p>
+ *
+ * <p>A box file is a sequence of fixed-size records of {@link #RECORD_SIZE}
+ * octets. Each record holds the {@code minimumX}, {@code maximumX}, {@code
+ * minimumY} and {@code maximumY} values of a box, in that order, as
+ * big-endian 32-bit integers.</p>
+ *
+ * @see BoxRecordReader
+ */
+
+public final class BoxRecordWriter implements Closeable
+{
+  /**
+   * The size in octets of a single record.
+   */
+
+  public static final int RECORD_SIZE = 16;
+
+  private static final int BUFFER_RECORDS = 4096;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private long records;
+
+  private BoxRecordWriter(
+    final FileChannel in_channel)
+  {
+    this.channel = NullCheck.notNull(in_channel);
+    this.buffer = ByteBuffer.allocateDirect(
+      BoxRecordWriter.RECORD_SIZE * BoxRecordWriter.BUFFER_RECORDS);
+  }
+
+  /**
+   * Create or truncate the file at {@code path} and open it for writing.
+   *
+   * @param path The file
+   *
+   * @return A new writer
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public static BoxRecordWriter open(
+    final Path path)
+    throws IOException
+  {
+    NullCheck.notNull(path);
+
+    final FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.WRITE);
+    try {
+      return new BoxRecordWriter(channel);
+    } catch (final RuntimeException | Error e) {
+
+      /*
+       * Allocating the direct buffer can fail with an OutOfMemoryError, so
+       * errors close the channel as well.
+       */
+
+      try {
+        channel.close();
+      } catch (final IOException x) {
+        e.addSuppressed(x);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Write a record.
+   *
+   * @param x_min The minimum X value of the box
+   * @param x_max The maximum X value of the box
+   * @param y_min The minimum Y value of the box
+   * @param y_max The maximum Y value of the box
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void write(
+    final int x_min,
+    final int x_max,
+    final int y_min,
+    final int y_max)
+    throws IOException
+  {
+    if (this.buffer.remaining() < BoxRecordWriter.RECORD_SIZE) {
+      this.flush();
+    }
+    this.buffer.putInt(x_min);
+    this.buffer.putInt(x_max);
+    this.buffer.putInt(y_min);
+    this.buffer.putInt(y_max);
+    ++this.records;
+  }
+
+  /**
+   * Write a record.
+   *
+   * @param box The box
+   * @param <S> The coordinate space of the box
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public <S> void write(
+    final BoxType<S> box)
+    throws IOException
+  {
+    NullCheck.notNull(box);
+    this.write(box.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+  }
+
+  /**
+   * @return The number of records written so far
+   */
+
+  public long records()
+  {
+    return this.records;
+  }
+
+  private void flush()
+    throws IOException
+  {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import org.valid4j.Assertive;
+
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>A spliterator over a set of boxes that splits by spatial partition.</p>
+ *
+ * <p>Each split divides the remaining boxes at the median of their centers
+ * along the axis on which the centers are most spread out (a kd-split), so
+ * each half of a split covers a compact region of space. The boxes are
+ * copied on construction and are reordered in place as the spliterator is
+ * split; the encounter order is therefore not meaningful.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxSpatialSpliterator<S> implements Spliterator<BoxType<S>>
+{
+  private final BoxType<S>[] boxes;
+  private final int fence;
+  private final int leaf_size;
+  private int index;
+
+  private BoxSpatialSpliterator(
+    final BoxType<S>[] in_boxes,
+    final int in_index,
+    final int in_fence,
+    final int in_leaf_size)
+  {
+    this.boxes = NullCheck.notNull(in_boxes);
+    this.index = in_index;
+    this.fence = in_fence;
+    this.leaf_size = in_leaf_size;
+  }
+
+  /**
+   * Equivalent to calling {@link #create(Collection, int)} with a leaf size of
+   * {@code 1}.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the boxes
+   *
+   * @return A new spliterator
+   */
+
+  public static <S> BoxSpatialSpliterator<S> create(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    return BoxSpatialSpliterator.create(boxes, 1);
+  }
+
+  /**
+   * Create a new spliterator over a copy of {@code boxes}. The spliterator
+   * will refuse to split if doing so would produce a part with fewer than
+   * {@code leaf_size} boxes.
+   *
+   * @param boxes     The boxes
+   * @param leaf_size The minimum number of boxes in a split part
+   * @param <S>       The coordinate space of the boxes
+   *
+   * @return A new spliterator
+   */
+
+  public static <S> BoxSpatialSpliterator<S> create(
+    final Collection<? extends BoxType<S>> boxes,
+    final int leaf_size)
+  {
+    NullCheck.notNull(boxes);
+    Assertive.require(leaf_size >= 1, "Leaf size must be >= 1");
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final BoxType<S>[] copy = boxes.toArray(new BoxType[boxes.size()]);
+    for (int index = 0; index < copy.length; ++index) {
+      NullCheck.notNull(copy[index]);
+    }
+    return new BoxSpatialSpliterator<>(copy, 0, copy.length, leaf_size);
+  }
+
+  /**
+   * Create a stream over a copy of {@code boxes} backed by a spatially
+   * partitioned spliterator.
+   *
+   * @param boxes    The boxes
+   * @param parallel {@code true} iff the stream should be parallel
+   * @param <S>      The coordinate space of the boxes
+   *
+   * @return A new stream
+   */
+
+  public static <S> Stream<BoxType<S>> stream(
+    final Collection<? extends BoxType<S>> boxes,
+    final boolean parallel)
+  {
+    return StreamSupport.stream(
+      BoxSpatialSpliterator.create(boxes), parallel);
+  }
+
+  private static long center(
+    final BoxType<?> box,
+    final boolean axis_x)
+  {
+    if (axis_x) {
+      return (long) box.minimumX() + (long) box.maximumX();
+    }
+    return (long) box.minimumY() + (long) box.maximumY();
+  }
+
+  @Override
+  public boolean tryAdvance(
+    final Consumer<? super BoxType<S>> action)
+  {
+    NullCheck.notNull(action);
+
+    if (this.index < this.fence) {
+      final BoxType<S> box = this.boxes[this.index];
+      ++this.index;
+      action.accept(box);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void forEachRemaining(
+    final Consumer<? super BoxType<S>> action)
+  {
+    NullCheck.notNull(action);
+
+    final int end = this.fence;
+    for (int current = this.index; current < end; ++current) {
+      action.accept(this.boxes[current]);
+    }
+    this.index = end;
+  }
+
+  @Override
+  public @Nullable Spliterator<BoxType<S>> trySplit()
+  {
+    final int lo = this.index;
+    final int hi = this.fence;
+    final int size = hi - lo;
+    if (size < 2 || size / 2 < this.leaf_size) {
+      return null;
+    }
+
+    long x_min = Long.MAX_VALUE;
+    long x_max = Long.MIN_VALUE;
+    long y_min = Long.MAX_VALUE;
+    long y_max = Long.MIN_VALUE;
+    for (int current = lo; current < hi; ++current) {
+      final BoxType<S> box = this.boxes[current];
+      final long cx = BoxSpatialSpliterator.center(box, true);
+      final long cy = BoxSpatialSpliterator.center(box, false);
+      x_min = Math.min(x_min, cx);
+      x_max = Math.max(x_max, cx);
+      y_min = Math.min(y_min, cy);
+      y_max = Math.max(y_max, cy);
+    }
+
+    final boolean axis_x = x_max - x_min >= y_max - y_min;
+    final int middle = lo + size / 2;
+    this.select(lo, hi - 1, middle, axis_x);
+
+    final BoxSpatialSpliterator<S> prefix =
+      new BoxSpatialSpliterator<>(this.boxes, lo, middle, this.leaf_size);
+    this.index = middle;
+    return prefix;
+  }
+
+  /**
+   * Rearrange the boxes in {@code [in_lo, in_hi]} such that the box at
+   * {@code k} is the box that would be there if the range were sorted by
+   * center, and no box before {@code k} has a greater center than any box
+   * after it.
+   */
+
+  private void select(
+    final int in_lo,
+    final int in_hi,
+    final int k,
+    final boolean axis_x)
+  {
+    final BoxType<S>[] a = this.boxes;
+    int lo = in_lo;
+    int hi = in_hi;
+
+    while (hi > lo) {
+      final int mid = lo + (hi - lo) / 2;
+      final long pivot = BoxSpatialSpliterator.medianOfThree(
+        BoxSpatialSpliterator.center(a[lo], axis_x),
+        BoxSpatialSpliterator.center(a[mid], axis_x),
+        BoxSpatialSpliterator.center(a[hi], axis_x));
+
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (BoxSpatialSpliterator.center(a[i], axis_x) < pivot) {
+          ++i;
+        }
+        while (BoxSpatialSpliterator.center(a[j], axis_x) > pivot) {
+          --j;
+        }
+        if (i <= j) {
+          final BoxType<S> t = a[i];
+          a[i] = a[j];
+          a[j] = t;
+          ++i;
+          --j;
+        }
+      }
+
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private static long medianOfThree(
+    final long a,
+    final long b,
+    final long c)
+  {
+    return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+  }
+
+  @Override
+  public long estimateSize()
+  {
+    return (long) (this.fence - this.index);
+  }
+
+  @Override
+  public int characteristics()
+  {
+    return Spliterator.SIZED
+      | Spliterator.SUBSIZED
+      | Spliterator.NONNULL
+      | Spliterator.IMMUTABLE;
+  }
+}
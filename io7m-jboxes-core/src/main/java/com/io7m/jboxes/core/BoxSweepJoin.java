@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>A streaming sweep-line join over sorted sequences of boxes.</p>
+ *
+ * <p>The join consumes two iterators of boxes, each sorted in ascending order
+ * of {@link BoxType#minimumY()}, and reports every pair {@code (a, b)} (where
+ * {@code a} comes from the first iterator and {@code b} from the second) for
+ * which {@link Boxes#overlaps(BoxType, BoxType)} holds. Only boxes whose Y
+ * span is still open at the current sweep position are retained, so memory
+ * use is bounded by the number of boxes crossing any single horizontal line
+ * rather than by the length of the input.</p>
+ */
+
+public final class BoxSweepJoin
+{
+  private BoxSweepJoin()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  private static <S> PriorityQueue<BoxType<S>> activeSet()
+  {
+    return new PriorityQueue<>(
+      16, Comparator.comparingInt(BoxType::maximumY));
+  }
+
+  private static <S> void expire(
+    final PriorityQueue<BoxType<S>> active,
+    final int y)
+  {
+    while (!active.isEmpty() && active.peek().maximumY() < y) {
+      active.poll();
+    }
+  }
+
+  private static @Nullable <S> BoxType<S> next(
+    final Iterator<? extends BoxType<S>> iterator,
+    final @Nullable BoxType<S> previous)
+  {
+    if (iterator.hasNext()) {
+      final BoxType<S> box = NullCheck.notNull(iterator.next());
+      if (previous != null) {
+        Assertive.require(
+          box.minimumY() >= previous.minimumY(),
+          "Input must be sorted by minimumY");
+      }
+      return box;
+    }
+    return null;
+  }
+
+  /**
+   * Join the boxes of {@code left} and {@code right}, passing every
+   * overlapping pair to {@code receiver}. Both iterators must produce boxes
+   * in ascending order of {@link BoxType#minimumY()}.
+   *
+   * @param left     The first sorted sequence of boxes
+   * @param right    The second sorted sequence of boxes
+   * @param receiver A receiver of overlapping pairs
+   * @param <S>      The coordinate space of the boxes
+   *
+   * @return The number of overlapping pairs reported
+   */
+
+  public static <S> long join(
+    final Iterator<? extends BoxType<S>> left,
+    final Iterator<? extends BoxType<S>> right,
+    final BiConsumer<BoxType<S>, BoxType<S>> receiver)
+  {
+    NullCheck.notNull(left);
+    NullCheck.notNull(right);
+    NullCheck.notNull(receiver);
+
+    final PriorityQueue<BoxType<S>> active_left = BoxSweepJoin.activeSet();
+    final PriorityQueue<BoxType<S>> active_right = BoxSweepJoin.activeSet();
+
+    @Nullable BoxType<S> head_left = BoxSweepJoin.next(left, null);
+    @Nullable BoxType<S> head_right = BoxSweepJoin.next(right, null);
+    long pairs = 0L;
+
+    while (head_left != null || head_right != null) {
+      final boolean take_left =
+        head_right == null
+          || head_left != null && head_left.minimumY() <= head_right.minimumY();
+
+      if (take_left) {
+        final BoxType<S> box = head_left;
+        final int y = box.minimumY();
+        BoxSweepJoin.expire(active_left, y);
+        BoxSweepJoin.expire(active_right, y);
+
+        for (final BoxType<S> other : active_right) {
+          if (Boxes.overlaps(box, other)) {
+            receiver.accept(box, other);
+            ++pairs;
+          }
+        }
+        if (head_right != null) {
+          active_left.add(box);
+        }
+        head_left = BoxSweepJoin.next(left, box);
+      } else {
+        final BoxType<S> box = head_right;
+        final int y = box.minimumY();
+        BoxSweepJoin.expire(active_left, y);
+        BoxSweepJoin.expire(active_right, y);
+
+        for (final BoxType<S> other : active_left) {
+          if (Boxes.overlaps(other, box)) {
+            receiver.accept(other, box);
+            ++pairs;
+          }
+        }
+        if (head_left != null) {
+          active_right.add(box);
+        }
+        head_right = BoxSweepJoin.next(right, box);
+      }
+    }
+
+    return pairs;
+  }
+}
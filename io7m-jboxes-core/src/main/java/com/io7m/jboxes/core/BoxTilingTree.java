@@ -0,0 +1,380 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+import org.valid4j.Assertive;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>A binary space partitioning tree of windows, as used by tiling window
+ * managers.</p>
+ *
+ * <p>Every window occupies a leaf of the tree, and every interior node
+ * divides its box between its two children with {@link
+ * Boxes#splitAlongVertical(BoxType, int)} or {@link
+ * Boxes#splitAlongHorizontal(BoxType, int)}. Splits store a ratio rather
+ * than an absolute position, so the tree scales with its bounds; the
+ * position of a split is its ratio multiplied by the width or height of its
+ * box, rounded to the nearest integer.</p>
+ *
+ * <p>Leaves are located through a hash map, so no operation searches the
+ * tree. Each operation recomputes only the subtrees whose boxes it changes,
+ * and stops descending as soon as a recomputed box is unchanged: moving a
+ * split recomputes the two subtrees on either side of it, inserting a
+ * window recomputes only the two new leaves, removing a window recomputes
+ * only the subtree of its sibling, and swapping two windows recomputes
+ * nothing. Operations that must find a split walk up from a leaf, and so
+ * cost {@code O(depth)}.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ * @param <W> The type of windows
+ */
+
+public final class BoxTilingTree<S, W>
+{
+  private final Map<W, Node<S, W>> leaves;
+  private BoxType<S> bounds;
+  private @Nullable Node<S, W> root;
+
+  private BoxTilingTree(
+    final BoxType<S> in_bounds)
+  {
+    this.bounds = Box.copyOf(NullCheck.notNull(in_bounds));
+    this.leaves = new HashMap<>(16);
+  }
+
+  /**
+   * Create an empty tree.
+   *
+   * @param bounds The bounds of the tree
+   * @param <S>    The coordinate space of the boxes
+   * @param <W>    The type of windows
+   *
+   * @return A new tree
+   */
+
+  public static <S, W> BoxTilingTree<S, W> create(
+    final BoxType<S> bounds)
+  {
+    return new BoxTilingTree<>(bounds);
+  }
+
+  private static <S, W> void layout(
+    final Node<S, W> node,
+    final BoxType<S> box)
+  {
+    if (box.equals(node.box)) {
+      return;
+    }
+    node.box = box;
+    BoxTilingTree.layoutChildren(node);
+  }
+
+  private static <S, W> void layoutChildren(
+    final Node<S, W> node)
+  {
+    final @Nullable Node<S, W> first = node.first;
+    final @Nullable Node<S, W> second = node.second;
+    if (first == null || second == null) {
+      return;
+    }
+
+    final BoxType<S> box = node.box;
+    if (node.vertical) {
+      final BoxVerticalSplitType<S> split = Boxes.splitAlongVertical(
+        box, (int) Math.round((double) box.width() * node.ratio));
+      BoxTilingTree.layout(first, split.left());
+      BoxTilingTree.layout(second, split.right());
+    } else {
+      final BoxHorizontalSplitType<S> split = Boxes.splitAlongHorizontal(
+        box, (int) Math.round((double) box.height() * node.ratio));
+      BoxTilingTree.layout(first, split.upper());
+      BoxTilingTree.layout(second, split.lower());
+    }
+  }
+
+  private static void checkRatio(
+    final double ratio)
+  {
+    Assertive.require(
+      ratio >= 0.0 && ratio <= 1.0, "Ratio must be in the range [0, 1]");
+  }
+
+  private Node<S, W> leaf(
+    final W window)
+  {
+    NullCheck.notNull(window);
+    final @Nullable Node<S, W> node = this.leaves.get(window);
+    Assertive.require(node != null, "Window must be present");
+    return node;
+  }
+
+  /**
+   * @return The bounds of the tree
+   */
+
+  public BoxType<S> bounds()
+  {
+    return this.bounds;
+  }
+
+  /**
+   * Set the bounds of the tree, recomputing the box of every window. The
+   * tree keeps a copy of {@code in_bounds}.
+   *
+   * @param in_bounds The new bounds
+   */
+
+  public void setBounds(
+    final BoxType<S> in_bounds)
+  {
+    this.bounds = Box.copyOf(NullCheck.notNull(in_bounds));
+    final @Nullable Node<S, W> current = this.root;
+    if (current != null) {
+      BoxTilingTree.layout(current, this.bounds);
+    }
+  }
+
+  /**
+   * @return The number of windows in the tree
+   */
+
+  public int size()
+  {
+    return this.leaves.size();
+  }
+
+  /**
+   * @return A read-only view of the windows in the tree
+   */
+
+  public Set<W> windows()
+  {
+    return Collections.unmodifiableSet(this.leaves.keySet());
+  }
+
+  /**
+   * @param window The window
+   *
+   * @return {@code true} iff {@code window} is in the tree
+   */
+
+  public boolean contains(
+    final W window)
+  {
+    return this.leaves.containsKey(NullCheck.notNull(window));
+  }
+
+  /**
+   * @param window The window
+   *
+   * @return The box of {@code window}, if it is in the tree
+   */
+
+  public Optional<BoxType<S>> box(
+    final W window)
+  {
+    final @Nullable Node<S, W> node =
+      this.leaves.get(NullCheck.notNull(window));
+    if (node == null) {
+      return Optional.empty();
+    }
+    return Optional.of(node.box);
+  }
+
+  /**
+   * Insert the first window into an empty tree. The window occupies the
+   * bounds of the tree.
+   *
+   * @param window The window
+   */
+
+  public void insert(
+    final W window)
+  {
+    NullCheck.notNull(window);
+    Assertive.require(this.root == null, "Tree must be empty");
+
+    final Node<S, W> node = new Node<>(null, this.bounds);
+    node.window = window;
+    this.root = node;
+    this.leaves.put(window, node);
+  }
+
+  /**
+   * Insert {@code window} next to {@code existing}, on the side of {@code
+   * existing} given by {@code side}. The box of {@code existing} is split,
+   * and {@code ratio} gives the fraction of it that remains on the left or
+   * upper side of the split.
+   *
+   * @param existing A window already in the tree
+   * @param window   The new window
+   * @param side     The side of {@code existing} on which to place {@code
+   *                 window}
+   * @param ratio    The split ratio
+   */
+
+  public void insertNextTo(
+    final W existing,
+    final W window,
+    final BoxDirection side,
+    final double ratio)
+  {
+    NullCheck.notNull(window);
+    NullCheck.notNull(side);
+    BoxTilingTree.checkRatio(ratio);
+    Assertive.require(!this.leaves.containsKey(window), "Window must be new");
+
+    final Node<S, W> split = this.leaf(existing);
+    final Node<S, W> old_leaf = new Node<>(split, split.box);
+    old_leaf.window = existing;
+    final Node<S, W> new_leaf = new Node<>(split, split.box);
+    new_leaf.window = window;
+
+    final boolean new_first = side == BoxDirection.LEFT || side == BoxDirection.UP;
+    split.window = null;
+    split.vertical = side == BoxDirection.LEFT || side == BoxDirection.RIGHT;
+    split.ratio = ratio;
+    split.first = new_first ? new_leaf : old_leaf;
+    split.second = new_first ? old_leaf : new_leaf;
+
+    this.leaves.put(existing, old_leaf);
+    this.leaves.put(window, new_leaf);
+    BoxTilingTree.layoutChildren(split);
+  }
+
+  /**
+   * Remove {@code window} from the tree. Its sibling takes over the box of
+   * the parent split.
+   *
+   * @param window The window
+   */
+
+  public void remove(
+    final W window)
+  {
+    final Node<S, W> node = this.leaf(window);
+    this.leaves.remove(window);
+
+    final @Nullable Node<S, W> parent = node.parent;
+    if (parent == null) {
+      this.root = null;
+      return;
+    }
+
+    final Node<S, W> sibling =
+      NullCheck.notNull(parent.first == node ? parent.second : parent.first);
+    final @Nullable Node<S, W> grandparent = parent.parent;
+    sibling.parent = grandparent;
+    if (grandparent == null) {
+      this.root = sibling;
+    } else if (grandparent.first == parent) {
+      grandparent.first = sibling;
+    } else {
+      grandparent.second = sibling;
+    }
+    BoxTilingTree.layout(sibling, parent.box);
+  }
+
+  /**
+   * Exchange the positions of two windows.
+   *
+   * @param a A window
+   * @param b A window
+   */
+
+  public void swap(
+    final W a,
+    final W b)
+  {
+    final Node<S, W> node_a = this.leaf(a);
+    final Node<S, W> node_b = this.leaf(b);
+    node_a.window = b;
+    node_b.window = a;
+    this.leaves.put(a, node_b);
+    this.leaves.put(b, node_a);
+  }
+
+  /**
+   * Move the split forming the edge of {@code window} that faces {@code
+   * edge}: that is, the nearest ancestor split of the window's leaf with the
+   * matching orientation that has the window on the opposite side. The
+   * ratio of that split is set to {@code ratio}, and the two subtrees on
+   * either side of it are recomputed.
+   *
+   * @param window The window
+   * @param edge   The edge of the window
+   * @param ratio  The new split ratio
+   *
+   * @return {@code false} if the window's edge lies on the bounds of the
+   * tree, and therefore no split was moved
+   */
+
+  public boolean setSplitRatio(
+    final W window,
+    final BoxDirection edge,
+    final double ratio)
+  {
+    NullCheck.notNull(edge);
+    BoxTilingTree.checkRatio(ratio);
+
+    final boolean vertical =
+      edge == BoxDirection.LEFT || edge == BoxDirection.RIGHT;
+    final boolean from_first =
+      edge == BoxDirection.RIGHT || edge == BoxDirection.DOWN;
+
+    Node<S, W> child = this.leaf(window);
+    @Nullable Node<S, W> current = child.parent;
+    while (current != null) {
+      if (current.vertical == vertical
+        && (current.first == child) == from_first) {
+        current.ratio = ratio;
+        BoxTilingTree.layoutChildren(current);
+        return true;
+      }
+      child = current;
+      current = current.parent;
+    }
+    return false;
+  }
+
+  private static final class Node<S, W>
+  {
+    private @Nullable Node<S, W> parent;
+    private @Nullable Node<S, W> first;
+    private @Nullable Node<S, W> second;
+    private @Nullable W window;
+    private BoxType<S> box;
+    private boolean vertical;
+    private double ratio;
+
+    Node(
+      final @Nullable Node<S, W> in_parent,
+      final BoxType<S> in_box)
+    {
+      this.parent = in_parent;
+      this.box = in_box;
+    }
+  }
+}
@@ -0,0 +1,1116 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.junreachable.UnreachableCodeException;
+import org.valid4j.Assertive;
+
+import java.util.Arrays;
+
+/**
+ * <p>An immutable, reusable chain of {@link Boxes} operations.</p>
+ *
+ * <p>A transform is constructed once with a {@link Builder} and can then be
+ * applied to any number of boxes. Each operation in the chain is applied to
+ * the result of the previous operation, and the result of applying a
+ * transform is exactly the result of calling the corresponding {@link Boxes}
+ * functions in sequence. Every operation acts on the horizontal and the
+ * vertical edges of a box independently, so a transform is compiled into a
+ * list of steps for each axis when it is built, and each list is evaluated
+ * over a pair of local integers. Applying a transform allocates nothing but
+ * the resulting box, and applying it to packed arrays allocates nothing at
+ * all.</p>
+ *
+ * <p>Alignment operations treat the current box as the <i>inner</i> box, and
+ * align it against an <i>outer</i> box fixed when the transform is
+ * built.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxTransform<S>
+{
+  private static final int ARGUMENTS = 6;
+
+  private static final int OP_MOVE_RELATIVE = 0;
+  private static final int OP_MOVE_ABSOLUTE = 1;
+  private static final int OP_HOLLOW_OUT = 2;
+  private static final int OP_SET_SIZE_FROM_CENTER = 3;
+  private static final int OP_SET_SIZE_FROM_TOP_LEFT = 4;
+  private static final int OP_SET_SIZE_FROM_TOP_RIGHT = 5;
+  private static final int OP_SET_SIZE_FROM_BOTTOM_LEFT = 6;
+  private static final int OP_SET_SIZE_FROM_BOTTOM_RIGHT = 7;
+  private static final int OP_SCALE_FROM_CENTER = 8;
+  private static final int OP_SCALE_FROM_TOP_LEFT = 9;
+  private static final int OP_SCALE_FROM_TOP_RIGHT = 10;
+  private static final int OP_SCALE_FROM_BOTTOM_LEFT = 11;
+  private static final int OP_SCALE_FROM_BOTTOM_RIGHT = 12;
+  private static final int OP_ALIGN_HORIZONTALLY_CENTER = 13;
+  private static final int OP_ALIGN_HORIZONTALLY_LEFT = 14;
+  private static final int OP_ALIGN_HORIZONTALLY_RIGHT = 15;
+  private static final int OP_ALIGN_VERTICALLY_CENTER = 16;
+  private static final int OP_ALIGN_VERTICALLY_TOP = 17;
+  private static final int OP_ALIGN_VERTICALLY_BOTTOM = 18;
+  private static final int OP_ALIGN_TOP_LEFT = 19;
+  private static final int OP_ALIGN_TOP_RIGHT = 20;
+  private static final int OP_ALIGN_BOTTOM_LEFT = 21;
+  private static final int OP_ALIGN_BOTTOM_RIGHT = 22;
+  private static final int OP_ALIGN_CENTER = 23;
+
+  private static final int X_MIN = BoxArrays.MINIMUM_X;
+  private static final int X_MAX = BoxArrays.MAXIMUM_X;
+  private static final int Y_MIN = BoxArrays.MINIMUM_Y;
+  private static final int Y_MAX = BoxArrays.MAXIMUM_Y;
+
+  private static final int STEP = 3;
+
+  private static final int AXIS_NONE = -1;
+  private static final int AXIS_MOVE_RELATIVE = 0;
+  private static final int AXIS_MOVE_ABSOLUTE = 1;
+  private static final int AXIS_HOLLOW_OUT = 2;
+  private static final int AXIS_SET_SIZE_FROM_CENTER = 3;
+  private static final int AXIS_SET_SIZE_FROM_MINIMUM = 4;
+  private static final int AXIS_SET_SIZE_FROM_MAXIMUM = 5;
+  private static final int AXIS_SCALE_FROM_CENTER = 6;
+  private static final int AXIS_SCALE_FROM_MINIMUM = 7;
+  private static final int AXIS_SCALE_FROM_MAXIMUM = 8;
+  private static final int AXIS_ALIGN_CENTER = 9;
+  private static final int AXIS_ALIGN_MINIMUM = 10;
+  private static final int AXIS_ALIGN_MAXIMUM = 11;
+
+  private final int[] ops;
+  private final int[] x_steps;
+  private final int[] y_steps;
+
+  private BoxTransform(
+    final int[] in_ops,
+    final int[] in_args)
+  {
+    this.ops = NullCheck.notNull(in_ops);
+    NullCheck.notNull(in_args);
+    this.x_steps = BoxTransform.compile(in_ops, in_args, 0);
+    this.y_steps = BoxTransform.compile(in_ops, in_args, 1);
+  }
+
+  /**
+   * @param <S> The coordinate space of the boxes
+   *
+   * @return A new builder for transforms
+   */
+
+  public static <S> Builder<S> builder()
+  {
+    return new Builder<>();
+  }
+
+  /**
+   * @return The number of operations in the transform
+   */
+
+  public int size()
+  {
+    return this.ops.length;
+  }
+
+  /**
+   * Apply the transform to {@code box}.
+   *
+   * @param box The input box
+   *
+   * @return The transformed box
+   */
+
+  public BoxType<S> apply(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+
+    final long x = BoxTransform.evaluate(
+      this.x_steps, box.minimumX(), box.maximumX());
+    final long y = BoxTransform.evaluate(
+      this.y_steps, box.minimumY(), box.maximumY());
+    return Box.of(
+      BoxTransform.low(x),
+      BoxTransform.high(x),
+      BoxTransform.low(y),
+      BoxTransform.high(y));
+  }
+
+  /**
+   * Apply the transform in place to {@code count} boxes starting at box index
+   * {@code first} in the packed array {@code boxes}.
+   *
+   * @param boxes The packed boxes
+   * @param first The index of the first box
+   * @param count The number of boxes
+   *
+   * @see BoxArrays
+   */
+
+  public void applyPacked(
+    final int[] boxes,
+    final int first,
+    final int count)
+  {
+    BoxArrays.checkRange(boxes, first, count);
+
+    final int end = first + count;
+    for (int index = first; index < end; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final long x = BoxTransform.evaluate(
+        this.x_steps,
+        boxes[base + BoxTransform.X_MIN],
+        boxes[base + BoxTransform.X_MAX]);
+      final long y = BoxTransform.evaluate(
+        this.y_steps,
+        boxes[base + BoxTransform.Y_MIN],
+        boxes[base + BoxTransform.Y_MAX]);
+      boxes[base + BoxTransform.X_MIN] = BoxTransform.low(x);
+      boxes[base + BoxTransform.X_MAX] = BoxTransform.high(x);
+      boxes[base + BoxTransform.Y_MIN] = BoxTransform.low(y);
+      boxes[base + BoxTransform.Y_MAX] = BoxTransform.high(y);
+    }
+  }
+
+  /*
+   * Every operation acts on the horizontal edges and the vertical edges of a
+   * box independently, so a transform is compiled into one list of steps per
+   * axis. Each step is a kind followed by two arguments.
+   */
+
+  private static int[] compile(
+    final int[] ops,
+    final int[] args,
+    final int axis)
+  {
+    final int[] steps = new int[ops.length * BoxTransform.STEP];
+    int count = 0;
+    for (int index = 0; index < ops.length; ++index) {
+      final int kind = BoxTransform.axisKind(ops[index], axis);
+      if (kind == BoxTransform.AXIS_NONE) {
+        continue;
+      }
+
+      final int p = index * BoxTransform.ARGUMENTS;
+      final int s = count * BoxTransform.STEP;
+      steps[s] = kind;
+      switch (kind) {
+        case AXIS_HOLLOW_OUT:
+        case AXIS_ALIGN_CENTER:
+          steps[s + 1] = args[p + axis * 2];
+          steps[s + 2] = args[p + axis * 2 + 1];
+          break;
+        case AXIS_ALIGN_MINIMUM:
+          steps[s + 1] = args[p + axis * 2];
+          steps[s + 2] = args[p + 4 + axis];
+          break;
+        case AXIS_ALIGN_MAXIMUM:
+          steps[s + 1] = args[p + axis * 2 + 1];
+          steps[s + 2] = args[p + 4 + axis];
+          break;
+        default:
+          steps[s + 1] = args[p + axis];
+          break;
+      }
+      ++count;
+    }
+    return Arrays.copyOf(steps, count * BoxTransform.STEP);
+  }
+
+  private static int axisKind(
+    final int op,
+    final int axis)
+  {
+    switch (op) {
+      case OP_MOVE_RELATIVE:
+        return BoxTransform.AXIS_MOVE_RELATIVE;
+      case OP_MOVE_ABSOLUTE:
+        return BoxTransform.AXIS_MOVE_ABSOLUTE;
+      case OP_HOLLOW_OUT:
+        return BoxTransform.AXIS_HOLLOW_OUT;
+      case OP_SET_SIZE_FROM_CENTER:
+        return BoxTransform.AXIS_SET_SIZE_FROM_CENTER;
+      case OP_SCALE_FROM_CENTER:
+        return BoxTransform.AXIS_SCALE_FROM_CENTER;
+      case OP_ALIGN_CENTER:
+        return BoxTransform.AXIS_ALIGN_CENTER;
+      default:
+        break;
+    }
+    if (axis == 0) {
+      return BoxTransform.axisKindX(op);
+    }
+    return BoxTransform.axisKindY(op);
+  }
+
+  private static int axisKindX(
+    final int op)
+  {
+    switch (op) {
+      case OP_SET_SIZE_FROM_TOP_LEFT:
+      case OP_SET_SIZE_FROM_BOTTOM_LEFT:
+        return BoxTransform.AXIS_SET_SIZE_FROM_MINIMUM;
+      case OP_SET_SIZE_FROM_TOP_RIGHT:
+      case OP_SET_SIZE_FROM_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_SET_SIZE_FROM_MAXIMUM;
+      case OP_SCALE_FROM_TOP_LEFT:
+      case OP_SCALE_FROM_BOTTOM_LEFT:
+        return BoxTransform.AXIS_SCALE_FROM_MINIMUM;
+      case OP_SCALE_FROM_TOP_RIGHT:
+      case OP_SCALE_FROM_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_SCALE_FROM_MAXIMUM;
+      case OP_ALIGN_HORIZONTALLY_CENTER:
+        return BoxTransform.AXIS_ALIGN_CENTER;
+      case OP_ALIGN_HORIZONTALLY_LEFT:
+      case OP_ALIGN_TOP_LEFT:
+      case OP_ALIGN_BOTTOM_LEFT:
+        return BoxTransform.AXIS_ALIGN_MINIMUM;
+      case OP_ALIGN_HORIZONTALLY_RIGHT:
+      case OP_ALIGN_TOP_RIGHT:
+      case OP_ALIGN_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_ALIGN_MAXIMUM;
+      case OP_ALIGN_VERTICALLY_CENTER:
+      case OP_ALIGN_VERTICALLY_TOP:
+      case OP_ALIGN_VERTICALLY_BOTTOM:
+        return BoxTransform.AXIS_NONE;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  private static int axisKindY(
+    final int op)
+  {
+    switch (op) {
+      case OP_SET_SIZE_FROM_TOP_LEFT:
+      case OP_SET_SIZE_FROM_TOP_RIGHT:
+        return BoxTransform.AXIS_SET_SIZE_FROM_MINIMUM;
+      case OP_SET_SIZE_FROM_BOTTOM_LEFT:
+      case OP_SET_SIZE_FROM_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_SET_SIZE_FROM_MAXIMUM;
+      case OP_SCALE_FROM_TOP_LEFT:
+      case OP_SCALE_FROM_TOP_RIGHT:
+        return BoxTransform.AXIS_SCALE_FROM_MINIMUM;
+      case OP_SCALE_FROM_BOTTOM_LEFT:
+      case OP_SCALE_FROM_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_SCALE_FROM_MAXIMUM;
+      case OP_ALIGN_VERTICALLY_CENTER:
+        return BoxTransform.AXIS_ALIGN_CENTER;
+      case OP_ALIGN_VERTICALLY_TOP:
+      case OP_ALIGN_TOP_LEFT:
+      case OP_ALIGN_TOP_RIGHT:
+        return BoxTransform.AXIS_ALIGN_MINIMUM;
+      case OP_ALIGN_VERTICALLY_BOTTOM:
+      case OP_ALIGN_BOTTOM_LEFT:
+      case OP_ALIGN_BOTTOM_RIGHT:
+        return BoxTransform.AXIS_ALIGN_MAXIMUM;
+      case OP_ALIGN_HORIZONTALLY_CENTER:
+      case OP_ALIGN_HORIZONTALLY_LEFT:
+      case OP_ALIGN_HORIZONTALLY_RIGHT:
+        return BoxTransform.AXIS_NONE;
+      default:
+        throw new UnreachableCodeException();
+    }
+  }
+
+  /*
+   * Evaluate the steps of one axis over the given minimum and maximum edges,
+   * returning the resulting edges packed into a long.
+   */
+
+  private static long evaluate(
+    final int[] steps,
+    final int minimum,
+    final int maximum)
+  {
+    int low = minimum;
+    int high = maximum;
+    for (int s = 0; s < steps.length; s += BoxTransform.STEP) {
+      final int a0 = steps[s + 1];
+      final int a1 = steps[s + 2];
+      switch (steps[s]) {
+        case AXIS_MOVE_RELATIVE:
+          low = Math.addExact(low, a0);
+          high = Math.addExact(high, a0);
+          break;
+        case AXIS_MOVE_ABSOLUTE:
+          high = Math.addExact(a0, Math.subtractExact(high, low));
+          low = a0;
+          break;
+        case AXIS_HOLLOW_OUT: {
+          final int hollow_low = BoxTransform.clamp(
+            Math.addExact(low, a0), low, high);
+          final int hollow_high = BoxTransform.clamp(
+            Math.subtractExact(high, a1), low, high);
+          low = hollow_low;
+          high = Math.max(hollow_low, hollow_high);
+          break;
+        }
+        case AXIS_SET_SIZE_FROM_CENTER:
+          low = BoxTransform.center(low, high, a0);
+          high = Math.addExact(low, a0);
+          break;
+        case AXIS_SET_SIZE_FROM_MINIMUM:
+          low = Math.subtractExact(high, a0);
+          break;
+        case AXIS_SET_SIZE_FROM_MAXIMUM:
+          high = Math.addExact(low, a0);
+          break;
+        case AXIS_SCALE_FROM_CENTER: {
+          final int scaled = BoxTransform.scale(low, high, a0);
+          low = BoxTransform.center(low, high, scaled);
+          high = Math.addExact(low, scaled);
+          break;
+        }
+        case AXIS_SCALE_FROM_MINIMUM:
+          low = Math.subtractExact(high, BoxTransform.scale(low, high, a0));
+          break;
+        case AXIS_SCALE_FROM_MAXIMUM:
+          high = Math.addExact(low, BoxTransform.scale(low, high, a0));
+          break;
+        default: {
+          final long aligned = BoxTransform.align(steps[s], a0, a1, low, high);
+          low = BoxTransform.low(aligned);
+          high = BoxTransform.high(aligned);
+          break;
+        }
+      }
+    }
+    return BoxTransform.pack(low, high);
+  }
+
+  private static long align(
+    final int kind,
+    final int a0,
+    final int a1,
+    final int low,
+    final int high)
+  {
+    final int size = Math.subtractExact(high, low);
+    final int aligned_low;
+    switch (kind) {
+      case AXIS_ALIGN_CENTER:
+        aligned_low = BoxTransform.center(a0, a1, size);
+        break;
+      case AXIS_ALIGN_MINIMUM:
+        aligned_low = Math.addExact(a0, a1);
+        break;
+      case AXIS_ALIGN_MAXIMUM:
+        aligned_low = Math.subtractExact(Math.subtractExact(a0, a1), size);
+        break;
+      default:
+        throw new UnreachableCodeException();
+    }
+    return BoxTransform.pack(aligned_low, Math.addExact(aligned_low, size));
+  }
+
+  private static long pack(
+    final int low,
+    final int high)
+  {
+    return (long) low << 32 | (long) high & 0xffffffffL;
+  }
+
+  private static int low(
+    final long edges)
+  {
+    return (int) (edges >> 32);
+  }
+
+  private static int high(
+    final long edges)
+  {
+    return (int) edges;
+  }
+
+  /*
+   * The minimum edge of a span of the given size centered within the span
+   * [minimum, maximum], rounded in the same way as the Boxes functions.
+   */
+
+  private static int center(
+    final int minimum,
+    final int maximum,
+    final int size)
+  {
+    final int outer = Math.subtractExact(maximum, minimum);
+    return Math.subtractExact(Math.addExact(minimum, outer / 2), size / 2);
+  }
+
+  private static int scale(
+    final int minimum,
+    final int maximum,
+    final int diff)
+  {
+    final int size = Math.subtractExact(maximum, minimum);
+    return Math.max(0, Math.addExact(size, diff));
+  }
+
+  private static int clamp(
+    final int x,
+    final int minimum,
+    final int maximum)
+  {
+    return Math.max(Math.min(x, maximum), minimum);
+  }
+
+  /**
+   * A mutable builder for transforms.
+   *
+   * @param <S> The coordinate space of the boxes
+   */
+
+  public static final class Builder<S>
+  {
+    private int[] ops;
+    private int[] args;
+    private int count;
+
+    private Builder()
+    {
+      this.ops = new int[8];
+      this.args = new int[8 * BoxTransform.ARGUMENTS];
+    }
+
+    private Builder<S> add(
+      final int op,
+      final int a0,
+      final int a1,
+      final int a2,
+      final int a3,
+      final int a4,
+      final int a5)
+    {
+      if (this.count == this.ops.length) {
+        final int size = Math.multiplyExact(this.ops.length, 2);
+        this.ops = Arrays.copyOf(this.ops, size);
+        this.args = Arrays.copyOf(this.args, size * BoxTransform.ARGUMENTS);
+      }
+
+      final int p = this.count * BoxTransform.ARGUMENTS;
+      this.ops[this.count] = op;
+      this.args[p] = a0;
+      this.args[p + 1] = a1;
+      this.args[p + 2] = a2;
+      this.args[p + 3] = a3;
+      this.args[p + 4] = a4;
+      this.args[p + 5] = a5;
+      ++this.count;
+      return this;
+    }
+
+    private Builder<S> addAlign(
+      final int op,
+      final BoxType<S> outer,
+      final int offset_x,
+      final int offset_y)
+    {
+      NullCheck.notNull(outer);
+      return this.add(
+        op,
+        outer.minimumX(),
+        outer.maximumX(),
+        outer.minimumY(),
+        outer.maximumY(),
+        offset_x,
+        offset_y);
+    }
+
+    private static void checkSize(
+      final int width,
+      final int height)
+    {
+      Assertive.require(width >= 0, "Width must be >= 0");
+      Assertive.require(height >= 0, "Height must be >= 0");
+    }
+
+    /**
+     * @param x The amount to move on the X axis
+     * @param y The amount to move on the Y axis
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#moveRelative(BoxType, int, int)
+     */
+
+    public Builder<S> moveRelative(
+      final int x,
+      final int y)
+    {
+      return this.add(BoxTransform.OP_MOVE_RELATIVE, x, y, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x The position to which to move on the X axis
+     * @param y The position to which to move on the Y axis
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#moveAbsolute(BoxType, int, int)
+     */
+
+    public Builder<S> moveAbsolute(
+      final int x,
+      final int y)
+    {
+      return this.add(BoxTransform.OP_MOVE_ABSOLUTE, x, y, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return {@code this}
+     *
+     * @see Boxes#moveToOrigin(BoxType)
+     */
+
+    public Builder<S> moveToOrigin()
+    {
+      return this.moveAbsolute(0, 0);
+    }
+
+    /**
+     * @param left_offset   The offset from the left edge
+     * @param right_offset  The offset from the right edge
+     * @param top_offset    The offset from the top edge
+     * @param bottom_offset The offset from the bottom edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#hollowOut(BoxType, int, int, int, int)
+     */
+
+    public Builder<S> hollowOut(
+      final int left_offset,
+      final int right_offset,
+      final int top_offset,
+      final int bottom_offset)
+    {
+      Assertive.require(left_offset >= 0, "Left offset >= 0");
+      Assertive.require(right_offset >= 0, "Right offset >= 0");
+      Assertive.require(top_offset >= 0, "Top offset >= 0");
+      Assertive.require(bottom_offset >= 0, "Bottom offset >= 0");
+      return this.add(
+        BoxTransform.OP_HOLLOW_OUT,
+        left_offset,
+        right_offset,
+        top_offset,
+        bottom_offset,
+        0,
+        0);
+    }
+
+    /**
+     * @param offset The offset from each edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#hollowOutEvenly(BoxType, int)
+     */
+
+    public Builder<S> hollowOutEvenly(
+      final int offset)
+    {
+      return this.hollowOut(offset, offset, offset, offset);
+    }
+
+    /**
+     * @param width  The new width
+     * @param height The new height
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#setSizeFromCenter(BoxType, int, int)
+     */
+
+    public Builder<S> setSizeFromCenter(
+      final int width,
+      final int height)
+    {
+      Builder.checkSize(width, height);
+      return this.add(
+        BoxTransform.OP_SET_SIZE_FROM_CENTER, width, height, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param width  The new width
+     * @param height The new height
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#setSizeFromTopLeft(BoxType, int, int)
+     */
+
+    public Builder<S> setSizeFromTopLeft(
+      final int width,
+      final int height)
+    {
+      Builder.checkSize(width, height);
+      return this.add(
+        BoxTransform.OP_SET_SIZE_FROM_TOP_LEFT, width, height, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param width  The new width
+     * @param height The new height
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#setSizeFromTopRight(BoxType, int, int)
+     */
+
+    public Builder<S> setSizeFromTopRight(
+      final int width,
+      final int height)
+    {
+      Builder.checkSize(width, height);
+      return this.add(
+        BoxTransform.OP_SET_SIZE_FROM_TOP_RIGHT, width, height, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param width  The new width
+     * @param height The new height
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#setSizeFromBottomLeft(BoxType, int, int)
+     */
+
+    public Builder<S> setSizeFromBottomLeft(
+      final int width,
+      final int height)
+    {
+      Builder.checkSize(width, height);
+      return this.add(
+        BoxTransform.OP_SET_SIZE_FROM_BOTTOM_LEFT, width, height, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param width  The new width
+     * @param height The new height
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#setSizeFromBottomRight(BoxType, int, int)
+     */
+
+    public Builder<S> setSizeFromBottomRight(
+      final int width,
+      final int height)
+    {
+      Builder.checkSize(width, height);
+      return this.add(
+        BoxTransform.OP_SET_SIZE_FROM_BOTTOM_RIGHT, width, height, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x_diff The X difference
+     * @param y_diff The Y difference
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#scaleFromCenter(BoxType, int, int)
+     */
+
+    public Builder<S> scaleFromCenter(
+      final int x_diff,
+      final int y_diff)
+    {
+      return this.add(
+        BoxTransform.OP_SCALE_FROM_CENTER, x_diff, y_diff, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x_diff The X difference
+     * @param y_diff The Y difference
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#scaleFromTopLeft(BoxType, int, int)
+     */
+
+    public Builder<S> scaleFromTopLeft(
+      final int x_diff,
+      final int y_diff)
+    {
+      return this.add(
+        BoxTransform.OP_SCALE_FROM_TOP_LEFT, x_diff, y_diff, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x_diff The X difference
+     * @param y_diff The Y difference
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#scaleFromTopRight(BoxType, int, int)
+     */
+
+    public Builder<S> scaleFromTopRight(
+      final int x_diff,
+      final int y_diff)
+    {
+      return this.add(
+        BoxTransform.OP_SCALE_FROM_TOP_RIGHT, x_diff, y_diff, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x_diff The X difference
+     * @param y_diff The Y difference
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#scaleFromBottomLeft(BoxType, int, int)
+     */
+
+    public Builder<S> scaleFromBottomLeft(
+      final int x_diff,
+      final int y_diff)
+    {
+      return this.add(
+        BoxTransform.OP_SCALE_FROM_BOTTOM_LEFT, x_diff, y_diff, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param x_diff The X difference
+     * @param y_diff The Y difference
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#scaleFromBottomRight(BoxType, int, int)
+     */
+
+    public Builder<S> scaleFromBottomRight(
+      final int x_diff,
+      final int y_diff)
+    {
+      return this.add(
+        BoxTransform.OP_SCALE_FROM_BOTTOM_RIGHT, x_diff, y_diff, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignHorizontallyCenter(BoxType, BoxType)
+     */
+
+    public Builder<S> alignHorizontallyCenter(
+      final BoxType<S> outer)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_HORIZONTALLY_CENTER, outer, 0, 0);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignHorizontallyLeft(BoxType, BoxType)
+     */
+
+    public Builder<S> alignHorizontallyLeft(
+      final BoxType<S> outer)
+    {
+      return this.alignHorizontallyLeftOffset(outer, 0);
+    }
+
+    /**
+     * @param outer  The outer box
+     * @param offset The offset from the edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignHorizontallyLeftOffset(BoxType, BoxType, int)
+     */
+
+    public Builder<S> alignHorizontallyLeftOffset(
+      final BoxType<S> outer,
+      final int offset)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_HORIZONTALLY_LEFT, outer, offset, 0);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignHorizontallyRight(BoxType, BoxType)
+     */
+
+    public Builder<S> alignHorizontallyRight(
+      final BoxType<S> outer)
+    {
+      return this.alignHorizontallyRightOffset(outer, 0);
+    }
+
+    /**
+     * @param outer  The outer box
+     * @param offset The offset from the edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignHorizontallyRightOffset(BoxType, BoxType, int)
+     */
+
+    public Builder<S> alignHorizontallyRightOffset(
+      final BoxType<S> outer,
+      final int offset)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_HORIZONTALLY_RIGHT, outer, offset, 0);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignVerticallyCenter(BoxType, BoxType)
+     */
+
+    public Builder<S> alignVerticallyCenter(
+      final BoxType<S> outer)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_VERTICALLY_CENTER, outer, 0, 0);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignVerticallyTop(BoxType, BoxType)
+     */
+
+    public Builder<S> alignVerticallyTop(
+      final BoxType<S> outer)
+    {
+      return this.alignVerticallyTopOffset(outer, 0);
+    }
+
+    /**
+     * @param outer  The outer box
+     * @param offset The offset from the edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignVerticallyTopOffset(BoxType, BoxType, int)
+     */
+
+    public Builder<S> alignVerticallyTopOffset(
+      final BoxType<S> outer,
+      final int offset)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_VERTICALLY_TOP, outer, 0, offset);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignVerticallyBottom(BoxType, BoxType)
+     */
+
+    public Builder<S> alignVerticallyBottom(
+      final BoxType<S> outer)
+    {
+      return this.alignVerticallyBottomOffset(outer, 0);
+    }
+
+    /**
+     * @param outer  The outer box
+     * @param offset The offset from the edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignVerticallyBottomOffset(BoxType, BoxType, int)
+     */
+
+    public Builder<S> alignVerticallyBottomOffset(
+      final BoxType<S> outer,
+      final int offset)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_VERTICALLY_BOTTOM, outer, 0, offset);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignTopLeft(BoxType, BoxType)
+     */
+
+    public Builder<S> alignTopLeft(
+      final BoxType<S> outer)
+    {
+      return this.alignTopLeftOffset(outer, 0, 0);
+    }
+
+    /**
+     * @param outer       The outer box
+     * @param offset_left The offset from the left edge
+     * @param offset_top  The offset from the top edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignTopLeftOffset(BoxType, BoxType, int, int)
+     */
+
+    public Builder<S> alignTopLeftOffset(
+      final BoxType<S> outer,
+      final int offset_left,
+      final int offset_top)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_TOP_LEFT, outer, offset_left, offset_top);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignTopRight(BoxType, BoxType)
+     */
+
+    public Builder<S> alignTopRight(
+      final BoxType<S> outer)
+    {
+      return this.alignTopRightOffset(outer, 0, 0);
+    }
+
+    /**
+     * @param outer        The outer box
+     * @param offset_right The offset from the right edge
+     * @param offset_top   The offset from the top edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignTopRightOffset(BoxType, BoxType, int, int)
+     */
+
+    public Builder<S> alignTopRightOffset(
+      final BoxType<S> outer,
+      final int offset_right,
+      final int offset_top)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_TOP_RIGHT, outer, offset_right, offset_top);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignBottomLeft(BoxType, BoxType)
+     */
+
+    public Builder<S> alignBottomLeft(
+      final BoxType<S> outer)
+    {
+      return this.alignBottomLeftOffset(outer, 0, 0);
+    }
+
+    /**
+     * @param outer         The outer box
+     * @param offset_left   The offset from the left edge
+     * @param offset_bottom The offset from the bottom edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignBottomLeftOffset(BoxType, BoxType, int, int)
+     */
+
+    public Builder<S> alignBottomLeftOffset(
+      final BoxType<S> outer,
+      final int offset_left,
+      final int offset_bottom)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_BOTTOM_LEFT, outer, offset_left, offset_bottom);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignBottomRight(BoxType, BoxType)
+     */
+
+    public Builder<S> alignBottomRight(
+      final BoxType<S> outer)
+    {
+      return this.alignBottomRightOffset(outer, 0, 0);
+    }
+
+    /**
+     * @param outer         The outer box
+     * @param offset_right  The offset from the right edge
+     * @param offset_bottom The offset from the bottom edge
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignBottomRightOffset(BoxType, BoxType, int, int)
+     */
+
+    public Builder<S> alignBottomRightOffset(
+      final BoxType<S> outer,
+      final int offset_right,
+      final int offset_bottom)
+    {
+      return this.addAlign(
+        BoxTransform.OP_ALIGN_BOTTOM_RIGHT, outer, offset_right, offset_bottom);
+    }
+
+    /**
+     * @param outer The outer box
+     *
+     * @return {@code this}
+     *
+     * @see Boxes#alignCenter(BoxType, BoxType)
+     */
+
+    public Builder<S> alignCenter(
+      final BoxType<S> outer)
+    {
+      return this.addAlign(BoxTransform.OP_ALIGN_CENTER, outer, 0, 0);
+    }
+
+    /**
+     * @return An immutable transform consisting of the operations added so far
+     */
+
+    public BoxTransform<S> build()
+    {
+      return new BoxTransform<>(
+        Arrays.copyOf(this.ops, this.count),
+        Arrays.copyOf(this.args, this.count * BoxTransform.ARGUMENTS));
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+/**
+ * <p>A grid of equally sized cells that can compute the boxes of only those
+ * cells that are visible through a viewport.</p>
+ *
+ * <p>Cells are placed left to right and then top to bottom from the top-left
+ * corner of a container, with as many columns as fit within the width of the
+ * container (and always at least one). Because every cell has the same size,
+ * the visible range and the box of any cell are computed in constant
+ * time.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxVirtualGrid<S>
+{
+  private final int item_count;
+  private final int cell_width;
+  private final int cell_height;
+  private final int gap_x;
+  private final int gap_y;
+
+  private BoxVirtualGrid(
+    final int in_count,
+    final int in_cell_width,
+    final int in_cell_height,
+    final int in_gap_x,
+    final int in_gap_y)
+  {
+    this.item_count = in_count;
+    this.cell_width = in_cell_width;
+    this.cell_height = in_cell_height;
+    this.gap_x = in_gap_x;
+    this.gap_y = in_gap_y;
+  }
+
+  /**
+   * Create a grid.
+   *
+   * @param count       The number of cells
+   * @param cell_width  The width of each cell (must be positive)
+   * @param cell_height The height of each cell (must be positive)
+   * @param gap_x       The horizontal space between columns
+   * @param gap_y       The vertical space between rows
+   * @param <S>         The coordinate space of the boxes
+   *
+   * @return A new grid
+   */
+
+  public static <S> BoxVirtualGrid<S> create(
+    final int count,
+    final int cell_width,
+    final int cell_height,
+    final int gap_x,
+    final int gap_y)
+  {
+    Assertive.require(count >= 0, "Count must be non-negative");
+    Assertive.require(cell_width > 0, "Cell width must be positive");
+    Assertive.require(cell_height > 0, "Cell height must be positive");
+    Assertive.require(gap_x >= 0, "Horizontal gap must be non-negative");
+    Assertive.require(gap_y >= 0, "Vertical gap must be non-negative");
+    return new BoxVirtualGrid<>(count, cell_width, cell_height, gap_x, gap_y);
+  }
+
+  /**
+   * @return The number of cells
+   */
+
+  public int count()
+  {
+    return this.item_count;
+  }
+
+  /**
+   * @param container The container
+   *
+   * @return The number of columns of the grid when laid out in {@code
+   * container}
+   */
+
+  public int columns(
+    final BoxType<S> container)
+  {
+    NullCheck.notNull(container);
+    final long pitch = (long) this.cell_width + (long) this.gap_x;
+    final long fit = ((long) container.width() + (long) this.gap_x) / pitch;
+    return (int) Math.max(1L, Math.min(fit, (long) Integer.MAX_VALUE));
+  }
+
+  /**
+   * @param container The container
+   *
+   * @return The number of rows of the grid when laid out in {@code
+   * container}
+   */
+
+  public int rows(
+    final BoxType<S> container)
+  {
+    final long columns = (long) this.columns(container);
+    return (int) (((long) this.item_count + columns - 1L) / columns);
+  }
+
+  /**
+   * Calculate the range of cells in the rows that overlap {@code viewport}
+   * when the grid is laid out in {@code container}. The range always covers
+   * whole rows. The first cell is written to {@code range[0]}, and the index
+   * one past the last cell is written to {@code range[1]}.
+   *
+   * @param container The container
+   * @param viewport  The viewport
+   * @param range     The output range
+   *
+   * @return The number of cells in the range
+   */
+
+  public int visibleRange(
+    final BoxType<S> container,
+    final BoxType<S> viewport,
+    final int[] range)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(viewport);
+    NullCheck.notNull(range);
+    Assertive.require(range.length >= 2, "Range must have space for 2 values");
+
+    range[0] = 0;
+    range[1] = 0;
+
+    final boolean horizontal =
+      viewport.minimumX() < container.maximumX()
+        && container.minimumX() < viewport.maximumX();
+    if (!horizontal) {
+      return 0;
+    }
+
+    final int columns = this.columns(container);
+    final long rows = (long) this.rows(container);
+    final long pitch = (long) this.cell_height + (long) this.gap_y;
+    final long low = (long) viewport.minimumY() - (long) container.minimumY();
+    final long high = (long) viewport.maximumY() - (long) container.minimumY();
+    if (high <= 0L || high <= low) {
+      return 0;
+    }
+
+    /*
+     * Skip the row above the viewport if the top of the viewport lies in the
+     * gap below it.
+     */
+
+    long first_row = 0L;
+    if (low > 0L) {
+      first_row = low / pitch;
+      if (low % pitch >= (long) this.cell_height) {
+        ++first_row;
+      }
+    }
+    final long end_row = Math.min(rows, (high + pitch - 1L) / pitch);
+    if (first_row >= end_row) {
+      return 0;
+    }
+
+    final long first = first_row * (long) columns;
+    final long end = Math.min((long) this.item_count, end_row * (long) columns);
+    range[0] = (int) first;
+    range[1] = (int) end;
+    return (int) (end - first);
+  }
+
+  /**
+   * @param container The container
+   * @param index     The cell
+   *
+   * @return The box of the cell when the grid is laid out in {@code
+   * container}
+   */
+
+  public BoxType<S> box(
+    final BoxType<S> container,
+    final int index)
+  {
+    NullCheck.notNull(container);
+    Assertive.require(index >= 0 && index < this.item_count, "Cell must exist");
+
+    final int columns = this.columns(container);
+    final int x_min = this.cellX(container, index % columns);
+    final int y_min = this.cellY(container, index / columns);
+    return Box.of(
+      x_min,
+      Math.addExact(x_min, this.cell_width),
+      y_min,
+      Math.addExact(y_min, this.cell_height));
+  }
+
+  /**
+   * Write the boxes of {@code count} cells starting at {@code first}, laid
+   * out in {@code container}, to {@code out} in the packed form described by
+   * {@link BoxArrays}.
+   *
+   * @param container The container
+   * @param first     The first cell
+   * @param count     The number of cells
+   * @param out       The output array
+   */
+
+  public void layout(
+    final BoxType<S> container,
+    final int first,
+    final int count,
+    final int[] out)
+  {
+    NullCheck.notNull(container);
+    Assertive.require(count >= 0, "Count must be non-negative");
+    Assertive.require(
+      first >= 0 && first <= this.item_count - count, "Cells must exist");
+    BoxArrays.checkRange(out, 0, count);
+
+    final int columns = this.columns(container);
+    int column = first % columns;
+    int y_min = this.cellY(container, first / columns);
+    for (int index = 0; index < count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final int x_min = this.cellX(container, column);
+      out[base + BoxArrays.MINIMUM_X] = x_min;
+      out[base + BoxArrays.MAXIMUM_X] = Math.addExact(x_min, this.cell_width);
+      out[base + BoxArrays.MINIMUM_Y] = y_min;
+      out[base + BoxArrays.MAXIMUM_Y] = Math.addExact(y_min, this.cell_height);
+
+      ++column;
+      if (column == columns) {
+        column = 0;
+        y_min = Math.addExact(
+          y_min, Math.addExact(this.cell_height, this.gap_y));
+      }
+    }
+  }
+
+  private int cellX(
+    final BoxType<S> container,
+    final int column)
+  {
+    final long pitch = (long) this.cell_width + (long) this.gap_x;
+    return Math.toIntExact(
+      Math.addExact((long) container.minimumX(), (long) column * pitch));
+  }
+
+  private int cellY(
+    final BoxType<S> container,
+    final int row)
+  {
+    final long pitch = (long) this.cell_height + (long) this.gap_y;
+    return Math.toIntExact(
+      Math.addExact((long) container.minimumY(), (long) row * pitch));
+  }
+}
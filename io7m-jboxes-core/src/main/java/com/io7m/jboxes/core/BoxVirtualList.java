@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import org.valid4j.Assertive;
+
+/**
+ * <p>A vertical list of items of varying heights that can compute the boxes
+ * of only those items that are visible through a viewport.</p>
+ *
+ * <p>Items are stacked from the top of a container, each spanning the full
+ * width of the container. The heights of the items are held in a Fenwick
+ * (binary indexed) tree, so the offset of any item, the range of items
+ * visible in a viewport, and changes to the height of an item all cost
+ * {@code O(log n)} regardless of the number of items.</p>
+ *
+ * @param <S> The coordinate space of the boxes
+ */
+
+public final class BoxVirtualList<S>
+{
+  private final long[] tree;
+  private final int[] extents;
+  private final int item_count;
+  private final int step;
+
+  private BoxVirtualList(
+    final int[] in_extents)
+  {
+    this.extents = NullCheck.notNull(in_extents);
+    this.item_count = in_extents.length;
+    this.tree = new long[this.item_count + 1];
+
+    for (int index = 0; index < this.item_count; ++index) {
+      Assertive.require(in_extents[index] >= 0, "Extents must be non-negative");
+      this.tree[index + 1] += (long) in_extents[index];
+      final int parent = (index + 1) + ((index + 1) & -(index + 1));
+      if (parent <= this.item_count) {
+        this.tree[parent] += this.tree[index + 1];
+      }
+    }
+
+    this.step = this.item_count == 0 ? 0 : Integer.highestOneBit(this.item_count);
+  }
+
+  /**
+   * Create a list of {@code count} items, each of height {@code extent}.
+   *
+   * @param count  The number of items
+   * @param extent The height of each item
+   * @param <S>    The coordinate space of the boxes
+   *
+   * @return A new list
+   */
+
+  public static <S> BoxVirtualList<S> createFixed(
+    final int count,
+    final int extent)
+  {
+    Assertive.require(count >= 0, "Count must be non-negative");
+    Assertive.require(extent >= 0, "Extent must be non-negative");
+
+    final int[] extents = new int[count];
+    for (int index = 0; index < count; ++index) {
+      extents[index] = extent;
+    }
+    return new BoxVirtualList<>(extents);
+  }
+
+  /**
+   * Create a list of items with the given heights. The array is copied.
+   *
+   * @param extents The heights of the items
+   * @param <S>     The coordinate space of the boxes
+   *
+   * @return A new list
+   */
+
+  public static <S> BoxVirtualList<S> create(
+    final int[] extents)
+  {
+    NullCheck.notNull(extents);
+    return new BoxVirtualList<>(extents.clone());
+  }
+
+  private void checkIndex(
+    final int index)
+  {
+    Assertive.require(index >= 0 && index < this.item_count, "Item must exist");
+  }
+
+  /**
+   * @return The number of items
+   */
+
+  public int count()
+  {
+    return this.item_count;
+  }
+
+  /**
+   * @param index The item
+   *
+   * @return The height of the item
+   */
+
+  public int extent(
+    final int index)
+  {
+    this.checkIndex(index);
+    return this.extents[index];
+  }
+
+  /**
+   * Set the height of an item.
+   *
+   * @param index  The item
+   * @param extent The new height of the item
+   */
+
+  public void setExtent(
+    final int index,
+    final int extent)
+  {
+    this.checkIndex(index);
+    Assertive.require(extent >= 0, "Extent must be non-negative");
+
+    final long delta = (long) extent - (long) this.extents[index];
+    this.extents[index] = extent;
+    for (int node = index + 1; node <= this.item_count; node += node & -node) {
+      this.tree[node] += delta;
+    }
+  }
+
+  /**
+   * @param index The item, or {@link #count()} for the end of the list
+   *
+   * @return The sum of the heights of all items before {@code index}
+   */
+
+  public long offset(
+    final int index)
+  {
+    Assertive.require(
+      index >= 0 && index <= this.item_count, "Index must be in [0, count]");
+
+    long sum = 0L;
+    for (int node = index; node > 0; node -= node & -node) {
+      sum += this.tree[node];
+    }
+    return sum;
+  }
+
+  /**
+   * @return The sum of the heights of all items
+   */
+
+  public long totalExtent()
+  {
+    return this.offset(this.item_count);
+  }
+
+  /**
+   * @return The greatest {@code k} such that {@code offset(k) <= value}
+   */
+
+  private int search(
+    final long value)
+  {
+    int position = 0;
+    long remaining = value;
+    for (int bit = this.step; bit > 0; bit >>>= 1) {
+      final int next = position + bit;
+      if (next <= this.item_count && this.tree[next] <= remaining) {
+        position = next;
+        remaining -= this.tree[next];
+      }
+    }
+    return position;
+  }
+
+  /**
+   * @param offset An offset from the top of the list
+   *
+   * @return The item occupying {@code offset}, or {@link #count()} if the
+   * offset is at or beyond the end of the list
+   */
+
+  public int indexAt(
+    final long offset)
+  {
+    if (offset < 0L) {
+      return 0;
+    }
+    return this.search(offset);
+  }
+
+  /**
+   * Calculate the range of items that overlap {@code viewport} when the list
+   * is laid out in {@code container}. Items and the viewport are treated as
+   * half-open, so an item that merely touches an edge of the viewport is not
+   * visible; items of zero height are included only if they lie between
+   * visible items. The first visible item is written to {@code range[0]}, and
+   * the index one past the last visible item is written to {@code range[1]}.
+   *
+   * @param container The container
+   * @param viewport  The viewport
+   * @param range     The output range
+   *
+   * @return The number of visible items
+   */
+
+  public int visibleRange(
+    final BoxType<S> container,
+    final BoxType<S> viewport,
+    final int[] range)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(viewport);
+    NullCheck.notNull(range);
+    Assertive.require(range.length >= 2, "Range must have space for 2 values");
+
+    range[0] = 0;
+    range[1] = 0;
+
+    final boolean horizontal =
+      viewport.minimumX() < container.maximumX()
+        && container.minimumX() < viewport.maximumX();
+    if (!horizontal) {
+      return 0;
+    }
+
+    final long low = (long) viewport.minimumY() - (long) container.minimumY();
+    final long high = (long) viewport.maximumY() - (long) container.minimumY();
+    if (high <= 0L || high <= low || low >= this.totalExtent()) {
+      return 0;
+    }
+
+    /*
+     * The first visible item is the first one that ends after the top of
+     * the viewport. The last is the last one that starts before the bottom.
+     */
+
+    final int first = low < 0L ? 0 : this.search(low);
+    final int end = Math.min(this.item_count, this.search(high - 1L) + 1);
+    range[0] = first;
+    range[1] = end;
+    return end - first;
+  }
+
+  /**
+   * @param container The container
+   * @param index     The item
+   *
+   * @return The box of the item when the list is laid out in {@code
+   * container}
+   */
+
+  public BoxType<S> box(
+    final BoxType<S> container,
+    final int index)
+  {
+    NullCheck.notNull(container);
+    this.checkIndex(index);
+
+    final int y_min = Math.toIntExact(
+      Math.addExact((long) container.minimumY(), this.offset(index)));
+    final int y_max = Math.addExact(y_min, this.extents[index]);
+    return Box.of(container.minimumX(), container.maximumX(), y_min, y_max);
+  }
+
+  /**
+   * Write the boxes of {@code count} items starting at {@code first}, laid
+   * out in {@code container}, to {@code out} in the packed form described by
+   * {@link BoxArrays}.
+   *
+   * @param container The container
+   * @param first     The first item
+   * @param count     The number of items
+   * @param out       The output array
+   */
+
+  public void layout(
+    final BoxType<S> container,
+    final int first,
+    final int count,
+    final int[] out)
+  {
+    NullCheck.notNull(container);
+    NullCheck.notNull(out);
+    Assertive.require(count >= 0, "Count must be non-negative");
+    Assertive.require(
+      first >= 0 && first <= this.item_count - count, "Items must exist");
+    BoxArrays.checkRange(out, 0, count);
+
+    long y = Math.addExact((long) container.minimumY(), this.offset(first));
+    for (int index = 0; index < count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final int y_min = Math.toIntExact(y);
+      y = Math.addExact(y, (long) this.extents[first + index]);
+      out[base + BoxArrays.MINIMUM_X] = container.minimumX();
+      out[base + BoxArrays.MAXIMUM_X] = container.maximumX();
+      out[base + BoxArrays.MINIMUM_Y] = y_min;
+      out[base + BoxArrays.MAXIMUM_Y] = Math.toIntExact(y);
+    }
+  }
+}
@@ -0,0 +1,669 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.core;
+
+import com.io7m.jnull.NullCheck;
+import com.io7m.jnull.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>An immutable rectilinear region, represented as a canonical set of
+ * disjoint boxes.</p>
+ *
+ * <p>The boxes of a region are organized into Y-X bands in the same manner as
+ * X11 regions: the region is divided into horizontal bands in which every box
+ * has the same minimum and maximum Y values, the boxes within a band are
+ * sorted by X and never touch, and two vertically adjacent bands never have
+ * identical X intervals. As a result, two regions covering the same area
+ * consist of exactly the same boxes, and {@link #equals(Object)} compares
+ * covered area.</p>
+ *
+ * <p>Binary operations sweep a line over the bands of both regions at once,
+ * combining the X intervals of each pair of overlapping bands in a single
+ * merge pass, and so run in time linear in the number of input and output
+ * boxes.</p>
+ *
+ * @param <S> The coordinate space of the region
+ */
+
+public final class Region<S>
+{
+  private static final int[] EMPTY = new int[0];
+
+  private static final int OP_UNION = 0b1110;
+  private static final int OP_INTERSECTION = 0b1000;
+  private static final int OP_DIFFERENCE = 0b0100;
+  private static final int OP_XOR = 0b0110;
+
+  private final int[] rects;
+  private final int count;
+
+  private Region(
+    final int[] in_rects)
+  {
+    this.rects = NullCheck.notNull(in_rects);
+    this.count = in_rects.length / BoxArrays.STRIDE;
+  }
+
+  /**
+   * @param <S> The coordinate space of the region
+   *
+   * @return An empty region
+   */
+
+  public static <S> Region<S> empty()
+  {
+    return new Region<>(Region.EMPTY);
+  }
+
+  /**
+   * @param box The box
+   * @param <S> The coordinate space of the region
+   *
+   * @return A region covering exactly {@code box}
+   */
+
+  public static <S> Region<S> of(
+    final BoxType<S> box)
+  {
+    NullCheck.notNull(box);
+
+    if (box.width() == 0 || box.height() == 0) {
+      return Region.empty();
+    }
+
+    final int[] rects = new int[BoxArrays.STRIDE];
+    rects[BoxArrays.MINIMUM_X] = box.minimumX();
+    rects[BoxArrays.MAXIMUM_X] = box.maximumX();
+    rects[BoxArrays.MINIMUM_Y] = box.minimumY();
+    rects[BoxArrays.MAXIMUM_Y] = box.maximumY();
+    return new Region<>(rects);
+  }
+
+  /**
+   * Construct the union of a collection of boxes. The boxes may overlap.
+   *
+   * @param boxes The boxes
+   * @param <S>   The coordinate space of the region
+   *
+   * @return A region covering exactly the union of {@code boxes}
+   */
+
+  public static <S> Region<S> ofBoxes(
+    final Collection<? extends BoxType<S>> boxes)
+  {
+    NullCheck.notNull(boxes);
+
+    final List<Region<S>> regions = new ArrayList<>(boxes.size());
+    for (final BoxType<S> box : boxes) {
+      regions.add(Region.of(box));
+    }
+    return Region.unionAll(regions);
+  }
+
+  /**
+   * Construct the union of a collection of regions by repeatedly merging
+   * pairs of regions, so that each box takes part in a logarithmic number of
+   * merges.
+   */
+
+  private static <S> Region<S> unionAll(
+    final List<Region<S>> regions)
+  {
+    if (regions.isEmpty()) {
+      return Region.empty();
+    }
+
+    List<Region<S>> current = regions;
+    while (current.size() > 1) {
+      final List<Region<S>> next = new ArrayList<>((current.size() + 1) / 2);
+      for (int index = 0; index + 1 < current.size(); index += 2) {
+        next.add(current.get(index).union(current.get(index + 1)));
+      }
+      if (current.size() % 2 != 0) {
+        next.add(current.get(current.size() - 1));
+      }
+      current = next;
+    }
+    return current.get(0);
+  }
+
+  /**
+   * @param other The other region
+   *
+   * @return The area covered by this region or {@code other}
+   */
+
+  public Region<S> union(
+    final Region<S> other)
+  {
+    NullCheck.notNull(other);
+
+    if (other.count == 0) {
+      return this;
+    }
+    if (this.count == 0) {
+      return other;
+    }
+    return Region.combine(this, other, Region.OP_UNION);
+  }
+
+  /**
+   * @param other The other region
+   *
+   * @return The area covered by both this region and {@code other}
+   */
+
+  public Region<S> intersection(
+    final Region<S> other)
+  {
+    NullCheck.notNull(other);
+
+    if (this.count == 0 || other.count == 0) {
+      return Region.empty();
+    }
+    return Region.combine(this, other, Region.OP_INTERSECTION);
+  }
+
+  /**
+   * @param other The other region
+   *
+   * @return The area covered by this region but not by {@code other}
+   */
+
+  public Region<S> difference(
+    final Region<S> other)
+  {
+    NullCheck.notNull(other);
+
+    if (this.count == 0 || other.count == 0) {
+      return this;
+    }
+    return Region.combine(this, other, Region.OP_DIFFERENCE);
+  }
+
+  /**
+   * @param other The other region
+   *
+   * @return The area covered by exactly one of this region and {@code other}
+   */
+
+  public Region<S> xor(
+    final Region<S> other)
+  {
+    NullCheck.notNull(other);
+
+    if (other.count == 0) {
+      return this;
+    }
+    if (this.count == 0) {
+      return other;
+    }
+    return Region.combine(this, other, Region.OP_XOR);
+  }
+
+  /**
+   * @return {@code true} iff the region covers no area
+   */
+
+  public boolean isEmpty()
+  {
+    return this.count == 0;
+  }
+
+  /**
+   * @return The number of boxes in the canonical representation of the region
+   */
+
+  public int size()
+  {
+    return this.count;
+  }
+
+  /**
+   * @return The boxes of the region, in ascending Y-X order
+   */
+
+  public List<BoxType<S>> boxes()
+  {
+    return Collections.unmodifiableList(
+      BoxArrays.unpack(this.rects, this.count));
+  }
+
+  /**
+   * @return The area covered by the region
+   */
+
+  public long area()
+  {
+    long area = 0L;
+    for (int index = 0; index < this.count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      final long w = (long) this.rects[base + BoxArrays.MAXIMUM_X]
+        - (long) this.rects[base + BoxArrays.MINIMUM_X];
+      final long h = (long) this.rects[base + BoxArrays.MAXIMUM_Y]
+        - (long) this.rects[base + BoxArrays.MINIMUM_Y];
+      area += w * h;
+    }
+    return area;
+  }
+
+  /**
+   * @return The smallest box containing the region, if the region is not
+   * empty
+   */
+
+  public Optional<BoxType<S>> bounds()
+  {
+    if (this.count == 0) {
+      return Optional.empty();
+    }
+
+    int x_min = Integer.MAX_VALUE;
+    int x_max = Integer.MIN_VALUE;
+    for (int index = 0; index < this.count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      x_min = Math.min(x_min, this.rects[base + BoxArrays.MINIMUM_X]);
+      x_max = Math.max(x_max, this.rects[base + BoxArrays.MAXIMUM_X]);
+    }
+
+    final int last = (this.count - 1) * BoxArrays.STRIDE;
+    return Optional.of(Box.of(
+      x_min,
+      x_max,
+      this.rects[BoxArrays.MINIMUM_Y],
+      this.rects[last + BoxArrays.MAXIMUM_Y]));
+  }
+
+  /**
+   * A point {@code (x, y)} is contained in the region iff it is contained in
+   * the half-open area {@code [minimumX, maximumX) * [minimumY, maximumY)} of
+   * one of the boxes of the region.
+   *
+   * @param x The X coordinate
+   * @param y The Y coordinate
+   *
+   * @return {@code true} iff the region contains the point {@code (x, y)}
+   */
+
+  public boolean containsPoint(
+    final int x,
+    final int y)
+  {
+    /*
+     * Bands are sorted by Y, so binary search for the first box that ends
+     * below y, and then scan that box's band.
+     */
+
+    int lo = 0;
+    int hi = this.count;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (this.rects[mid * BoxArrays.STRIDE + BoxArrays.MAXIMUM_Y] <= y) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    for (int index = lo; index < this.count; ++index) {
+      final int base = index * BoxArrays.STRIDE;
+      if (this.rects[base + BoxArrays.MINIMUM_Y] > y
+        || this.rects[base + BoxArrays.MINIMUM_X] > x) {
+        return false;
+      }
+      if (x < this.rects[base + BoxArrays.MAXIMUM_X]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean equals(
+    final @Nullable Object other)
+  {
+    if (this == other) {
+      return true;
+    }
+    if (other == null || this.getClass() != other.getClass()) {
+      return false;
+    }
+    final Region<?> r = (Region<?>) other;
+    return Arrays.equals(this.rects, r.rects);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Arrays.hashCode(this.rects);
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder sb = new StringBuilder(64);
+    sb.append("[Region");
+    for (final BoxType<S> box : this.boxes()) {
+      sb.append(" ");
+      Boxes.showToBuilder(box, sb);
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+
+  private int bandEnd(
+    final int start)
+  {
+    final int y = this.rects[start * BoxArrays.STRIDE + BoxArrays.MINIMUM_Y];
+    int end = start + 1;
+    while (end < this.count
+      && this.rects[end * BoxArrays.STRIDE + BoxArrays.MINIMUM_Y] == y) {
+      ++end;
+    }
+    return end;
+  }
+
+  private int minimumY(
+    final int index)
+  {
+    return this.rects[index * BoxArrays.STRIDE + BoxArrays.MINIMUM_Y];
+  }
+
+  private int maximumY(
+    final int index)
+  {
+    return this.rects[index * BoxArrays.STRIDE + BoxArrays.MAXIMUM_Y];
+  }
+
+  /**
+   * Combine two regions. Bit {@code (in_a ? 2 : 0) + (in_b ? 1 : 0)} of
+   * {@code op} is set iff points with that membership in {@code a} and
+   * {@code b} are members of the result.
+   */
+
+  private static <S> Region<S> combine(
+    final Region<S> a,
+    final Region<S> b,
+    final int op)
+  {
+    final Output out = new Output(a.count + b.count);
+    final Cursor cursor_a = new Cursor(a);
+    final Cursor cursor_b = new Cursor(b);
+    long y = Math.min((long) a.minimumY(0), (long) b.minimumY(0));
+
+    while (!cursor_a.isDone() || !cursor_b.isDone()) {
+      final long top_a = cursor_a.top(y);
+      final long top_b = cursor_b.top(y);
+      final long y0 = Math.min(top_a, top_b);
+      final boolean in_a = top_a == y0;
+      final boolean in_b = top_b == y0;
+
+      /*
+       * The slab ends at the next band boundary of either region.
+       */
+
+      final long y1 = Math.min(
+        cursor_a.boundaryAfter(in_a, top_a),
+        cursor_b.boundaryAfter(in_b, top_b));
+
+      out.mergeBand(
+        (int) y0,
+        (int) y1,
+        a.rects,
+        cursor_a.start(in_a),
+        cursor_a.end,
+        b.rects,
+        cursor_b.start(in_b),
+        cursor_b.end,
+        op);
+
+      y = y1;
+      cursor_a.advance(in_a, y1);
+      cursor_b.advance(in_b, y1);
+    }
+
+    return new Region<>(out.toArray());
+  }
+
+  /**
+   * A position within the bands of a region.
+   */
+
+  private static final class Cursor
+  {
+    private final Region<?> region;
+    private int band;
+    private int end;
+
+    Cursor(
+      final Region<?> in_region)
+    {
+      this.region = NullCheck.notNull(in_region);
+      this.end = in_region.bandEnd(0);
+    }
+
+    boolean isDone()
+    {
+      return this.band >= this.region.count;
+    }
+
+    long top(
+      final long y)
+    {
+      if (this.isDone()) {
+        return Long.MAX_VALUE;
+      }
+      return Math.max(y, (long) this.region.minimumY(this.band));
+    }
+
+    long boundaryAfter(
+      final boolean inside,
+      final long top)
+    {
+      if (inside) {
+        return (long) this.region.maximumY(this.band);
+      }
+      return top;
+    }
+
+    int start(
+      final boolean inside)
+    {
+      return inside ? this.band : this.end;
+    }
+
+    void advance(
+      final boolean inside,
+      final long y)
+    {
+      if (inside && (long) this.region.maximumY(this.band) == y) {
+        this.band = this.end;
+        if (!this.isDone()) {
+          this.end = this.region.bandEnd(this.band);
+        }
+      }
+    }
+  }
+
+  /**
+   * An output buffer that accumulates bands of boxes, coalescing vertically
+   * adjacent bands with identical X intervals.
+   */
+
+  private static final class Output
+  {
+    private int[] rects;
+    private int count;
+    private int[] band;
+    private int band_intervals;
+    private int last_start;
+    private int last_count;
+
+    Output(
+      final int in_capacity)
+    {
+      this.rects = new int[Math.max(1, in_capacity) * BoxArrays.STRIDE];
+      this.band = new int[Math.max(1, in_capacity) * 2];
+    }
+
+    private static int boundary(
+      final int[] rects,
+      final int index,
+      final int end,
+      final boolean inside)
+    {
+      if (index >= end) {
+        return Integer.MAX_VALUE;
+      }
+      final int base = index * BoxArrays.STRIDE;
+      return inside
+        ? rects[base + BoxArrays.MAXIMUM_X]
+        : rects[base + BoxArrays.MINIMUM_X];
+    }
+
+    void mergeBand(
+      final int y0,
+      final int y1,
+      final int[] a,
+      final int a_start,
+      final int a_end,
+      final int[] b,
+      final int b_start,
+      final int b_end,
+      final int op)
+    {
+      this.band_intervals = 0;
+
+      int ia = a_start;
+      int ib = b_start;
+      boolean inside_a = false;
+      boolean inside_b = false;
+      boolean inside = false;
+      int start = 0;
+
+      while (ia < a_end || ib < b_end) {
+        final int next_a = Output.boundary(a, ia, a_end, inside_a);
+        final int next_b = Output.boundary(b, ib, b_end, inside_b);
+        final int x = Math.min(next_a, next_b);
+
+        if (next_a == x) {
+          if (inside_a) {
+            ++ia;
+          }
+          inside_a = !inside_a;
+        }
+        if (next_b == x) {
+          if (inside_b) {
+            ++ib;
+          }
+          inside_b = !inside_b;
+        }
+
+        final int bit = 1 << ((inside_a ? 2 : 0) + (inside_b ? 1 : 0));
+        final boolean now = (op & bit) != 0;
+        if (now != inside) {
+          if (now) {
+            start = x;
+          } else {
+            this.pushInterval(start, x);
+          }
+          inside = now;
+        }
+      }
+
+      this.appendBand(y0, y1);
+    }
+
+    private void pushInterval(
+      final int x0,
+      final int x1)
+    {
+      if ((this.band_intervals + 1) * 2 > this.band.length) {
+        this.band = Arrays.copyOf(this.band, this.band.length * 2);
+      }
+      this.band[this.band_intervals * 2] = x0;
+      this.band[this.band_intervals * 2 + 1] = x1;
+      ++this.band_intervals;
+    }
+
+    private boolean sameAsLast(
+      final int y0)
+    {
+      if (this.last_count != this.band_intervals || this.last_count == 0) {
+        return false;
+      }
+      final int last_base = this.last_start * BoxArrays.STRIDE;
+      if (this.rects[last_base + BoxArrays.MAXIMUM_Y] != y0) {
+        return false;
+      }
+      for (int index = 0; index < this.band_intervals; ++index) {
+        final int base = (this.last_start + index) * BoxArrays.STRIDE;
+        if (this.rects[base + BoxArrays.MINIMUM_X] != this.band[index * 2]
+          || this.rects[base + BoxArrays.MAXIMUM_X] != this.band[index * 2 + 1]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void appendBand(
+      final int y0,
+      final int y1)
+    {
+      if (this.band_intervals == 0) {
+        return;
+      }
+
+      if (this.sameAsLast(y0)) {
+        for (int index = 0; index < this.last_count; ++index) {
+          final int base = (this.last_start + index) * BoxArrays.STRIDE;
+          this.rects[base + BoxArrays.MAXIMUM_Y] = y1;
+        }
+        return;
+      }
+
+      final int required = (this.count + this.band_intervals) * BoxArrays.STRIDE;
+      if (required > this.rects.length) {
+        this.rects = Arrays.copyOf(
+          this.rects, Math.max(required, this.rects.length * 2));
+      }
+
+      this.last_start = this.count;
+      this.last_count = this.band_intervals;
+      for (int index = 0; index < this.band_intervals; ++index) {
+        final int base = this.count * BoxArrays.STRIDE;
+        this.rects[base + BoxArrays.MINIMUM_X] = this.band[index * 2];
+        this.rects[base + BoxArrays.MAXIMUM_X] = this.band[index * 2 + 1];
+        this.rects[base + BoxArrays.MINIMUM_Y] = y0;
+        this.rects[base + BoxArrays.MAXIMUM_Y] = y1;
+        ++this.count;
+      }
+    }
+
+    int[] toArray()
+    {
+      return Arrays.copyOf(this.rects, this.count * BoxArrays.STRIDE);
+    }
+  }
+}
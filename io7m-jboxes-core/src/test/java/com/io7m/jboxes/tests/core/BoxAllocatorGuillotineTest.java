@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAllocatorGuillotine;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxAllocatorGuillotineTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testExactFit()
+  {
+    final BoxType<Object> container = Box.of(10, 110, 20, 120);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+
+    final List<BoxType<Object>> live = new ArrayList<>();
+    for (int index = 0; index < 16; ++index) {
+      final Optional<BoxType<Object>> r = a.allocate(25, 25);
+      Assert.assertTrue(r.isPresent());
+      Assert.assertTrue(Boxes.contains(container, r.get()));
+      for (final BoxType<Object> other : live) {
+        Assert.assertFalse(
+          BoxTestSupport.intersects(r.get(), other));
+      }
+      live.add(r.get());
+    }
+
+    Assert.assertFalse(a.allocate(1, 1).isPresent());
+    Assert.assertEquals(10000L, a.usedArea());
+    Assert.assertEquals(0L, (long) a.freeRectangles());
+
+    a.reset();
+    Assert.assertEquals(0L, a.usedArea());
+    Assert.assertEquals(1L, (long) a.freeRectangles());
+    Assert.assertEquals(container, a.allocate(100, 100).get());
+  }
+
+  @Test
+  public void testFreeMerges()
+  {
+    final BoxType<Object> container = Box.of(0, 100, 0, 100);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+
+    final BoxType<Object> b0 = a.allocate(30, 100).get();
+    final BoxType<Object> b1 = a.allocate(30, 100).get();
+    Assert.assertEquals(Box.of(0, 30, 0, 100), b0);
+    Assert.assertEquals(Box.of(30, 60, 0, 100), b1);
+    Assert.assertEquals(1L, (long) a.freeRectangles());
+
+    a.free(b0);
+    Assert.assertEquals(2L, (long) a.freeRectangles());
+    a.free(b1);
+    Assert.assertEquals(1L, (long) a.freeRectangles());
+    Assert.assertEquals(0L, a.usedArea());
+    Assert.assertEquals(container, a.allocate(100, 100).get());
+  }
+
+  @Test
+  public void testFreeAllReverse()
+  {
+    final BoxType<Object> container = Box.of(0, 64, 0, 64);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+
+    final List<BoxType<Object>> live = new ArrayList<>();
+    for (int index = 0; index < 64; ++index) {
+      live.add(a.allocate(8, 8).get());
+    }
+
+    Collections.reverse(live);
+    for (final BoxType<Object> box : live) {
+      a.free(box);
+    }
+    Assert.assertEquals(1L, (long) a.freeRectangles());
+    Assert.assertEquals(container, a.allocate(64, 64).get());
+  }
+
+  @Test
+  public void testRandom()
+  {
+    final Random random = new Random(1L);
+    final BoxType<Object> container = Box.of(-512, 512, -512, 512);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+    final List<BoxType<Object>> live = new ArrayList<>();
+
+    for (int step = 0; step < 4000; ++step) {
+      if (!live.isEmpty() && random.nextInt(3) == 0) {
+        a.free(live.remove(random.nextInt(live.size())));
+        continue;
+      }
+
+      final int w = 1 + random.nextInt(64);
+      final int h = 1 + random.nextInt(64);
+      final Optional<BoxType<Object>> r = a.allocate(w, h);
+      if (r.isPresent()) {
+        final BoxType<Object> box = r.get();
+        Assert.assertEquals((long) w, (long) box.width());
+        Assert.assertEquals((long) h, (long) box.height());
+        Assert.assertTrue(Boxes.contains(container, box));
+        for (final BoxType<Object> other : live) {
+          Assert.assertFalse(BoxTestSupport.intersects(box, other));
+        }
+        live.add(box);
+      }
+    }
+
+    long area = 0L;
+    for (final BoxType<Object> box : live) {
+      area += (long) box.width() * (long) box.height();
+    }
+    Assert.assertEquals(area, a.usedArea());
+  }
+
+  @Test
+  public void testBoundaryBucketWidths()
+  {
+    final BoxType<Object> container = Box.of(0, 1552, 0, 64);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+
+    /*
+     * Free columns of widths 32 to 63, separated by allocated columns of
+     * width 1, all fall into the same bucket.
+     */
+
+    final List<BoxType<Object>> columns = new ArrayList<>();
+    for (int index = 0; index < 32; ++index) {
+      columns.add(a.allocate(32 + index, 64).get());
+      a.allocate(1, 64).get();
+    }
+    for (final BoxType<Object> column : columns) {
+      a.free(column);
+    }
+
+    final BoxType<Object> tall = a.allocate(50, 64).get();
+    Assert.assertEquals(
+      (long) columns.get(18).minimumX(), (long) tall.minimumX());
+    final BoxType<Object> short_box = a.allocate(60, 40).get();
+    Assert.assertEquals(
+      (long) columns.get(28).minimumX(), (long) short_box.minimumX());
+    Assert.assertFalse(a.allocate(64, 33).isPresent());
+  }
+
+  @Test
+  public void testBoundaryBucketHeights()
+  {
+    final BoxType<Object> container = Box.of(0, 64, 0, 1552);
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(container);
+
+    final List<BoxType<Object>> rows = new ArrayList<>();
+    for (int index = 0; index < 32; ++index) {
+      rows.add(a.allocate(64, 32 + index).get());
+      a.allocate(64, 1).get();
+    }
+    for (final BoxType<Object> row : rows) {
+      a.free(row);
+    }
+
+    final BoxType<Object> wide = a.allocate(64, 50).get();
+    Assert.assertEquals(
+      (long) rows.get(18).minimumY(), (long) wide.minimumY());
+    final BoxType<Object> narrow = a.allocate(40, 60).get();
+    Assert.assertEquals(
+      (long) rows.get(28).minimumY(), (long) narrow.minimumY());
+    Assert.assertFalse(a.allocate(33, 64).isPresent());
+  }
+
+  @Test
+  public void testFreeNotAllocated()
+  {
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(Box.of(0, 100, 0, 100));
+    this.expected.expect(RequireViolation.class);
+    a.free(Box.of(0, 10, 0, 10));
+  }
+
+  @Test
+  public void testAllocateZero()
+  {
+    final BoxAllocatorGuillotine<Object> a =
+      BoxAllocatorGuillotine.create(Box.of(0, 100, 0, 100));
+    this.expected.expect(RequireViolation.class);
+    a.allocate(0, 1);
+  }
+}
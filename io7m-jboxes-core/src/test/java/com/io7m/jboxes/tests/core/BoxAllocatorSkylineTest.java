@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAllocatorSkyline;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxAllocatorSkylineTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testExactFit()
+  {
+    final BoxType<Object> container = Box.of(10, 110, 20, 120);
+    final BoxAllocatorSkyline<Object> a = BoxAllocatorSkyline.create(container);
+
+    for (int y = 0; y < 4; ++y) {
+      for (int x = 0; x < 4; ++x) {
+        final Optional<BoxType<Object>> r = a.allocate(25, 25);
+        Assert.assertTrue(r.isPresent());
+        Assert.assertEquals(
+          Box.of(10 + x * 25, 35 + x * 25, 20 + y * 25, 45 + y * 25),
+          r.get());
+      }
+    }
+
+    Assert.assertFalse(a.allocate(1, 1).isPresent());
+    Assert.assertEquals(10000L, a.usedArea());
+    Assert.assertEquals(0L, a.wastedArea());
+    Assert.assertEquals(0L, a.freeArea());
+    Assert.assertEquals(0.0, a.fragmentation(), 0.0);
+    Assert.assertEquals(1L, (long) a.segments());
+
+    a.reset();
+    Assert.assertEquals(0L, a.usedArea());
+    Assert.assertEquals(10000L, a.freeArea());
+    Assert.assertTrue(a.allocate(100, 100).isPresent());
+  }
+
+  @Test
+  public void testLowestPosition()
+  {
+    final BoxAllocatorSkyline<Object> a =
+      BoxAllocatorSkyline.create(Box.of(0, 100, 0, 100));
+
+    Assert.assertEquals(Box.of(0, 30, 0, 50), a.allocate(30, 50).get());
+    Assert.assertEquals(Box.of(30, 50, 0, 10), a.allocate(20, 10).get());
+    Assert.assertEquals(Box.of(50, 100, 0, 20), a.allocate(50, 20).get());
+    Assert.assertEquals(3L, (long) a.segments());
+
+    /*
+     * The lowest position for a 40 wide box rests on the 20 high segment.
+     */
+
+    Assert.assertEquals(Box.of(30, 70, 20, 25), a.allocate(40, 5).get());
+    Assert.assertEquals(200L, a.wastedArea());
+  }
+
+  @Test
+  public void testFreeOnSkyline()
+  {
+    final BoxAllocatorSkyline<Object> a =
+      BoxAllocatorSkyline.create(Box.of(0, 100, 0, 100));
+
+    final BoxType<Object> b0 = a.allocate(40, 40).get();
+    final BoxType<Object> b1 = a.allocate(40, 40).get();
+    Assert.assertEquals(Box.of(40, 80, 0, 40), b1);
+    Assert.assertEquals(2L, (long) a.segments());
+
+    a.free(b1);
+    Assert.assertEquals(2L, (long) a.segments());
+    Assert.assertEquals(1600L, a.usedArea());
+    Assert.assertEquals(0L, a.wastedArea());
+    Assert.assertEquals(b1, a.allocate(40, 40).get());
+
+    final BoxType<Object> b2 = a.allocate(40, 40).get();
+    Assert.assertEquals(Box.of(0, 40, 40, 80), b2);
+
+    a.free(b0);
+    Assert.assertEquals(1600L, a.wastedArea());
+    Assert.assertEquals(3200L, a.usedArea());
+    Assert.assertEquals(5200L, a.freeArea());
+    Assert.assertEquals(1600.0 / 6800.0, a.fragmentation(), 0.0000001);
+  }
+
+  @Test
+  public void testFreeNotAllocated()
+  {
+    final BoxAllocatorSkyline<Object> a =
+      BoxAllocatorSkyline.create(Box.of(0, 100, 0, 100));
+    this.expected.expect(RequireViolation.class);
+    a.free(Box.of(0, 10, 0, 10));
+  }
+
+  @Test
+  public void testTooLarge()
+  {
+    final BoxAllocatorSkyline<Object> a =
+      BoxAllocatorSkyline.create(Box.of(0, 100, 0, 100));
+    Assert.assertFalse(a.allocate(101, 1).isPresent());
+    Assert.assertFalse(a.allocate(1, 101).isPresent());
+    Assert.assertEquals(0L, a.usedArea());
+  }
+
+  @Test
+  public void testRandom()
+  {
+    final Random random = new Random(1L);
+    final BoxType<Object> container = Box.of(-500, 500, -500, 500);
+    final BoxAllocatorSkyline<Object> a = BoxAllocatorSkyline.create(container);
+    final List<BoxType<Object>> live = new ArrayList<>();
+
+    for (int step = 0; step < 4000; ++step) {
+      if (!live.isEmpty() && random.nextInt(4) == 0) {
+        a.free(live.remove(random.nextInt(live.size())));
+        continue;
+      }
+
+      final Optional<BoxType<Object>> r =
+        a.allocate(1 + random.nextInt(32), 1 + random.nextInt(32));
+      if (r.isPresent()) {
+        final BoxType<Object> box = r.get();
+        Assert.assertTrue(Boxes.contains(container, box));
+        for (final BoxType<Object> other : live) {
+          Assert.assertFalse(BoxTestSupport.intersects(box, other));
+        }
+        live.add(box);
+      }
+    }
+
+    long area = 0L;
+    for (final BoxType<Object> box : live) {
+      area += (long) box.width() * (long) box.height();
+    }
+    Assert.assertEquals(area, a.usedArea());
+    Assert.assertEquals(
+      1000000L, a.usedArea() + a.wastedArea() + a.freeArea());
+    Assert.assertTrue(a.freeArea() >= 0L);
+  }
+
+  @Test
+  public void testAllocateZero()
+  {
+    final BoxAllocatorSkyline<Object> a =
+      BoxAllocatorSkyline.create(Box.of(0, 100, 0, 100));
+    this.expected.expect(RequireViolation.class);
+    a.allocate(1, 0);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAreas;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Region;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public final class BoxAreasTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static long[] bruteDepths(
+    final List<BoxType<Object>> boxes,
+    final int max_depth)
+  {
+    final long[] areas = new long[max_depth + 1];
+    if (boxes.isEmpty()) {
+      return areas;
+    }
+
+    int x_min = Integer.MAX_VALUE;
+    int x_max = Integer.MIN_VALUE;
+    int y_min = Integer.MAX_VALUE;
+    int y_max = Integer.MIN_VALUE;
+    for (final BoxType<Object> box : boxes) {
+      if (box.width() > 0 && box.height() > 0) {
+        x_min = Math.min(x_min, box.minimumX());
+        x_max = Math.max(x_max, box.maximumX());
+        y_min = Math.min(y_min, box.minimumY());
+        y_max = Math.max(y_max, box.maximumY());
+      }
+    }
+
+    for (int y = y_min; y < y_max; ++y) {
+      for (int x = x_min; x < x_max; ++x) {
+        int depth = 0;
+        for (final BoxType<Object> box : boxes) {
+          if (x >= box.minimumX() && x < box.maximumX()
+            && y >= box.minimumY() && y < box.maximumY()) {
+            ++depth;
+          }
+        }
+        ++areas[Math.min(depth, max_depth)];
+      }
+    }
+    return areas;
+  }
+
+  @Test
+  public void testUnionSimple()
+  {
+    final List<BoxType<Object>> boxes = Arrays.asList(
+      Box.of(0, 10, 0, 10),
+      Box.of(5, 15, 5, 15),
+      Box.of(0, 10, 0, 10),
+      Box.of(100, 100, 0, 1000));
+
+    Assert.assertEquals(175L, BoxAreas.unionArea(boxes));
+
+    final long[] depths = BoxAreas.areaByDepth(boxes, 3);
+    Assert.assertArrayEquals(new long[]{50L, 75L, 75L, 25L}, depths);
+  }
+
+  @Test
+  public void testUnionEmpty()
+  {
+    Assert.assertEquals(
+      0L, BoxAreas.unionArea(Collections.<BoxType<Object>>emptyList()));
+    Assert.assertArrayEquals(
+      new long[]{0L, 0L},
+      BoxAreas.areaByDepth(Collections.<BoxType<Object>>emptyList(), 1));
+  }
+
+  @Test
+  public void testRandomBruteForce()
+  {
+    final Random random = new Random(1L);
+    for (int iteration = 0; iteration < 50; ++iteration) {
+      final List<BoxType<Object>> boxes =
+        BoxTestSupport.randomBoxes(random, 1 + random.nextInt(20), -32, 64, 32);
+      final long[] expected = BoxAreasTest.bruteDepths(boxes, 4);
+      final long[] depths = BoxAreas.areaByDepth(boxes, 4);
+      Assert.assertArrayEquals(expected, depths);
+
+      final long union = expected[1] + expected[2] + expected[3] + expected[4];
+      Assert.assertEquals(union, BoxAreas.unionArea(boxes));
+      Assert.assertEquals(union, Region.ofBoxes(boxes).area());
+    }
+  }
+
+  @Test
+  public void testPackedRange()
+  {
+    final Random random = new Random(2L);
+    final List<BoxType<Object>> boxes =
+      BoxTestSupport.randomBoxes(random, 30, -32, 64, 32);
+    final int[] packed = BoxArrays.pack(boxes);
+
+    Assert.assertEquals(
+      BoxAreas.unionArea(boxes.subList(10, 25)),
+      BoxAreas.unionArea(packed, 10, 15));
+    Assert.assertArrayEquals(
+      BoxAreas.areaByDepth(boxes.subList(10, 25), 2),
+      BoxAreas.areaByDepth(packed, 10, 15, 2));
+  }
+
+  @Test
+  public void testLarge()
+  {
+    final Random random = new Random(3L);
+    final List<BoxType<Object>> boxes =
+      BoxTestSupport.randomBoxes(random, 200000, -(1 << 19), 1 << 20, 1 << 19);
+
+    final long union = BoxAreas.unionArea(boxes);
+    final long[] depths = BoxAreas.areaByDepth(boxes, 8);
+
+    long sum = 0L;
+    for (int depth = 1; depth < depths.length; ++depth) {
+      sum += depths[depth];
+    }
+    Assert.assertEquals(union, sum);
+  }
+
+  @Test
+  public void testLargeCoordinates()
+  {
+    final List<BoxType<Object>> boxes = Arrays.asList(
+      Box.of(Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 2),
+      Box.of(0, 1, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Assert.assertEquals(
+      (2L * (long) Integer.MAX_VALUE + 1L) * 2L
+        + (2L * (long) Integer.MAX_VALUE + 1L) - 2L,
+      BoxAreas.unionArea(boxes));
+  }
+
+  @Test
+  public void testDepthZero()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxAreas.areaByDepth(Collections.<BoxType<Object>>emptyList(), 0);
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import net.java.quickcheck.Generator;
+import net.java.quickcheck.QuickCheck;
+import net.java.quickcheck.characteristic.AbstractCharacteristic;
+import net.java.quickcheck.generator.PrimitiveGenerators;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.function.Consumer;
+
+public final class BoxArraysTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static void checkBatch(
+    final List<BoxType<Object>> boxes,
+    final Consumer<int[]> batch,
+    final UnaryOperator<BoxType<Object>> single)
+  {
+    final int[] packed = BoxArrays.pack(boxes);
+    batch.accept(packed);
+
+    final List<BoxType<Object>> result =
+      BoxArrays.unpack(packed, boxes.size());
+
+    Assert.assertEquals(
+      boxes.get(0), result.get(0));
+    Assert.assertEquals(
+      boxes.get(boxes.size() - 1), result.get(boxes.size() - 1));
+
+    for (int index = 1; index < boxes.size() - 1; ++index) {
+      Assert.assertEquals(
+        single.apply(boxes.get(index)),
+        result.get(index));
+    }
+  }
+
+  @Test
+  public void testPackUnpack()
+  {
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    for (int index = 0; index < 10; ++index) {
+      boxes.add(box_gen.next());
+    }
+
+    final int[] packed = BoxArrays.pack(boxes);
+    Assert.assertEquals(40L, (long) packed.length);
+    Assert.assertEquals(boxes, BoxArrays.unpack(packed, boxes.size()));
+
+    final BoxType<Object> replacement = Box.of(1, 2, 3, 4);
+    BoxArrays.set(packed, 3, replacement);
+    Assert.assertEquals(replacement, BoxArrays.get(packed, 3));
+  }
+
+  @Test
+  public void testGetOutOfRange()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxArrays.get(new int[8], 2);
+  }
+
+  @Test
+  public void testAlignRangeOutOfRange()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxArrays.alignCenter(Box.of(0, 1, 0, 1), new int[8], 0, 3);
+  }
+
+  @Test
+  public void testGetIndexOverflow()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxArrays.get(new int[8], Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testAlignRangeOverflow()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxArrays.alignCenter(
+      Box.of(0, 1, 0, 1), new int[8], Integer.MAX_VALUE - 1, 2);
+  }
+
+  @Test
+  public void testAlignAll()
+    throws Exception
+  {
+    final Generator<Integer> int_gen = PrimitiveGenerators.integers(0, 40);
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+
+    QuickCheck.forAllVerbose(
+      box_gen,
+      new AbstractCharacteristic<BoxType<Object>>()
+      {
+        @Override
+        protected void doSpecify(final BoxType<Object> o)
+          throws Throwable
+        {
+          final List<BoxType<Object>> in = new ArrayList<>();
+          for (int index = 0; index < 20; ++index) {
+            in.add(box_gen.next());
+          }
+
+          final int a = int_gen.next().intValue();
+          final int b = int_gen.next().intValue();
+          final int n = in.size() - 2;
+
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignHorizontallyCenter(o, p, 1, n),
+            x -> Boxes.alignHorizontallyCenter(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignHorizontallyLeft(o, p, 1, n),
+            x -> Boxes.alignHorizontallyLeft(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignHorizontallyLeftOffset(o, p, 1, n, a),
+            x -> Boxes.alignHorizontallyLeftOffset(o, x, a));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignHorizontallyRight(o, p, 1, n),
+            x -> Boxes.alignHorizontallyRight(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignHorizontallyRightOffset(o, p, 1, n, a),
+            x -> Boxes.alignHorizontallyRightOffset(o, x, a));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignVerticallyTop(o, p, 1, n),
+            x -> Boxes.alignVerticallyTop(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignVerticallyTopOffset(o, p, 1, n, a),
+            x -> Boxes.alignVerticallyTopOffset(o, x, a));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignVerticallyBottom(o, p, 1, n),
+            x -> Boxes.alignVerticallyBottom(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignVerticallyBottomOffset(o, p, 1, n, a),
+            x -> Boxes.alignVerticallyBottomOffset(o, x, a));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignVerticallyCenter(o, p, 1, n),
+            x -> Boxes.alignVerticallyCenter(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignTopLeft(o, p, 1, n),
+            x -> Boxes.alignTopLeft(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignTopLeftOffset(o, p, 1, n, a, b),
+            x -> Boxes.alignTopLeftOffset(o, x, a, b));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignTopRight(o, p, 1, n),
+            x -> Boxes.alignTopRight(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignTopRightOffset(o, p, 1, n, a, b),
+            x -> Boxes.alignTopRightOffset(o, x, a, b));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignBottomLeft(o, p, 1, n),
+            x -> Boxes.alignBottomLeft(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignBottomLeftOffset(o, p, 1, n, a, b),
+            x -> Boxes.alignBottomLeftOffset(o, x, a, b));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignBottomRight(o, p, 1, n),
+            x -> Boxes.alignBottomRight(o, x));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignBottomRightOffset(o, p, 1, n, a, b),
+            x -> Boxes.alignBottomRightOffset(o, x, a, b));
+          BoxArraysTest.checkBatch(
+            in,
+            p -> BoxArrays.alignCenter(o, p, 1, n),
+            x -> Boxes.alignCenter(o, x));
+        }
+      });
+  }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxConstraintRelation;
+import com.io7m.jboxes.core.BoxConstraintSolver;
+import com.io7m.jboxes.core.BoxConstraintStrength;
+import com.io7m.jboxes.core.BoxDirection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Optional;
+
+public final class BoxConstraintSolverTest
+{
+  private static final double DELTA = 1.0e-6;
+
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static void requireEqual(
+    final BoxConstraintSolver<Object> solver,
+    final int box,
+    final BoxDirection edge,
+    final double value)
+  {
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL,
+      BoxConstraintStrength.REQUIRED)
+                        .term(box, edge, 1.0)
+                        .constant(-value)
+                        .add()
+                        .isPresent());
+  }
+
+  private static Optional<BoxConstraintSolver.Constraint> width(
+    final BoxConstraintSolver<Object> solver,
+    final int box,
+    final BoxConstraintStrength strength,
+    final double value)
+  {
+    return solver.constraint(BoxConstraintRelation.EQUAL, strength)
+      .width(box, 1.0)
+      .constant(-value)
+      .add();
+  }
+
+  @Test
+  public void testAdjacentWithGap()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    final int b = solver.addBox();
+
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 10.0);
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.UP, 0.0);
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.DOWN, 20.0);
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.REQUIRED, 100.0);
+
+    /* b.left = a.right + 8 */
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                        .term(b, BoxDirection.LEFT, 1.0)
+                        .term(a, BoxDirection.RIGHT, -1.0)
+                        .constant(-8.0)
+                        .add()
+                        .isPresent());
+
+    /* b has the same vertical extent as a, and width 50 */
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                        .term(b, BoxDirection.UP, 1.0)
+                        .term(a, BoxDirection.UP, -1.0)
+                        .add()
+                        .isPresent());
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                        .height(b, 1.0)
+                        .height(a, -1.0)
+                        .add()
+                        .isPresent());
+    BoxConstraintSolverTest.width(solver, b, BoxConstraintStrength.REQUIRED, 50.0);
+
+    Assert.assertEquals(2L, (long) solver.boxCount());
+    Assert.assertEquals(Box.of(10, 110, 0, 20), solver.box(a));
+    Assert.assertEquals(Box.of(118, 168, 0, 20), solver.box(b));
+  }
+
+  @Test
+  public void testEqualWidths()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    final int b = solver.addBox();
+    final int c = solver.addBox();
+
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+    BoxConstraintSolverTest.requireEqual(solver, c, BoxDirection.RIGHT, 300.0);
+
+    final int[] order = {a, b, c};
+    for (int index = 1; index < order.length; ++index) {
+      Assert.assertTrue(solver.constraint(
+        BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                          .term(order[index], BoxDirection.LEFT, 1.0)
+                          .term(order[index - 1], BoxDirection.RIGHT, -1.0)
+                          .add()
+                          .isPresent());
+      Assert.assertTrue(solver.constraint(
+        BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                          .width(order[index], 1.0)
+                          .width(order[index - 1], -1.0)
+                          .add()
+                          .isPresent());
+    }
+
+    Assert.assertEquals(0.0, solver.value(a, BoxDirection.LEFT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(100.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(100.0, solver.value(b, BoxDirection.LEFT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(200.0, solver.value(b, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(200.0, solver.value(c, BoxDirection.LEFT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(300.0, solver.value(c, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+  }
+
+  @Test
+  public void testStrengthPrecedence()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.WEAK, 100.0);
+    Assert.assertEquals(100.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    final BoxConstraintSolver.Constraint medium =
+      BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.MEDIUM, 150.0).get();
+    Assert.assertEquals(150.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    final BoxConstraintSolver.Constraint strong =
+      BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.STRONG, 200.0).get();
+    Assert.assertEquals(200.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+    Assert.assertEquals(BoxConstraintStrength.STRONG, strong.strength());
+    Assert.assertEquals(BoxConstraintRelation.EQUAL, strong.relation());
+
+    solver.removeConstraint(strong);
+    Assert.assertFalse(solver.hasConstraint(strong));
+    Assert.assertEquals(150.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    solver.removeConstraint(medium);
+    Assert.assertEquals(100.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+  }
+
+  @Test
+  public void testInequalities()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+
+    /* 40 <= width <= 60, preferring 100 */
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.GREATER_THAN_OR_EQUAL, BoxConstraintStrength.REQUIRED)
+                        .width(a, 1.0)
+                        .constant(-40.0)
+                        .add()
+                        .isPresent());
+    final BoxConstraintSolver.Constraint maximum = solver.constraint(
+      BoxConstraintRelation.LESS_THAN_OR_EQUAL, BoxConstraintStrength.REQUIRED)
+      .width(a, 1.0)
+      .constant(-60.0)
+      .add()
+      .get();
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.WEAK, 100.0);
+    Assert.assertEquals(60.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    solver.removeConstraint(maximum);
+    Assert.assertEquals(100.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.STRONG, 10.0);
+    Assert.assertEquals(40.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+  }
+
+  @Test
+  public void testEditDragResize()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    final int b = solver.addBox();
+
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.GREATER_THAN_OR_EQUAL, BoxConstraintStrength.REQUIRED)
+                        .width(a, 1.0)
+                        .constant(-10.0)
+                        .add()
+                        .isPresent());
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                        .term(b, BoxDirection.LEFT, 1.0)
+                        .term(a, BoxDirection.RIGHT, -1.0)
+                        .constant(-8.0)
+                        .add()
+                        .isPresent());
+    BoxConstraintSolverTest.width(solver, b, BoxConstraintStrength.STRONG, 30.0);
+
+    solver.addEditVariable(a, BoxDirection.RIGHT, BoxConstraintStrength.STRONG);
+    Assert.assertTrue(solver.hasEditVariable(a, BoxDirection.RIGHT));
+    Assert.assertFalse(solver.hasEditVariable(a, BoxDirection.LEFT));
+
+    for (int x = 0; x <= 400; x += 7) {
+      solver.suggestValue(a, BoxDirection.RIGHT, (double) x);
+      final double right = Math.max(10.0, (double) x);
+      Assert.assertEquals(right, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+      Assert.assertEquals(right + 8.0, solver.value(b, BoxDirection.LEFT), BoxConstraintSolverTest.DELTA);
+      Assert.assertEquals(right + 38.0, solver.value(b, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+    }
+
+    solver.suggestValue(a, BoxDirection.RIGHT, 64.0);
+    final int constraints = solver.constraintCount();
+    solver.removeEditVariable(a, BoxDirection.RIGHT);
+    Assert.assertFalse(solver.hasEditVariable(a, BoxDirection.RIGHT));
+    Assert.assertEquals((long) (constraints - 1), (long) solver.constraintCount());
+  }
+
+  @Test
+  public void testEditSurvivesFailedRequired()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+    solver.addEditVariable(a, BoxDirection.RIGHT, BoxConstraintStrength.MEDIUM);
+    solver.suggestValue(a, BoxDirection.RIGHT, 75.0);
+
+    final int constraints = solver.constraintCount();
+    final Optional<BoxConstraintSolver.Constraint> bad = solver.constraint(
+      BoxConstraintRelation.LESS_THAN_OR_EQUAL, BoxConstraintStrength.REQUIRED)
+      .term(a, BoxDirection.RIGHT, 1.0)
+      .constant(10.0)
+      .add();
+
+    Assert.assertFalse(bad.isPresent());
+    Assert.assertEquals((long) constraints, (long) solver.constraintCount());
+    Assert.assertEquals(75.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    solver.suggestValue(a, BoxDirection.RIGHT, 90.0);
+    Assert.assertEquals(90.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+  }
+
+  @Test
+  public void testUnsatisfiable()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.REQUIRED, 100.0);
+
+    final int constraints = solver.constraintCount();
+    Assert.assertFalse(
+      BoxConstraintSolverTest.width(
+        solver, a, BoxConstraintStrength.REQUIRED, 50.0).isPresent());
+    Assert.assertEquals((long) constraints, (long) solver.constraintCount());
+    Assert.assertEquals(100.0, solver.value(a, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+
+    /* Negative widths are rejected by the implicit constraints of a box */
+    Assert.assertFalse(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                         .term(a, BoxDirection.UP, 1.0)
+                         .term(a, BoxDirection.DOWN, -1.0)
+                         .constant(-5.0)
+                         .add()
+                         .isPresent());
+  }
+
+  @Test
+  public void testSymbolsReused()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    final int b = solver.addBox();
+
+    BoxConstraintSolverTest.requireEqual(solver, a, BoxDirection.LEFT, 0.0);
+    Assert.assertTrue(solver.constraint(
+      BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                        .term(b, BoxDirection.LEFT, 1.0)
+                        .term(a, BoxDirection.RIGHT, -1.0)
+                        .add()
+                        .isPresent());
+    BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.WEAK, 20.0);
+    BoxConstraintSolverTest.width(solver, b, BoxConstraintStrength.STRONG, 30.0);
+
+    final int symbols = solver.symbolCount();
+    final int constraints = solver.constraintCount();
+
+    for (int iteration = 0; iteration < 1000; ++iteration) {
+      solver.addEditVariable(a, BoxDirection.RIGHT, BoxConstraintStrength.STRONG);
+      solver.suggestValue(a, BoxDirection.RIGHT, (double) (10 + iteration % 50));
+      Assert.assertEquals(
+        (double) (40 + iteration % 50),
+        solver.value(b, BoxDirection.RIGHT),
+        BoxConstraintSolverTest.DELTA);
+      solver.removeEditVariable(a, BoxDirection.RIGHT);
+
+      final BoxConstraintSolver.Constraint c =
+        BoxConstraintSolverTest.width(
+          solver, b, BoxConstraintStrength.REQUIRED, 40.0).get();
+      Assert.assertEquals(
+        60.0, solver.value(b, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+      solver.removeConstraint(c);
+
+      /* A failed required constraint rebuilds the tableau */
+      Assert.assertFalse(solver.constraint(
+        BoxConstraintRelation.EQUAL, BoxConstraintStrength.REQUIRED)
+                           .term(a, BoxDirection.LEFT, 1.0)
+                           .constant(-1.0)
+                           .add()
+                           .isPresent());
+
+      Assert.assertEquals((long) symbols, (long) solver.symbolCount());
+      Assert.assertEquals((long) constraints, (long) solver.constraintCount());
+      Assert.assertEquals(
+        50.0, solver.value(b, BoxDirection.RIGHT), BoxConstraintSolverTest.DELTA);
+    }
+  }
+
+  @Test
+  public void testRemoveTwice()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    final BoxConstraintSolver.Constraint c =
+      BoxConstraintSolverTest.width(solver, a, BoxConstraintStrength.WEAK, 100.0).get();
+    Assert.assertTrue(solver.hasConstraint(c));
+    solver.removeConstraint(c);
+
+    this.expected.expect(RequireViolation.class);
+    solver.removeConstraint(c);
+  }
+
+  @Test
+  public void testRemoveForeign()
+  {
+    final BoxConstraintSolver<Object> solver0 = BoxConstraintSolver.create();
+    final BoxConstraintSolver<Object> solver1 = BoxConstraintSolver.create();
+    final int a = solver0.addBox();
+    solver1.addBox();
+    final BoxConstraintSolver.Constraint c =
+      BoxConstraintSolverTest.width(solver0, a, BoxConstraintStrength.WEAK, 100.0).get();
+    Assert.assertFalse(solver1.hasConstraint(c));
+
+    this.expected.expect(RequireViolation.class);
+    solver1.removeConstraint(c);
+  }
+
+  @Test
+  public void testEditRequired()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    this.expected.expect(RequireViolation.class);
+    solver.addEditVariable(a, BoxDirection.LEFT, BoxConstraintStrength.REQUIRED);
+  }
+
+  @Test
+  public void testEditDuplicate()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    solver.addEditVariable(a, BoxDirection.LEFT, BoxConstraintStrength.STRONG);
+    this.expected.expect(RequireViolation.class);
+    solver.addEditVariable(a, BoxDirection.LEFT, BoxConstraintStrength.WEAK);
+  }
+
+  @Test
+  public void testSuggestNotEdit()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    final int a = solver.addBox();
+    this.expected.expect(RequireViolation.class);
+    solver.suggestValue(a, BoxDirection.LEFT, 10.0);
+  }
+
+  @Test
+  public void testBoxNonexistent()
+  {
+    final BoxConstraintSolver<Object> solver = BoxConstraintSolver.create();
+    solver.addBox();
+    this.expected.expect(RequireViolation.class);
+    solver.value(1, BoxDirection.LEFT);
+  }
+}
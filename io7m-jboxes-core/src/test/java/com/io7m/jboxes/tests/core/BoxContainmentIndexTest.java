@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxContainmentIndex;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public final class BoxContainmentIndexTest
+{
+  @Test
+  public void testEmpty()
+  {
+    final BoxContainmentIndex<Object> index =
+      BoxContainmentIndex.create(Collections.emptyList());
+    Assert.assertEquals(0L, (long) index.size());
+    Assert.assertEquals(
+      Collections.emptyList(), index.containing(Box.of(0, 1, 0, 1)));
+    Assert.assertEquals(
+      Collections.emptyList(), index.containedBy(Box.of(0, 1, 0, 1)));
+  }
+
+  @Test
+  public void testNested()
+  {
+    final BoxType<Object> outer = Box.of(0, 100, 0, 100);
+    final BoxType<Object> middle = Box.of(10, 90, 10, 90);
+    final BoxType<Object> inner = Box.of(40, 60, 40, 60);
+    final BoxType<Object> beside = Box.of(200, 300, 0, 100);
+
+    final BoxContainmentIndex<Object> index = BoxContainmentIndex.create(
+      Arrays.asList(outer, middle, inner, beside));
+    Assert.assertEquals(4L, (long) index.size());
+
+    Assert.assertEquals(
+      new HashSet<>(Arrays.asList(outer, middle, inner)),
+      new HashSet<>(index.containing(inner)));
+    Assert.assertEquals(
+      new HashSet<>(Arrays.asList(outer, middle, inner)),
+      new HashSet<>(index.containedBy(outer)));
+    Assert.assertEquals(
+      new HashSet<>(Collections.singletonList(beside)),
+      new HashSet<>(index.containing(Box.of(250, 260, 50, 60))));
+    Assert.assertEquals(
+      Collections.emptyList(), index.containedBy(Box.of(95, 250, 0, 100)));
+  }
+
+  @Test
+  public void testDuplicates()
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    for (int index = 0; index < 100; ++index) {
+      boxes.add(Box.of(0, 10, 0, 10));
+    }
+
+    final BoxContainmentIndex<Object> index = BoxContainmentIndex.create(boxes);
+    Assert.assertEquals(
+      100L, (long) index.containing(Box.of(0, 10, 0, 10), box -> { }));
+    Assert.assertEquals(
+      100L, (long) index.containedBy(Box.of(0, 10, 0, 10), box -> { }));
+    Assert.assertEquals(
+      0L, (long) index.containing(Box.of(0, 11, 0, 10), box -> { }));
+  }
+
+  @Test
+  public void testRandomAgainstBruteForce()
+  {
+    final Random random = new Random(1L);
+    final List<BoxType<Object>> boxes =
+      BoxTestSupport.randomBoxes(random, 4375, 0, 1000, 40);
+    boxes.addAll(BoxTestSupport.randomBoxes(random, 625, 0, 1000, 500));
+    final BoxContainmentIndex<Object> index = BoxContainmentIndex.create(boxes);
+
+    for (int iteration = 0; iteration < 300; ++iteration) {
+      final BoxType<Object> query =
+        BoxTestSupport.randomBoxes(
+          random, 1, 0, 1000, random.nextInt(8) == 0 ? 500 : 40).get(0);
+
+      int containing = 0;
+      int contained = 0;
+      for (final BoxType<Object> box : boxes) {
+        if (Boxes.contains(box, query)) {
+          ++containing;
+        }
+        if (Boxes.contains(query, box)) {
+          ++contained;
+        }
+      }
+
+      final List<BoxType<Object>> found_containing = index.containing(query);
+      Assert.assertEquals((long) containing, (long) found_containing.size());
+      for (final BoxType<Object> box : found_containing) {
+        Assert.assertTrue(Boxes.contains(box, query));
+      }
+
+      final List<BoxType<Object>> found_contained = index.containedBy(query);
+      Assert.assertEquals((long) contained, (long) found_contained.size());
+      for (final BoxType<Object> box : found_contained) {
+        Assert.assertTrue(Boxes.contains(query, box));
+      }
+    }
+  }
+}
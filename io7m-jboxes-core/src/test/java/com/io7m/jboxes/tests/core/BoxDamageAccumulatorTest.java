@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxDamageAccumulator;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class BoxDamageAccumulatorTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testAdjacentMerged()
+  {
+    final BoxDamageAccumulator<Object> d = BoxDamageAccumulator.create(8, 0L);
+    d.add(Box.of(0, 10, 0, 10));
+    d.add(Box.of(10, 20, 0, 10));
+
+    Assert.assertEquals(1L, (long) d.size());
+    Assert.assertEquals(Box.of(0, 20, 0, 10), d.rectangles().get(0));
+    Assert.assertEquals(200L, d.cost());
+  }
+
+  @Test
+  public void testDistantSeparate()
+  {
+    final BoxDamageAccumulator<Object> d = BoxDamageAccumulator.create(8, 10L);
+    d.add(Box.of(0, 10, 0, 10));
+    d.add(Box.of(100, 110, 100, 110));
+
+    Assert.assertEquals(2L, (long) d.size());
+    Assert.assertEquals(220L, d.cost());
+  }
+
+  @Test
+  public void testOverheadMerges()
+  {
+    final BoxDamageAccumulator<Object> d =
+      BoxDamageAccumulator.create(8, 1000L);
+    d.add(Box.of(0, 10, 0, 10));
+    d.add(Box.of(20, 30, 20, 30));
+
+    /*
+     * The bounding box has area 900, less than 100 + 100 + 1000.
+     */
+
+    Assert.assertEquals(1L, (long) d.size());
+    Assert.assertEquals(Box.of(0, 30, 0, 30), d.rectangles().get(0));
+  }
+
+  @Test
+  public void testContainedAbsorbed()
+  {
+    final BoxDamageAccumulator<Object> d = BoxDamageAccumulator.create(8, 0L);
+    d.add(Box.of(0, 100, 0, 100));
+    d.add(Box.of(10, 20, 10, 20));
+    d.add(Box.of(0, 0, 0, 1000));
+
+    Assert.assertEquals(1L, (long) d.size());
+    Assert.assertEquals(Box.of(0, 100, 0, 100), d.rectangles().get(0));
+  }
+
+  @Test
+  public void testCapped()
+  {
+    final Random random = new Random(1L);
+    final BoxDamageAccumulator<Object> d = BoxDamageAccumulator.create(8, 64L);
+    final List<BoxType<Object>> added = new ArrayList<>();
+
+    for (int index = 0; index < 500; ++index) {
+      final int x = random.nextInt(1000);
+      final int y = random.nextInt(1000);
+      final BoxType<Object> box =
+        Box.of(x, x + 1 + random.nextInt(16), y, y + 1 + random.nextInt(16));
+      added.add(box);
+      d.add(box);
+      Assert.assertTrue(d.size() <= 8);
+    }
+
+    for (final BoxType<Object> box : added) {
+      boolean covered = false;
+      for (final BoxType<Object> r : d.rectangles()) {
+        covered = covered || Boxes.contains(r, box);
+      }
+      Assert.assertTrue(covered);
+    }
+
+    d.clear();
+    Assert.assertEquals(0L, (long) d.size());
+    Assert.assertEquals(0L, d.cost());
+  }
+
+  @Test
+  public void testCreateZero()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxDamageAccumulator.create(0, 0L);
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxEmptyRectangleFinder;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxEmptyRectangleFinderTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static long bruteLargest(
+    final BoxType<Object> container,
+    final List<BoxType<Object>> obstacles,
+    final int min_width,
+    final int min_height)
+  {
+    long best = -1L;
+    for (int x0 = container.minimumX(); x0 < container.maximumX(); ++x0) {
+      for (int y0 = container.minimumY(); y0 < container.maximumY(); ++y0) {
+        for (int x1 = x0 + Math.max(1, min_width); x1 <= container.maximumX(); ++x1) {
+          for (int y1 = y0 + Math.max(1, min_height); y1 <= container.maximumY(); ++y1) {
+            final BoxType<Object> box = Box.of(x0, x1, y0, y1);
+            boolean free = true;
+            for (final BoxType<Object> o : obstacles) {
+              free = free && !BoxTestSupport.intersects(box, o);
+            }
+            if (free) {
+              best = Math.max(best, (long) box.width() * (long) box.height());
+            }
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  private static void checkResult(
+    final BoxType<Object> container,
+    final List<BoxType<Object>> obstacles,
+    final int min_width,
+    final int min_height,
+    final Optional<BoxType<Object>> result)
+  {
+    final long expected = BoxEmptyRectangleFinderTest.bruteLargest(
+      container, obstacles, min_width, min_height);
+    if (expected < 0L) {
+      Assert.assertFalse(result.isPresent());
+      return;
+    }
+
+    final BoxType<Object> box = result.get();
+    Assert.assertTrue(Boxes.contains(container, box));
+    Assert.assertTrue(box.width() >= min_width);
+    Assert.assertTrue(box.height() >= min_height);
+    for (final BoxType<Object> o : obstacles) {
+      Assert.assertFalse(BoxTestSupport.intersects(box, o));
+    }
+    Assert.assertEquals(expected, (long) box.width() * (long) box.height());
+  }
+
+  @Test
+  public void testNoObstacles()
+  {
+    final BoxType<Object> container = Box.of(-10, 10, 5, 25);
+    Assert.assertEquals(
+      Optional.of(container),
+      BoxEmptyRectangleFinder.largestEmpty(
+        container, Collections.<BoxType<Object>>emptyList(), 0, 0));
+    Assert.assertEquals(
+      Optional.empty(),
+      BoxEmptyRectangleFinder.largestEmpty(
+        container, Collections.<BoxType<Object>>emptyList(), 21, 0));
+  }
+
+  @Test
+  public void testSimple()
+  {
+    final BoxType<Object> container = Box.of(0, 100, 0, 100);
+    final List<BoxType<Object>> obstacles = Arrays.asList(
+      Box.of(0, 100, 40, 60),
+      Box.of(30, 200, -10, 40));
+
+    Assert.assertEquals(
+      Optional.of(Box.of(0, 100, 60, 100)),
+      BoxEmptyRectangleFinder.largestEmpty(container, obstacles, 0, 0));
+    Assert.assertEquals(
+      Optional.of(Box.of(0, 30, 0, 100)),
+      BoxEmptyRectangleFinder.largestEmpty(
+        container, Arrays.asList(obstacles.get(1)), 0, 61));
+    Assert.assertEquals(
+      Optional.empty(),
+      BoxEmptyRectangleFinder.largestEmpty(container, obstacles, 0, 41));
+  }
+
+  @Test
+  public void testRandomBruteForce()
+  {
+    final Random random = new Random(1L);
+    final BoxType<Object> container = Box.of(0, 12, 0, 12);
+
+    for (int iteration = 0; iteration < 100; ++iteration) {
+      final List<BoxType<Object>> obstacles = new ArrayList<>();
+      final int count = random.nextInt(6);
+      for (int index = 0; index < count; ++index) {
+        final int x = random.nextInt(16) - 2;
+        final int y = random.nextInt(16) - 2;
+        obstacles.add(Box.of(
+          x, x + 1 + random.nextInt(6), y, y + 1 + random.nextInt(6)));
+      }
+
+      final int min_width = random.nextInt(4);
+      final int min_height = random.nextInt(4);
+      BoxEmptyRectangleFinderTest.checkResult(
+        container,
+        obstacles,
+        min_width,
+        min_height,
+        BoxEmptyRectangleFinder.largestEmpty(
+          container, obstacles, min_width, min_height));
+    }
+  }
+
+  @Test
+  public void testIncremental()
+  {
+    final Random random = new Random(2L);
+    final BoxType<Object> container = Box.of(0, 12, 0, 12);
+    final BoxEmptyRectangleFinder<Object> finder =
+      BoxEmptyRectangleFinder.create(container);
+    final List<BoxType<Object>> obstacles = new ArrayList<>();
+
+    for (int step = 0; step < 100; ++step) {
+      if (!obstacles.isEmpty() && random.nextInt(3) == 0) {
+        finder.removeObstacle(
+          obstacles.remove(random.nextInt(obstacles.size())));
+      } else {
+        final int x = random.nextInt(12);
+        final int y = random.nextInt(12);
+        final BoxType<Object> box =
+          Box.of(x, x + 1 + random.nextInt(3), y, y + 1 + random.nextInt(3));
+        obstacles.add(box);
+        finder.addObstacle(box);
+      }
+
+      Assert.assertEquals(
+        (long) obstacles.size(), (long) finder.obstacleCount());
+      BoxEmptyRectangleFinderTest.checkResult(
+        container, obstacles, 1, 1, finder.largestEmpty(1, 1));
+    }
+
+    finder.clearObstacles();
+    Assert.assertEquals(Optional.of(container), finder.largestEmpty(0, 0));
+  }
+
+  @Test
+  public void testIncrementalMinimums()
+  {
+    final Random random = new Random(3L);
+    final BoxType<Object> container = Box.of(0, 12, 0, 12);
+    final BoxEmptyRectangleFinder<Object> finder =
+      BoxEmptyRectangleFinder.create(container);
+    final List<BoxType<Object>> obstacles = new ArrayList<>();
+
+    /*
+     * Obstacles on a coarse lattice mostly reuse existing grid lines, so
+     * most updates adjust the retained grid rather than rebuilding it.
+     */
+
+    for (int step = 0; step < 200; ++step) {
+      if (!obstacles.isEmpty() && random.nextInt(2) == 0) {
+        finder.removeObstacle(
+          obstacles.remove(random.nextInt(obstacles.size())));
+      } else {
+        final int x = 3 * random.nextInt(4);
+        final int y = 3 * random.nextInt(4);
+        final int w = 3 * (1 + random.nextInt(2));
+        final int h = 3 * (1 + random.nextInt(2));
+        final BoxType<Object> box = Box.of(x, x + w, y, y + h);
+        obstacles.add(box);
+        finder.addObstacle(box);
+      }
+
+      final int min_width = random.nextInt(4);
+      final int min_height = random.nextInt(4);
+      BoxEmptyRectangleFinderTest.checkResult(
+        container,
+        obstacles,
+        min_width,
+        min_height,
+        finder.largestEmpty(min_width, min_height));
+    }
+  }
+
+  @Test
+  public void testIncrementalKeepsCached()
+  {
+    final BoxEmptyRectangleFinder<Object> finder =
+      BoxEmptyRectangleFinder.create(Box.of(0, 100, 0, 100));
+    finder.addObstacle(Box.of(0, 100, 0, 10));
+
+    final Optional<BoxType<Object>> first = finder.largestEmpty(0, 0);
+    Assert.assertEquals(Optional.of(Box.of(0, 100, 10, 100)), first);
+
+    finder.addObstacle(Box.of(0, 100, 5, 10));
+    Assert.assertSame(first, finder.largestEmpty(0, 0));
+
+    finder.addObstacle(Box.of(0, 10, 10, 20));
+    Assert.assertEquals(
+      Optional.of(Box.of(10, 100, 10, 100)), finder.largestEmpty(0, 0));
+  }
+
+  @Test
+  public void testRemoveMissing()
+  {
+    final BoxEmptyRectangleFinder<Object> finder =
+      BoxEmptyRectangleFinder.create(Box.of(0, 100, 0, 100));
+    this.expected.expect(RequireViolation.class);
+    finder.removeObstacle(Box.of(0, 1, 0, 1));
+  }
+}
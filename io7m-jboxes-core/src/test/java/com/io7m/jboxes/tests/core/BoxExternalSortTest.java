@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxExternalSort;
+import com.io7m.jboxes.core.BoxHilbertCurve;
+import com.io7m.jboxes.core.BoxRecordReader;
+import com.io7m.jboxes.core.BoxRecordWriter;
+import com.io7m.jboxes.core.BoxType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public final class BoxExternalSortTest
+{
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<BoxType<Object>> readAll(
+    final Path path)
+    throws IOException
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    try (final BoxRecordReader reader = BoxRecordReader.open(path)) {
+      while (reader.advance()) {
+        boxes.add(reader.box());
+      }
+    }
+    return boxes;
+  }
+
+  private void checkSort(
+    final int count,
+    final int run_size,
+    final int fan_in)
+    throws IOException
+  {
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+    final List<BoxType<Object>> input = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      input.add(box_gen.next());
+    }
+
+    final Path temp = this.folder.newFolder().toPath();
+    final Path output = this.folder.getRoot().toPath().resolve("out.bin");
+    final long written = BoxExternalSort.sortByHilbert(
+      input.iterator(), output, temp, run_size, fan_in);
+    Assert.assertEquals((long) count, written);
+
+    final List<BoxType<Object>> expected = new ArrayList<>(input);
+    expected.sort((a, b) -> Long.compareUnsigned(
+      BoxHilbertCurve.keyOfCenter(a), BoxHilbertCurve.keyOfCenter(b)));
+
+    Assert.assertEquals(expected, BoxExternalSortTest.readAll(output));
+    try (final Stream<Path> remaining = Files.list(temp)) {
+      Assert.assertEquals(0L, remaining.count());
+    }
+  }
+
+  @Test
+  public void testSortSingleRun()
+    throws IOException
+  {
+    this.checkSort(500, 1000, 4);
+  }
+
+  @Test
+  public void testSortManyRuns()
+    throws IOException
+  {
+    this.checkSort(10000, 333, 128);
+  }
+
+  @Test
+  public void testSortMultiplePasses()
+    throws IOException
+  {
+    this.checkSort(10000, 100, 3);
+  }
+
+  @Test
+  public void testSortEmpty()
+    throws IOException
+  {
+    this.checkSort(0, 10, 2);
+  }
+
+  /**
+   * An iterator over generated boxes that runs an action when it is first
+   * found to be exhausted.
+   */
+
+  private static Iterator<BoxType<Object>> generated(
+    final int count,
+    final IOAction on_end)
+  {
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+    return new Iterator<BoxType<Object>>()
+    {
+      private int produced;
+
+      @Override
+      public boolean hasNext()
+      {
+        if (this.produced < count) {
+          return true;
+        }
+        try {
+          on_end.run();
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return false;
+      }
+
+      @Override
+      public BoxType<Object> next()
+      {
+        ++this.produced;
+        return box_gen.next();
+      }
+    };
+  }
+
+  private static void assertEmpty(
+    final Path directory)
+    throws IOException
+  {
+    try (final Stream<Path> remaining = Files.list(directory)) {
+      Assert.assertEquals(0L, remaining.count());
+    }
+  }
+
+  @Test
+  public void testInputFailureDeletesRuns()
+    throws IOException
+  {
+    final Path temp = this.folder.newFolder().toPath();
+    final Path output = this.folder.getRoot().toPath().resolve("out.bin");
+
+    try {
+      BoxExternalSort.sortByHilbert(
+        BoxExternalSortTest.generated(55, () -> {
+          throw new IOException("Injected");
+        }), output, temp, 10, 3);
+      Assert.fail();
+    } catch (final UncheckedIOException e) {
+      Assert.assertEquals("Injected", e.getCause().getMessage());
+    }
+
+    BoxExternalSortTest.assertEmpty(temp);
+  }
+
+  @Test
+  public void testMergeFailureDeletesRuns()
+    throws IOException
+  {
+    final Path temp = this.folder.newFolder().toPath();
+    final Path output = this.folder.getRoot().toPath().resolve("out.bin");
+
+    /*
+     * Corrupt one of the spilled runs so that opening it during a merge
+     * fails.
+     */
+
+    final IOAction corrupt = () -> {
+      try (final Stream<Path> runs = Files.list(temp)) {
+        final Path victim = runs.max(Comparator.naturalOrder()).get();
+        Files.write(victim, new byte[17]);
+      }
+    };
+
+    try {
+      BoxExternalSort.sortByHilbert(
+        BoxExternalSortTest.generated(1000, corrupt), output, temp, 10, 3);
+      Assert.fail();
+    } catch (final IOException e) {
+      Assert.assertTrue(e.getMessage().contains("record size"));
+    }
+
+    BoxExternalSortTest.assertEmpty(temp);
+  }
+
+  @Test
+  public void testOutputFailureDeletesRuns()
+    throws IOException
+  {
+    final Path temp = this.folder.newFolder().toPath();
+    final Path output =
+      this.folder.getRoot().toPath().resolve("missing").resolve("out.bin");
+
+    try {
+      BoxExternalSort.sortByHilbert(
+        BoxExternalSortTest.generated(1000, () -> { }), output, temp, 10, 3);
+      Assert.fail();
+    } catch (final IOException e) {
+      BoxExternalSortTest.assertEmpty(temp);
+    }
+
+    try {
+      BoxExternalSort.sortByHilbert(
+        BoxExternalSortTest.generated(5, () -> { }), output, temp, 10, 3);
+      Assert.fail();
+    } catch (final IOException e) {
+      BoxExternalSortTest.assertEmpty(temp);
+    }
+  }
+
+  @Test
+  public void testHilbertLocality()
+  {
+    final long k0 = BoxHilbertCurve.key(0, 0);
+    final long k1 = BoxHilbertCurve.key(1, 0);
+    final long k2 = BoxHilbertCurve.key(0, 1);
+    final long k3 = BoxHilbertCurve.key(1, 1);
+
+    final List<Long> keys = new ArrayList<>();
+    keys.add(Long.valueOf(k0));
+    keys.add(Long.valueOf(k1));
+    keys.add(Long.valueOf(k2));
+    keys.add(Long.valueOf(k3));
+    keys.sort(Comparator.naturalOrder());
+
+    /*
+     * Adjacent cells of a 2x2 block occupy four consecutive keys.
+     */
+
+    Assert.assertEquals(3L, keys.get(3).longValue() - keys.get(0).longValue());
+    Assert.assertNotEquals(
+      BoxHilbertCurve.key(Integer.MIN_VALUE, Integer.MIN_VALUE),
+      BoxHilbertCurve.key(Integer.MAX_VALUE, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testRecordRoundTrip()
+    throws IOException
+  {
+    final Path path = this.folder.newFile().toPath();
+    try (final BoxRecordWriter writer = BoxRecordWriter.open(path)) {
+      for (int index = 0; index < 10000; ++index) {
+        writer.write(Box.of(index, index + 1, -index, 0));
+      }
+      Assert.assertEquals(10000L, writer.records());
+    }
+
+    Assert.assertEquals(
+      10000L * (long) BoxRecordWriter.RECORD_SIZE, Files.size(path));
+
+    final List<BoxType<Object>> boxes = BoxExternalSortTest.readAll(path);
+    Assert.assertEquals(10000L, (long) boxes.size());
+    for (int index = 0; index < 10000; ++index) {
+      Assert.assertEquals(Box.of(index, index + 1, -index, 0), boxes.get(index));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testRecordTruncated()
+    throws IOException
+  {
+    final Path path = this.folder.newFile().toPath();
+    Files.write(path, new byte[17]);
+    BoxRecordReader.open(path);
+  }
+
+  private interface IOAction
+  {
+    void run()
+      throws IOException;
+  }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxFlexAlign;
+import com.io7m.jboxes.core.BoxFlexDirection;
+import com.io7m.jboxes.core.BoxFlexJustify;
+import com.io7m.jboxes.core.BoxFlexLayout;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Random;
+
+public final class BoxFlexLayoutTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static int[] items(
+    final int... values)
+  {
+    return values;
+  }
+
+  @Test
+  public void testRowStart()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.builder()
+      .setAlign(BoxFlexAlign.START)
+      .setGap(5, 0)
+      .build();
+
+    final int[] items = BoxFlexLayoutTest.items(10, 4, 0, 0, 20, 8, 0, 0);
+    final int[] out = new int[2 * BoxArrays.STRIDE];
+    Assert.assertEquals(
+      1L, (long) layout.layout(Box.of(100, 200, 50, 70), items, 2, out));
+    Assert.assertEquals(Box.of(100, 110, 50, 54), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(115, 135, 50, 58), BoxArrays.get(out, 1));
+  }
+
+  @Test
+  public void testGrowExact()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.<Object>builder().build();
+
+    final int[] items = new int[3 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 0, 0, 1, 0);
+    BoxFlexLayout.setItem(items, 1, 0, 0, 1, 0);
+    BoxFlexLayout.setItem(items, 2, 0, 0, 1, 0);
+
+    final int[] out = new int[3 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 100, 0, 10), items, 3, out);
+
+    Assert.assertEquals(Box.of(0, 33, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(33, 66, 0, 10), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(66, 100, 0, 10), BoxArrays.get(out, 2));
+  }
+
+  @Test
+  public void testGrowWeighted()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.builder()
+      .setGap(10, 0)
+      .build();
+
+    final int[] items = new int[3 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 20, 0, 0, 0);
+    BoxFlexLayout.setItem(items, 1, 10, 0, 1, 0);
+    BoxFlexLayout.setItem(items, 2, 10, 0, 3, 0);
+
+    final int[] out = new int[3 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 100, 0, 10), items, 3, out);
+
+    /* 40 units are used by bases and 20 by gaps; 40 remain. */
+    Assert.assertEquals(Box.of(0, 20, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(30, 50, 0, 10), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(60, 100, 0, 10), BoxArrays.get(out, 2));
+  }
+
+  @Test
+  public void testShrink()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.<Object>builder().build();
+
+    final int[] items = new int[3 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 50, 0, 0, 0);
+    BoxFlexLayout.setItem(items, 1, 50, 0, 0, 1);
+    BoxFlexLayout.setItem(items, 2, 100, 0, 0, 1);
+
+    final int[] out = new int[3 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 140, 0, 10), items, 3, out);
+
+    /* 60 units of overflow are taken in proportion 50:100. */
+    Assert.assertEquals(Box.of(0, 50, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(50, 80, 0, 10), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(80, 140, 0, 10), BoxArrays.get(out, 2));
+  }
+
+  @Test
+  public void testShrinkNotNegative()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.<Object>builder().build();
+
+    final int[] items = new int[2 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 10, 0, 0, 100);
+    BoxFlexLayout.setItem(items, 1, 100, 0, 0, 1);
+
+    final int[] out = new int[2 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 50, 0, 10), items, 2, out);
+
+    /* The first item is frozen at zero and the second absorbs the rest. */
+    Assert.assertEquals(Box.of(0, 0, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(0, 50, 0, 10), BoxArrays.get(out, 1));
+  }
+
+  @Test
+  public void testShrinkFrozenRedistributes()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.<Object>builder().build();
+
+    final int[] items = new int[3 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 10, 0, 0, 10);
+    BoxFlexLayout.setItem(items, 1, 100, 0, 0, 1);
+    BoxFlexLayout.setItem(items, 2, 20, 0, 0, 5);
+
+    final int[] out = new int[3 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 60, 0, 10), items, 3, out);
+
+    /*
+     * 70 units of overflow would take more than the bases of the first and
+     * third items, so both are frozen, and the second gives up the
+     * remaining 40.
+     */
+
+    Assert.assertEquals(Box.of(0, 0, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(0, 60, 0, 10), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(60, 60, 0, 10), BoxArrays.get(out, 2));
+  }
+
+  @Test
+  public void testShrinkRandomSumsExactly()
+  {
+    final Random random = new Random(0x42L);
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.<Object>builder().build();
+
+    for (int iteration = 0; iteration < 500; ++iteration) {
+      final int count = 1 + random.nextInt(8);
+      final int[] items = new int[count * BoxFlexLayout.ITEM_STRIDE];
+      long used = 0L;
+      for (int index = 0; index < count; ++index) {
+        final int basis = random.nextInt(100);
+        BoxFlexLayout.setItem(
+          items, index, basis, 0, 0, 1 + random.nextInt(20));
+        used += (long) basis;
+      }
+
+      final int width = random.nextInt((int) used + 1);
+      final int[] out = new int[count * BoxArrays.STRIDE];
+      layout.layout(Box.of(0, width, 0, 10), items, count, out);
+
+      int x = 0;
+      for (int index = 0; index < count; ++index) {
+        final BoxType<Object> box = BoxArrays.get(out, index);
+        Assert.assertEquals((long) x, (long) box.minimumX());
+        Assert.assertTrue(box.width() >= 0);
+        x = box.maximumX();
+      }
+      Assert.assertEquals((long) width, (long) x);
+    }
+  }
+
+  @Test
+  public void testJustify()
+  {
+    final int[] items = BoxFlexLayoutTest.items(10, 10, 0, 0, 10, 10, 0, 0);
+    final int[] out = new int[2 * BoxArrays.STRIDE];
+    final BoxType<Object> container = Box.of(0, 101, 0, 10);
+
+    BoxFlexLayout.<Object>builder()
+      .setJustify(BoxFlexJustify.CENTER)
+      .build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(40, 50, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(50, 60, 0, 10), BoxArrays.get(out, 1));
+
+    BoxFlexLayout.<Object>builder()
+      .setJustify(BoxFlexJustify.END)
+      .build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(81, 91, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(91, 101, 0, 10), BoxArrays.get(out, 1));
+
+    BoxFlexLayout.<Object>builder()
+      .setJustify(BoxFlexJustify.SPACE_BETWEEN)
+      .build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(0, 10, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(91, 101, 0, 10), BoxArrays.get(out, 1));
+  }
+
+  @Test
+  public void testAlignMatchesBoxes()
+  {
+    final BoxType<Object> container = Box.of(3, 50, 7, 40);
+    final int[] items = BoxFlexLayoutTest.items(10, 9, 0, 0);
+    final int[] out = new int[BoxArrays.STRIDE];
+    final BoxType<Object> inner = Box.of(3, 13, 7, 16);
+
+    BoxFlexLayout.<Object>builder()
+      .setAlign(BoxFlexAlign.CENTER)
+      .build()
+      .layout(container, items, 1, out);
+    Assert.assertEquals(
+      Boxes.alignVerticallyCenter(container, inner), BoxArrays.get(out, 0));
+
+    BoxFlexLayout.<Object>builder()
+      .setAlign(BoxFlexAlign.END)
+      .build()
+      .layout(container, items, 1, out);
+    Assert.assertEquals(
+      Boxes.alignVerticallyBottom(container, inner), BoxArrays.get(out, 0));
+
+    BoxFlexLayout.<Object>builder()
+      .setAlign(BoxFlexAlign.STRETCH)
+      .build()
+      .layout(container, items, 1, out);
+    Assert.assertEquals(Box.of(3, 13, 7, 40), BoxArrays.get(out, 0));
+  }
+
+  @Test
+  public void testColumnWrap()
+  {
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.builder()
+      .setDirection(BoxFlexDirection.COLUMN)
+      .setWrap(true)
+      .setGap(2, 4)
+      .setAlign(BoxFlexAlign.START)
+      .build();
+
+    final int[] items = new int[5 * BoxFlexLayout.ITEM_STRIDE];
+    BoxFlexLayout.setItem(items, 0, 10, 5, 0, 0);
+    BoxFlexLayout.setItem(items, 1, 10, 8, 0, 0);
+    BoxFlexLayout.setItem(items, 2, 10, 3, 0, 0);
+    BoxFlexLayout.setItem(items, 3, 40, 6, 0, 0);
+    BoxFlexLayout.setItem(items, 4, 1, 1, 0, 0);
+
+    final int[] out = new int[5 * BoxArrays.STRIDE];
+    Assert.assertEquals(
+      3L, (long) layout.layout(Box.of(0, 100, 0, 34), items, 5, out));
+
+    Assert.assertEquals(Box.of(0, 5, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(0, 8, 12, 22), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(0, 3, 24, 34), BoxArrays.get(out, 2));
+    Assert.assertEquals(Box.of(12, 18, 0, 40), BoxArrays.get(out, 3));
+    Assert.assertEquals(Box.of(22, 23, 0, 1), BoxArrays.get(out, 4));
+  }
+
+  @Test
+  public void testRandomGrowFillsLines()
+  {
+    final Random random = new Random(1L);
+    final BoxFlexLayout<Object> layout = BoxFlexLayout.builder()
+      .setWrap(true)
+      .setGap(3, 2)
+      .build();
+
+    final int count = 1000;
+    final int[] items = new int[count * BoxFlexLayout.ITEM_STRIDE];
+    for (int index = 0; index < count; ++index) {
+      BoxFlexLayout.setItem(
+        items,
+        index,
+        random.nextInt(100),
+        random.nextInt(20),
+        1 + random.nextInt(5),
+        random.nextInt(3));
+    }
+
+    final BoxType<Object> container = Box.of(0, 640, 0, 100000);
+    final int[] out = new int[count * BoxArrays.STRIDE];
+    final int lines = layout.layout(container, items, count, out);
+
+    /*
+     * Every line must run exactly from the left edge to the right edge.
+     */
+
+    int ends = 0;
+    for (int index = 0; index < count; ++index) {
+      final BoxType<Object> box = BoxArrays.get(out, index);
+      Assert.assertTrue(box.width() >= items[index * BoxFlexLayout.ITEM_STRIDE]);
+      if (index + 1 == count
+        || BoxArrays.get(out, index + 1).minimumY() != box.minimumY()) {
+        Assert.assertEquals(640L, (long) box.maximumX());
+        ++ends;
+      } else {
+        Assert.assertEquals(
+          (long) box.maximumX() + 3L,
+          (long) BoxArrays.get(out, index + 1).minimumX());
+      }
+    }
+    Assert.assertEquals((long) lines, (long) ends);
+  }
+
+  @Test
+  public void testNegativeGap()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxFlexLayout.builder().setGap(-1, 0);
+  }
+
+  @Test
+  public void testItemsTooShort()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxFlexLayout.<Object>builder().build().layout(
+      Box.of(0, 1, 0, 1), new int[3], 1, new int[4]);
+  }
+}
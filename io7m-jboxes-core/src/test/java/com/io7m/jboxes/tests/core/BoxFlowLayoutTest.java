@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxFlexJustify;
+import com.io7m.jboxes.core.BoxFlowAlign;
+import com.io7m.jboxes.core.BoxFlowColumns;
+import com.io7m.jboxes.core.BoxFlowLayout;
+import com.io7m.jboxes.core.BoxMutable;
+import com.io7m.jboxes.core.BoxType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Random;
+
+public final class BoxFlowLayoutTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static int[] uniform(
+    final int count,
+    final int width,
+    final int height)
+  {
+    final int[] items = new int[count * BoxFlowLayout.ITEM_STRIDE];
+    for (int index = 0; index < count; ++index) {
+      BoxFlowLayout.setItem(items, index, width, height, height);
+    }
+    return items;
+  }
+
+  private static void assertSameColumns(
+    final BoxFlowColumns<Object> expected,
+    final BoxFlowColumns<Object> actual)
+  {
+    Assert.assertEquals((long) expected.count(), (long) actual.count());
+    Assert.assertEquals((long) expected.lineCount(), (long) actual.lineCount());
+    for (int index = 0; index < expected.count(); ++index) {
+      Assert.assertEquals(expected.box(index), actual.box(index));
+    }
+    for (int line = 0; line < expected.lineCount(); ++line) {
+      Assert.assertEquals(
+        (long) expected.lineFirst(line), (long) actual.lineFirst(line));
+      Assert.assertEquals(
+        (long) expected.lineMinimumY(line), (long) actual.lineMinimumY(line));
+      Assert.assertEquals(
+        (long) expected.lineMaximumY(line), (long) actual.lineMaximumY(line));
+      Assert.assertEquals(
+        (long) expected.lineBaseline(line), (long) actual.lineBaseline(line));
+    }
+  }
+
+  @Test
+  public void testWrapWithGaps()
+  {
+    final BoxFlowLayout<Object> layout =
+      BoxFlowLayout.builder().setGap(5, 2).build();
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final int[] items = BoxFlowLayoutTest.uniform(7, 30, 10);
+
+    Assert.assertEquals(
+      3L, (long) layout.layout(Box.of(10, 110, 20, 20), items, 7, out));
+
+    Assert.assertEquals(Box.of(10, 40, 20, 30), out.box(0));
+    Assert.assertEquals(Box.of(45, 75, 20, 30), out.box(1));
+    Assert.assertEquals(Box.of(80, 110, 20, 30), out.box(2));
+    Assert.assertEquals(Box.of(10, 40, 32, 42), out.box(3));
+    Assert.assertEquals(Box.of(10, 40, 44, 54), out.box(6));
+
+    Assert.assertEquals(0L, (long) out.lineFirst(0));
+    Assert.assertEquals(3L, (long) out.lineEnd(0));
+    Assert.assertEquals(6L, (long) out.lineFirst(2));
+    Assert.assertEquals(7L, (long) out.lineEnd(2));
+    Assert.assertEquals(1L, (long) out.lineOf(5));
+    Assert.assertEquals(2L, (long) out.lineOf(6));
+    Assert.assertEquals(44L, (long) out.lineMinimumY(2));
+    Assert.assertEquals(54L, (long) out.lineMaximumY(2));
+
+    final int[] packed = new int[7 * BoxArrays.STRIDE];
+    out.pack(packed);
+    for (int index = 0; index < 7; ++index) {
+      Assert.assertEquals(out.box(index), BoxArrays.get(packed, index));
+      Assert.assertEquals((long) out.minimumX(index), (long) packed[index * 4]);
+    }
+  }
+
+  @Test
+  public void testOversizedItem()
+  {
+    final BoxFlowLayout<Object> layout = BoxFlowLayout.<Object>builder().build();
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final int[] items = new int[3 * BoxFlowLayout.ITEM_STRIDE];
+    BoxFlowLayout.setItem(items, 0, 20, 10, 8);
+    BoxFlowLayout.setItem(items, 1, 500, 10, 8);
+    BoxFlowLayout.setItem(items, 2, 20, 10, 8);
+
+    Assert.assertEquals(
+      3L, (long) layout.layout(Box.of(0, 100, 0, 100), items, 3, out));
+    Assert.assertEquals(Box.of(0, 500, 10, 20), out.box(1));
+    Assert.assertEquals(Box.of(0, 20, 20, 30), out.box(2));
+  }
+
+  @Test
+  public void testBaseline()
+  {
+    final BoxFlowLayout<Object> layout =
+      BoxFlowLayout.builder().setAlign(BoxFlowAlign.BASELINE).build();
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final int[] items = new int[3 * BoxFlowLayout.ITEM_STRIDE];
+    BoxFlowLayout.setItem(items, 0, 10, 20, 16);
+    BoxFlowLayout.setItem(items, 1, 10, 10, 4);
+    BoxFlowLayout.setItem(items, 2, 10, 30, 10);
+
+    layout.layout(Box.of(0, 100, 0, 100), items, 3, out);
+
+    /* Ascent 16, descent 20 */
+    Assert.assertEquals(16L, (long) out.lineBaseline(0));
+    Assert.assertEquals(36L, (long) out.lineMaximumY(0));
+    Assert.assertEquals(Box.of(0, 10, 0, 20), out.box(0));
+    Assert.assertEquals(Box.of(10, 20, 12, 22), out.box(1));
+    Assert.assertEquals(Box.of(20, 30, 6, 36), out.box(2));
+  }
+
+  @Test
+  public void testVerticalAlignment()
+  {
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final int[] items = new int[2 * BoxFlowLayout.ITEM_STRIDE];
+    BoxFlowLayout.setItem(items, 0, 10, 20, 0);
+    BoxFlowLayout.setItem(items, 1, 10, 7, 0);
+    final BoxType<Object> container = Box.of(0, 100, 0, 100);
+
+    BoxFlowLayout.builder().setAlign(BoxFlowAlign.TOP).build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(10, 20, 0, 7), out.box(1));
+
+    BoxFlowLayout.builder().setAlign(BoxFlowAlign.CENTER).build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(10, 20, 7, 14), out.box(1));
+
+    BoxFlowLayout.builder().setAlign(BoxFlowAlign.BOTTOM).build()
+      .layout(container, items, 2, out);
+    Assert.assertEquals(Box.of(10, 20, 13, 20), out.box(1));
+  }
+
+  @Test
+  public void testJustify()
+  {
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final int[] items = BoxFlowLayoutTest.uniform(3, 20, 10);
+    final BoxType<Object> container = Box.of(0, 101, 0, 100);
+
+    BoxFlowLayout.builder().setJustify(BoxFlexJustify.END).build()
+      .layout(container, items, 3, out);
+    Assert.assertEquals(Box.of(41, 61, 0, 10), out.box(0));
+    Assert.assertEquals(Box.of(81, 101, 0, 10), out.box(2));
+
+    BoxFlowLayout.builder().setJustify(BoxFlexJustify.CENTER).build()
+      .layout(container, items, 3, out);
+    Assert.assertEquals(Box.of(20, 40, 0, 10), out.box(0));
+
+    BoxFlowLayout.builder().setJustify(BoxFlexJustify.SPACE_BETWEEN).build()
+      .layout(container, items, 3, out);
+    Assert.assertEquals(Box.of(0, 20, 0, 10), out.box(0));
+    Assert.assertEquals(Box.of(40, 60, 0, 10), out.box(1));
+    Assert.assertEquals(Box.of(81, 101, 0, 10), out.box(2));
+  }
+
+  @Test
+  public void testReflowMatchesLayout()
+  {
+    final Random random = new Random(0x77L);
+    final BoxFlowLayout<Object> layout = BoxFlowLayout.builder()
+      .setAlign(BoxFlowAlign.BASELINE)
+      .setJustify(BoxFlexJustify.SPACE_BETWEEN)
+      .setGap(3, 4)
+      .build();
+    final BoxType<Object> container = Box.of(5, 205, 7, 7);
+
+    int count = 2000;
+    final int[] items = new int[4000 * BoxFlowLayout.ITEM_STRIDE];
+    for (int index = 0; index < count; ++index) {
+      final int height = 1 + random.nextInt(20);
+      BoxFlowLayout.setItem(
+        items, index, random.nextInt(60), height, random.nextInt(height + 1));
+    }
+
+    final BoxFlowColumns<Object> incremental = BoxFlowColumns.create();
+    final BoxFlowColumns<Object> full = BoxFlowColumns.create();
+    layout.layout(container, items, count, incremental);
+
+    for (int round = 0; round < 200; ++round) {
+      final int changed = random.nextInt(count);
+      final int stride = BoxFlowLayout.ITEM_STRIDE;
+      switch (random.nextInt(3)) {
+        case 0: {
+          final int height = 1 + random.nextInt(20);
+          BoxFlowLayout.setItem(
+            items, changed, random.nextInt(60), height, random.nextInt(height));
+          break;
+        }
+        case 1: {
+          System.arraycopy(
+            items, (changed + 1) * stride,
+            items, changed * stride, (count - changed - 1) * stride);
+          --count;
+          break;
+        }
+        default: {
+          System.arraycopy(
+            items, changed * stride,
+            items, (changed + 1) * stride, (count - changed) * stride);
+          BoxFlowLayout.setItem(items, changed, random.nextInt(60), 5, 3);
+          ++count;
+          break;
+        }
+      }
+
+      final int first =
+        layout.reflow(container, items, count, changed, incremental);
+      Assert.assertTrue(first <= changed);
+      layout.layout(container, items, count, full);
+      BoxFlowLayoutTest.assertSameColumns(full, incremental);
+    }
+  }
+
+  @Test
+  public void testReflowSkipsUnaffectedLines()
+  {
+    final BoxFlowLayout<Object> layout = BoxFlowLayout.<Object>builder().build();
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final BoxType<Object> container = Box.of(0, 100, 0, 100);
+    final int[] items = BoxFlowLayoutTest.uniform(100, 25, 10);
+
+    layout.layout(container, items, 100, out);
+    Assert.assertEquals(25L, (long) out.lineCount());
+
+    BoxFlowLayout.setItem(items, 50, 60, 10, 10);
+    Assert.assertEquals(48L, (long) layout.reflow(container, items, 100, 50, out));
+    Assert.assertEquals(Box.of(0, 60, 130, 140), out.box(50));
+
+    /* A changed container lays out everything again */
+    Assert.assertEquals(
+      0L, (long) layout.reflow(Box.of(0, 200, 0, 100), items, 100, 99, out));
+
+    /* Columns from another layout are laid out again */
+    final BoxFlowLayout<Object> other = BoxFlowLayout.<Object>builder().build();
+    Assert.assertEquals(
+      0L, (long) other.reflow(Box.of(0, 200, 0, 100), items, 100, 99, out));
+  }
+
+  @Test
+  public void testReflowMutatedContainer()
+  {
+    final BoxFlowLayout<Object> layout = BoxFlowLayout.<Object>builder().build();
+    final BoxFlowColumns<Object> out = BoxFlowColumns.create();
+    final BoxFlowColumns<Object> full = BoxFlowColumns.create();
+    final BoxMutable<Object> container = BoxMutable.create(0, 25, 0, 100);
+    final int[] items = BoxFlowLayoutTest.uniform(6, 10, 10);
+
+    layout.layout(container, items, 6, out);
+    Assert.assertEquals(3L, (long) out.lineCount());
+
+    /* Narrowing the same container object must not keep the stale lines */
+    container.setMaximumX(15);
+    Assert.assertEquals(0L, (long) layout.reflow(container, items, 6, 5, out));
+    Assert.assertEquals(6L, (long) out.lineCount());
+
+    layout.layout(Box.of(0, 15, 0, 100), items, 6, full);
+    BoxFlowLayoutTest.assertSameColumns(full, out);
+  }
+
+  @Test
+  public void testBadBaseline()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxFlowLayout.setItem(new int[3], 0, 10, 10, 11);
+  }
+
+  @Test
+  public void testItemsTooShort()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxFlowLayout.<Object>builder().build().layout(
+      Box.of(0, 10, 0, 10), new int[5], 2, BoxFlowColumns.create());
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAlignment;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxGridLayout;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+public final class BoxGridLayoutTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testFixedAndFraction()
+  {
+    final BoxGridLayout<Object> layout = BoxGridLayout.<Object>builder()
+      .addColumnFixed(100)
+      .addColumnFraction(1)
+      .addColumnFraction(2)
+      .addRowFixed(20)
+      .addRowFraction(1)
+      .setGap(10, 5)
+      .build();
+
+    Assert.assertEquals(3L, (long) layout.columns());
+    Assert.assertEquals(2L, (long) layout.rows());
+
+    final int[] items = new int[4 * BoxGridLayout.ITEM_STRIDE];
+    BoxGridLayout.setItem(items, 0, 0, 0, 1, 1, 0, 0);
+    BoxGridLayout.setItem(items, 1, 0, 1, 1, 1, 0, 0);
+    BoxGridLayout.setItem(items, 2, 0, 2, 1, 1, 0, 0);
+    BoxGridLayout.setItem(items, 3, 1, 0, 1, 3, 0, 0);
+
+    final int[] out = new int[4 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 420, 0, 125), items, 4, out);
+
+    /* 420 - 100 - 20 = 300 remaining, split 100:200. */
+    Assert.assertEquals(Box.of(0, 100, 0, 20), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(110, 210, 0, 20), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(220, 420, 0, 20), BoxArrays.get(out, 2));
+    Assert.assertEquals(Box.of(0, 420, 25, 125), BoxArrays.get(out, 3));
+  }
+
+  @Test
+  public void testContentTracks()
+  {
+    final BoxGridLayout<Object> layout = BoxGridLayout.<Object>builder()
+      .addColumnContent()
+      .addColumnContent()
+      .addColumnFraction(1)
+      .addRowContent()
+      .addRowContent()
+      .build();
+
+    final int[] items = new int[4 * BoxGridLayout.ITEM_STRIDE];
+    BoxGridLayout.setItem(items, 0, 0, 0, 1, 1, 30, 10);
+    BoxGridLayout.setItem(items, 1, 1, 0, 1, 1, 50, 12);
+    BoxGridLayout.setItem(items, 2, 0, 1, 1, 1, 20, 8);
+
+    /*
+     * Spans columns 0 and 1 (70 wide so far) and needs 100, so each grows
+     * by 15.
+     */
+
+    BoxGridLayout.setItem(items, 3, 1, 0, 1, 2, 100, 4);
+
+    final int[] out = new int[4 * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 200, 0, 100), items, 4, out);
+
+    Assert.assertEquals(Box.of(0, 65, 0, 10), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(0, 65, 10, 22), BoxArrays.get(out, 1));
+    Assert.assertEquals(Box.of(65, 100, 0, 10), BoxArrays.get(out, 2));
+    Assert.assertEquals(Box.of(0, 100, 10, 22), BoxArrays.get(out, 3));
+  }
+
+  @Test
+  public void testPaddingAndAlignment()
+  {
+    final BoxGridLayout<Object> layout = BoxGridLayout.<Object>builder()
+      .addColumnFixed(101)
+      .addRowFixed(51)
+      .setCellPadding(1, 2, 3, 4)
+      .build();
+
+    final BoxType<Object> cell = Box.of(10, 111, 20, 71);
+    final BoxType<Object> inner = Boxes.hollowOut(cell, 1, 2, 3, 4);
+    final BoxType<Object> item = Box.of(0, 10, 0, 7);
+
+    final int[] items = new int[BoxGridLayout.ITEM_STRIDE];
+    final int[] out = new int[BoxArrays.STRIDE];
+    BoxGridLayout.setItem(items, 0, 0, 0, 1, 1, 10, 7);
+
+    layout.layout(cell, items, 1, out);
+    Assert.assertEquals(inner, BoxArrays.get(out, 0));
+
+    BoxGridLayout.setItemAlignment(items, 0, BoxAlignment.CENTER);
+    layout.layout(cell, items, 1, out);
+    Assert.assertEquals(Boxes.alignCenter(inner, item), BoxArrays.get(out, 0));
+
+    BoxGridLayout.setItemAlignment(items, 0, BoxAlignment.BOTTOM_RIGHT);
+    layout.layout(cell, items, 1, out);
+    Assert.assertEquals(
+      Boxes.alignBottomRight(inner, item), BoxArrays.get(out, 0));
+
+    BoxGridLayout.setItemAlignment(items, 0, BoxAlignment.TOP_CENTER);
+    layout.layout(cell, items, 1, out);
+    Assert.assertEquals(
+      Boxes.alignVerticallyTop(inner, Boxes.alignHorizontallyCenter(inner, item)),
+      BoxArrays.get(out, 0));
+  }
+
+  @Test
+  public void testPaddingClamped()
+  {
+    final BoxGridLayout<Object> layout = BoxGridLayout.<Object>builder()
+      .addColumnFixed(10)
+      .addRowFixed(10)
+      .setCellPadding(8, 8, 8, 8)
+      .build();
+
+    final int[] items = new int[BoxGridLayout.ITEM_STRIDE];
+    final int[] out = new int[BoxArrays.STRIDE];
+    BoxGridLayout.setItem(items, 0, 0, 0, 1, 1, 0, 0);
+
+    final BoxType<Object> cell = Box.of(0, 10, 0, 10);
+    layout.layout(cell, items, 1, out);
+    Assert.assertEquals(
+      Boxes.hollowOut(cell, 8, 8, 8, 8), BoxArrays.get(out, 0));
+  }
+
+  @Test
+  public void testManyCells()
+  {
+    final BoxGridLayout.Builder<Object> builder = BoxGridLayout.builder();
+    for (int index = 0; index < 20; ++index) {
+      builder.addColumnFraction(1);
+      builder.addRowFixed(10);
+    }
+    final BoxGridLayout<Object> layout = builder.setGap(1, 1).build();
+
+    final int count = 400;
+    final int[] items = new int[count * BoxGridLayout.ITEM_STRIDE];
+    for (int index = 0; index < count; ++index) {
+      BoxGridLayout.setItem(items, index, index / 20, index % 20, 1, 1, 0, 0);
+    }
+
+    final int[] out = new int[count * BoxArrays.STRIDE];
+    layout.layout(Box.of(0, 419, 0, 219), items, count, out);
+    for (int index = 0; index < count; ++index) {
+      final int row = index / 20;
+      final int column = index % 20;
+      Assert.assertEquals(
+        Box.of(column * 21, column * 21 + 20, row * 11, row * 11 + 10),
+        BoxArrays.get(out, index));
+    }
+  }
+
+  @Test
+  public void testItemOutsideGrid()
+  {
+    final BoxGridLayout<Object> layout = BoxGridLayout.<Object>builder()
+      .addColumnFixed(10)
+      .addRowFixed(10)
+      .build();
+
+    final int[] items = new int[BoxGridLayout.ITEM_STRIDE];
+    BoxGridLayout.setItem(items, 0, 0, 0, 1, 2, 0, 0);
+
+    this.expected.expect(RequireViolation.class);
+    layout.layout(Box.of(0, 10, 0, 10), items, 1, new int[BoxArrays.STRIDE]);
+  }
+
+  @Test
+  public void testNoColumns()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxGridLayout.builder().addRowFixed(10).build();
+  }
+}
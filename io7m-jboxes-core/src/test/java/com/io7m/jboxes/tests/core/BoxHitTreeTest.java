@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxHitTree;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class BoxHitTreeTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static void generate(
+    final Random random,
+    final List<BoxType<Object>> boxes,
+    final List<Integer> parents,
+    final int parent,
+    final BoxType<Object> area,
+    final int depth)
+  {
+    if (depth == 0 || area.width() < 4 || area.height() < 4) {
+      return;
+    }
+
+    /*
+     * Lay the children out in a row, a column, or at random positions that
+     * may overlap each other and the edges of the parent.
+     */
+
+    final int children = 1 + random.nextInt(6);
+    final int mode = random.nextInt(3);
+    for (int index = 0; index < children; ++index) {
+      final BoxType<Object> child;
+      if (mode == 0) {
+        final int w = area.width() / children;
+        child = Box.of(
+          area.minimumX() + index * w,
+          area.minimumX() + (index + 1) * w,
+          area.minimumY(),
+          area.maximumY());
+      } else if (mode == 1) {
+        final int h = area.height() / children;
+        child = Box.of(
+          area.minimumX(),
+          area.maximumX(),
+          area.minimumY() + index * h,
+          area.minimumY() + (index + 1) * h);
+      } else {
+        final int x = area.minimumX() + random.nextInt(area.width()) - 2;
+        final int y = area.minimumY() + random.nextInt(area.height()) - 2;
+        child = Box.of(
+          x, x + 1 + random.nextInt(area.width()),
+          y, y + 1 + random.nextInt(area.height()));
+      }
+
+      final int node = boxes.size();
+      boxes.add(child);
+      parents.add(Integer.valueOf(parent));
+      BoxHitTreeTest.generate(random, boxes, parents, node, child, depth - 1);
+    }
+  }
+
+  private static int bruteForcePath(
+    final List<BoxType<Object>> boxes,
+    final List<Integer> parents,
+    final int x,
+    final int y,
+    final int[] path)
+  {
+    int depth = 0;
+    int parent = -1;
+    while (true) {
+      int best = -1;
+      for (int node = 0; node < boxes.size(); ++node) {
+        if (parents.get(node).intValue() == parent
+          && Boxes.containsPoint(boxes.get(node), x, y)) {
+          best = node;
+        }
+      }
+      if (best < 0) {
+        return depth;
+      }
+      path[depth] = best;
+      ++depth;
+      parent = best;
+    }
+  }
+
+  private static BoxHitTree<Object> build(
+    final List<BoxType<Object>> boxes,
+    final List<Integer> parents)
+  {
+    final int[] parent_array = new int[parents.size()];
+    for (int index = 0; index < parent_array.length; ++index) {
+      parent_array[index] = parents.get(index).intValue();
+    }
+    return BoxHitTree.create(
+      BoxArrays.pack(boxes), parent_array, boxes.size());
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final BoxHitTree<Object> tree = BoxHitTree.create(new int[0], new int[0], 0);
+    Assert.assertEquals(0L, (long) tree.size());
+    Assert.assertEquals(0L, (long) tree.height());
+    Assert.assertEquals(-1L, (long) tree.deepest(0, 0));
+    Assert.assertEquals(0L, (long) tree.path(0, 0, new int[0]));
+  }
+
+  @Test
+  public void testNested()
+  {
+    final List<BoxType<Object>> boxes = Arrays.asList(
+      Box.of(0, 100, 0, 100),
+      Box.of(0, 50, 0, 100),
+      Box.of(50, 100, 0, 100),
+      Box.of(60, 70, 10, 20),
+      Box.of(200, 300, 0, 100));
+    final List<Integer> parents = Arrays.asList(
+      Integer.valueOf(-1),
+      Integer.valueOf(0),
+      Integer.valueOf(0),
+      Integer.valueOf(2),
+      Integer.valueOf(-1));
+
+    final BoxHitTree<Object> tree = BoxHitTreeTest.build(boxes, parents);
+    Assert.assertEquals(3L, (long) tree.height());
+    Assert.assertEquals(2L, (long) tree.parent(3));
+    Assert.assertEquals(Box.of(60, 70, 10, 20), tree.box(3));
+
+    final int[] path = new int[tree.height()];
+    Assert.assertEquals(3L, (long) tree.path(65, 15, path));
+    Assert.assertEquals(0L, (long) path[0]);
+    Assert.assertEquals(2L, (long) path[1]);
+    Assert.assertEquals(3L, (long) path[2]);
+    Assert.assertEquals(3L, (long) tree.deepest(65, 15));
+
+    Assert.assertEquals(1L, (long) tree.deepest(49, 99));
+    Assert.assertEquals(2L, (long) tree.deepest(50, 0));
+    Assert.assertEquals(4L, (long) tree.deepest(250, 50));
+    Assert.assertEquals(-1L, (long) tree.deepest(100, 50));
+  }
+
+  @Test
+  public void testOverlappingSiblingsTopmost()
+  {
+    final List<BoxType<Object>> boxes = Arrays.asList(
+      Box.of(0, 100, 0, 100),
+      Box.of(10, 60, 10, 60),
+      Box.of(40, 90, 40, 90),
+      Box.of(0, 20, 0, 20));
+    final List<Integer> parents = Arrays.asList(
+      Integer.valueOf(-1),
+      Integer.valueOf(0),
+      Integer.valueOf(0),
+      Integer.valueOf(0));
+
+    final BoxHitTree<Object> tree = BoxHitTreeTest.build(boxes, parents);
+    Assert.assertEquals(2L, (long) tree.deepest(50, 50));
+    Assert.assertEquals(1L, (long) tree.deepest(30, 30));
+    Assert.assertEquals(3L, (long) tree.deepest(15, 15));
+    Assert.assertEquals(0L, (long) tree.deepest(95, 5));
+  }
+
+  @Test
+  public void testChildOutsideParent()
+  {
+    final List<BoxType<Object>> boxes = Arrays.asList(
+      Box.of(0, 100, 0, 100),
+      Box.of(50, 150, 0, 10));
+    final List<Integer> parents =
+      Arrays.asList(Integer.valueOf(-1), Integer.valueOf(0));
+
+    final BoxHitTree<Object> tree = BoxHitTreeTest.build(boxes, parents);
+    Assert.assertEquals(1L, (long) tree.deepest(60, 5));
+    Assert.assertEquals(-1L, (long) tree.deepest(120, 5));
+  }
+
+  @Test
+  public void testRandomAgainstBruteForce()
+  {
+    final Random random = new Random(1L);
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    final List<Integer> parents = new ArrayList<>();
+    for (int index = 0; index < 4; ++index) {
+      final BoxType<Object> root = Box.of(
+        index * 500, index * 500 + 600, 0, 1000);
+      boxes.add(root);
+      parents.add(Integer.valueOf(-1));
+      BoxHitTreeTest.generate(random, boxes, parents, boxes.size() - 1, root, 6);
+    }
+
+    final BoxHitTree<Object> tree = BoxHitTreeTest.build(boxes, parents);
+    final int[] path = new int[tree.height()];
+    final int[] expected_path = new int[boxes.size()];
+
+    for (int iteration = 0; iteration < 2000; ++iteration) {
+      final int x = random.nextInt(2200) - 50;
+      final int y = random.nextInt(1100) - 50;
+
+      final int expected_depth =
+        BoxHitTreeTest.bruteForcePath(boxes, parents, x, y, expected_path);
+      final int depth = tree.path(x, y, path);
+      Assert.assertEquals((long) expected_depth, (long) depth);
+      for (int index = 0; index < depth; ++index) {
+        Assert.assertEquals((long) expected_path[index], (long) path[index]);
+      }
+      Assert.assertEquals(
+        depth == 0 ? -1L : (long) path[depth - 1],
+        (long) tree.deepest(x, y));
+    }
+  }
+
+  @Test
+  public void testCycle()
+  {
+    final int[] boxes = BoxArrays.pack(
+      Arrays.asList(Box.of(0, 1, 0, 1), Box.of(0, 1, 0, 1)));
+
+    this.expected.expect(RequireViolation.class);
+    BoxHitTree.create(boxes, new int[]{1, 0}, 2);
+  }
+
+  @Test
+  public void testPathTooShort()
+  {
+    final int[] boxes = BoxArrays.pack(
+      Arrays.asList(Box.of(0, 1, 0, 1), Box.of(0, 1, 0, 1)));
+    final BoxHitTree<Object> tree =
+      BoxHitTree.create(boxes, new int[]{-1, 0}, 2);
+
+    this.expected.expect(RequireViolation.class);
+    tree.path(0, 0, new int[1]);
+  }
+}
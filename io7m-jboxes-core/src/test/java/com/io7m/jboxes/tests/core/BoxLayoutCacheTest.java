@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxLayoutCache;
+import com.io7m.jboxes.core.BoxMutable;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public final class BoxLayoutCacheTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static Function<BoxType<Object>, BoxType<Object>> counting(
+    final AtomicInteger calls)
+  {
+    return outer -> {
+      calls.incrementAndGet();
+      return Boxes.hollowOutEvenly(outer, 2);
+    };
+  }
+
+  @Test
+  public void testHitAndMiss()
+  {
+    final BoxLayoutCache<Object, String, BoxType<Object>> cache =
+      BoxLayoutCache.create(8);
+    final AtomicInteger calls = new AtomicInteger();
+    final BoxType<Object> outer = Box.of(0, 100, 0, 100);
+
+    Assert.assertEquals(0.0, cache.hitRate(), 0.0);
+
+    final BoxType<Object> r0 =
+      cache.get("panel", outer, 1L, BoxLayoutCacheTest.counting(calls));
+    final BoxType<Object> r1 =
+      cache.get("panel", Box.of(0, 100, 0, 100), 1L,
+                BoxLayoutCacheTest.counting(calls));
+
+    Assert.assertEquals(Box.of(2, 98, 2, 98), r0);
+    Assert.assertSame(r0, r1);
+    Assert.assertEquals(1L, (long) calls.get());
+    Assert.assertEquals(1L, cache.hits());
+    Assert.assertEquals(1L, cache.misses());
+    Assert.assertEquals(0.5, cache.hitRate(), 0.0);
+    Assert.assertEquals(1L, (long) cache.size());
+  }
+
+  @Test
+  public void testKeyComponents()
+  {
+    final BoxLayoutCache<Object, String, BoxType<Object>> cache =
+      BoxLayoutCache.create(8);
+    final AtomicInteger calls = new AtomicInteger();
+    final BoxType<Object> outer = Box.of(0, 100, 0, 100);
+
+    cache.get("panel", outer, 1L, BoxLayoutCacheTest.counting(calls));
+    cache.get("panel", outer, 2L, BoxLayoutCacheTest.counting(calls));
+    cache.get("other", outer, 1L, BoxLayoutCacheTest.counting(calls));
+    cache.get("panel", Box.of(0, 50, 0, 100), 1L,
+              BoxLayoutCacheTest.counting(calls));
+
+    Assert.assertEquals(4L, (long) calls.get());
+    Assert.assertEquals(0L, cache.hits());
+    Assert.assertEquals(4L, cache.misses());
+    Assert.assertEquals(4L, (long) cache.size());
+  }
+
+  @Test
+  public void testMutableOuter()
+  {
+    final BoxLayoutCache<Object, String, BoxType<Object>> cache =
+      BoxLayoutCache.create(8);
+    final AtomicInteger calls = new AtomicInteger();
+    final BoxMutable<Object> outer = BoxMutable.create(0, 100, 0, 100);
+
+    /* A mutable box and an immutable box with the same edges share a result */
+    final BoxType<Object> r0 =
+      cache.get("panel", outer, 1L, BoxLayoutCacheTest.counting(calls));
+    final BoxType<Object> r1 =
+      cache.get("panel", Box.of(0, 100, 0, 100), 1L,
+                BoxLayoutCacheTest.counting(calls));
+    Assert.assertSame(r0, r1);
+    Assert.assertEquals(1L, (long) calls.get());
+
+    /* Mutating the box afterwards does not disturb the stored entry */
+    outer.setMaximumX(50);
+    final BoxType<Object> r2 =
+      cache.get("panel", outer, 1L, BoxLayoutCacheTest.counting(calls));
+    Assert.assertEquals(Box.of(2, 48, 2, 98), r2);
+    Assert.assertEquals(2L, (long) calls.get());
+
+    final BoxType<Object> r3 =
+      cache.get("panel", Box.of(0, 100, 0, 100), 1L,
+                BoxLayoutCacheTest.counting(calls));
+    Assert.assertSame(r0, r3);
+    Assert.assertEquals(2L, (long) calls.get());
+    Assert.assertEquals(2L, (long) cache.size());
+  }
+
+  @Test
+  public void testEvictionLeastRecentlyUsed()
+  {
+    final BoxLayoutCache<Object, Integer, BoxType<Object>> cache =
+      BoxLayoutCache.create(3);
+    final AtomicInteger calls = new AtomicInteger();
+    final BoxType<Object> outer = Box.of(0, 100, 0, 100);
+
+    for (int index = 0; index < 3; ++index) {
+      cache.get(
+        Integer.valueOf(index), outer, 0L, BoxLayoutCacheTest.counting(calls));
+    }
+
+    /* Touch 0 so that 1 becomes the least recently used. */
+    cache.get(Integer.valueOf(0), outer, 0L, BoxLayoutCacheTest.counting(calls));
+    cache.get(Integer.valueOf(3), outer, 0L, BoxLayoutCacheTest.counting(calls));
+
+    Assert.assertEquals(3L, (long) cache.size());
+    Assert.assertEquals(1L, cache.evictions());
+    Assert.assertEquals(4L, (long) calls.get());
+
+    cache.get(Integer.valueOf(0), outer, 0L, BoxLayoutCacheTest.counting(calls));
+    Assert.assertEquals(4L, (long) calls.get());
+    cache.get(Integer.valueOf(1), outer, 0L, BoxLayoutCacheTest.counting(calls));
+    Assert.assertEquals(5L, (long) calls.get());
+  }
+
+  @Test
+  public void testClearAndReset()
+  {
+    final BoxLayoutCache<Object, String, BoxType<Object>> cache =
+      BoxLayoutCache.create(2);
+    final AtomicInteger calls = new AtomicInteger();
+    final BoxType<Object> outer = Box.of(0, 100, 0, 100);
+
+    cache.get("a", outer, 0L, BoxLayoutCacheTest.counting(calls));
+    cache.clear();
+    Assert.assertEquals(0L, (long) cache.size());
+    Assert.assertEquals(1L, cache.misses());
+
+    cache.get("a", outer, 0L, BoxLayoutCacheTest.counting(calls));
+    Assert.assertEquals(2L, (long) calls.get());
+
+    cache.resetStatistics();
+    Assert.assertEquals(0L, cache.hits());
+    Assert.assertEquals(0L, cache.misses());
+    Assert.assertEquals(2L, (long) cache.capacity());
+  }
+
+  @Test
+  public void testZeroCapacity()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxLayoutCache.create(0);
+  }
+}
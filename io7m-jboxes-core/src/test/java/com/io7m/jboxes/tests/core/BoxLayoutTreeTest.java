@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAlignment;
+import com.io7m.jboxes.core.BoxHorizontalSplitType;
+import com.io7m.jboxes.core.BoxLayoutTree;
+import com.io7m.jboxes.core.BoxMutable;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.BoxVerticalSplitType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+public final class BoxLayoutTreeTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testSingleLeaf()
+  {
+    final BoxType<Object> bounds = Box.of(0, 100, 0, 50);
+    final BoxLayoutTree<Object> tree = BoxLayoutTree.create(bounds);
+
+    Assert.assertTrue(tree.isDirty());
+    Assert.assertEquals(1L, (long) tree.update());
+    Assert.assertFalse(tree.isDirty());
+    Assert.assertEquals(bounds, tree.box(tree.root()));
+    Assert.assertEquals(0L, (long) tree.update());
+  }
+
+  @Test
+  public void testMatchesBoxes()
+  {
+    final BoxType<Object> bounds = Box.of(0, 800, 0, 600);
+    final BoxLayoutTree<Object> tree = BoxLayoutTree.create(bounds);
+
+    final int root = tree.root();
+    tree.hollowOut(root, 4, 4, 4, 4);
+    final int inner = tree.child(root, 0);
+    tree.splitHorizontal(inner, 32);
+    final int header = tree.child(inner, 0);
+    final int body = tree.child(inner, 1);
+    tree.align(header, BoxAlignment.CENTER_LEFT, 100, 16);
+    tree.splitVertical(body, 200);
+    final int sidebar = tree.child(body, 0);
+    final int content = tree.child(body, 1);
+    tree.align(content, BoxAlignment.BOTTOM_RIGHT, 50, 20);
+
+    final BoxType<Object> e_inner = Boxes.hollowOut(bounds, 4, 4, 4, 4);
+    final BoxHorizontalSplitType<Object> e_rows =
+      Boxes.splitAlongHorizontal(e_inner, 32);
+    final BoxVerticalSplitType<Object> e_columns =
+      Boxes.splitAlongVertical(e_rows.lower(), 200);
+    final BoxType<Object> e_header = Boxes.alignVerticallyCenter(
+      e_rows.upper(),
+      Boxes.alignHorizontallyLeft(e_rows.upper(), Box.of(0, 100, 0, 16)));
+    final BoxType<Object> e_content =
+      Boxes.alignBottomRight(e_columns.right(), Box.of(0, 50, 0, 20));
+
+    Assert.assertEquals(6L, (long) tree.size());
+    Assert.assertEquals(6L, (long) tree.update());
+    Assert.assertEquals(bounds, tree.box(root));
+    Assert.assertEquals(e_inner, tree.box(inner));
+    Assert.assertEquals(e_header, tree.box(header));
+    Assert.assertEquals(e_rows.lower(), tree.box(body));
+    Assert.assertEquals(e_columns.left(), tree.box(sidebar));
+    Assert.assertEquals(e_content, tree.box(content));
+    Assert.assertEquals(body, tree.parent(sidebar));
+    Assert.assertEquals(-1L, (long) tree.parent(root));
+  }
+
+  @Test
+  public void testLeafChangeRecomputesLeafOnly()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 1024, 0, 1024));
+
+    /*
+     * Build a complete binary tree of alternating splits.
+     */
+
+    int[] level = {tree.root()};
+    for (int depth = 0; depth < 10; ++depth) {
+      final int[] next = new int[level.length * 2];
+      for (int index = 0; index < level.length; ++index) {
+        final int node = level[index];
+        final int size = 1024 >> (depth / 2 + 1);
+        if (depth % 2 == 0) {
+          tree.splitVertical(node, size);
+        } else {
+          tree.splitHorizontal(node, size);
+        }
+        next[index * 2] = tree.child(node, 0);
+        next[index * 2 + 1] = tree.child(node, 1);
+      }
+      level = next;
+    }
+    for (final int leaf : level) {
+      tree.align(leaf, BoxAlignment.CENTER, 8, 8);
+    }
+
+    Assert.assertEquals(2047L, (long) tree.update());
+
+    final int leaf = level[517];
+    final BoxType<Object> before = tree.box(leaf);
+    tree.align(leaf, BoxAlignment.TOP_LEFT, 4, 4);
+    Assert.assertTrue(tree.isDirty());
+    Assert.assertEquals(1L, (long) tree.update());
+    Assert.assertEquals(
+      Boxes.alignTopLeft(Boxes.setSizeFromCenter(before, 32, 32),
+                         Box.of(0, 4, 0, 4)),
+      tree.box(leaf));
+
+    /*
+     * Moving the bottom-most split changes only its two children.
+     */
+
+    final int split = tree.parent(leaf);
+    tree.setSplit(split, 10);
+    Assert.assertEquals(3L, (long) tree.update());
+
+    tree.setSplit(split, 10);
+    Assert.assertFalse(tree.isDirty());
+    Assert.assertEquals(0L, (long) tree.update());
+  }
+
+  @Test
+  public void testBoundsChange()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+    final int root = tree.root();
+    tree.splitVertical(root, 30);
+    final int left = tree.child(root, 0);
+    final int right = tree.child(root, 1);
+    tree.align(right, BoxAlignment.TOP_RIGHT, 10, 10);
+    Assert.assertEquals(3L, (long) tree.update());
+
+    /*
+     * Growing the bounds to the right leaves the left child unchanged.
+     */
+
+    tree.setBounds(Box.of(0, 200, 0, 100));
+    Assert.assertEquals(2L, (long) tree.update());
+    Assert.assertEquals(Box.of(0, 30, 0, 100), tree.box(left));
+    Assert.assertEquals(Box.of(190, 200, 0, 10), tree.box(right));
+
+    tree.setBounds(Box.of(0, 200, 0, 100));
+    Assert.assertEquals(0L, (long) tree.update());
+  }
+
+  @Test
+  public void testMutableBounds()
+  {
+    final BoxMutable<Object> bounds = BoxMutable.create(0, 100, 0, 100);
+    final BoxLayoutTree<Object> tree = BoxLayoutTree.create(bounds);
+    final int root = tree.root();
+    tree.splitVertical(root, 50);
+    final int right = tree.child(root, 1);
+    Assert.assertEquals(3L, (long) tree.update());
+    Assert.assertEquals(Box.of(50, 100, 0, 100), tree.box(right));
+
+    /*
+     * Mutating the caller's box alone changes nothing; passing it to
+     * setBounds lays the tree out again.
+     */
+
+    bounds.setMaximumX(40);
+    Assert.assertEquals(Box.of(0, 100, 0, 100), tree.box(root));
+    tree.setBounds(bounds);
+    Assert.assertTrue(tree.update() > 0);
+
+    final BoxVerticalSplitType<Object> expected =
+      Boxes.splitAlongVertical(Box.of(0, 40, 0, 100), 50);
+    Assert.assertEquals(Box.of(0, 40, 0, 100), tree.box(root));
+    Assert.assertEquals(expected.right(), tree.box(right));
+  }
+
+  @Test
+  public void testHollowOutChange()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+    final int root = tree.root();
+    tree.hollowOut(root, 1, 2, 3, 4);
+    Assert.assertEquals(
+      Box.of(1, 98, 3, 96), tree.box(tree.child(root, 0)));
+
+    tree.setHollowOut(root, 10, 10, 10, 10);
+    Assert.assertEquals(
+      Box.of(10, 90, 10, 90), tree.box(tree.child(root, 0)));
+  }
+
+  @Test
+  public void testDeepChain()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 200000, 0, 100));
+
+    int node = tree.root();
+    for (int depth = 0; depth < 100000; ++depth) {
+      tree.splitVertical(node, 1);
+      node = tree.child(node, 1);
+    }
+
+    Assert.assertEquals(Box.of(100000, 200000, 0, 100), tree.box(node));
+
+    tree.setBounds(Box.of(0, 200000, 0, 50));
+    Assert.assertEquals(200001L, (long) tree.update());
+    Assert.assertEquals(Box.of(100000, 200000, 0, 50), tree.box(node));
+  }
+
+  @Test
+  public void testSplitNonLeaf()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+    tree.splitVertical(tree.root(), 10);
+
+    this.expected.expect(RequireViolation.class);
+    tree.splitHorizontal(tree.root(), 10);
+  }
+
+  @Test
+  public void testSetSplitWrongKind()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+
+    this.expected.expect(RequireViolation.class);
+    tree.setSplit(tree.root(), 10);
+  }
+
+  @Test
+  public void testNonexistentNode()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+
+    this.expected.expect(RequireViolation.class);
+    tree.box(1);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxPackerMaxRects;
+import com.io7m.jboxes.core.BoxPackerMaxRectsHeuristic;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxPackerMaxRectsTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static void checkDisjoint(
+    final BoxType<Object> container,
+    final List<BoxType<Object>> placed)
+  {
+    for (int i = 0; i < placed.size(); ++i) {
+      Assert.assertTrue(Boxes.contains(container, placed.get(i)));
+      for (int j = i + 1; j < placed.size(); ++j) {
+        Assert.assertFalse(
+          BoxTestSupport.intersects(placed.get(i), placed.get(j)));
+      }
+    }
+  }
+
+  @Test
+  public void testExactFit()
+  {
+    for (final BoxPackerMaxRectsHeuristic h : BoxPackerMaxRectsHeuristic.values()) {
+      final BoxType<Object> container = Box.of(10, 110, 20, 120);
+      final BoxPackerMaxRects<Object> p =
+        BoxPackerMaxRects.create(container, h);
+
+      final List<BoxType<Object>> placed = new ArrayList<>();
+      for (int index = 0; index < 16; ++index) {
+        final Optional<BoxType<Object>> r = p.insert(25, 25);
+        Assert.assertTrue(r.isPresent());
+        placed.add(r.get());
+      }
+
+      Assert.assertFalse(p.insert(1, 1).isPresent());
+      Assert.assertEquals(1.0, p.occupancy(), 0.0);
+      Assert.assertEquals(0L, (long) p.freeRectangles());
+      BoxPackerMaxRectsTest.checkDisjoint(container, placed);
+
+      p.reset();
+      Assert.assertEquals(0.0, p.occupancy(), 0.0);
+      Assert.assertEquals(
+        Optional.of(Box.of(10, 110, 20, 120)), p.insert(100, 100));
+    }
+  }
+
+  @Test
+  public void testTooLarge()
+  {
+    final BoxPackerMaxRects<Object> p = BoxPackerMaxRects.create(
+      Box.of(0, 100, 0, 100), BoxPackerMaxRectsHeuristic.BEST_AREA_FIT);
+    Assert.assertFalse(p.insert(101, 1).isPresent());
+    Assert.assertFalse(p.insert(1, 101).isPresent());
+  }
+
+  @Test
+  public void testRandomDisjoint()
+  {
+    final Random random = new Random(0L);
+    for (final BoxPackerMaxRectsHeuristic h : BoxPackerMaxRectsHeuristic.values()) {
+      final BoxType<Object> container = Box.of(0, 256, 0, 256);
+      final BoxPackerMaxRects<Object> p =
+        BoxPackerMaxRects.create(container, h);
+
+      final List<BoxType<Object>> placed = new ArrayList<>();
+      for (int index = 0; index < 500; ++index) {
+        final int w = 1 + random.nextInt(32);
+        final int ht = 1 + random.nextInt(32);
+        final Optional<BoxType<Object>> r = p.insert(w, ht);
+        if (r.isPresent()) {
+          Assert.assertEquals((long) w, (long) r.get().width());
+          Assert.assertEquals((long) ht, (long) r.get().height());
+          placed.add(r.get());
+        }
+      }
+      BoxPackerMaxRectsTest.checkDisjoint(container, placed);
+    }
+  }
+
+  @Test
+  public void testInsertAllLarge()
+  {
+    final Random random = new Random(1L);
+    final int count = 10000;
+    final int[] widths = new int[count];
+    final int[] heights = new int[count];
+    for (int index = 0; index < count; ++index) {
+      widths[index] = 4 + random.nextInt(28);
+      heights[index] = 4 + random.nextInt(28);
+    }
+
+    final BoxType<Object> container = Box.of(0, 1850, 0, 1850);
+    final BoxPackerMaxRects<Object> p = BoxPackerMaxRects.create(
+      container, BoxPackerMaxRectsHeuristic.BEST_SHORT_SIDE_FIT);
+
+    final List<Optional<BoxType<Object>>> result =
+      p.insertAll(widths, heights, count);
+    Assert.assertEquals((long) count, (long) result.size());
+
+    for (int index = 0; index < count; ++index) {
+      final Optional<BoxType<Object>> r = result.get(index);
+      Assert.assertTrue(r.isPresent());
+      Assert.assertEquals((long) widths[index], (long) r.get().width());
+      Assert.assertEquals((long) heights[index], (long) r.get().height());
+      Assert.assertTrue(Boxes.contains(container, r.get()));
+    }
+
+    /* No cell of the container may be covered by more than one placement */
+    final boolean[] covered = new boolean[1850 * 1850];
+    for (int index = 0; index < count; ++index) {
+      final BoxType<Object> box = result.get(index).get();
+      for (int y = box.minimumY(); y < box.maximumY(); ++y) {
+        for (int x = box.minimumX(); x < box.maximumX(); ++x) {
+          Assert.assertFalse(covered[y * 1850 + x]);
+          covered[y * 1850 + x] = true;
+        }
+      }
+    }
+    Assert.assertTrue(p.occupancy() > 0.9);
+  }
+
+  @Test
+  public void testInsertZero()
+  {
+    final BoxPackerMaxRects<Object> p = BoxPackerMaxRects.create(
+      Box.of(0, 100, 0, 100), BoxPackerMaxRectsHeuristic.BEST_AREA_FIT);
+    this.expected.expect(RequireViolation.class);
+    p.insert(0, 1);
+  }
+}
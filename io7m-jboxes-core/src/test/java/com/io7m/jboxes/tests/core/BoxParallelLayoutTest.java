@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxAlignment;
+import com.io7m.jboxes.core.BoxLayoutTree;
+import com.io7m.jboxes.core.BoxParallelLayout;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public final class BoxParallelLayoutTest
+{
+  private static ForkJoinPool pool;
+
+  @BeforeClass
+  public static void setUp()
+  {
+    BoxParallelLayoutTest.pool = new ForkJoinPool(4);
+  }
+
+  @AfterClass
+  public static void tearDown()
+  {
+    BoxParallelLayoutTest.pool.shutdown();
+  }
+
+  private static void build(
+    final BoxLayoutTree<Object> tree,
+    final long seed,
+    final int operations)
+  {
+    final Random random = new Random(seed);
+    final List<Integer> leaves = new ArrayList<>();
+    leaves.add(Integer.valueOf(tree.root()));
+
+    for (int index = 0; index < operations && !leaves.isEmpty(); ++index) {
+      final int node =
+        leaves.remove(random.nextInt(leaves.size())).intValue();
+      switch (random.nextInt(4)) {
+        case 0:
+          tree.splitVertical(node, random.nextInt(400));
+          break;
+        case 1:
+          tree.splitHorizontal(node, random.nextInt(400));
+          break;
+        case 2:
+          tree.hollowOut(node, random.nextInt(4), random.nextInt(4),
+                         random.nextInt(4), random.nextInt(4));
+          break;
+        default:
+          tree.align(node, BoxAlignment.values()[random.nextInt(9)],
+                     random.nextInt(64), random.nextInt(64));
+          continue;
+      }
+      for (int child = 0; child < tree.childCount(node); ++child) {
+        leaves.add(Integer.valueOf(tree.child(node, child)));
+      }
+    }
+  }
+
+  private static void assertSameBoxes(
+    final BoxLayoutTree<Object> expected,
+    final BoxLayoutTree<Object> actual)
+  {
+    Assert.assertFalse(actual.isDirty());
+    Assert.assertEquals((long) expected.size(), (long) actual.size());
+    for (int node = 0; node < expected.size(); ++node) {
+      Assert.assertEquals(expected.box(node), actual.box(node));
+    }
+  }
+
+  @Test
+  public void testIdenticalToSequential()
+  {
+    final BoxLayoutTree<Object> sequential =
+      BoxLayoutTree.create(Box.of(0, 4000, 0, 3000));
+    final BoxLayoutTree<Object> parallel =
+      BoxLayoutTree.create(Box.of(0, 4000, 0, 3000));
+    BoxParallelLayoutTest.build(sequential, 0x5eedL, 20000);
+    BoxParallelLayoutTest.build(parallel, 0x5eedL, 20000);
+
+    final int expected = sequential.update();
+    final int actual =
+      BoxParallelLayout.update(parallel, BoxParallelLayoutTest.pool);
+    Assert.assertEquals((long) expected, (long) actual);
+    Assert.assertEquals((long) sequential.size(), (long) actual);
+    BoxParallelLayoutTest.assertSameBoxes(sequential, parallel);
+
+    Assert.assertEquals(
+      0L, (long) BoxParallelLayout.update(parallel, BoxParallelLayoutTest.pool));
+  }
+
+  @Test
+  public void testIncrementalIdenticalToSequential()
+  {
+    final BoxLayoutTree<Object> sequential =
+      BoxLayoutTree.create(Box.of(0, 4000, 0, 3000));
+    final BoxLayoutTree<Object> parallel =
+      BoxLayoutTree.create(Box.of(0, 4000, 0, 3000));
+    BoxParallelLayoutTest.build(sequential, 0x1234L, 5000);
+    BoxParallelLayoutTest.build(parallel, 0x1234L, 5000);
+    sequential.update();
+    BoxParallelLayout.update(parallel, BoxParallelLayoutTest.pool);
+
+    final Random random = new Random(0x4321L);
+    for (int round = 0; round < 20; ++round) {
+      final int width = 2000 + random.nextInt(4000);
+      final int height = 1000 + random.nextInt(4000);
+      sequential.setBounds(Box.of(0, width, 0, height));
+      parallel.setBounds(Box.of(0, width, 0, height));
+
+      final int expected = sequential.update();
+      final int actual =
+        BoxParallelLayout.update(parallel, BoxParallelLayoutTest.pool);
+      Assert.assertEquals((long) expected, (long) actual);
+      BoxParallelLayoutTest.assertSameBoxes(sequential, parallel);
+    }
+  }
+
+  @Test
+  public void testDeepChain()
+  {
+    final BoxLayoutTree<Object> sequential =
+      BoxLayoutTree.create(Box.of(0, 200000, 0, 100));
+    final BoxLayoutTree<Object> parallel =
+      BoxLayoutTree.create(Box.of(0, 200000, 0, 100));
+
+    int node = sequential.root();
+    for (int depth = 0; depth < 100000; ++depth) {
+      sequential.splitVertical(node, 1);
+      parallel.splitVertical(node, 1);
+      node = sequential.child(node, 1);
+    }
+
+    sequential.update();
+    BoxParallelLayout.update(parallel, BoxParallelLayoutTest.pool);
+    BoxParallelLayoutTest.assertSameBoxes(sequential, parallel);
+  }
+
+  @Test
+  public void testSingleNode()
+  {
+    final BoxLayoutTree<Object> tree =
+      BoxLayoutTree.create(Box.of(0, 100, 0, 100));
+    Assert.assertEquals(
+      1L, (long) BoxParallelLayout.update(tree, BoxParallelLayoutTest.pool));
+    Assert.assertEquals(Box.of(0, 100, 0, 100), tree.box(tree.root()));
+  }
+}
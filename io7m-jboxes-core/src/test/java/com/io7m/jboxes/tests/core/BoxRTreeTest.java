@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxDirection;
+import com.io7m.jboxes.core.BoxDistanceMetricType;
+import com.io7m.jboxes.core.BoxDistanceMetrics;
+import com.io7m.jboxes.core.BoxRTree;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxRTreeTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static double distance(
+    final BoxDistanceMetricType metric,
+    final BoxType<Object> box)
+  {
+    return metric.distance(
+      box.minimumX(), box.maximumX(), box.minimumY(), box.maximumY());
+  }
+
+  private static void checkNearest(
+    final BoxRTree<Object> tree,
+    final List<BoxType<Object>> boxes,
+    final BoxDistanceMetricType metric,
+    final int k)
+  {
+    final List<Double> expected = new ArrayList<>();
+    for (final BoxType<Object> box : boxes) {
+      final double d = BoxRTreeTest.distance(metric, box);
+      if (d < Double.POSITIVE_INFINITY) {
+        expected.add(Double.valueOf(d));
+      }
+    }
+    Collections.sort(expected);
+
+    final List<BoxType<Object>> result = tree.nearest(metric, k);
+    Assert.assertEquals(
+      (long) Math.min(k, expected.size()), (long) result.size());
+    for (int index = 0; index < result.size(); ++index) {
+      Assert.assertEquals(
+        expected.get(index).doubleValue(),
+        BoxRTreeTest.distance(metric, result.get(index)),
+        0.0);
+    }
+  }
+
+  @Test
+  public void testNearestRandom()
+  {
+    final Random random = new Random(1L);
+    final List<BoxType<Object>> boxes = BoxTestSupport.randomBoxes(random, 5000, -1000, 2000, 50);
+    final BoxRTree<Object> tree = BoxRTree.create(boxes);
+    Assert.assertEquals(5000L, (long) tree.size());
+
+    for (int iteration = 0; iteration < 50; ++iteration) {
+      final int x = random.nextInt(2400) - 1200;
+      final int y = random.nextInt(2400) - 1200;
+      final BoxType<Object> origin =
+        Box.of(x, x + random.nextInt(40), y, y + random.nextInt(40));
+      final int k = 1 + random.nextInt(20);
+
+      BoxRTreeTest.checkNearest(
+        tree, boxes, BoxDistanceMetrics.toPoint(x, y), k);
+      BoxRTreeTest.checkNearest(
+        tree, boxes, BoxDistanceMetrics.edgeGap(origin), k);
+      for (final BoxDirection direction : BoxDirection.values()) {
+        BoxRTreeTest.checkNearest(
+          tree, boxes, BoxDistanceMetrics.directional(origin, direction), k);
+      }
+    }
+  }
+
+  @Test
+  public void testDirectional()
+  {
+    final BoxType<Object> origin = Box.of(0, 10, 0, 10);
+    final BoxType<Object> right_far = Box.of(100, 110, 0, 10);
+    final BoxType<Object> right_near = Box.of(20, 30, 50, 60);
+    final BoxType<Object> left = Box.of(-30, -20, 0, 10);
+    final BoxType<Object> below = Box.of(0, 10, 15, 25);
+    final BoxRTree<Object> tree = BoxRTree.create(
+      Arrays.asList(origin, right_far, right_near, left, below), 2);
+
+    Assert.assertEquals(
+      Arrays.asList(right_near, right_far),
+      tree.nearest(BoxDistanceMetrics.directional(origin, BoxDirection.RIGHT), 5));
+    Assert.assertEquals(
+      Collections.singletonList(left),
+      tree.nearest(BoxDistanceMetrics.directional(origin, BoxDirection.LEFT), 5));
+    Assert.assertEquals(
+      Collections.singletonList(below),
+      tree.nearest(BoxDistanceMetrics.directional(origin, BoxDirection.DOWN), 1));
+    Assert.assertEquals(
+      Collections.emptyList(),
+      tree.nearest(BoxDistanceMetrics.directional(origin, BoxDirection.UP), 5));
+  }
+
+  @Test
+  public void testNearestIndices()
+  {
+    final Random random = new Random(2L);
+    final List<BoxType<Object>> boxes = BoxTestSupport.randomBoxes(random, 300, -1000, 2000, 50);
+    final BoxRTree<Object> tree = BoxRTree.create(boxes, 4);
+
+    final int[] out = new int[10];
+    final BoxDistanceMetricType metric = BoxDistanceMetrics.toPoint(0, 0);
+    Assert.assertEquals(10L, (long) tree.nearest(metric, 10, out));
+
+    final List<BoxType<Object>> listed = tree.nearest(metric, 10);
+    for (int index = 0; index < 10; ++index) {
+      Assert.assertEquals(listed.get(index), tree.box(out[index]));
+    }
+  }
+
+  @Test
+  public void testBounds()
+  {
+    final Random random = new Random(3L);
+    final List<BoxType<Object>> boxes =
+      BoxTestSupport.randomBoxes(random, 100, -1000, 2000, 50);
+    final BoxRTree<Object> tree = BoxRTree.create(boxes);
+
+    BoxType<Object> expected = boxes.get(0);
+    for (final BoxType<Object> box : boxes) {
+      expected = Boxes.containing(expected, box);
+    }
+    Assert.assertEquals(Optional.of(expected), tree.bounds());
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final BoxRTree<Object> tree =
+      BoxRTree.create(Collections.<BoxType<Object>>emptyList());
+    Assert.assertEquals(0L, (long) tree.size());
+    Assert.assertEquals(Optional.empty(), tree.bounds());
+    Assert.assertEquals(
+      Collections.emptyList(),
+      tree.nearest(BoxDistanceMetrics.toPoint(0, 0), 3));
+  }
+
+  @Test
+  public void testNodeCapacity()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxRTree.create(Collections.<BoxType<Object>>emptyList(), 1);
+  }
+}
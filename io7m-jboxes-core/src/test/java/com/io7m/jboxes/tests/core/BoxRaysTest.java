@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxRTree;
+import com.io7m.jboxes.core.BoxRays;
+import com.io7m.jboxes.core.BoxType;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxRaysTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static double entry(
+    final BoxType<Object> box,
+    final int x,
+    final int y,
+    final int dx,
+    final int dy)
+  {
+    double t = 0.0;
+    if (dx != 0) {
+      final double a = ((double) box.minimumX() - (double) x) / (double) dx;
+      final double b = ((double) box.maximumX() - (double) x) / (double) dx;
+      t = Math.max(t, Math.min(a, b));
+    }
+    if (dy != 0) {
+      final double a = ((double) box.minimumY() - (double) y) / (double) dy;
+      final double b = ((double) box.maximumY() - (double) y) / (double) dy;
+      t = Math.max(t, Math.min(a, b));
+    }
+    return t;
+  }
+
+  @Test
+  public void testRayIntersects()
+  {
+    final BoxType<Object> box = Box.of(10, 20, 10, 20);
+
+    Assert.assertTrue(BoxRays.rayIntersects(box, 0, 0, 1, 1));
+    Assert.assertTrue(BoxRays.rayIntersects(box, 15, 15, -1, 0));
+    Assert.assertTrue(BoxRays.rayIntersects(box, 0, 15, 1, 0));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 0, 15, -1, 0));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 0, 0, 1, 0));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 0, 0, 1, 10));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 30, 30, 1, 1));
+  }
+
+  @Test
+  public void testRayTouchesEdges()
+  {
+    final BoxType<Object> box = Box.of(10, 20, 10, 20);
+
+    /* Grazing an edge and passing exactly through a corner both hit. */
+    Assert.assertTrue(BoxRays.rayIntersects(box, 0, 10, 1, 0));
+    Assert.assertTrue(BoxRays.rayIntersects(box, 0, 20, 1, 0));
+    Assert.assertTrue(BoxRays.rayIntersects(box, 0, 30, 2, -1));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 0, 31, 2, -1));
+    Assert.assertTrue(BoxRays.rayIntersects(box, 20, 0, 0, 1));
+    Assert.assertFalse(BoxRays.rayIntersects(box, 21, 0, 0, 1));
+  }
+
+  @Test
+  public void testSegmentIntersects()
+  {
+    final BoxType<Object> box = Box.of(10, 20, 10, 20);
+
+    Assert.assertTrue(BoxRays.segmentIntersects(box, 0, 15, 10, 15));
+    Assert.assertFalse(BoxRays.segmentIntersects(box, 0, 15, 9, 15));
+    Assert.assertTrue(BoxRays.segmentIntersects(box, 12, 12, 12, 12));
+    Assert.assertFalse(BoxRays.segmentIntersects(box, 0, 0, 0, 0));
+    Assert.assertTrue(BoxRays.segmentIntersects(box, 30, 15, 0, 15));
+    Assert.assertFalse(BoxRays.segmentIntersects(box, 0, 0, 30, 5));
+  }
+
+  @Test
+  public void testLargeCoordinatesExact()
+  {
+    final int max = Integer.MAX_VALUE;
+    final int min = Integer.MIN_VALUE;
+    final BoxType<Object> on_line = Box.of(max, max, max - 2, max - 2);
+    final BoxType<Object> off_line = Box.of(max, max, max - 1, max - 1);
+
+    /*
+     * The ray passes exactly through (max, max - 2) at t = 2, and the
+     * products involved in comparing its entry and exit positions do not
+     * fit in a long.
+     */
+
+    Assert.assertTrue(BoxRays.rayIntersects(
+      on_line, min + 1, min + 1, max, max - 1));
+    Assert.assertFalse(BoxRays.rayIntersects(
+      off_line, min + 1, min + 1, max, max - 1));
+    Assert.assertTrue(BoxRays.segmentIntersects(
+      on_line, min + 1, min + 1, max, max - 2));
+    Assert.assertFalse(BoxRays.segmentIntersects(
+      off_line, min + 1, min + 1, max, max - 2));
+  }
+
+  @Test
+  public void testZeroDirection()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxRays.rayIntersects(Box.of(0, 1, 0, 1), 0, 0, 0, 0);
+  }
+
+  @Test
+  public void testFirstHitSimple()
+  {
+    final BoxType<Object> near = Box.of(10, 20, 0, 10);
+    final BoxType<Object> far = Box.of(30, 40, 0, 10);
+    final BoxType<Object> behind = Box.of(-20, -10, 0, 10);
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    boxes.add(far);
+    boxes.add(behind);
+    boxes.add(near);
+
+    final BoxRTree<Object> tree = BoxRTree.create(boxes, 2);
+    Assert.assertEquals(
+      Optional.of(near), BoxRays.rayFirstHit(tree, 0, 5, 1, 0));
+    Assert.assertEquals(
+      Optional.of(behind), BoxRays.rayFirstHit(tree, 0, 5, -1, 0));
+    Assert.assertEquals(
+      Optional.of(far), BoxRays.rayFirstHit(tree, 25, 5, 1, 0));
+    Assert.assertEquals(
+      Optional.empty(), BoxRays.rayFirstHit(tree, 0, 50, 1, 0));
+    Assert.assertEquals(
+      Optional.empty(), BoxRays.segmentFirstHit(tree, 0, 5, 9, 5));
+    Assert.assertEquals(
+      Optional.of(far), BoxRays.segmentFirstHit(tree, 50, 5, 25, 5));
+
+    final List<BoxType<Object>> hits = new ArrayList<>();
+    Assert.assertEquals(
+      2L, (long) BoxRays.rayAllHits(tree, 0, 5, 1, 0, hits::add));
+    Assert.assertEquals(near, hits.get(0));
+    Assert.assertEquals(far, hits.get(1));
+  }
+
+  @Test
+  public void testEmptyTree()
+  {
+    final BoxRTree<Object> tree = BoxRTree.create(Collections.emptyList());
+    Assert.assertEquals(
+      Optional.empty(), BoxRays.rayFirstHit(tree, 0, 0, 1, 1));
+    Assert.assertEquals(
+      0L, (long) BoxRays.rayAllHits(tree, 0, 0, 1, 1, box -> true));
+  }
+
+  @Test
+  public void testAllHitsStopsEarly()
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    for (int index = 0; index < 100; ++index) {
+      boxes.add(Box.of(index * 10, index * 10 + 5, 0, 5));
+    }
+
+    final BoxRTree<Object> tree = BoxRTree.create(boxes, 4);
+    final List<BoxType<Object>> hits = new ArrayList<>();
+    final int count = BoxRays.rayAllHits(tree, -1, 2, 1, 0, box -> {
+      hits.add(box);
+      return hits.size() < 3;
+    });
+
+    Assert.assertEquals(3L, (long) count);
+    Assert.assertEquals(boxes.subList(0, 3), hits);
+  }
+
+  @Test
+  public void testRandomAgainstBruteForce()
+  {
+    final Random random = new Random(2L);
+    final List<BoxType<Object>> boxes = BoxTestSupport.randomBoxes(random, 3000, -1000, 2000, 50);
+    final BoxRTree<Object> tree = BoxRTree.create(boxes);
+
+    for (int iteration = 0; iteration < 200; ++iteration) {
+      final int x = random.nextInt(2400) - 1200;
+      final int y = random.nextInt(2400) - 1200;
+      final int dx = random.nextInt(41) - 20;
+      final int dy = random.nextInt(41) - 20;
+      if (dx == 0 && dy == 0) {
+        continue;
+      }
+
+      final HashSet<BoxType<Object>> expected_hits = new HashSet<>();
+      double expected_first = Double.POSITIVE_INFINITY;
+      for (final BoxType<Object> box : boxes) {
+        if (BoxRays.rayIntersects(box, x, y, dx, dy)) {
+          expected_hits.add(box);
+          expected_first = Math.min(
+            expected_first, BoxRaysTest.entry(box, x, y, dx, dy));
+        }
+      }
+
+      final List<BoxType<Object>> hits = new ArrayList<>();
+      BoxRays.rayAllHits(tree, x, y, dx, dy, hits::add);
+      Assert.assertEquals((long) expected_hits.size(), (long) hits.size());
+      Assert.assertEquals(expected_hits, new HashSet<>(hits));
+      for (int index = 1; index < hits.size(); ++index) {
+        Assert.assertTrue(
+          BoxRaysTest.entry(hits.get(index - 1), x, y, dx, dy)
+            <= BoxRaysTest.entry(hits.get(index), x, y, dx, dy));
+      }
+
+      final Optional<BoxType<Object>> first =
+        BoxRays.rayFirstHit(tree, x, y, dx, dy);
+      if (expected_hits.isEmpty()) {
+        Assert.assertFalse(first.isPresent());
+      } else {
+        Assert.assertEquals(
+          expected_first,
+          BoxRaysTest.entry(first.get(), x, y, dx, dy),
+          0.0);
+      }
+    }
+  }
+
+  @Test
+  public void testRandomSegmentsAgainstBruteForce()
+  {
+    final Random random = new Random(3L);
+    final List<BoxType<Object>> boxes = BoxTestSupport.randomBoxes(random, 3000, -1000, 2000, 50);
+    final BoxRTree<Object> tree = BoxRTree.create(boxes);
+
+    for (int iteration = 0; iteration < 200; ++iteration) {
+      final int x0 = random.nextInt(2400) - 1200;
+      final int y0 = random.nextInt(2400) - 1200;
+      final int x1 = x0 + random.nextInt(401) - 200;
+      final int y1 = y0 + random.nextInt(401) - 200;
+
+      final HashSet<BoxType<Object>> expected_hits = new HashSet<>();
+      for (final BoxType<Object> box : boxes) {
+        if (BoxRays.segmentIntersects(box, x0, y0, x1, y1)) {
+          expected_hits.add(box);
+        }
+      }
+
+      final List<BoxType<Object>> hits = new ArrayList<>();
+      BoxRays.segmentAllHits(tree, x0, y0, x1, y1, hits::add);
+      Assert.assertEquals(expected_hits, new HashSet<>(hits));
+      Assert.assertEquals(
+        expected_hits.isEmpty(),
+        !BoxRays.segmentFirstHit(tree, x0, y0, x1, y1).isPresent());
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxSpatialSpliterator;
+import com.io7m.jboxes.core.BoxType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+public final class BoxSpatialSpliteratorTest
+{
+  private static List<BoxType<Object>> grid(
+    final int size)
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>(size * size);
+    for (int y = 0; y < size; ++y) {
+      for (int x = 0; x < size; ++x) {
+        boxes.add(Box.of(x * 10, x * 10 + 5, y * 10, y * 10 + 5));
+      }
+    }
+    return boxes;
+  }
+
+  @Test
+  public void testCharacteristics()
+  {
+    final Spliterator<BoxType<Object>> s =
+      BoxSpatialSpliterator.create(BoxSpatialSpliteratorTest.grid(4));
+    Assert.assertTrue(s.hasCharacteristics(Spliterator.SIZED));
+    Assert.assertTrue(s.hasCharacteristics(Spliterator.SUBSIZED));
+    Assert.assertEquals(16L, s.getExactSizeIfKnown());
+  }
+
+  @Test
+  public void testSplitSizesExact()
+  {
+    final Spliterator<BoxType<Object>> s =
+      BoxSpatialSpliterator.create(BoxSpatialSpliteratorTest.grid(5));
+    final Spliterator<BoxType<Object>> prefix = s.trySplit();
+    Assert.assertNotNull(prefix);
+    Assert.assertEquals(12L, prefix.estimateSize());
+    Assert.assertEquals(13L, s.estimateSize());
+
+    final Set<BoxType<Object>> seen = new HashSet<>();
+    prefix.forEachRemaining(seen::add);
+    s.forEachRemaining(seen::add);
+    Assert.assertEquals(25L, (long) seen.size());
+  }
+
+  @Test
+  public void testSplitPartitionsSpace()
+  {
+    final Spliterator<BoxType<Object>> s =
+      BoxSpatialSpliterator.create(BoxSpatialSpliteratorTest.grid(8));
+    final Spliterator<BoxType<Object>> left = s.trySplit();
+    Assert.assertNotNull(left);
+
+    final List<BoxType<Object>> lefts = new ArrayList<>();
+    final List<BoxType<Object>> rights = new ArrayList<>();
+    left.forEachRemaining(lefts::add);
+    s.forEachRemaining(rights::add);
+
+    int left_max = Integer.MIN_VALUE;
+    for (final BoxType<Object> box : lefts) {
+      left_max = Math.max(left_max, box.minimumX());
+    }
+    for (final BoxType<Object> box : rights) {
+      Assert.assertTrue(box.minimumX() >= left_max);
+    }
+    Assert.assertEquals(32L, (long) lefts.size());
+    Assert.assertEquals(32L, (long) rights.size());
+  }
+
+  @Test
+  public void testSplitLeafSize()
+  {
+    final Spliterator<BoxType<Object>> s =
+      BoxSpatialSpliterator.create(BoxSpatialSpliteratorTest.grid(2), 3);
+    Assert.assertNull(s.trySplit());
+  }
+
+  @Test
+  public void testSplitSingle()
+  {
+    final Spliterator<BoxType<Object>> s =
+      BoxSpatialSpliterator.create(BoxSpatialSpliteratorTest.grid(1));
+    Assert.assertNull(s.trySplit());
+    Assert.assertTrue(s.tryAdvance(box -> { }));
+    Assert.assertFalse(s.tryAdvance(box -> { }));
+  }
+
+  @Test
+  public void testParallelStream()
+  {
+    final List<BoxType<Object>> boxes = BoxSpatialSpliteratorTest.grid(100);
+    final Set<BoxType<Object>> result =
+      BoxSpatialSpliterator.stream(boxes, true)
+        .collect(Collectors.toSet());
+    Assert.assertEquals(new HashSet<>(boxes), result);
+    Assert.assertEquals(
+      10000L, BoxSpatialSpliterator.stream(boxes, true).count());
+  }
+
+  @Test
+  public void testIdenticalCenters()
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    for (int index = 0; index < 100; ++index) {
+      boxes.add(Box.of(0, 10, 0, 10));
+    }
+    final Spliterator<BoxType<Object>> s = BoxSpatialSpliterator.create(boxes);
+    final Spliterator<BoxType<Object>> prefix = s.trySplit();
+    Assert.assertNotNull(prefix);
+    Assert.assertEquals(50L, prefix.estimateSize());
+    Assert.assertEquals(50L, s.estimateSize());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxSweepJoin;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public final class BoxSweepJoinTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static List<BoxType<Object>> sortedBoxes(
+    final BoxGenerator<Object> box_gen,
+    final int count)
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      boxes.add(box_gen.next());
+    }
+    boxes.sort(Comparator.comparingInt(BoxType::minimumY));
+    return boxes;
+  }
+
+  @Test
+  public void testJoinAgreesWithBruteForce()
+  {
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+
+    for (int iteration = 0; iteration < 50; ++iteration) {
+      final List<BoxType<Object>> a = BoxSweepJoinTest.sortedBoxes(box_gen, 60);
+      final List<BoxType<Object>> b = BoxSweepJoinTest.sortedBoxes(box_gen, 40);
+
+      final Set<List<Integer>> expected_pairs = new HashSet<>();
+      for (int i = 0; i < a.size(); ++i) {
+        for (int j = 0; j < b.size(); ++j) {
+          if (Boxes.overlaps(a.get(i), b.get(j))) {
+            expected_pairs.add(BoxSweepJoinTest.pair(i, j));
+          }
+        }
+      }
+
+      final List<List<Integer>> received = new ArrayList<>();
+      final long count = BoxSweepJoin.join(
+        a.iterator(), b.iterator(), (x, y) -> {
+          received.add(BoxSweepJoinTest.pair(
+            BoxSweepJoinTest.indexOf(a, x), BoxSweepJoinTest.indexOf(b, y)));
+        });
+
+      Assert.assertEquals((long) received.size(), count);
+      Assert.assertEquals(expected_pairs, new HashSet<>(received));
+      Assert.assertEquals((long) expected_pairs.size(), count);
+    }
+  }
+
+  private static int indexOf(
+    final List<BoxType<Object>> boxes,
+    final BoxType<Object> box)
+  {
+    for (int index = 0; index < boxes.size(); ++index) {
+      if (boxes.get(index) == box) {
+        return index;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private static List<Integer> pair(
+    final int i,
+    final int j)
+  {
+    final List<Integer> p = new ArrayList<>(2);
+    p.add(Integer.valueOf(i));
+    p.add(Integer.valueOf(j));
+    return p;
+  }
+
+  @Test
+  public void testJoinEmpty()
+  {
+    final List<BoxType<Object>> empty = new ArrayList<>();
+    final List<BoxType<Object>> some = new ArrayList<>();
+    some.add(Box.of(0, 10, 0, 10));
+
+    Assert.assertEquals(0L, BoxSweepJoin.join(
+      empty.iterator(), some.iterator(), (x, y) -> Assert.fail()));
+    Assert.assertEquals(0L, BoxSweepJoin.join(
+      some.iterator(), empty.iterator(), (x, y) -> Assert.fail()));
+  }
+
+  @Test
+  public void testJoinLongStream()
+  {
+    final int count = 1_000_000;
+    final Iterator<BoxType<Object>> rows = new Iterator<BoxType<Object>>()
+    {
+      private int index;
+
+      @Override
+      public boolean hasNext()
+      {
+        return this.index < count;
+      }
+
+      @Override
+      public BoxType<Object> next()
+      {
+        final int y = this.index * 10;
+        ++this.index;
+        return Box.of(0, 100, y, y + 5);
+      }
+    };
+
+    final List<BoxType<Object>> columns = new ArrayList<>();
+    columns.add(Box.of(40, 50, 0, Integer.MAX_VALUE));
+
+    final long pairs =
+      BoxSweepJoin.join(rows, columns.iterator(), (x, y) -> { });
+    Assert.assertEquals((long) count, pairs);
+  }
+
+  @Test
+  public void testJoinUnsorted()
+  {
+    final List<BoxType<Object>> a = new ArrayList<>();
+    a.add(Box.of(0, 10, 10, 20));
+    a.add(Box.of(0, 10, 0, 20));
+    final List<BoxType<Object>> b = new ArrayList<>();
+    b.add(Box.of(0, 10, 0, 20));
+
+    this.expected.expect(RequireViolation.class);
+    BoxSweepJoin.join(a.iterator(), b.iterator(), (x, y) -> { });
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.junreachable.UnreachableCodeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixtures shared between tests.
+ */
+
+final class BoxTestSupport
+{
+  private BoxTestSupport()
+  {
+    throw new UnreachableCodeException();
+  }
+
+  /**
+   * Generate random boxes whose minimum corners lie in {@code [origin, origin
+   * + range)} on both axes, and whose widths and heights lie in {@code [0,
+   * extent)}.
+   *
+   * @param random The random number generator
+   * @param count  The number of boxes
+   * @param origin The lowest minimum coordinate
+   * @param range  The range of minimum coordinates
+   * @param extent The exclusive upper bound on widths and heights
+   *
+   * @return A list of boxes
+   */
+
+  static List<BoxType<Object>> randomBoxes(
+    final Random random,
+    final int count,
+    final int origin,
+    final int range,
+    final int extent)
+  {
+    final List<BoxType<Object>> boxes = new ArrayList<>(count);
+    for (int index = 0; index < count; ++index) {
+      final int x = origin + random.nextInt(range);
+      final int y = origin + random.nextInt(range);
+      final int w = random.nextInt(extent);
+      final int h = random.nextInt(extent);
+      boxes.add(Box.of(x, x + w, y, y + h));
+    }
+    return boxes;
+  }
+
+  /**
+   * @param a A box
+   * @param b A box
+   *
+   * @return {@code true} iff the interiors of the half-open boxes overlap
+   */
+
+  static boolean intersects(
+    final BoxType<?> a,
+    final BoxType<?> b)
+  {
+    return a.minimumX() < b.maximumX()
+      && b.minimumX() < a.maximumX()
+      && a.minimumY() < b.maximumY()
+      && b.minimumY() < a.maximumY();
+  }
+}
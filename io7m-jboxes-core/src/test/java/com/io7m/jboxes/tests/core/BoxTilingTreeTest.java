@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxDirection;
+import com.io7m.jboxes.core.BoxMutable;
+import com.io7m.jboxes.core.BoxTilingTree;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+public final class BoxTilingTreeTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static BoxType<Object> get(
+    final BoxTilingTree<Object, String> tree,
+    final String window)
+  {
+    return tree.box(window).get();
+  }
+
+  @Test
+  public void testInsertNextTo()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 60));
+    Assert.assertEquals(0L, (long) tree.size());
+
+    tree.insert("a");
+    Assert.assertEquals(Box.of(0, 100, 0, 60), BoxTilingTreeTest.get(tree, "a"));
+
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.25);
+    Assert.assertEquals(Box.of(0, 25, 0, 60), BoxTilingTreeTest.get(tree, "a"));
+    Assert.assertEquals(Box.of(25, 100, 0, 60), BoxTilingTreeTest.get(tree, "b"));
+
+    tree.insertNextTo("b", "c", BoxDirection.UP, 0.5);
+    Assert.assertEquals(Box.of(25, 100, 30, 60), BoxTilingTreeTest.get(tree, "b"));
+    Assert.assertEquals(Box.of(25, 100, 0, 30), BoxTilingTreeTest.get(tree, "c"));
+
+    tree.insertNextTo("a", "d", BoxDirection.LEFT, 0.4);
+    Assert.assertEquals(Box.of(0, 10, 0, 60), BoxTilingTreeTest.get(tree, "d"));
+    Assert.assertEquals(Box.of(10, 25, 0, 60), BoxTilingTreeTest.get(tree, "a"));
+
+    Assert.assertEquals(4L, (long) tree.size());
+    Assert.assertTrue(tree.contains("c"));
+    Assert.assertFalse(tree.contains("z"));
+    Assert.assertEquals(Optional.empty(), tree.box("z"));
+  }
+
+  @Test
+  public void testSetSplitRatioLocal()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.5);
+    tree.insertNextTo("a", "c", BoxDirection.DOWN, 0.5);
+    tree.insertNextTo("b", "d", BoxDirection.DOWN, 0.5);
+
+    final BoxType<Object> b_before = BoxTilingTreeTest.get(tree, "b");
+    final BoxType<Object> d_before = BoxTilingTreeTest.get(tree, "d");
+
+    /*
+     * Moving the split below "a" must leave the right-hand column alone.
+     */
+
+    Assert.assertTrue(tree.setSplitRatio("a", BoxDirection.DOWN, 0.2));
+    Assert.assertEquals(Box.of(0, 50, 0, 20), BoxTilingTreeTest.get(tree, "a"));
+    Assert.assertEquals(Box.of(0, 50, 20, 100), BoxTilingTreeTest.get(tree, "c"));
+    Assert.assertSame(b_before, BoxTilingTreeTest.get(tree, "b"));
+    Assert.assertSame(d_before, BoxTilingTreeTest.get(tree, "d"));
+
+    /*
+     * The right edge of "c" is the root split.
+     */
+
+    Assert.assertTrue(tree.setSplitRatio("c", BoxDirection.RIGHT, 0.7));
+    Assert.assertEquals(Box.of(0, 70, 20, 100), BoxTilingTreeTest.get(tree, "c"));
+    Assert.assertEquals(Box.of(70, 100, 0, 50), BoxTilingTreeTest.get(tree, "b"));
+    Assert.assertEquals(Box.of(70, 100, 50, 100), BoxTilingTreeTest.get(tree, "d"));
+
+    Assert.assertFalse(tree.setSplitRatio("c", BoxDirection.LEFT, 0.1));
+    Assert.assertFalse(tree.setSplitRatio("b", BoxDirection.UP, 0.1));
+  }
+
+  @Test
+  public void testRemove()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.5);
+    tree.insertNextTo("b", "c", BoxDirection.DOWN, 0.5);
+
+    tree.remove("a");
+    Assert.assertEquals(Box.of(0, 100, 0, 50), BoxTilingTreeTest.get(tree, "b"));
+    Assert.assertEquals(Box.of(0, 100, 50, 100), BoxTilingTreeTest.get(tree, "c"));
+
+    tree.remove("c");
+    Assert.assertEquals(Box.of(0, 100, 0, 100), BoxTilingTreeTest.get(tree, "b"));
+
+    tree.remove("b");
+    Assert.assertEquals(0L, (long) tree.size());
+    tree.insert("d");
+    Assert.assertEquals(Box.of(0, 100, 0, 100), BoxTilingTreeTest.get(tree, "d"));
+  }
+
+  @Test
+  public void testSwap()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.3);
+
+    final BoxType<Object> a = BoxTilingTreeTest.get(tree, "a");
+    final BoxType<Object> b = BoxTilingTreeTest.get(tree, "b");
+    tree.swap("a", "b");
+    Assert.assertEquals(b, BoxTilingTreeTest.get(tree, "a"));
+    Assert.assertEquals(a, BoxTilingTreeTest.get(tree, "b"));
+
+    /* The split now forms the left edge of "a". */
+    Assert.assertTrue(tree.setSplitRatio("a", BoxDirection.LEFT, 0.6));
+    Assert.assertEquals(Box.of(60, 100, 0, 100), BoxTilingTreeTest.get(tree, "a"));
+  }
+
+  @Test
+  public void testSetBounds()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.5);
+
+    tree.setBounds(Box.of(0, 200, 0, 50));
+    Assert.assertEquals(Box.of(0, 200, 0, 50), tree.bounds());
+    Assert.assertEquals(Box.of(0, 100, 0, 50), BoxTilingTreeTest.get(tree, "a"));
+    Assert.assertEquals(Box.of(100, 200, 0, 50), BoxTilingTreeTest.get(tree, "b"));
+  }
+
+  @Test
+  public void testSetBoundsMutable()
+  {
+    final BoxMutable<Object> bounds = BoxMutable.create(0, 100, 0, 100);
+    final BoxTilingTree<Object, String> tree = BoxTilingTree.create(bounds);
+    tree.insert("a");
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 0.5);
+
+    bounds.setMaximumX(40);
+    Assert.assertEquals(Box.of(0, 100, 0, 100), tree.bounds());
+    Assert.assertEquals(Box.of(50, 100, 0, 100), BoxTilingTreeTest.get(tree, "b"));
+
+    tree.setBounds(bounds);
+    Assert.assertEquals(Box.of(0, 40, 0, 100), tree.bounds());
+    Assert.assertEquals(Box.of(0, 20, 0, 100), BoxTilingTreeTest.get(tree, "a"));
+    Assert.assertEquals(Box.of(20, 40, 0, 100), BoxTilingTreeTest.get(tree, "b"));
+  }
+
+  @Test
+  public void testRandomTilesCoverBounds()
+  {
+    final Random random = new Random(1L);
+    final BoxType<Object> bounds = Box.of(0, 1920, 0, 1080);
+    final BoxTilingTree<Object, Integer> tree = BoxTilingTree.create(bounds);
+    final List<Integer> windows = new ArrayList<>();
+
+    tree.insert(Integer.valueOf(0));
+    windows.add(Integer.valueOf(0));
+    for (int index = 1; index < 500; ++index) {
+      final int choice = random.nextInt(10);
+      if (choice < 6 || windows.size() < 2) {
+        final Integer existing = windows.get(random.nextInt(windows.size()));
+        final Integer window = Integer.valueOf(index);
+        tree.insertNextTo(
+          existing,
+          window,
+          BoxDirection.values()[random.nextInt(4)],
+          random.nextDouble());
+        windows.add(window);
+      } else if (choice < 8) {
+        tree.remove(windows.remove(random.nextInt(windows.size())));
+      } else {
+        tree.setSplitRatio(
+          windows.get(random.nextInt(windows.size())),
+          BoxDirection.values()[random.nextInt(4)],
+          random.nextDouble());
+      }
+
+      /*
+       * The windows must tile the bounds exactly.
+       */
+
+      long area = 0L;
+      for (final Integer window : windows) {
+        final BoxType<Object> box = tree.box(window).get();
+        Assert.assertTrue(Boxes.contains(bounds, box));
+        area += (long) box.width() * (long) box.height();
+      }
+      Assert.assertEquals(
+        (long) bounds.width() * (long) bounds.height(), area);
+      Assert.assertEquals((long) windows.size(), (long) tree.size());
+    }
+  }
+
+  @Test
+  public void testInsertTwice()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+
+    this.expected.expect(RequireViolation.class);
+    tree.insertNextTo("a", "a", BoxDirection.RIGHT, 0.5);
+  }
+
+  @Test
+  public void testBadRatio()
+  {
+    final BoxTilingTree<Object, String> tree =
+      BoxTilingTree.create(Box.of(0, 100, 0, 100));
+    tree.insert("a");
+
+    this.expected.expect(RequireViolation.class);
+    tree.insertNextTo("a", "b", BoxDirection.RIGHT, 1.5);
+  }
+}
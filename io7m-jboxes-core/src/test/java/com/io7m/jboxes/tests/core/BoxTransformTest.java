@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxTransform;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Boxes;
+import net.java.quickcheck.Generator;
+import net.java.quickcheck.QuickCheck;
+import net.java.quickcheck.characteristic.AbstractCharacteristic;
+import net.java.quickcheck.generator.PrimitiveGenerators;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BoxTransformTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testEmpty()
+  {
+    final BoxTransform<Object> t = BoxTransform.<Object>builder().build();
+    final BoxType<Object> box = Box.of(0, 10, 0, 20);
+    Assert.assertEquals(0L, (long) t.size());
+    Assert.assertEquals(box, t.apply(box));
+  }
+
+  @Test
+  public void testChainAll()
+    throws Exception
+  {
+    final Generator<Integer> int_gen = PrimitiveGenerators.integers(0, 40);
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+
+    QuickCheck.forAllVerbose(
+      box_gen,
+      new AbstractCharacteristic<BoxType<Object>>()
+      {
+        @Override
+        protected void doSpecify(final BoxType<Object> any)
+          throws Throwable
+        {
+          final BoxType<Object> outer = box_gen.next();
+          final int offset = int_gen.next().intValue();
+          final int x = int_gen.next().intValue() - 20;
+          final int y = int_gen.next().intValue() - 20;
+          final int w = int_gen.next().intValue();
+          final int h = int_gen.next().intValue();
+
+          final BoxTransform<Object> t =
+            BoxTransform.<Object>builder()
+              .hollowOutEvenly(offset)
+              .alignCenter(outer)
+              .moveRelative(x, y)
+              .setSizeFromTopLeft(w, h)
+              .build();
+
+          BoxType<Object> expected = Boxes.hollowOutEvenly(any, offset);
+          expected = Boxes.alignCenter(outer, expected);
+          expected = Boxes.moveRelative(expected, x, y);
+          expected = Boxes.setSizeFromTopLeft(expected, w, h);
+
+          Assert.assertEquals(4L, (long) t.size());
+          Assert.assertEquals(expected, t.apply(any));
+        }
+      });
+  }
+
+  @Test
+  public void testEachOperationAll()
+    throws Exception
+  {
+    final Generator<Integer> int_gen = PrimitiveGenerators.integers(0, 40);
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+
+    QuickCheck.forAllVerbose(
+      box_gen,
+      new AbstractCharacteristic<BoxType<Object>>()
+      {
+        @Override
+        protected void doSpecify(final BoxType<Object> any)
+          throws Throwable
+        {
+          final BoxType<Object> o = box_gen.next();
+          final int a = int_gen.next().intValue();
+          final int b = int_gen.next().intValue();
+          final int c = int_gen.next().intValue() - 20;
+          final int d = int_gen.next().intValue() - 20;
+
+          BoxTransformTest.check(
+            any, chain().moveRelative(c, d), Boxes.moveRelative(any, c, d));
+          BoxTransformTest.check(
+            any, chain().moveAbsolute(c, d), Boxes.moveAbsolute(any, c, d));
+          BoxTransformTest.check(
+            any, chain().moveToOrigin(), Boxes.moveToOrigin(any));
+          BoxTransformTest.check(
+            any, chain().hollowOut(a, b, a, b), Boxes.hollowOut(any, a, b, a, b));
+          BoxTransformTest.check(
+            any, chain().setSizeFromCenter(a, b), Boxes.setSizeFromCenter(any, a, b));
+          BoxTransformTest.check(
+            any, chain().setSizeFromTopLeft(a, b), Boxes.setSizeFromTopLeft(any, a, b));
+          BoxTransformTest.check(
+            any, chain().setSizeFromTopRight(a, b), Boxes.setSizeFromTopRight(any, a, b));
+          BoxTransformTest.check(
+            any, chain().setSizeFromBottomLeft(a, b), Boxes.setSizeFromBottomLeft(any, a, b));
+          BoxTransformTest.check(
+            any, chain().setSizeFromBottomRight(a, b), Boxes.setSizeFromBottomRight(any, a, b));
+          BoxTransformTest.check(
+            any, chain().scaleFromCenter(c, d), Boxes.scaleFromCenter(any, c, d));
+          BoxTransformTest.check(
+            any, chain().scaleFromTopLeft(c, d), Boxes.scaleFromTopLeft(any, c, d));
+          BoxTransformTest.check(
+            any, chain().scaleFromTopRight(c, d), Boxes.scaleFromTopRight(any, c, d));
+          BoxTransformTest.check(
+            any, chain().scaleFromBottomLeft(c, d), Boxes.scaleFromBottomLeft(any, c, d));
+          BoxTransformTest.check(
+            any, chain().scaleFromBottomRight(c, d), Boxes.scaleFromBottomRight(any, c, d));
+          BoxTransformTest.check(
+            any, chain().alignHorizontallyCenter(o), Boxes.alignHorizontallyCenter(o, any));
+          BoxTransformTest.check(
+            any, chain().alignHorizontallyLeft(o), Boxes.alignHorizontallyLeft(o, any));
+          BoxTransformTest.check(
+            any, chain().alignHorizontallyLeftOffset(o, a), Boxes.alignHorizontallyLeftOffset(o, any, a));
+          BoxTransformTest.check(
+            any, chain().alignHorizontallyRight(o), Boxes.alignHorizontallyRight(o, any));
+          BoxTransformTest.check(
+            any, chain().alignHorizontallyRightOffset(o, a), Boxes.alignHorizontallyRightOffset(o, any, a));
+          BoxTransformTest.check(
+            any, chain().alignVerticallyCenter(o), Boxes.alignVerticallyCenter(o, any));
+          BoxTransformTest.check(
+            any, chain().alignVerticallyTop(o), Boxes.alignVerticallyTop(o, any));
+          BoxTransformTest.check(
+            any, chain().alignVerticallyTopOffset(o, a), Boxes.alignVerticallyTopOffset(o, any, a));
+          BoxTransformTest.check(
+            any, chain().alignVerticallyBottom(o), Boxes.alignVerticallyBottom(o, any));
+          BoxTransformTest.check(
+            any, chain().alignVerticallyBottomOffset(o, a), Boxes.alignVerticallyBottomOffset(o, any, a));
+          BoxTransformTest.check(
+            any, chain().alignTopLeft(o), Boxes.alignTopLeft(o, any));
+          BoxTransformTest.check(
+            any, chain().alignTopLeftOffset(o, a, b), Boxes.alignTopLeftOffset(o, any, a, b));
+          BoxTransformTest.check(
+            any, chain().alignTopRight(o), Boxes.alignTopRight(o, any));
+          BoxTransformTest.check(
+            any, chain().alignTopRightOffset(o, a, b), Boxes.alignTopRightOffset(o, any, a, b));
+          BoxTransformTest.check(
+            any, chain().alignBottomLeft(o), Boxes.alignBottomLeft(o, any));
+          BoxTransformTest.check(
+            any, chain().alignBottomLeftOffset(o, a, b), Boxes.alignBottomLeftOffset(o, any, a, b));
+          BoxTransformTest.check(
+            any, chain().alignBottomRight(o), Boxes.alignBottomRight(o, any));
+          BoxTransformTest.check(
+            any, chain().alignBottomRightOffset(o, a, b), Boxes.alignBottomRightOffset(o, any, a, b));
+        }
+      });
+  }
+
+  private static BoxTransform.Builder<Object> chain()
+  {
+    return BoxTransform.builder();
+  }
+
+  private static void check(
+    final BoxType<Object> input,
+    final BoxTransform.Builder<Object> builder,
+    final BoxType<Object> expected)
+  {
+    Assert.assertEquals(expected, builder.build().apply(input));
+  }
+
+  @Test
+  public void testApplyPacked()
+  {
+    final BoxGenerator<Object> box_gen = new BoxGenerator<>();
+    final BoxTransform<Object> t =
+      BoxTransform.<Object>builder()
+        .hollowOutEvenly(2)
+        .scaleFromCenter(4, -2)
+        .moveRelative(10, 20)
+        .build();
+
+    final List<BoxType<Object>> boxes = new ArrayList<>();
+    for (int index = 0; index < 100; ++index) {
+      boxes.add(box_gen.next());
+    }
+
+    final int[] packed = BoxArrays.pack(boxes);
+    t.applyPacked(packed, 0, boxes.size());
+
+    final List<BoxType<Object>> result = BoxArrays.unpack(packed, boxes.size());
+    for (int index = 0; index < boxes.size(); ++index) {
+      Assert.assertEquals(t.apply(boxes.get(index)), result.get(index));
+    }
+  }
+
+  @Test
+  public void testApplyPackedOutOfRange()
+  {
+    final BoxTransform<Object> t = BoxTransform.<Object>builder().build();
+    this.expected.expect(RequireViolation.class);
+    t.applyPacked(new int[8], 1, 2);
+  }
+
+  @Test
+  public void testHollowOutNegative()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxTransform.builder().hollowOut(-1, 0, 0, 0);
+  }
+
+  @Test
+  public void testSetSizeNegative()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxTransform.builder().setSizeFromCenter(0, -1);
+  }
+}
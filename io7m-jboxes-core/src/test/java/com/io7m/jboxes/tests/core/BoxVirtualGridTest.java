@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.BoxVirtualGrid;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Random;
+
+public final class BoxVirtualGridTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  @Test
+  public void testColumns()
+  {
+    final BoxVirtualGrid<Object> grid = BoxVirtualGrid.create(100, 30, 20, 10, 5);
+
+    Assert.assertEquals(3L, (long) grid.columns(Box.of(0, 110, 0, 0)));
+    Assert.assertEquals(3L, (long) grid.columns(Box.of(0, 119, 0, 0)));
+    Assert.assertEquals(4L, (long) grid.columns(Box.of(0, 150, 0, 0)));
+    Assert.assertEquals(1L, (long) grid.columns(Box.of(0, 5, 0, 0)));
+    Assert.assertEquals(25L, (long) grid.rows(Box.of(0, 150, 0, 0)));
+    Assert.assertEquals(34L, (long) grid.rows(Box.of(0, 110, 0, 0)));
+  }
+
+  @Test
+  public void testBoxes()
+  {
+    final BoxVirtualGrid<Object> grid = BoxVirtualGrid.create(10, 30, 20, 10, 5);
+    final BoxType<Object> container = Box.of(100, 210, 50, 50);
+
+    Assert.assertEquals(Box.of(100, 130, 50, 70), grid.box(container, 0));
+    Assert.assertEquals(Box.of(180, 210, 50, 70), grid.box(container, 2));
+    Assert.assertEquals(Box.of(100, 130, 75, 95), grid.box(container, 3));
+    Assert.assertEquals(Box.of(100, 130, 125, 145), grid.box(container, 9));
+
+    final int[] out = new int[10 * BoxArrays.STRIDE];
+    grid.layout(container, 0, 10, out);
+    for (int index = 0; index < 10; ++index) {
+      Assert.assertEquals(grid.box(container, index), BoxArrays.get(out, index));
+    }
+
+    grid.layout(container, 4, 5, out);
+    for (int index = 0; index < 5; ++index) {
+      Assert.assertEquals(
+        grid.box(container, 4 + index), BoxArrays.get(out, index));
+    }
+  }
+
+  @Test
+  public void testVisibleAgainstBruteForce()
+  {
+    final Random random = new Random(0x22L);
+    final BoxVirtualGrid<Object> grid = BoxVirtualGrid.create(503, 30, 20, 10, 5);
+    final BoxType<Object> container = Box.of(0, 150, 40, 40);
+    final int[] range = new int[2];
+
+    for (int round = 0; round < 500; ++round) {
+      final int y = -100 + random.nextInt(3400);
+      final BoxType<Object> viewport =
+        Box.of(0, 150, y, y + 1 + random.nextInt(200));
+
+      int first = -1;
+      int end = 0;
+      for (int index = 0; index < grid.count(); ++index) {
+        if (BoxTestSupport.intersects(grid.box(container, index), viewport)) {
+          if (first < 0) {
+            first = index;
+          }
+          end = index + 1;
+        }
+      }
+
+      final int count = grid.visibleRange(container, viewport, range);
+      if (first < 0) {
+        Assert.assertEquals(0L, (long) count);
+      } else {
+        Assert.assertEquals((long) first, (long) range[0]);
+        Assert.assertEquals((long) end, (long) range[1]);
+        Assert.assertEquals((long) (end - first), (long) count);
+      }
+    }
+  }
+
+  @Test
+  public void testMillionsOfCells()
+  {
+    final BoxVirtualGrid<Object> grid =
+      BoxVirtualGrid.create(5_000_000, 64, 64, 0, 0);
+    final BoxType<Object> container = Box.of(0, 640, 0, 0);
+    final int[] range = new int[2];
+
+    final int count = grid.visibleRange(
+      container, Box.of(0, 640, 64_000, 64_480), range);
+    Assert.assertEquals(80L, (long) count);
+    Assert.assertEquals(10_000L, (long) range[0]);
+    Assert.assertEquals(10_080L, (long) range[1]);
+  }
+
+  @Test
+  public void testOutsideViewport()
+  {
+    final BoxVirtualGrid<Object> grid = BoxVirtualGrid.create(10, 30, 20, 10, 5);
+    final BoxType<Object> container = Box.of(100, 210, 50, 50);
+    final int[] range = new int[2];
+
+    Assert.assertEquals(
+      0L, (long) grid.visibleRange(container, Box.of(0, 100, 0, 200), range));
+    Assert.assertEquals(
+      0L, (long) grid.visibleRange(container, Box.of(210, 300, 0, 200), range));
+    Assert.assertEquals(
+      0L, (long) grid.visibleRange(container, Box.of(100, 210, 0, 50), range));
+    Assert.assertEquals(
+      10L, (long) grid.visibleRange(container, Box.of(0, 101, 0, 200), range));
+  }
+
+  @Test
+  public void testCellWidthZero()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxVirtualGrid.create(10, 0, 10, 0, 0);
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxArrays;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.BoxVirtualList;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.valid4j.errors.RequireViolation;
+
+import java.util.Random;
+
+public final class BoxVirtualListTest
+{
+  @Rule public ExpectedException expected = ExpectedException.none();
+
+  private static void checkAgainstBruteForce(
+    final BoxVirtualList<Object> list,
+    final BoxType<Object> container,
+    final BoxType<Object> viewport)
+  {
+    int first = -1;
+    int end = 0;
+    for (int index = 0; index < list.count(); ++index) {
+      if (BoxTestSupport.intersects(list.box(container, index), viewport)) {
+        if (first < 0) {
+          first = index;
+        }
+        end = index + 1;
+      }
+    }
+
+    final int[] range = new int[2];
+    final int count = list.visibleRange(container, viewport, range);
+    if (first < 0) {
+      for (int index = range[0]; index < range[1]; ++index) {
+        Assert.assertEquals(0L, (long) list.extent(index));
+      }
+      return;
+    }
+
+    Assert.assertTrue(range[0] <= first);
+    Assert.assertTrue(range[1] >= end);
+    Assert.assertEquals((long) (range[1] - range[0]), (long) count);
+    for (int index = range[0]; index < first; ++index) {
+      Assert.assertEquals(0L, (long) list.extent(index));
+    }
+    for (int index = end; index < range[1]; ++index) {
+      Assert.assertEquals(0L, (long) list.extent(index));
+    }
+  }
+
+  @Test
+  public void testFixed()
+  {
+    final BoxVirtualList<Object> list =
+      BoxVirtualList.createFixed(1_000_000, 20);
+    final BoxType<Object> container = Box.of(0, 300, 100, 100);
+    final BoxType<Object> viewport = Box.of(0, 300, 10_105, 10_505);
+
+    Assert.assertEquals(20_000_000L, list.totalExtent());
+
+    final int[] range = new int[2];
+    Assert.assertEquals(21L, (long) list.visibleRange(container, viewport, range));
+    Assert.assertEquals(500L, (long) range[0]);
+    Assert.assertEquals(521L, (long) range[1]);
+
+    final int[] out = new int[21 * BoxArrays.STRIDE];
+    list.layout(container, range[0], 21, out);
+    Assert.assertEquals(Box.of(0, 300, 10_100, 10_120), BoxArrays.get(out, 0));
+    Assert.assertEquals(Box.of(0, 300, 10_500, 10_520), BoxArrays.get(out, 20));
+    Assert.assertEquals(list.box(container, 510), BoxArrays.get(out, 10));
+  }
+
+  @Test
+  public void testVariableWithUpdates()
+  {
+    final Random random = new Random(0x11L);
+    final int[] extents = new int[1000];
+    for (int index = 0; index < extents.length; ++index) {
+      extents[index] = random.nextInt(4) == 0 ? 0 : random.nextInt(50);
+    }
+
+    final BoxVirtualList<Object> list = BoxVirtualList.create(extents);
+    final BoxType<Object> container = Box.of(-20, 20, -500, -500);
+
+    for (int round = 0; round < 300; ++round) {
+      if (round % 3 == 0) {
+        list.setExtent(random.nextInt(list.count()), random.nextInt(50));
+      }
+      final int y = -700 + random.nextInt(26000);
+      final BoxType<Object> viewport =
+        Box.of(-5, 5, y, y + 1 + random.nextInt(400));
+      BoxVirtualListTest.checkAgainstBruteForce(list, container, viewport);
+    }
+
+    long sum = 0L;
+    for (int index = 0; index < list.count(); ++index) {
+      Assert.assertEquals(sum, list.offset(index));
+      sum += (long) list.extent(index);
+    }
+    Assert.assertEquals(sum, list.totalExtent());
+  }
+
+  @Test
+  public void testIndexAt()
+  {
+    final BoxVirtualList<Object> list =
+      BoxVirtualList.create(new int[]{10, 0, 5, 20});
+
+    Assert.assertEquals(0L, (long) list.indexAt(-4L));
+    Assert.assertEquals(0L, (long) list.indexAt(0L));
+    Assert.assertEquals(0L, (long) list.indexAt(9L));
+    Assert.assertEquals(2L, (long) list.indexAt(10L));
+    Assert.assertEquals(2L, (long) list.indexAt(14L));
+    Assert.assertEquals(3L, (long) list.indexAt(15L));
+    Assert.assertEquals(3L, (long) list.indexAt(34L));
+    Assert.assertEquals(4L, (long) list.indexAt(35L));
+
+    list.setExtent(1, 7);
+    Assert.assertEquals(1L, (long) list.indexAt(10L));
+    Assert.assertEquals(2L, (long) list.indexAt(17L));
+    Assert.assertEquals(42L, list.totalExtent());
+  }
+
+  @Test
+  public void testOutsideViewport()
+  {
+    final BoxVirtualList<Object> list = BoxVirtualList.createFixed(10, 10);
+    final BoxType<Object> container = Box.of(0, 100, 0, 100);
+    final int[] range = new int[2];
+
+    Assert.assertEquals(
+      0L, (long) list.visibleRange(container, Box.of(0, 100, -50, 0), range));
+    Assert.assertEquals(
+      0L, (long) list.visibleRange(container, Box.of(0, 100, 100, 200), range));
+    Assert.assertEquals(
+      0L, (long) list.visibleRange(container, Box.of(100, 200, 0, 50), range));
+    Assert.assertEquals(
+      10L, (long) list.visibleRange(container, Box.of(0, 100, -50, 200), range));
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final BoxVirtualList<Object> list = BoxVirtualList.createFixed(0, 10);
+    final int[] range = new int[2];
+    Assert.assertEquals(0L, list.totalExtent());
+    Assert.assertEquals(0L, (long) list.indexAt(100L));
+    Assert.assertEquals(0L, (long) list.visibleRange(
+      Box.of(0, 100, 0, 100), Box.of(0, 100, 0, 100), range));
+  }
+
+  @Test
+  public void testNegativeExtent()
+  {
+    this.expected.expect(RequireViolation.class);
+    BoxVirtualList.create(new int[]{1, -1});
+  }
+
+  @Test
+  public void testLayoutOutOfRange()
+  {
+    final BoxVirtualList<Object> list = BoxVirtualList.createFixed(10, 10);
+    this.expected.expect(RequireViolation.class);
+    list.layout(Box.of(0, 100, 0, 100), 8, 3, new int[12]);
+  }
+}
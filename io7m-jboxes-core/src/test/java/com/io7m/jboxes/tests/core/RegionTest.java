@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2016 <code@io7m.com> http://io7m.com
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR
+ * IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.io7m.jboxes.tests.core;
+
+import com.io7m.jboxes.core.Box;
+import com.io7m.jboxes.core.BoxType;
+import com.io7m.jboxes.core.Region;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.BiPredicate;
+
+public final class RegionTest
+{
+  private static final int SIZE = 64;
+
+  private static boolean covers(
+    final List<BoxType<Object>> boxes,
+    final int x,
+    final int y)
+  {
+    for (final BoxType<Object> box : boxes) {
+      if (x >= box.minimumX() && x < box.maximumX()
+        && y >= box.minimumY() && y < box.maximumY()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void checkCanonical(
+    final Region<Object> region)
+  {
+    final List<BoxType<Object>> boxes = region.boxes();
+    Assert.assertEquals((long) region.size(), (long) boxes.size());
+
+    long area = 0L;
+    for (int index = 0; index < boxes.size(); ++index) {
+      final BoxType<Object> box = boxes.get(index);
+      Assert.assertTrue(box.width() > 0);
+      Assert.assertTrue(box.height() > 0);
+      area += (long) box.width() * (long) box.height();
+
+      if (index > 0) {
+        final BoxType<Object> prev = boxes.get(index - 1);
+        if (prev.minimumY() == box.minimumY()) {
+          Assert.assertEquals((long) prev.maximumY(), (long) box.maximumY());
+          Assert.assertTrue(prev.maximumX() < box.minimumX());
+        } else {
+          Assert.assertTrue(prev.maximumY() <= box.minimumY());
+        }
+      }
+    }
+    Assert.assertEquals(area, region.area());
+  }
+
+  private static void checkOperation(
+    final BiPredicate<Boolean, Boolean> op,
+    final Region<Object> result,
+    final List<BoxType<Object>> a,
+    final List<BoxType<Object>> b)
+  {
+    RegionTest.checkCanonical(result);
+
+    long area = 0L;
+    for (int y = -RegionTest.SIZE; y < RegionTest.SIZE; ++y) {
+      for (int x = -RegionTest.SIZE; x < RegionTest.SIZE; ++x) {
+        final boolean expected = op.test(
+          Boolean.valueOf(RegionTest.covers(a, x, y)),
+          Boolean.valueOf(RegionTest.covers(b, x, y)));
+        Assert.assertEquals(
+          Boolean.valueOf(expected),
+          Boolean.valueOf(result.containsPoint(x, y)));
+        if (expected) {
+          ++area;
+        }
+      }
+    }
+    Assert.assertEquals(area, result.area());
+  }
+
+  @Test
+  public void testOperationsRandom()
+  {
+    final Random random = new Random(1L);
+    for (int iteration = 0; iteration < 50; ++iteration) {
+      final List<BoxType<Object>> a = BoxTestSupport.randomBoxes(
+        random,
+        1 + random.nextInt(10),
+        -RegionTest.SIZE / 2,
+        RegionTest.SIZE,
+        RegionTest.SIZE / 2);
+      final List<BoxType<Object>> b = BoxTestSupport.randomBoxes(
+        random,
+        1 + random.nextInt(10),
+        -RegionTest.SIZE / 2,
+        RegionTest.SIZE,
+        RegionTest.SIZE / 2);
+      final Region<Object> ra = Region.ofBoxes(a);
+      final Region<Object> rb = Region.ofBoxes(b);
+
+      RegionTest.checkOperation((p, q) -> p.booleanValue(), ra, a, b);
+      RegionTest.checkOperation(
+        (p, q) -> p.booleanValue() || q.booleanValue(), ra.union(rb), a, b);
+      RegionTest.checkOperation(
+        (p, q) -> p.booleanValue() && q.booleanValue(),
+        ra.intersection(rb),
+        a,
+        b);
+      RegionTest.checkOperation(
+        (p, q) -> p.booleanValue() && !q.booleanValue(),
+        ra.difference(rb),
+        a,
+        b);
+      RegionTest.checkOperation(
+        (p, q) -> p.booleanValue() != q.booleanValue(), ra.xor(rb), a, b);
+    }
+  }
+
+  @Test
+  public void testCanonicalEquality()
+  {
+    final Random random = new Random(2L);
+    for (int iteration = 0; iteration < 50; ++iteration) {
+      final List<BoxType<Object>> a = BoxTestSupport.randomBoxes(
+        random, 12, -RegionTest.SIZE / 2, RegionTest.SIZE, RegionTest.SIZE / 2);
+      final List<BoxType<Object>> shuffled = new ArrayList<>(a);
+      Collections.shuffle(shuffled, random);
+
+      Region<Object> incremental = Region.empty();
+      for (final BoxType<Object> box : shuffled) {
+        incremental = incremental.union(Region.of(box));
+      }
+
+      final Region<Object> batch = Region.ofBoxes(a);
+      Assert.assertEquals(batch, incremental);
+      Assert.assertEquals((long) batch.hashCode(), (long) incremental.hashCode());
+      Assert.assertTrue(batch.xor(incremental).isEmpty());
+    }
+  }
+
+  @Test
+  public void testCoalesce()
+  {
+    final Region<Object> r = Region.ofBoxes(Arrays.asList(
+      Box.of(0, 10, 0, 10),
+      Box.of(10, 20, 0, 10),
+      Box.of(0, 20, 10, 20)));
+
+    Assert.assertEquals(1L, (long) r.size());
+    Assert.assertEquals(Box.of(0, 20, 0, 20), r.boxes().get(0));
+    Assert.assertEquals(Optional.of(Box.of(0, 20, 0, 20)), r.bounds());
+  }
+
+  @Test
+  public void testWindowMinusOccluders()
+  {
+    final Region<Object> window = Region.of(Box.of(0, 100, 0, 100));
+    final Region<Object> occluders = Region.ofBoxes(Arrays.asList(
+      Box.of(10, 20, 10, 20),
+      Box.of(50, 150, 50, 150)));
+    final Region<Object> visible = window.difference(occluders);
+
+    Assert.assertEquals(10000L - 100L - 2500L, visible.area());
+    Assert.assertFalse(visible.containsPoint(15, 15));
+    Assert.assertFalse(visible.containsPoint(60, 60));
+    Assert.assertTrue(visible.containsPoint(5, 15));
+    Assert.assertTrue(visible.containsPoint(60, 40));
+    Assert.assertEquals(Optional.of(Box.of(0, 100, 0, 100)), visible.bounds());
+  }
+
+  @Test
+  public void testEmpty()
+  {
+    final Region<Object> e = Region.empty();
+    Assert.assertTrue(e.isEmpty());
+    Assert.assertEquals(0L, e.area());
+    Assert.assertEquals(Optional.empty(), e.bounds());
+    Assert.assertTrue(Region.of(Box.of(0, 0, 0, 10)).isEmpty());
+    Assert.assertTrue(Region.ofBoxes(Collections.emptyList()).isEmpty());
+
+    final Region<Object> r = Region.of(Box.of(0, 10, 0, 10));
+    Assert.assertEquals(r, r.union(e));
+    Assert.assertEquals(r, e.union(r));
+    Assert.assertEquals(e, r.intersection(e));
+    Assert.assertEquals(r, r.difference(e));
+    Assert.assertEquals(e, e.difference(r));
+    Assert.assertEquals(r, e.xor(r));
+    Assert.assertTrue(r.difference(r).isEmpty());
+  }
+}